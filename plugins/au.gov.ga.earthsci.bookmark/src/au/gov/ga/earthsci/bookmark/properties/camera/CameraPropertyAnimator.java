@@ -24,6 +24,7 @@ import gov.nasa.worldwind.view.orbit.FlyToOrbitViewAnimator;
 import gov.nasa.worldwind.view.orbit.OrbitView;
 import au.gov.ga.earthsci.bookmark.AbstractBookmarkPropertyAnimator;
 import au.gov.ga.earthsci.bookmark.IBookmarkPropertyAnimator;
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
 
 /**
  * An {@link IBookmarkPropertyAnimator} used to animate the camera between two
@@ -64,6 +65,10 @@ public class CameraPropertyAnimator extends AbstractBookmarkPropertyAnimator imp
 							.computePointFromPosition(end.getEyePosition()),
 							view.getGlobe().computePointFromPosition(end.getLookatPosition()), end.getUpVector());
 
+			//start retrieving the tiles for the destination and flight path before they are needed
+			TilePrefetcher.getInstance().prefetchFlyTo((OrbitView) view, start.getLookatPosition(),
+					end.getLookatPosition(), startOVS.getZoom(), endOVS.getZoom());
+
 			animator =
 					FlyToOrbitViewAnimator.createFlyToOrbitViewAnimator((OrbitView) view, start.getLookatPosition(),
 							end.getLookatPosition(), startOVS.getHeading(), endOVS.getHeading(), startOVS.getPitch(),
@@ -13,6 +13,7 @@ import java.util.Map;
 import org.junit.Test;
 
 import au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode;
+import au.gov.ga.earthsci.worldwind.common.util.CompiledColorMap;
 
 /**
  * Unit tests for the {@link ColorMap} class
@@ -337,6 +338,32 @@ public class ColorMapTest
 		assertEquals(1.0, classUnderTest.getNearestEntry(value).getKey(), 0.001);
 	}
 
+	@Test
+	public void testCompiledMatchesAllModes()
+	{
+		Color nodata = new Color(1, 2, 3, 4);
+		double[] values = { -1, -0.0, 0.0, 0.05, 0.1, 0.4, 0.7, 0.85, 0.99, 1.0, 2, Double.NaN };
+		for (InterpolationMode mode : InterpolationMode.values())
+		{
+			ColorMap classUnderTest = new ColorMap(null, null, PERCENTAGE_ENTRIES, nodata, mode, true);
+			CompiledColorMap compiled = classUnderTest.compile(10, -10);
+			for (double value : values)
+			{
+				double absoluteValue = value * 20 - 10;
+				assertEquals(classUnderTest.getColor(absoluteValue, 10, -10).getRGB(), compiled.getRGB(absoluteValue));
+			}
+		}
+	}
+
+	@Test
+	public void testCompiledNullNodataIsTransparent()
+	{
+		ColorMap classUnderTest =
+				new ColorMap(null, null, PERCENTAGE_ENTRIES, null, InterpolationMode.EXACT_MATCH, true);
+
+		assertEquals(0, classUnderTest.compile().getRGB(0.5));
+	}
+
 	private static void assertColorsEqual(Color expected, Color actual)
 	{
 		if (expected == null)
@@ -25,6 +25,7 @@ import java.util.UUID;
 
 import au.gov.ga.earthsci.common.util.IDescribed;
 import au.gov.ga.earthsci.common.util.INamed;
+import au.gov.ga.earthsci.worldwind.common.util.CompiledColorMap;
 import au.gov.ga.earthsci.worldwind.common.util.Util;
 
 /**
@@ -313,6 +314,40 @@ public class ColorMap implements INamed, IDescribed
 		return getColor(absoluteValue);
 	}
 
+	/**
+	 * Compile this colour map for fast calculation of colours for the values
+	 * accepted by {@link #getColor(double)}.
+	 * 
+	 * @return The compiled form of this colour map
+	 * 
+	 * @see CompiledColorMap
+	 */
+	public CompiledColorMap compile()
+	{
+		return compile(0, 1);
+	}
+
+	/**
+	 * Compile this colour map for fast calculation of colours for the absolute
+	 * values accepted by {@link #getColor(double, double, double)}, using the
+	 * provided {@code min} and {@code max} values. The compiled form is a
+	 * snapshot of the current entries.
+	 * 
+	 * @param min
+	 *            The minimum absolute value in the source data
+	 * @param max
+	 *            The maximum absolute value in the source data
+	 * 
+	 * @return The compiled form of this colour map
+	 * 
+	 * @see CompiledColorMap
+	 */
+	public CompiledColorMap compile(double min, double max)
+	{
+		return new CompiledColorMap(entries, CompiledColorMap.Mode.valueOf(mode.name()), nodataColour,
+				valuesArePercentages, Math.min(min, max), Math.max(min, max), CompiledColorMap.DEFAULT_TABLE_SIZE);
+	}
+
 	/**
 	 * @return the NODATA colour for this colour map
 	 */
@@ -16,13 +16,16 @@
 package au.gov.ga.earthsci.core.worldwind;
 
 import gov.nasa.worldwind.terrain.CompoundElevationModel;
+import au.gov.ga.earthsci.worldwind.common.terrain.BulkElevationHelper;
+import au.gov.ga.earthsci.worldwind.common.terrain.IBulkElevationModel;
 
 /**
- * Extended {@link CompoundElevationModel}.
+ * Extended {@link CompoundElevationModel} that supports bulk elevation
+ * requests.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class WorldWindCompoundElevationModel extends CompoundElevationModel
+public class WorldWindCompoundElevationModel extends CompoundElevationModel implements IBulkElevationModel
 {
 	public void removeAll()
 	{
@@ -33,4 +36,10 @@ public class WorldWindCompoundElevationModel extends CompoundElevationModel
 	{
 		return elevationModels.size();
 	}
+
+	@Override
+	public double getElevations(double[] lats, double[] lons, double[] out, double targetResolution)
+	{
+		return BulkElevationHelper.getElevations(this, lats, lons, out, targetResolution);
+	}
 }
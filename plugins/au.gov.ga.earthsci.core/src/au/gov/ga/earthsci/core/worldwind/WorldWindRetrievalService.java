@@ -30,12 +30,12 @@ import au.gov.ga.earthsci.worldwind.common.retrieve.ExtendedRetrievalService;
 public class WorldWindRetrievalService extends ExtendedRetrievalService
 {
 	@Override
-	public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+	protected synchronized RetrievalFuture runRetriever(Retriever retriever, double priority, boolean background)
 	{
 		if (retriever instanceof URLRetriever)
 		{
 			retriever = new URLRetrieverWrapper((URLRetriever) retriever);
 		}
-		return super.runRetriever(retriever, priority);
+		return super.runRetriever(retriever, priority, background);
 	}
 }
@@ -15,10 +15,7 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.borehole;
 
-import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotNull;
-import static org.junit.Assert.assertNull;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.render.markers.BasicMarkerAttributes;
 import gov.nasa.worldwind.render.markers.MarkerAttributes;
@@ -33,8 +30,6 @@ import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
-import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
-
 /**
  * Unit tests for the {@link BoreholeImpl}
  * 
@@ -101,11 +96,8 @@ public class BoreholeImplTest
 	}
 	
 	@Test
-	public void testShapesNotInitialisedOnCreate()
+	public void testNoSamplesOnCreate()
 	{
-		assertNull(classUnderTest.getSamplesShape());
-		assertNull(classUnderTest.getCentrelineShape());
-		
 		assertEquals(0, classUnderTest.getSamples().size());
 	}
 	
@@ -114,9 +106,6 @@ public class BoreholeImplTest
 	{
 		classUnderTest.addSample(createSampleForBoreHole(classUnderTest, 0, 15, Color.RED));
 		
-		assertNull(classUnderTest.getSamplesShape());
-		assertNull(classUnderTest.getCentrelineShape());
-		
 		assertEquals(1, classUnderTest.getSamples().size());
 	}
 	
@@ -126,9 +115,6 @@ public class BoreholeImplTest
 		classUnderTest.addSample(createSampleForBoreHole(classUnderTest, 0, 15, Color.RED));
 		classUnderTest.addSample(null);
 		
-		assertNull(classUnderTest.getSamplesShape());
-		assertNull(classUnderTest.getCentrelineShape());
-		
 		assertEquals(1, classUnderTest.getSamples().size());
 	}
 	
@@ -138,44 +124,6 @@ public class BoreholeImplTest
 		classUnderTest.addSample(createSampleForBoreHole(mockContext.mock(Borehole.class), 0, 15, Color.RED));
 	}
 	
-	@Test
-	public void testLoadCompleteWithNoSamples()
-	{
-		classUnderTest.loadComplete();
-		
-		FastShape samplesShape = classUnderTest.getSamplesShape();
-		assertNotNull(samplesShape);
-		assertEquals(0, samplesShape.getPositions().size());
-		
-		FastShape centrelineShape = classUnderTest.getCentrelineShape();
-		assertNotNull(centrelineShape);
-		assertEquals(0, centrelineShape.getPositions().size());
-	}
-	
-	@Test
-	public void testLoadCompleteWithSamples()
-	{
-		classUnderTest.addSample(createSampleForBoreHole(classUnderTest, 0, 15, Color.RED));
-		classUnderTest.addSample(createSampleForBoreHole(classUnderTest, 20, 25, Color.GREEN));
-		classUnderTest.addSample(createSampleForBoreHole(classUnderTest, 50, 150, Color.BLUE));
-		
-		classUnderTest.loadComplete();
-		
-		FastShape samplesShape = classUnderTest.getSamplesShape();
-		assertNotNull(samplesShape);
-		assertEquals(6, samplesShape.getPositions().size());
-		float[] colorBuffer = new float[]{1,0,0,1,0,0,
-										  0,1,0,0,1,0,
-										  0,0,1,0,0,1};
-		assertArrayEquals(colorBuffer, samplesShape.getColorBuffer(), 0.001f);
-		
-		FastShape centrelineShape = classUnderTest.getCentrelineShape();
-		assertNotNull(centrelineShape);
-		assertEquals(2, centrelineShape.getPositions().size());
-		assertNull(centrelineShape.getColorBuffer());
-		assertEquals(Color.LIGHT_GRAY, centrelineShape.getColor());
-	}
-	
 	private BoreholeSample createSampleForBoreHole(Borehole b, double depthFrom, double depthTo, Color color)
 	{
 		BoreholeSampleImpl sample = new BoreholeSampleImpl(b);
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.borehole;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import gov.nasa.worldwind.geom.Position;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BoreholeSampleRenderer}
+ */
+public class BoreholeSampleRendererTest
+{
+	@Test
+	public void testNoBoreholes()
+	{
+		BoreholeSampleRenderer classUnderTest = new BoreholeSampleRenderer();
+		classUnderTest.setBoreholes(new ArrayList<Borehole>(), Color.GRAY);
+
+		assertEquals(0, classUnderTest.getVertexCount());
+		assertArrayEquals(new int[] { 0 }, classUnderTest.getSampleOffsets());
+	}
+
+	@Test
+	public void testSamplesPackedBeforeCentrelines()
+	{
+		TestBorehole first = new TestBorehole(0);
+		first.addSample(0, 15, Color.RED);
+		first.addSample(20, 25, null);
+		TestBorehole empty = new TestBorehole(0);
+		TestBorehole second = new TestBorehole(-10);
+		second.addSample(50, 150, Color.BLUE);
+
+		BoreholeSampleRenderer classUnderTest = new BoreholeSampleRenderer();
+		classUnderTest.setBoreholes(Arrays.asList(first, empty, second), Color.GREEN);
+
+		//3 samples and 3 centrelines, 2 vertices each
+		assertEquals(12, classUnderTest.getVertexCount());
+		assertArrayEquals(new int[] { 0, 2, 2, 3 }, classUnderTest.getSampleOffsets());
+
+		float[] depths = { 0, 15, 20, 25, 50, 150, 0, 25, 0, 0, 10, 150 };
+		assertArrayEquals(depths, classUnderTest.getDepths(), 0.001f);
+
+		float[] colors = { 1, 0, 0, 1, 0, 0, 0, 1, 0, 0, 1, 0, 0, 0, 1, 0, 0, 1 };
+		assertArrayEquals(colors, Arrays.copyOf(classUnderTest.getColors(), colors.length), 0.001f);
+		float gray = Color.LIGHT_GRAY.getRed() / 255f;
+		for (int i = colors.length; i < classUnderTest.getColors().length; i++)
+		{
+			assertEquals(gray, classUnderTest.getColors()[i], 0.001f);
+		}
+	}
+
+	@Test
+	public void testSetBoreholesReplacesPrevious()
+	{
+		TestBorehole borehole = new TestBorehole(0);
+		borehole.addSample(0, 15, Color.RED);
+
+		BoreholeSampleRenderer classUnderTest = new BoreholeSampleRenderer();
+		classUnderTest.setBoreholes(Arrays.asList(borehole, borehole), Color.GRAY);
+		assertEquals(8, classUnderTest.getVertexCount());
+
+		classUnderTest.setBoreholes(Arrays.asList(borehole), Color.GRAY);
+		assertEquals(4, classUnderTest.getVertexCount());
+		assertArrayEquals(new int[] { 0, 1 }, classUnderTest.getSampleOffsets());
+	}
+
+	private static class TestBorehole implements Borehole
+	{
+		private final Position position;
+		private final List<BoreholeSample> samples = new ArrayList<BoreholeSample>();
+
+		public TestBorehole(double elevation)
+		{
+			position = Position.fromDegrees(-27, 133, elevation);
+		}
+
+		public void addSample(double depthFrom, double depthTo, Color color)
+		{
+			BoreholeSampleImpl sample = new BoreholeSampleImpl(this);
+			sample.setDepthFrom(depthFrom);
+			sample.setDepthTo(depthTo);
+			sample.setColor(color);
+			samples.add(sample);
+		}
+
+		@Override
+		public List<BoreholeSample> getSamples()
+		{
+			return samples;
+		}
+
+		@Override
+		public Position getPosition()
+		{
+			return position;
+		}
+
+		@Override
+		public String getText()
+		{
+			return null;
+		}
+
+		@Override
+		public String getLink()
+		{
+			return null;
+		}
+	}
+}
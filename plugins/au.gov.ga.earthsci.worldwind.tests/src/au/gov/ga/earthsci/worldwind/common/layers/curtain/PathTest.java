@@ -1,12 +1,17 @@
 package au.gov.ga.earthsci.worldwind.common.layers.curtain;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.LatLon;
 import gov.nasa.worldwind.geom.Sector;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
 
 import org.junit.Test;
 
@@ -85,6 +90,96 @@ public class PathTest
 		assertLatLonsEqual(expected, result);
 	}
 	
+	@Test
+	public void testGetPercentLatLonMatchesPositionMap()
+	{
+		Path path = createWindingPath();
+		Random random = new Random(1);
+		for (int i = 0; i < 1000; i++)
+		{
+			double percent = random.nextDouble() * 1.2 - 0.1;
+			assertLatLonsEqual(getPercentLatLonFromMap(path, percent), path.getPercentLatLon(percent));
+		}
+		for (double percent : path.positions.keySet())
+		{
+			assertLatLonsEqual(getPercentLatLonFromMap(path, percent), path.getPercentLatLon(percent));
+		}
+	}
+
+	@Test
+	public void testSegmentSubdivisionMatchesSegmentMap()
+	{
+		Path path = createWindingPath();
+		Random random = new Random(2);
+		for (int subsegments : new int[] { 1, 2, 5, 16 })
+		{
+			for (int i = 0; i < 100; i++)
+			{
+				double a = random.nextDouble(), b = random.nextDouble();
+				Segment segment = new Segment(Math.min(a, b), Math.max(a, b), 0, 1);
+				Path.Subdivision subdivision = path.createSubdivision(segment, subsegments);
+				assertSubdivisionEquals(segmentMap(path, segment, subsegments), subdivision, 0,
+						subdivision.percents.length);
+			}
+		}
+	}
+
+	@Test
+	public void testLevelSubdivisionMatchesSegmentMap()
+	{
+		Path path = createWindingPath();
+		for (int tiles : new int[] { 1, 3, 10, 64 })
+		{
+			for (int subsegments : new int[] { 1, 4, 16 })
+			{
+				Path.Subdivision subdivision = path.createSubdivision(1d / tiles / subsegments);
+				for (int column = 0; column < tiles; column++)
+				{
+					Segment segment = new Segment(column / (double) tiles, (column + 1) / (double) tiles, 0, 1);
+					int from = subdivision.indexOf(segment.getStart());
+					int to = subdivision.indexAfter(segment.getEnd());
+					NavigableMap<Double, LatLon> expected = segmentMap(path, segment, subsegments);
+
+					//segment geometry has two vertices per subdivision location
+					assertEquals(expected.size() * 2, (to - from) * 2);
+					assertSubdivisionEquals(expected, subdivision, from, to);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testLevelSubdivisionOfPartialTile()
+	{
+		//tiles of 256 columns in a level 1000 columns wide; the last tile is truncated
+		Path path = createWindingPath();
+		double tileWidth = 256 / 1000d;
+		int subsegments = 4;
+		double step = tileWidth / subsegments;
+		Path.Subdivision subdivision = path.createSubdivision(step);
+		Segment segment = new Segment(3 * tileWidth, 1, 0, 1);
+		int from = subdivision.indexOf(segment.getStart());
+		int to = subdivision.indexAfter(segment.getEnd());
+
+		//the truncated tile uses the level's evenly spaced locations, rather than subdividing the truncated width
+		assertEquals(segment.getStart(), subdivision.percents[from], 1e-9);
+		assertEquals(1, subdivision.percents[to - 1], 1e-9);
+		for (int i = from + 1; i < to; i++)
+		{
+			assertTrue(subdivision.percents[i] - subdivision.percents[i - 1] <= step + 1e-9);
+		}
+		int samples = 0;
+		for (int i = from; i < to; i++)
+		{
+			double sample = subdivision.percents[i] / step;
+			if (Math.abs(sample - Math.round(sample)) < 1e-6)
+			{
+				samples++;
+			}
+		}
+		assertEquals((int) Math.floor((1 - segment.getStart()) / step + 1e-9) + 1, samples);
+	}
+
 	/**
 	 * Creates a path from lat-lon locations specified by the provided angles in degrees in [lat,lon,lat,lon,...] format
 	 */
@@ -98,6 +193,71 @@ public class PathTest
 		return new Path(positions);
 	}
 	
+	private Path createWindingPath()
+	{
+		return createPath(-30.1d, 130.2d, -31.3d, 131.7d, -31.45d, 131.8d, -33.2d, 135.1d, -32.6d, 140.3d, -35.7d,
+				141.1d, -35.9d, 141.2d, -34.3d, 143.9d);
+	}
+
+	/**
+	 * The percent location calculation of the original implementation, which
+	 * searched a map of the path positions
+	 */
+	private static LatLon getPercentLatLonFromMap(Path path, double percent)
+	{
+		NavigableMap<Double, LatLon> positions = path.positions;
+		if (percent <= 0)
+		{
+			return positions.firstEntry().getValue();
+		}
+		if (percent >= 1)
+		{
+			return positions.lastEntry().getValue();
+		}
+		if (positions.containsKey(percent))
+		{
+			return positions.get(percent);
+		}
+
+		Entry<Double, LatLon> lower = positions.lowerEntry(percent);
+		Entry<Double, LatLon> higher = positions.higherEntry(percent);
+		double p = (percent - lower.getKey()) / (higher.getKey() - lower.getKey());
+		return LatLon.interpolateGreatCircle(p, lower.getValue(), higher.getValue());
+	}
+
+	/**
+	 * The segment subdivision of the original implementation, which merged
+	 * the path positions within the segment with the segment's start, end and
+	 * subsegment locations
+	 */
+	private static NavigableMap<Double, LatLon> segmentMap(Path path, Segment segment, int subsegments)
+	{
+		NavigableMap<Double, LatLon> betweenMap = new TreeMap<Double, LatLon>();
+		betweenMap.putAll(path.positions.subMap(segment.getStart(), false, segment.getEnd(), false));
+		betweenMap.put(segment.getStart(), getPercentLatLonFromMap(path, segment.getStart()));
+		betweenMap.put(segment.getEnd(), getPercentLatLonFromMap(path, segment.getEnd()));
+		for (int i = 0; i < subsegments - 1; i++)
+		{
+			double subsegment = (i + 1) / (double) subsegments;
+			double percent = segment.getStart() + subsegment * segment.getHorizontalDelta();
+			betweenMap.put(percent, getPercentLatLonFromMap(path, percent));
+		}
+		return betweenMap;
+	}
+
+	private static void assertSubdivisionEquals(NavigableMap<Double, LatLon> expected, Path.Subdivision subdivision,
+			int from, int to)
+	{
+		assertEquals(expected.size(), to - from);
+		int i = from;
+		for (Entry<Double, LatLon> entry : expected.entrySet())
+		{
+			assertEquals(entry.getKey(), subdivision.percents[i], 1e-9);
+			assertLatLonsEqual(entry.getValue(), subdivision.locations[i]);
+			i++;
+		}
+	}
+
 	private static void assertLatLonsEqual(LatLon expected, LatLon result)
 	{
 		if (expected == null)
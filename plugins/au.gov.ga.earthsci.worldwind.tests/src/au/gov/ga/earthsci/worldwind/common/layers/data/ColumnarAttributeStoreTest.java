@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+
+import java.util.Date;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link ColumnarAttributeStore} class
+ */
+public class ColumnarAttributeStoreTest
+{
+	private ColumnarAttributeStore store;
+
+	@Before
+	public void setup()
+	{
+		store = new ColumnarAttributeStore();
+	}
+
+	@Test
+	public void testValuesKeepTheirTypes()
+	{
+		Date date = new Date(0);
+		AVList values = new AVListImpl();
+		values.setValue("int", 5);
+		values.setValue("long", 12345678901L);
+		values.setValue("double", 1.5);
+		values.setValue("string", "abc");
+		values.setValue("boolean", Boolean.TRUE);
+		values.setValue("date", date);
+		int index = store.add(values);
+
+		assertEquals(0, index);
+		assertEquals(1, store.size());
+		assertEquals(Integer.valueOf(5), store.getValue(index, "int"));
+		assertEquals(Long.valueOf(12345678901L), store.getValue(index, "long"));
+		assertEquals(Double.valueOf(1.5), store.getValue(index, "double"));
+		assertEquals("abc", store.getValue(index, "string"));
+		assertEquals(Boolean.TRUE, store.getValue(index, "boolean"));
+		assertEquals(date, store.getValue(index, "date"));
+		assertNull(store.getValue(index, "missing"));
+	}
+
+	@Test
+	public void testMissingValues()
+	{
+		for (int i = 0; i < 200; i++)
+		{
+			AVList values = new AVListImpl();
+			if (i % 3 == 0)
+			{
+				values.setValue("number", (double) i);
+				values.setValue("name", "name" + (i % 5));
+			}
+			store.add(values);
+		}
+		store.trimToSize();
+
+		assertEquals(200, store.size());
+		for (int i = 0; i < 200; i++)
+		{
+			if (i % 3 == 0)
+			{
+				assertEquals(Double.valueOf(i), store.getValue(i, "number"));
+				assertEquals("name" + (i % 5), store.getValue(i, "name"));
+			}
+			else
+			{
+				assertNull(store.getValue(i, "number"));
+				assertNull(store.getValue(i, "name"));
+			}
+		}
+	}
+
+	@Test
+	public void testDictionaryEncoding()
+	{
+		for (int i = 0; i < 100; i++)
+		{
+			int index = store.addRecord();
+			store.setValue(index, "name", new String("value" + (i % 2)));
+		}
+		assertSame(store.getValue(0, "name"), store.getValue(2, "name"));
+		assertEquals("value1", store.getValue(1, "name"));
+	}
+
+	@Test
+	public void testMixedTypesConvertColumn()
+	{
+		store.setValue(store.addRecord(), "value", 1);
+		store.addRecord();
+		store.setValue(store.addRecord(), "value", "text");
+		store.setValue(store.addRecord(), "value", 2.5);
+
+		assertEquals(Integer.valueOf(1), store.getValue(0, "value"));
+		assertNull(store.getValue(1, "value"));
+		assertEquals("text", store.getValue(2, "value"));
+		assertEquals(Double.valueOf(2.5), store.getValue(3, "value"));
+	}
+
+	@Test
+	public void testRecordView()
+	{
+		AVList values = new AVListImpl();
+		values.setValue("id", 7L);
+		values.setValue("name", "borehole");
+		AVList record = store.getRecord(store.add(values));
+
+		assertEquals(Long.valueOf(7), record.getValue("id"));
+		assertEquals("borehole", record.getValue("name"));
+		assertTrue(record.hasKey("name"));
+		assertFalse(record.hasKey("missing"));
+		assertEquals(2, record.getEntries().size());
+
+		record.setValue("name", "override");
+		record.setValue("extra", 1);
+		assertEquals("override", record.getValue("name"));
+		assertEquals("borehole", store.getValue(0, "name"));
+		assertEquals(3, record.getEntries().size());
+		assertEquals("override", record.getValues().getValue("name"));
+	}
+
+	@Test(expected = IndexOutOfBoundsException.class)
+	public void testInvalidIndex()
+	{
+		store.addRecord();
+		store.getValue(1, "name");
+	}
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import gov.nasa.worldwind.util.TileKey;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import javax.media.opengl.GL;
+
+import org.junit.Test;
+
+import com.jogamp.opengl.util.texture.TextureData;
+
+/**
+ * Unit tests for the {@link TextureDataCache} class
+ */
+public class TextureDataCacheTest
+{
+	private static final TileKey TILE = new TileKey(2, 3, 4, "cache");
+
+	@Test
+	public void testKeySeparation()
+	{
+		TextureDataCache cache = new TextureDataCache(10000);
+		TextureData data = createTextureData(5, 5, ByteBuffer.allocate(100));
+		cache.put("config", TILE, 1, data);
+
+		assertSame(data, cache.get("config", new TileKey(2, 3, 4, "cache"), 1));
+		assertNull(cache.get("other config", TILE, 1));
+		assertNull(cache.get("config", new TileKey(2, 3, 5, "cache"), 1));
+		assertNull(cache.get("config", new TileKey(2, 3, 4, "other cache"), 1));
+		assertNull(cache.get("config", TILE, 2));
+	}
+
+	@Test
+	public void testHitAndMissCounts()
+	{
+		TextureDataCache cache = new TextureDataCache(10000);
+		cache.put("config", TILE, 1, createTextureData(5, 5, ByteBuffer.allocate(100)));
+
+		cache.get("config", TILE, 1);
+		cache.get("config", TILE, 1);
+		cache.get("config", TILE, 2);
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2 / 3d, cache.getHitRate(), 1e-9);
+	}
+
+	@Test
+	public void testEvictionAtCapacity() throws InterruptedException
+	{
+		TextureDataCache cache = new TextureDataCache(250);
+		for (int i = 0; i < 3; i++)
+		{
+			cache.put("config", new TileKey(0, 0, i, "cache"), 1, createTextureData(5, 5, ByteBuffer.allocate(100)));
+			//entries are evicted least recently used first, with millisecond resolution
+			Thread.sleep(5);
+		}
+
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(200, cache.getUsedCapacity());
+		assertNull(cache.get("config", new TileKey(0, 0, 0, "cache"), 1));
+
+		//entries larger than the cache aren't added
+		cache.put("config", TILE, 1, createTextureData(10, 10, ByteBuffer.allocate(400)));
+		assertNull(cache.get("config", TILE, 1));
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testSizeOfTextureDataWithoutBuffer()
+	{
+		//lazily converted texture data has no buffer, so reports no memory size
+		TextureData data = createTextureData(8, 4, null);
+		assertEquals(0, data.getEstimatedMemorySize());
+
+		TextureDataCache cache = new TextureDataCache(10000);
+		cache.put("config", TILE, 1, data);
+		assertSame(data, cache.get("config", TILE, 1));
+		assertEquals(8 * 4 * 4, cache.getUsedCapacity());
+	}
+
+	private static TextureData createTextureData(int width, int height, Buffer buffer)
+	{
+		return new TextureData(null, GL.GL_RGBA, width, height, 0, GL.GL_RGBA, GL.GL_UNSIGNED_BYTE, false, false,
+				false, buffer, null);
+	}
+}
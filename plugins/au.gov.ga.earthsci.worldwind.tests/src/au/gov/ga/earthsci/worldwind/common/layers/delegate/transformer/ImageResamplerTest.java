@@ -0,0 +1,193 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer.ImageResampler.Interpolation;
+import au.gov.ga.earthsci.worldwind.common.util.BufferedImagePool;
+
+/**
+ * Unit tests for the {@link ImageResampler} class
+ */
+public class ImageResamplerTest
+{
+	private static final int[] TYPES = { BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_BGR,
+			BufferedImage.TYPE_INT_ARGB, BufferedImage.TYPE_INT_ARGB_PRE, BufferedImage.TYPE_3BYTE_BGR,
+			BufferedImage.TYPE_4BYTE_ABGR, BufferedImage.TYPE_4BYTE_ABGR_PRE, BufferedImage.TYPE_BYTE_GRAY };
+
+	private static final int[][] SIZES = { { 37, 23, 64, 64 }, { 256, 256, 512, 512 }, { 1024, 1024, 512, 512 },
+			{ 512, 512, 512, 511 }, { 512, 512, 300, 301 }, { 300, 200, 17, 123 }, { 3, 5, 1, 1 } };
+
+	@Test
+	public void testBilinearMatchesGraphics()
+	{
+		assertMatchesGraphics(Interpolation.BILINEAR);
+	}
+
+	@Test
+	public void testNearestNeighborMatchesGraphics()
+	{
+		assertMatchesGraphics(Interpolation.NEAREST_NEIGHBOR);
+	}
+
+	@Test
+	public void testDownsampleMatchesBilinearHalf()
+	{
+		for (int type : TYPES)
+		{
+			BufferedImage image = createImage(64, 48, type);
+			BufferedImage expected = resizeGraphics(image, 32, 24, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			assertImagesEqual(expected, ImageResampler.downsample(image, null));
+		}
+	}
+
+	@Test
+	public void testDownsampleBoxFilter()
+	{
+		int[] src = { 0x00000000, 0x04040404, 0x08080808, 0xff000000, 0x02020202, 0x06060606, 0x0a0a0a0a, 0x01000000 };
+		int[] dst = ImageResampler.downsample(src, 4, 2, null);
+		assertEquals(2, dst.length);
+		assertEquals(0x03030303, dst[0]);
+		assertEquals(0x45050505, dst[1]);
+	}
+
+	@Test
+	public void testDestinationBufferReused()
+	{
+		int[] src = new int[16 * 16];
+		int[] dst = new int[32 * 32];
+		assertSame(dst, ImageResampler.resize(src, 16, 16, dst, 32, 32, Interpolation.BILINEAR));
+		assertSame(dst, ImageResampler.downsample(src, 16, 16, dst));
+		assertEquals(8 * 8, ImageResampler.resize(src, 16, 16, new int[1], 8, 8, Interpolation.BILINEAR).length);
+
+		byte[] bytes = new byte[16 * 16 * 3];
+		byte[] dstBytes = new byte[32 * 32 * 3];
+		assertSame(dstBytes, ImageResampler.resize(bytes, 16, 16, dstBytes, 32, 32, 3, Interpolation.BILINEAR));
+	}
+
+	@Test
+	public void testPooledDestination()
+	{
+		BufferedImagePool pool = new BufferedImagePool(1);
+		BufferedImage pooled = new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB);
+		pool.release(pooled);
+		BufferedImage image = createImage(40, 20, BufferedImage.TYPE_INT_ARGB);
+		assertSame(pooled, ImageResampler.resize(image, 20, 10, Interpolation.BILINEAR, pool));
+	}
+
+	@Test
+	public void testUnsupportedImages()
+	{
+		BufferedImage indexed = new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_INDEXED);
+		assertFalse(ImageResampler.isSupported(indexed));
+		BufferedImage resized = ImageResampler.resize(indexed, 20, 20, Interpolation.BILINEAR, null);
+		assertEquals(BufferedImage.TYPE_BYTE_INDEXED, resized.getType());
+		assertEquals(20, resized.getWidth());
+
+		BufferedImage image = createImage(10, 10, BufferedImage.TYPE_INT_RGB);
+		assertTrue(ImageResampler.isSupported(image));
+		assertFalse(ImageResampler.isSupported(image.getSubimage(2, 2, 5, 5)));
+	}
+
+	private static void assertMatchesGraphics(Interpolation interpolation)
+	{
+		Object hint =
+				interpolation == Interpolation.BILINEAR ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+						: RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR;
+		for (int type : TYPES)
+		{
+			for (int[] size : SIZES)
+			{
+				BufferedImage image = createImage(size[0], size[1], type);
+				BufferedImage expected = resizeGraphics(image, size[2], size[3], hint);
+				BufferedImage actual = ImageResampler.resize(image, size[2], size[3], interpolation, null);
+				assertEquals(type, actual.getType());
+				assertImagesEqual(expected, actual);
+			}
+		}
+	}
+
+	private static BufferedImage resizeGraphics(BufferedImage image, int width, int height, Object hint)
+	{
+		BufferedImage resized = new BufferedImage(width, height, image.getType());
+		Graphics2D g = resized.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, hint);
+		g.drawImage(image, 0, 0, width, height, null);
+		g.dispose();
+		return resized;
+	}
+
+	private static BufferedImage createImage(int width, int height, int type)
+	{
+		Random random = new Random(width * 31 + height);
+		BufferedImage image = new BufferedImage(width, height, type);
+		for (int y = 0; y < height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				int argb = random.nextInt();
+				//include fully transparent and fully opaque pixels
+				int alpha = random.nextInt(4);
+				if (alpha == 0)
+				{
+					argb &= 0xffffff;
+				}
+				else if (alpha == 1)
+				{
+					argb |= 0xff000000;
+				}
+				image.setRGB(x, y, argb);
+			}
+		}
+		return image;
+	}
+
+	private static void assertImagesEqual(BufferedImage expected, BufferedImage actual)
+	{
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		if (expected.getRaster().getDataBuffer() instanceof DataBufferInt)
+		{
+			//compare the raw pixels, which for premultiplied images are not visible through getRGB
+			int[] e = ((DataBufferInt) expected.getRaster().getDataBuffer()).getData();
+			int[] a = ((DataBufferInt) actual.getRaster().getDataBuffer()).getData();
+			for (int i = 0; i < e.length; i++)
+			{
+				assertEquals(e[i], a[i]);
+			}
+			return;
+		}
+		for (int y = 0; y < expected.getHeight(); y++)
+		{
+			for (int x = 0; x < expected.getWidth(); x++)
+			{
+				assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.IPixelTransformerDelegate;
+import au.gov.ga.earthsci.worldwind.common.util.BufferedImagePool;
+
+/**
+ * Unit tests for the {@link PixelTransformerHelper} class
+ */
+public class PixelTransformerHelperTest
+{
+	@Test
+	public void testSingleTransformerMatchesPerPixel()
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_ARGB);
+		IPixelTransformerDelegate[] transformers =
+				{ new ColorToAlphaTransformerDelegate(Color.white),
+						new ColorLimitTransformerDelegate(new Color(200, 100, 50)),
+						new TransparentColorTransformerDelegate(Color.black, 0.2) };
+		for (IPixelTransformerDelegate transformer : transformers)
+		{
+			assertImagesEqual(transformPerPixel(image, transformer), transformer.transformImage(image, null));
+		}
+	}
+
+	@Test
+	public void testFusedMatchesSequentialForOpaqueImage()
+	{
+		BufferedImage image = createImage(BufferedImage.TYPE_INT_RGB);
+		IPixelTransformerDelegate first = new TransparentColorTransformerDelegate(Color.black, 0.3);
+		IPixelTransformerDelegate second = new ColorLimitTransformerDelegate(new Color(220, 220, 220));
+
+		BufferedImage expected = second.transformImage(first.transformImage(image, null), null);
+		BufferedImage actual =
+				PixelTransformerHelper.transform(image, Arrays.asList(first, second), new BufferedImagePool(1));
+		assertEquals(second.getTransformedImageType(), actual.getType());
+		assertImagesEqual(expected, actual);
+	}
+
+	private static BufferedImage transformPerPixel(BufferedImage image, IPixelTransformerDelegate transformer)
+	{
+		BufferedImage dst =
+				new BufferedImage(image.getWidth(), image.getHeight(), transformer.getTransformedImageType());
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				dst.setRGB(x, y, transformer.transformPixel(image.getRGB(x, y)));
+			}
+		}
+		return dst;
+	}
+
+	private static BufferedImage createImage(int type)
+	{
+		Random random = new Random(0);
+		BufferedImage image = new BufferedImage(37, 23, type);
+		for (int y = 0; y < image.getHeight(); y++)
+		{
+			for (int x = 0; x < image.getWidth(); x++)
+			{
+				image.setRGB(x, y, random.nextInt());
+			}
+		}
+		return image;
+	}
+
+	private static void assertImagesEqual(BufferedImage expected, BufferedImage actual)
+	{
+		assertEquals(expected.getWidth(), actual.getWidth());
+		assertEquals(expected.getHeight(), actual.getHeight());
+		for (int y = 0; y < expected.getHeight(); y++)
+		{
+			for (int x = 0; x < expected.getWidth(); x++)
+			{
+				assertEquals(expected.getRGB(x, y), actual.getRGB(x, y));
+			}
+		}
+	}
+}
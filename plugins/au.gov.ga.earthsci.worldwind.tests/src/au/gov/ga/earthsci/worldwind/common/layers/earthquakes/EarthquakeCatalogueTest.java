@@ -0,0 +1,195 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.earthquakes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link EarthquakeCatalogue} class
+ */
+public class EarthquakeCatalogueTest
+{
+	@Test
+	public void testColumnarRoundTrip() throws IOException
+	{
+		EarthquakeCatalogue catalogue = createCatalogue(10);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		catalogue.write(baos, 3);
+
+		EarthquakeCatalogue read = new EarthquakeCatalogue(1);
+		final List<Integer> progress = new ArrayList<Integer>();
+		read.read(new ByteArrayInputStream(baos.toByteArray()), new EarthquakeCatalogue.ProgressListener()
+		{
+			@Override
+			public void progress(int count)
+			{
+				progress.add(count);
+			}
+		});
+
+		assertCataloguesEqual(catalogue, read);
+		//one notification per block
+		assertEquals("[3, 6, 9, 10]", progress.toString());
+	}
+
+	@Test
+	public void testReadRecordFormat() throws IOException
+	{
+		EarthquakeCatalogue catalogue = createCatalogue(5);
+		EarthquakeCatalogue read = new EarthquakeCatalogue();
+		read.read(new ByteArrayInputStream(writeRecords(catalogue)), null);
+		assertCataloguesEqual(catalogue, read);
+	}
+
+	@Test
+	public void testReadRecordFormatFile() throws IOException
+	{
+		EarthquakeCatalogue catalogue = createCatalogue(5);
+		File file = File.createTempFile("earthquakes", ".dat");
+		file.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			fos.write(writeRecords(catalogue));
+		}
+		finally
+		{
+			fos.close();
+		}
+
+		EarthquakeCatalogue read = new EarthquakeCatalogue();
+		read.read(file, null);
+		assertCataloguesEqual(catalogue, read);
+		file.delete();
+	}
+
+	@Test
+	public void testReadMappedFile() throws IOException
+	{
+		EarthquakeCatalogue catalogue = createCatalogue(100);
+		File file = File.createTempFile("earthquakes", ".dat");
+		file.deleteOnExit();
+		FileOutputStream fos = new FileOutputStream(file);
+		try
+		{
+			catalogue.write(fos, EarthquakeCatalogue.DEFAULT_BLOCK_SIZE);
+		}
+		finally
+		{
+			fos.close();
+		}
+
+		EarthquakeCatalogue read = new EarthquakeCatalogue();
+		read.read(file, null);
+		assertCataloguesEqual(catalogue, read);
+		file.delete();
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadTruncatedBuffer() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		createCatalogue(10).write(baos, 4);
+		byte[] bytes = baos.toByteArray();
+		new EarthquakeCatalogue().read(ByteBuffer.wrap(bytes, 0, bytes.length - 8).slice(), null);
+	}
+
+	@Test
+	public void testIndicesWithinTime()
+	{
+		EarthquakeCatalogue catalogue = createCatalogue(10);
+
+		assertNull(catalogue.getIndicesWithinTime(10, null, null));
+		assertArrayEquals(new int[] { 3, 4, 5 }, catalogue.getIndicesWithinTime(10, 3000L, 5000L));
+		assertArrayEquals(new int[] { 0, 1 }, catalogue.getIndicesWithinTime(10, null, 1000L));
+		assertArrayEquals(new int[] { 8, 9 }, catalogue.getIndicesWithinTime(10, 8000L, null));
+		//only the first count earthquakes are searched
+		assertArrayEquals(new int[] { 3 }, catalogue.getIndicesWithinTime(4, 3000L, 5000L));
+	}
+
+	@Test
+	public void testPositionsViewUnaffectedByAdd()
+	{
+		EarthquakeCatalogue catalogue = new EarthquakeCatalogue(2);
+		catalogue.add(-30, 130, -1000, 5, 0);
+		catalogue.add(-31, 131, -2000, 6, 0);
+		List<Position> positions = catalogue.getPositions(2);
+
+		//force the columns to grow
+		for (int i = 0; i < 10; i++)
+		{
+			catalogue.add(0, 0, 0, 0, 0);
+		}
+
+		assertEquals(2, positions.size());
+		assertEquals(-2000, positions.get(1).getElevation(), 0);
+		assertEquals(12, catalogue.getPositions(12).size());
+	}
+
+	private static byte[] writeRecords(EarthquakeCatalogue catalogue) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectOutputStream oos = new ObjectOutputStream(baos);
+		for (int i = 0; i < catalogue.size(); i++)
+		{
+			oos.writeDouble(catalogue.getLatitude(i));
+			oos.writeDouble(catalogue.getLongitude(i));
+			oos.writeDouble(catalogue.getElevation(i));
+			oos.writeDouble(catalogue.getMagnitude(i));
+			oos.writeLong(catalogue.getTimeInMillis(i));
+		}
+		oos.close();
+		return baos.toByteArray();
+	}
+
+	private static EarthquakeCatalogue createCatalogue(int count)
+	{
+		EarthquakeCatalogue catalogue = new EarthquakeCatalogue(1);
+		for (int i = 0; i < count; i++)
+		{
+			catalogue.add(-40 + i, 110 + i, -1000 * i, 0.5 * i, 1000L * i);
+		}
+		return catalogue;
+	}
+
+	private static void assertCataloguesEqual(EarthquakeCatalogue expected, EarthquakeCatalogue actual)
+	{
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.getLatitude(i), actual.getLatitude(i), 0);
+			assertEquals(expected.getLongitude(i), actual.getLongitude(i), 0);
+			assertEquals(expected.getElevation(i), actual.getElevation(i), 0);
+			assertEquals(expected.getMagnitude(i), actual.getMagnitude(i), 0);
+			assertEquals(expected.getTimeInMillis(i), actual.getTimeInMillis(i));
+		}
+	}
+}
@@ -101,6 +101,26 @@ public class HistoricEarthquakesLayerTest
 		assertEquals(BLUE_HUE, colors.get(0).getHue(), 1); // Low magnitude = Blue
 		assertEquals(RED_HUE, colors.get(2).getHue(), 1); // High magnitude = Red
 	}
+	
+	@Test
+	public void testMagnitudeColoringEqualisesLowMagnitudes() throws Exception
+	{
+		List<Earthquake> quakes = new ArrayList<Earthquake>();
+		quakes.add(new Earthquake(Position.fromDegrees(100, 100, 0), 0, getMillisForDate("1990-01-01")));
+		quakes.add(new Earthquake(Position.fromDegrees(100, 100, 0), 0.001, getMillisForDate("1990-01-01")));
+		quakes.add(new Earthquake(Position.fromDegrees(100, 100, 0), 10, getMillisForDate("1990-01-01")));
+		
+		FloatBuffer colorBuffer = FloatBuffer.allocate(quakes.size() * 3);
+		classUnderTest.generateMagnitudeColoring(colorBuffer, quakes);
+		colorBuffer.rewind();
+		
+		List<HSLColor> colors = getColors(colorBuffer);
+		
+		// 0.01% of the range is equalised to 0.0001^0.2 = 16% of the hue range, rather than
+		// falling into the first entry of the colour table
+		double expectedHue = BLUE_HUE * (1 - Math.pow(0.0001, 0.2));
+		assertEquals(expectedHue, colors.get(1).getHue(), 2);
+	}
 
 	private long getMillisForDate(String string) throws Exception
 	{
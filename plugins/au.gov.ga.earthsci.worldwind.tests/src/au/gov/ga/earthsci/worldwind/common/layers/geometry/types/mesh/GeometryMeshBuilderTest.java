@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh.GeometryMeshBuilder.Mesh;
+
+/**
+ * Unit tests for the {@link GeometryMeshBuilder} class
+ */
+public class GeometryMeshBuilderTest
+{
+	private static final float[] RED = { 1, 0, 0, 1 };
+	private static final float[] BLUE = { 0, 0, 1, 0.5f };
+
+	@Test
+	public void testPolygonsShareMesh()
+	{
+		GeometryMeshBuilder classUnderTest = new GeometryMeshBuilder(0);
+		classUnderTest.addPolygon(new double[] { 0, 0, 1, 1, 0 }, new double[] { 0, 1, 1, 0, 0 }, new int[] { 0 },
+				RED);
+		classUnderTest.addPolygon(new double[] { 0, 0, 1 }, new double[] { 2, 3, 3 }, new int[] { 0 }, BLUE);
+
+		Mesh mesh = classUnderTest.getPolygons();
+		//closing point of the first ring is removed
+		assertEquals(7, mesh.vertexCount);
+		assertEquals(9, mesh.indices.length);
+		for (int i = 6; i < 9; i++)
+		{
+			assertTrue(mesh.indices[i] >= 4);
+		}
+		assertArrayEquals(RED, copy(mesh.colors, 0), 0);
+		assertArrayEquals(RED, copy(mesh.colors, 3), 0);
+		assertArrayEquals(BLUE, copy(mesh.colors, 4), 0);
+		assertArrayEquals(BLUE, copy(mesh.colors, 6), 0);
+		assertTrue(classUnderTest.getLines().isEmpty());
+	}
+
+	@Test
+	public void testPolygonWithHole()
+	{
+		//clockwise outer ring followed by an anticlockwise hole, as in a shapefile
+		double[] latitudes = { 0, 4, 4, 0, 0, 1, 1, 3, 3, 1 };
+		double[] longitudes = { 0, 0, 4, 4, 0, 1, 3, 3, 1, 1 };
+		int[] starts = GeometryMeshBuilder.findRingStarts(latitudes, longitudes);
+		assertArrayEquals(new int[] { 0, 5 }, starts);
+
+		GeometryMeshBuilder classUnderTest = new GeometryMeshBuilder(0);
+		classUnderTest.addPolygon(latitudes, longitudes, starts, RED);
+
+		Mesh mesh = classUnderTest.getPolygons();
+		assertEquals(8, mesh.vertexCount);
+		assertEquals(12, area(mesh), 1e-9);
+	}
+
+	@Test
+	public void testMultiplePolygonParts()
+	{
+		//two clockwise outer rings
+		double[] latitudes = { 0, 1, 1, 0, 0, 0, 1, 1, 0, 0 };
+		double[] longitudes = { 0, 0, 1, 1, 0, 5, 5, 6, 6, 5 };
+		GeometryMeshBuilder classUnderTest = new GeometryMeshBuilder(0);
+		classUnderTest.addPolygon(latitudes, longitudes, GeometryMeshBuilder.findRingStarts(latitudes, longitudes),
+				RED);
+
+		assertEquals(2, area(classUnderTest.getPolygons()), 1e-9);
+	}
+
+	@Test
+	public void testToleranceRemovesDetail()
+	{
+		//a notch smaller than the tolerance, and a polygon that collapses entirely
+		double[] latitudes = { 0, 0, 0.01, 0, 0, 10, 10, 0 };
+		double[] longitudes = { 0, 4.99, 5, 5.01, 10, 10, 0, 0 };
+		GeometryMeshBuilder classUnderTest = new GeometryMeshBuilder(1);
+		classUnderTest.addPolygon(latitudes, longitudes, new int[] { 0 }, RED);
+		classUnderTest.addPolygon(new double[] { 0, 0.1, 0.1 }, new double[] { 0, 0, 0.1 }, new int[] { 0 }, BLUE);
+
+		Mesh mesh = classUnderTest.getPolygons();
+		//the notch snaps to a single collinear point, which isn't triangulated
+		assertEquals(5, mesh.vertexCount);
+		assertEquals(6, mesh.indices.length);
+		assertEquals(100, area(mesh), 1e-9);
+	}
+
+	@Test
+	public void testLines()
+	{
+		GeometryMeshBuilder classUnderTest = new GeometryMeshBuilder(0);
+		classUnderTest.addLine(new double[] { 0, 1, 1, 5, 6 }, new double[] { 0, 1, 1, 5, 6 }, new int[] { 0, 3 },
+				BLUE);
+
+		Mesh mesh = classUnderTest.getLines();
+		//duplicate point removed
+		assertEquals(4, mesh.vertexCount);
+		assertArrayEquals(new int[] { 0, 1, 2, 3 }, mesh.indices);
+		assertArrayEquals(new double[] { 0, 1, 5, 6 }, mesh.latitudes, 0);
+		assertTrue(classUnderTest.getPolygons().isEmpty());
+	}
+
+	private static float[] copy(float[] colors, int vertex)
+	{
+		float[] color = new float[4];
+		System.arraycopy(colors, vertex * 4, color, 0, 4);
+		return color;
+	}
+
+	private static double area(Mesh mesh)
+	{
+		double area = 0;
+		for (int i = 0; i < mesh.indices.length; i += 3)
+		{
+			int a = mesh.indices[i], b = mesh.indices[i + 1], c = mesh.indices[i + 2];
+			area += Math.abs((mesh.longitudes[b] - mesh.longitudes[a]) * (mesh.latitudes[c] - mesh.latitudes[a])
+					- (mesh.latitudes[b] - mesh.latitudes[a]) * (mesh.longitudes[c] - mesh.longitudes[a])) / 2;
+		}
+		return area;
+	}
+}
@@ -0,0 +1,100 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh.GeometryMeshBuilder.Mesh;
+
+/**
+ * Unit tests for the {@link GeometryTileMeshCache} class
+ */
+public class GeometryTileMeshCacheTest
+{
+	private static final float[] RED = { 1, 0, 0, 1 };
+	private static final float[] BLUE = { 0, 0, 1, 0.5f };
+
+	@Test
+	public void testRoundTrip()
+	{
+		GeometryMeshBuilder builder = createBuilder();
+		Mesh[] actual = GeometryTileMeshCache.read(GeometryTileMeshCache.write("key", builder.getPolygons(),
+				builder.getLines()), "key");
+
+		assertNotNull(actual);
+		assertMeshEquals(builder.getPolygons(), actual[0]);
+		assertMeshEquals(builder.getLines(), actual[1]);
+	}
+
+	@Test
+	public void testFileRoundTrip() throws IOException
+	{
+		GeometryMeshBuilder builder = createBuilder();
+		File file = File.createTempFile("mesh", ".mesh");
+		try
+		{
+			assertEquals(true, GeometryTileMeshCache.write(file, "key", builder.getPolygons(), builder.getLines()));
+			Mesh[] actual = GeometryTileMeshCache.read(file, "key");
+			assertNotNull(actual);
+			assertMeshEquals(builder.getPolygons(), actual[0]);
+			assertMeshEquals(builder.getLines(), actual[1]);
+		}
+		finally
+		{
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testDifferentKeyIgnored()
+	{
+		GeometryMeshBuilder builder = createBuilder();
+		ByteBuffer buffer = GeometryTileMeshCache.write("key", builder.getPolygons(), builder.getLines());
+		assertNull(GeometryTileMeshCache.read(buffer, "otherkey"));
+	}
+
+	@Test
+	public void testMissingFileIgnored()
+	{
+		assertNull(GeometryTileMeshCache.read(new File("does not exist.mesh"), "key"));
+	}
+
+	private static GeometryMeshBuilder createBuilder()
+	{
+		GeometryMeshBuilder builder = new GeometryMeshBuilder(0);
+		builder.addPolygon(new double[] { 0, 0, 1, 1, 0 }, new double[] { 0, 1, 1, 0, 0 }, new int[] { 0 }, RED);
+		builder.addLine(new double[] { 2, 3, 4 }, new double[] { 5, 6, 5 }, new int[] { 0 }, BLUE);
+		return builder;
+	}
+
+	private static void assertMeshEquals(Mesh expected, Mesh actual)
+	{
+		assertEquals(expected.vertexCount, actual.vertexCount);
+		assertArrayEquals(expected.latitudes, actual.latitudes, 0);
+		assertArrayEquals(expected.longitudes, actual.longitudes, 0);
+		assertArrayEquals(expected.colors, actual.colors, 0f);
+		assertArrayEquals(expected.indices, actual.indices);
+	}
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link PolygonTriangulator} class
+ */
+public class PolygonTriangulatorTest
+{
+	@Test
+	public void testSquare()
+	{
+		double[] coords = { 0, 0, 1, 0, 1, 1, 0, 1 };
+		int[] triangles = PolygonTriangulator.triangulate(coords, null);
+
+		assertEquals(6, triangles.length);
+		assertEquals(1, triangulatedArea(coords, triangles), 1e-9);
+		assertCounterClockwise(coords, triangles);
+	}
+
+	@Test
+	public void testClockwiseClosedRing()
+	{
+		//clockwise, with a closing point equal to the first point
+		double[] coords = { 0, 0, 0, 2, 2, 2, 2, 0, 0, 0 };
+		int[] triangles = PolygonTriangulator.triangulate(coords, null);
+
+		assertEquals(6, triangles.length);
+		assertEquals(4, triangulatedArea(coords, triangles), 1e-9);
+		assertCounterClockwise(coords, triangles);
+	}
+
+	@Test
+	public void testConcave()
+	{
+		//L shape
+		double[] coords = { 0, 0, 2, 0, 2, 1, 1, 1, 1, 2, 0, 2 };
+		int[] triangles = PolygonTriangulator.triangulate(coords, null);
+
+		assertEquals(12, triangles.length);
+		assertEquals(3, triangulatedArea(coords, triangles), 1e-9);
+		assertCounterClockwise(coords, triangles);
+	}
+
+	@Test
+	public void testHole()
+	{
+		double[] coords = { 0, 0, 4, 0, 4, 4, 0, 4, 1, 1, 1, 3, 3, 3, 3, 1 };
+		int[] triangles = PolygonTriangulator.triangulate(coords, new int[] { 4 });
+
+		assertEquals(8 * 3, triangles.length);
+		assertEquals(16 - 4, triangulatedArea(coords, triangles), 1e-9);
+		assertCounterClockwise(coords, triangles);
+	}
+
+	@Test
+	public void testDegenerate()
+	{
+		assertEquals(0, PolygonTriangulator.triangulate(new double[] { 0, 0, 1, 1 }, null).length);
+		assertEquals(0, PolygonTriangulator.triangulate(new double[] { 0, 0, 1, 1, 2, 2 }, null).length);
+	}
+
+	@Test
+	public void testLargeConcaveRing()
+	{
+		//noisy circle with a random radius at each vertex, indexed on the z-order curve
+		int count = 200000;
+		double[] coords = createNoisyCircle(count, 10, 10.01, new Random(0));
+		int[] triangles = PolygonTriangulator.triangulate(coords, null);
+
+		assertEquals((count - 2) * 3, triangles.length);
+		assertEquals(PolygonTriangulator.signedArea(coords, 0, count) / 2, triangulatedArea(coords, triangles),
+				1e-6);
+		assertCounterClockwise(coords, triangles);
+	}
+
+	@Test
+	public void testLargeRingWithHole()
+	{
+		int count = 1000;
+		double[] outer = createNoisyCircle(count, 10, 11, new Random(1));
+		double[] hole = createNoisyCircle(count, 2, 3, new Random(2));
+		double[] coords = new double[outer.length + hole.length];
+		System.arraycopy(outer, 0, coords, 0, outer.length);
+		System.arraycopy(hole, 0, coords, outer.length, hole.length);
+		int[] triangles = PolygonTriangulator.triangulate(coords, new int[] { count });
+
+		double area =
+				(PolygonTriangulator.signedArea(coords, 0, count) - PolygonTriangulator.signedArea(coords, count,
+						count * 2)) / 2;
+		assertEquals(area, triangulatedArea(coords, triangles), 1e-6);
+		assertCounterClockwise(coords, triangles);
+	}
+
+	@Test
+	public void testSelfIntersectingTerminates()
+	{
+		//bow tie
+		double[] coords = { 0, 0, 2, 2, 2, 0, 0, 2 };
+		int[] triangles = PolygonTriangulator.triangulate(coords, null);
+		assertEquals(0, triangles.length % 3);
+	}
+
+	private static double[] createNoisyCircle(int count, double minRadius, double maxRadius, Random random)
+	{
+		double[] coords = new double[count * 2];
+		for (int i = 0; i < count; i++)
+		{
+			double angle = 2 * Math.PI * i / count;
+			double radius = minRadius + random.nextDouble() * (maxRadius - minRadius);
+			coords[i * 2] = radius * Math.cos(angle);
+			coords[i * 2 + 1] = radius * Math.sin(angle);
+		}
+		return coords;
+	}
+
+	private static double triangulatedArea(double[] coords, int[] triangles)
+	{
+		double area = 0;
+		for (int i = 0; i < triangles.length; i += 3)
+		{
+			area += Math.abs(cross(coords, triangles[i], triangles[i + 1], triangles[i + 2])) / 2;
+		}
+		return area;
+	}
+
+	private static void assertCounterClockwise(double[] coords, int[] triangles)
+	{
+		for (int i = 0; i < triangles.length; i += 3)
+		{
+			assertTrue(cross(coords, triangles[i], triangles[i + 1], triangles[i + 2]) > 0);
+		}
+	}
+
+	private static double cross(double[] coords, int a, int b, int c)
+	{
+		return (coords[b * 2] - coords[a * 2]) * (coords[c * 2 + 1] - coords[a * 2 + 1])
+				- (coords[b * 2 + 1] - coords[a * 2 + 1]) * (coords[c * 2] - coords[a * 2]);
+	}
+}
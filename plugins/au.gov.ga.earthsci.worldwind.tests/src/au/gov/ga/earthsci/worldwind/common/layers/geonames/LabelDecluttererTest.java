@@ -0,0 +1,62 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geonames;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link LabelDeclutterer} class
+ */
+public class LabelDecluttererTest
+{
+	@Test
+	public void testOverlappingLabelsRejected()
+	{
+		LabelDeclutterer classUnderTest = new LabelDeclutterer(4);
+		classUnderTest.reset(200, 100);
+
+		assertTrue(classUnderTest.place(50, 50, 40, 10));
+		assertFalse(classUnderTest.place(60, 52, 40, 10));
+		assertTrue(classUnderTest.place(120, 50, 40, 10));
+		assertTrue(classUnderTest.place(50, 80, 40, 10));
+	}
+
+	@Test
+	public void testOffscreenLabelsRejected()
+	{
+		LabelDeclutterer classUnderTest = new LabelDeclutterer(4);
+		classUnderTest.reset(200, 100);
+
+		assertFalse(classUnderTest.place(-10, 50, 40, 10));
+		assertFalse(classUnderTest.place(50, 120, 40, 10));
+		//labels partially off screen are accepted if their center is on screen
+		assertTrue(classUnderTest.place(5, 50, 40, 10));
+	}
+
+	@Test
+	public void testResetClearsLabels()
+	{
+		LabelDeclutterer classUnderTest = new LabelDeclutterer(4);
+		classUnderTest.reset(200, 100);
+		assertTrue(classUnderTest.place(50, 50, 40, 10));
+
+		classUnderTest.reset(200, 100);
+		assertTrue(classUnderTest.place(50, 50, 40, 10));
+	}
+}
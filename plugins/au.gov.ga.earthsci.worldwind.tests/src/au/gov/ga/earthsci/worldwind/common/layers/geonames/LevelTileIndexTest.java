@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geonames;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link LevelTileIndex} class
+ */
+public class LevelTileIndexTest
+{
+	@Test
+	public void testQueryVisitsLevelsInOrder()
+	{
+		LevelTileIndex<String> index = new LevelTileIndex<String>();
+		index.add(2, -30, 130, "town");
+		index.add(0, -25, 135, "continent");
+		index.add(1, -27, 133, "country");
+
+		assertEquals("[continent, country, town]", query(index, 3, -90, 90, -180, 180, 10, 10).toString());
+		//items at or above the max level aren't visited
+		assertEquals("[continent, country]", query(index, 2, -90, 90, -180, 180, 10, 10).toString());
+	}
+
+	@Test
+	public void testQueryOnlyVisitsItemsWithinSector()
+	{
+		LevelTileIndex<String> index = new LevelTileIndex<String>();
+		index.add(5, -30, 130, "inside");
+		index.add(5, -30.5, 129.5, "same tile outside");
+		index.add(5, 10, 10, "far away");
+
+		assertEquals("[inside]", query(index, 6, -31, -29, 129.9, 131, 10, 10).toString());
+	}
+
+	@Test
+	public void testQueryLimits()
+	{
+		LevelTileIndex<String> index = new LevelTileIndex<String>();
+		for (int i = 0; i < 5; i++)
+		{
+			index.add(3, -30, 130, "a" + i);
+			index.add(3, 30, -130, "b" + i);
+		}
+
+		List<String> perTile = query(index, 4, -90, 90, -180, 180, 2, 100);
+		assertEquals(4, perTile.size());
+		assertTrue(perTile.contains("a0") && perTile.contains("a1"));
+		assertTrue(perTile.contains("b0") && perTile.contains("b1"));
+
+		assertEquals(3, query(index, 4, -90, 90, -180, 180, 100, 3).size());
+	}
+
+	@Test
+	public void testQueryVisitsNearestFirstWithinLevel()
+	{
+		LevelTileIndex<String> index = new LevelTileIndex<String>();
+		index.add(1, 10, 10, "far");
+		index.add(1, 1, 1, "near");
+		index.add(1, 5, 5, "middle");
+		index.add(0, 20, 20, "coarse");
+
+		List<String> result = new ArrayList<String>();
+		index.query(2, -90, 90, -180, 180, 0, 0, 10, 10, collect(result));
+		assertEquals("[coarse, near, middle, far]", result.toString());
+	}
+
+	@Test
+	public void testQueryLimitsKeepNearest()
+	{
+		LevelTileIndex<String> index = new LevelTileIndex<String>();
+		//added farthest first, so insertion order would keep the farthest
+		for (int i = 9; i >= 0; i--)
+		{
+			index.add(3, -30 + i * 0.1, 130, "a" + i);
+			index.add(3, 30 + i * 0.1, -130, "b" + i);
+		}
+
+		List<String> perTile = new ArrayList<String>();
+		index.query(4, -90, 90, -180, 180, -30, 130, 2, 100, collect(perTile));
+		assertEquals("[a0, a1, b0, b1]", perTile.toString());
+
+		List<String> perQuery = new ArrayList<String>();
+		index.query(4, -90, 90, -180, 180, 30, -130, 100, 3, collect(perQuery));
+		assertEquals("[b0, b1, b2]", perQuery.toString());
+	}
+
+	@Test
+	public void testRemove()
+	{
+		LevelTileIndex<String> index = new LevelTileIndex<String>();
+		String first = "first";
+		String second = "second";
+		index.add(4, -30, 130, first);
+		index.add(4, -30, 130, second);
+		assertEquals(2, index.size());
+
+		assertFalse(index.remove(3, -30, 130, first));
+		assertTrue(index.remove(4, -30, 130, first));
+		assertFalse(index.remove(4, -30, 130, first));
+		assertEquals(1, index.size());
+		assertEquals("[second]", query(index, 5, -90, 90, -180, 180, 10, 10).toString());
+	}
+
+	@Test
+	public void testTileDelta()
+	{
+		LevelTileIndex<String> index = new LevelTileIndex<String>(180);
+		assertEquals(180, index.getTileDelta(0), 0);
+		assertEquals(22.5, index.getTileDelta(3), 0);
+	}
+
+	private static List<String> query(LevelTileIndex<String> index, int maxLevel, double minLatitude,
+			double maxLatitude, double minLongitude, double maxLongitude, int maxItemsPerTile, int maxItems)
+	{
+		List<String> result = new ArrayList<String>();
+		int visited =
+				index.query(maxLevel, minLatitude, maxLatitude, minLongitude, maxLongitude, 0, 0, maxItemsPerTile,
+						maxItems, collect(result));
+		assertEquals(result.size(), visited);
+		return result;
+	}
+
+	private static LevelTileIndex.Visitor<String> collect(final List<String> result)
+	{
+		return new LevelTileIndex.Visitor<String>()
+		{
+			@Override
+			public void visit(String item, int level)
+			{
+				result.add(item);
+			}
+		};
+	}
+}
@@ -0,0 +1,124 @@
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.media.opengl.GL2;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
+
+public class GocadModelCacheTest
+{
+	@Test
+	public void testTSurfRoundTrip() throws IOException
+	{
+		assertRoundTrip(read("tsurf.ts", new GocadReaderParameters()));
+	}
+
+	@Test
+	public void testVSetRoundTrip() throws IOException
+	{
+		GocadReaderParameters parameters = new GocadReaderParameters();
+		ColorMap colorMap = new ColorMap();
+		colorMap.setValuesPercentages(true);
+		colorMap.put(0d, Color.BLACK);
+		colorMap.put(1d, Color.WHITE);
+		parameters.setColorMap(colorMap);
+
+		assertRoundTrip(read("vset.vs", parameters));
+	}
+
+	@Test
+	public void testScalarColoredRoundTrip()
+	{
+		List<Position> positions = new ArrayList<Position>();
+		positions.add(Position.fromDegrees(-27, 133, 0));
+		positions.add(Position.fromDegrees(-28, 134, -100));
+		positions.add(Position.fromDegrees(-29, 135, -200));
+		FastShape shape = new FastShape(positions, GL2.GL_POINTS);
+		shape.setScalarBuffer(new float[] { 1, -9999, 3 });
+		shape.setScalarColorTable(new int[] { 0xff000000, 0xffffffff });
+		shape.setScalarRange(1, 3);
+		shape.setScalarNoDataValue(-9999f);
+
+		List<FastShape> actual = assertRoundTrip(Arrays.asList(shape));
+		assertEquals(true, actual.get(0).isScalarColored());
+	}
+
+	@Test
+	public void testDifferentKeyIgnored() throws IOException
+	{
+		List<FastShape> shapes = read("pline.gp", new GocadReaderParameters());
+		ByteBuffer buffer = GocadModelCache.write("key", shapes);
+		assertNull(GocadModelCache.read(buffer, "otherkey"));
+	}
+
+	@Test
+	public void testParametersChangeCacheKey()
+	{
+		GocadReaderParameters parameters = new GocadReaderParameters();
+		String key = parameters.getCacheKey();
+		parameters.setMaxVariance(2);
+		assertEquals(false, key.equals(parameters.getCacheKey()));
+	}
+
+	private List<FastShape> read(String name, GocadReaderParameters parameters) throws IOException
+	{
+		URL url = this.getClass().getResource(name);
+		InputStream is = url.openStream();
+		return GocadFactory.read(is, url, parameters);
+	}
+
+	private List<FastShape> assertRoundTrip(List<FastShape> expected)
+	{
+		ByteBuffer buffer = GocadModelCache.write("key", expected);
+		List<FastShape> actual = GocadModelCache.read(buffer, "key");
+
+		assertNotNull(actual);
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			FastShape e = expected.get(i);
+			FastShape a = actual.get(i);
+			assertEquals(e.getName(), a.getName());
+			assertEquals(e.getMode(), a.getMode());
+			assertEquals(e.isLighted(), a.isLighted());
+			assertEquals(e.getColor(), a.getColor());
+			assertEquals(e.getPointSize(), a.getPointSize());
+			assertEquals(e.getColorBufferElementSize(), a.getColorBufferElementSize());
+			assertArrayEquals(e.getIndices(), a.getIndices());
+			assertArrayEquals(e.getColorBuffer(), a.getColorBuffer(), 0f);
+			assertArrayEquals(e.getScalarBuffer(), a.getScalarBuffer(), 0f);
+			assertArrayEquals(e.getScalarColorTable(), a.getScalarColorTable());
+			assertEquals(e.getScalarMinimum(), a.getScalarMinimum(), 0);
+			assertEquals(e.getScalarMaximum(), a.getScalarMaximum(), 0);
+			assertEquals(e.getScalarNoDataValue(), a.getScalarNoDataValue());
+			assertEquals(e.getPositions().size(), a.getPositions().size());
+			for (int j = 0; j < e.getPositions().size(); j++)
+			{
+				Position ep = e.getPositions().get(j);
+				Position ap = a.getPositions().get(j);
+				assertEquals(ep.latitude.degrees, ap.latitude.degrees, 0);
+				assertEquals(ep.longitude.degrees, ap.longitude.degrees, 0);
+				assertEquals(ep.elevation, ap.elevation, 0);
+			}
+		}
+		return actual;
+	}
+}
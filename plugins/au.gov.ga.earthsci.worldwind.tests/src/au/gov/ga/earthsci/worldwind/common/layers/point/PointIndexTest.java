@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.point;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import au.gov.ga.earthsci.worldwind.common.layers.point.PointIndex.Cluster;
+
+/**
+ * Unit tests for the {@link PointIndex} class
+ */
+public class PointIndexTest
+{
+	@Test
+	public void testQueryMatchesLinearScan()
+	{
+		PointIndex<String> index = new PointIndex<String>(8, 20);
+		Random random = new Random(1);
+		double[][] points = new double[5000][];
+		for (int i = 0; i < points.length; i++)
+		{
+			//cluster half of the points into a small area to force deep nodes
+			double lat = i % 2 == 0 ? random.nextDouble() * 180 - 90 : -35 + random.nextDouble() * 0.01;
+			double lon = i % 2 == 0 ? random.nextDouble() * 360 - 180 : 149 + random.nextDouble() * 0.01;
+			points[i] = new double[] { lat, lon };
+			index.add(lat, lon, String.valueOf(i));
+		}
+		assertEquals(points.length, index.size());
+
+		double[][] queries = { { -90, 90, -180, 180 }, { -40, -30, 140, 150 }, { 10, 20, -50, 30 },
+				{ -35.005, -35, 149, 149.005 } };
+		for (double[] q : queries)
+		{
+			CollectingVisitor visitor = new CollectingVisitor(false);
+			index.query(q[0], q[1], q[2], q[3], visitor);
+
+			Set<String> expected = new HashSet<String>();
+			for (int i = 0; i < points.length; i++)
+			{
+				if (points[i][0] >= q[0] && points[i][0] <= q[1] && points[i][1] >= q[2] && points[i][1] <= q[3])
+				{
+					expected.add(String.valueOf(i));
+				}
+			}
+			assertEquals(expected.size(), visitor.items.size());
+			assertEquals(expected, new HashSet<String>(visitor.items));
+		}
+	}
+
+	@Test
+	public void testClustering()
+	{
+		PointIndex<String> index = new PointIndex<String>(2, 20);
+		index.add(10, 10, "a");
+		index.add(10.5, 10.5, "b");
+		index.add(11, 11, "c");
+		index.add(-10, -10, "d");
+
+		CollectingVisitor visitor = new CollectingVisitor(true);
+		index.query(-90, 90, -180, 180, visitor);
+		assertEquals(0, visitor.items.size());
+		assertEquals(1, visitor.clusters.size());
+		Cluster<String> cluster = visitor.clusters.get(0);
+		assertEquals(4, cluster.count);
+		assertEquals("a", cluster.representative);
+		assertEquals(5.375, cluster.latitude, 1e-9);
+		assertEquals(5.375, cluster.longitude, 1e-9);
+
+		//clusters are cached until a point is added
+		CollectingVisitor second = new CollectingVisitor(true);
+		index.query(-90, 90, -180, 180, second);
+		assertSame(cluster, second.clusters.get(0));
+		index.add(0, 0, "e");
+		CollectingVisitor third = new CollectingVisitor(true);
+		index.query(-90, 90, -180, 180, third);
+		assertEquals(5, third.clusters.get(0).count);
+	}
+
+	@Test
+	public void testClusterOnlyBelowDepth()
+	{
+		PointIndex<String> index = new PointIndex<String>(1, 20);
+		index.add(45, 45, "a");
+		index.add(45.1, 45.1, "b");
+		index.add(-45, -45, "c");
+
+		//cluster nodes deeper than 3: the nearby pair is clustered, the isolated point isn't
+		CollectingVisitor visitor = new CollectingVisitor(true)
+		{
+			@Override
+			public boolean isCluster(double minLatitude, double maxLatitude, double minLongitude,
+					double maxLongitude, int depth, int count)
+			{
+				return depth > 3;
+			}
+		};
+		index.query(-90, 90, -180, 180, visitor);
+		assertEquals(1, visitor.items.size());
+		assertEquals("c", visitor.items.get(0));
+		assertEquals(1, visitor.clusters.size());
+		assertEquals(2, visitor.clusters.get(0).count);
+	}
+
+	@Test
+	public void testClear()
+	{
+		PointIndex<String> index = new PointIndex<String>(1, 20);
+		index.add(1, 1, "a");
+		index.add(2, 2, "b");
+		index.clear();
+		assertEquals(0, index.size());
+
+		CollectingVisitor visitor = new CollectingVisitor(false);
+		index.query(-90, 90, -180, 180, visitor);
+		assertTrue(visitor.items.isEmpty());
+
+		index.add(3, 3, "c");
+		index.query(-90, 90, -180, 180, visitor);
+		assertEquals(1, visitor.items.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidCapacity()
+	{
+		new PointIndex<String>(0, 20);
+	}
+
+	private static class CollectingVisitor implements PointIndex.Visitor<String>
+	{
+		public final List<String> items = new ArrayList<String>();
+		public final List<Cluster<String>> clusters = new ArrayList<Cluster<String>>();
+		private final boolean cluster;
+
+		public CollectingVisitor(boolean cluster)
+		{
+			this.cluster = cluster;
+		}
+
+		@Override
+		public boolean isCluster(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+				int depth, int count)
+		{
+			return cluster;
+		}
+
+		@Override
+		public void visit(String item)
+		{
+			items.add(item);
+		}
+
+		@Override
+		public void visitCluster(Cluster<String> cluster)
+		{
+			clusters.add(cluster);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.styled;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BasicStyleProvider} class
+ */
+public class BasicStyleProviderTest
+{
+	private BasicStyleProvider classToTest;
+	private Style defaultStyle;
+	private Style redStyle;
+	private Style deepStyle;
+
+	@Before
+	public void setup()
+	{
+		defaultStyle = new Style("default", true);
+		redStyle = new Style("red", false);
+		deepStyle = new Style("deep", false);
+		List<Style> styles = new ArrayList<Style>();
+		styles.add(defaultStyle);
+		styles.add(redStyle);
+		styles.add(deepStyle);
+
+		Attribute type = new Attribute("type");
+		type.addCase("granite", "red");
+		type.addRegex("sand.*", "red");
+		type.addText("Type: %v%", "%v%");
+		Attribute depth = new Attribute("depth");
+		depth.addRange(100, 1000, "deep");
+		depth.addLink("http://example.com/%v%", "%v%");
+		List<Attribute> attributes = new ArrayList<Attribute>();
+		attributes.add(type);
+		attributes.add(depth);
+
+		classToTest = new BasicStyleProvider();
+		classToTest.setStyles(styles);
+		classToTest.setAttributes(attributes);
+	}
+
+	@Test
+	public void testMatchingStyles()
+	{
+		assertSame(redStyle, classToTest.getStyle(values("granite", 5)).style);
+		assertSame(redStyle, classToTest.getStyle(values("sandstone", 5)).style);
+		assertSame(deepStyle, classToTest.getStyle(values("basalt", 500)).style);
+		assertSame(defaultStyle, classToTest.getStyle(values("basalt", 5)).style);
+		assertSame(defaultStyle, classToTest.getStyle(new AVListImpl()).style);
+	}
+
+	@Test
+	public void testTextAndLink()
+	{
+		StyleAndText styleAndText = classToTest.getStyle(values("granite", 5));
+		assertEquals("Type: granite", styleAndText.text);
+		assertEquals("http://example.com/5", styleAndText.link);
+
+		styleAndText = classToTest.getStyle(new AVListImpl());
+		assertNull(styleAndText.text);
+		assertNull(styleAndText.link);
+	}
+
+	@Test
+	public void testSameValuesShareInstance()
+	{
+		AVList values = values("granite", 5);
+		values.setValue("other", "ignored");
+		StyleAndText first = classToTest.getStyle(values);
+		assertSame(first, classToTest.getStyle(values("granite", 5)));
+		assertNotSame(first, classToTest.getStyle(values("granite", 6)));
+
+		classToTest.setAttributes(classToTest.getAttributes());
+		assertNotSame(first, classToTest.getStyle(values("granite", 5)));
+	}
+
+	private static AVList values(String type, int depth)
+	{
+		AVList values = new AVListImpl();
+		values.setValue("type", type);
+		values.setValue("depth", depth);
+		return values;
+	}
+}
@@ -1,6 +1,9 @@
 package au.gov.ga.earthsci.worldwind.common.layers.styled;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import gov.nasa.worldwind.avlist.AVList;
@@ -178,6 +181,60 @@ public class StyleTest
 		assertEquals(new Dimension(300,400), bean.getObject(4));
 	}
 	
+	@Test
+	public void testBindingsAreCachedPerClass()
+	{
+		classToTest.addProperty("string", "A String");
+		
+		SimpleDummyBean bean1 = new SimpleDummyBean();
+		SimpleDummyBean bean2 = new SimpleDummyBean();
+		classToTest.setPropertiesFromAttributes(null, null, bean1);
+		classToTest.setPropertiesFromAttributes(null, null, bean2);
+		
+		assertEquals("A String", bean2.getString());
+		assertSame(classToTest.getBindings(bean1), classToTest.getBindings(bean2));
+		assertNotSame(classToTest.getBindings(bean1), classToTest.getBindings(new ComplexDummyBean()));
+		
+		PropertySetter.PropertyBinding[] bindings = classToTest.getBindings(bean1);
+		classToTest.addProperty("littleIInteger", "1");
+		assertNotSame(bindings, classToTest.getBindings(bean1));
+		assertEquals(2, classToTest.getBindings(bean1).length);
+	}
+	
+	@Test
+	public void testImmutableValuesAreShared()
+	{
+		classToTest.addProperty("material", "%material%");
+		classToTest.addProperty("point", "%point%");
+		
+		AVList attributeValues = new AVListImpl();
+		attributeValues.setValue("material", "0,0,255");
+		attributeValues.setValue("point", "500, 600");
+		
+		ComplexDummyBean bean1 = new ComplexDummyBean();
+		ComplexDummyBean bean2 = new ComplexDummyBean();
+		classToTest.setPropertiesFromAttributes(null, attributeValues, bean1);
+		classToTest.setPropertiesFromAttributes(null, attributeValues, bean2);
+		
+		assertSame(bean1.getMaterial(), bean2.getMaterial());
+		assertEquals(bean1.getPoint(), bean2.getPoint());
+		assertNotSame(bean1.getPoint(), bean2.getPoint());
+		
+		attributeValues.setValue("material", "255,0,0");
+		classToTest.setPropertiesFromAttributes(null, attributeValues, bean2);
+		assertEquals(new Material(new Color(255,0,0)), bean2.getMaterial());
+	}
+	
+	@Test
+	public void testIsAttributeDependent()
+	{
+		classToTest.addProperty("string", "A String");
+		assertFalse(classToTest.isAttributeDependent());
+		
+		classToTest.addProperty("littleIInteger", "%int%");
+		assertTrue(classToTest.isAttributeDependent());
+	}
+	
 	/**
 	 * A dummy bean used to test type override setters
 	 */
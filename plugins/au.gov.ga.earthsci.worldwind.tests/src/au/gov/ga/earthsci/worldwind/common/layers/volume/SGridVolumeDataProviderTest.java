@@ -21,6 +21,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.awt.Rectangle;
 import java.net.URL;
 import java.nio.FloatBuffer;
 
@@ -162,6 +163,48 @@ public class SGridVolumeDataProviderTest
 		assertArrayEquals(asciiData, binaryData, 0.001f);
 	}
 	
+	@Test
+	public void testSliceMatchesValues() throws Exception
+	{
+		classUnderTest.doLoadData(ASCII_FILE, parentLayer);
+
+		int xSize = classUnderTest.getXSize();
+		int ySize = classUnderTest.getYSize();
+		int zSize = classUnderTest.getZSize();
+
+		for (int position = 0; position < xSize; position++)
+		{
+			assertSliceMatchesValues(0, position, new Rectangle(0, 0, ySize, zSize));
+			assertSliceMatchesValues(0, position, new Rectangle(1, 2, ySize - 2, zSize - 3));
+		}
+		for (int position = 0; position < ySize; position++)
+		{
+			assertSliceMatchesValues(1, position, new Rectangle(0, 0, xSize, zSize));
+		}
+		for (int position = 0; position < zSize; position++)
+		{
+			assertSliceMatchesValues(2, position, new Rectangle(0, 0, xSize, ySize));
+		}
+	}
+
+	private void assertSliceMatchesValues(int axis, int position, Rectangle rectangle)
+	{
+		float[] slice = classUnderTest.getSlice(axis, position, rectangle, null);
+		assertEquals(rectangle.width * rectangle.height, slice.length);
+
+		int i = 0;
+		for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++)
+		{
+			for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++)
+			{
+				int vx = axis == 0 ? position : x;
+				int vy = axis == 0 ? x : axis == 1 ? position : y;
+				int vz = axis == 2 ? position : y;
+				assertEquals(classUnderTest.getValue(vx, vy, vz), slice[i++], 0);
+			}
+		}
+	}
+
 	private void assertBasicProperties(boolean result)
 	{
 		assertTrue(result);
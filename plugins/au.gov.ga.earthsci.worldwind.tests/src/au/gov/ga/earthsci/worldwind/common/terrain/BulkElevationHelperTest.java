@@ -0,0 +1,219 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.terrain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.terrain.BasicElevationModel;
+import gov.nasa.worldwind.util.Level;
+import gov.nasa.worldwind.util.Tile;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BulkElevationHelper} class
+ */
+public class BulkElevationHelperTest
+{
+	@Test
+	public void testSortByTileGroupsTiles()
+	{
+		int[] rows = { 3, 1, 3, 2, 1, 3, 2 };
+		int[] cols = { 0, 5, 0, 4, 5, 1, 4 };
+		int[] order = BulkElevationHelper.sortByTile(rows, cols, rows.length, 1, 3, 0, 5);
+
+		assertEquals(rows.length, order.length);
+		Set<String> finished = new HashSet<String>();
+		String current = null;
+		for (int i : order)
+		{
+			String tile = rows[i] + "," + cols[i];
+			if (!tile.equals(current))
+			{
+				//each tile's locations must be contiguous
+				assertFalse(finished.contains(tile));
+				if (current != null)
+				{
+					finished.add(current);
+				}
+				current = tile;
+			}
+		}
+	}
+
+	@Test
+	public void testSortByTileIsStableWithinTile()
+	{
+		int[] rows = { 0, 0, 0, 0 };
+		int[] cols = { 1, 0, 1, 0 };
+		int[] order = BulkElevationHelper.sortByTile(rows, cols, rows.length, 0, 0, 0, 1);
+		assertArrayEquals(new int[] { 1, 3, 0, 2 }, order);
+	}
+
+	@Test
+	public void testSortByTileGroupsTilesForHugeSpan()
+	{
+		int[] rows = { 0, Integer.MAX_VALUE - 1, 0, Integer.MAX_VALUE - 1 };
+		int[] cols = { 0, Integer.MAX_VALUE - 1, 0, 0 };
+		int[] order = BulkElevationHelper.sortByTile(rows, cols, rows.length, 0, Integer.MAX_VALUE - 1, 0,
+				Integer.MAX_VALUE - 1);
+		assertArrayEquals(new int[] { 0, 2, 3, 1 }, order);
+	}
+
+	@Test
+	public void testGetElevationsMatchesPointElevations()
+	{
+		//high resolution model with a missing tile, over a low resolution model covering the globe
+		FunctionElevationModel detail =
+				new FunctionElevationModel(Sector.fromDegrees(-10, 10, 100, 120), 10, 3, 100,
+						Sector.fromDegrees(0, 2.5, 105, 107.5));
+		FunctionElevationModel base = new FunctionElevationModel(Sector.FULL_SPHERE, 36, 1, -1000, null);
+		BoundedCompoundElevationModel model = new BoundedCompoundElevationModel();
+		model.addElevationModel(base);
+		model.addElevationModel(detail);
+
+		//locations spanning the detail model's tile boundaries, its missing tile, and its edges
+		List<Double> latList = new ArrayList<Double>();
+		List<Double> lonList = new ArrayList<Double>();
+		for (double lat = -12; lat <= 12; lat += 0.625)
+		{
+			for (double lon = 98; lon <= 122; lon += 0.625)
+			{
+				latList.add(lat);
+				lonList.add(lon);
+			}
+		}
+		double[] lats = new double[latList.size()];
+		double[] lons = new double[lonList.size()];
+		for (int i = 0; i < lats.length; i++)
+		{
+			lats[i] = latList.get(i);
+			lons[i] = lonList.get(i);
+		}
+
+		double targetResolution = detail.getLevels().getLastLevel().getTexelSize();
+		double[] out = new double[lats.length];
+		model.getElevations(lats, lons, out, targetResolution);
+
+		boolean missingTileTested = false;
+		for (int i = 0; i < lats.length; i++)
+		{
+			double expected = model.getElevation(Angle.fromDegrees(lats[i]), Angle.fromDegrees(lons[i]));
+			assertEquals("Elevation at " + lats[i] + "," + lons[i], expected, out[i], 0);
+			missingTileTested |= detail.isMissing(lats[i], lons[i]);
+		}
+		assertTrue(missingTileTested);
+		assertFalse(detail.groupSectors.isEmpty());
+
+		//each bulk request to the tiled model must be within a single tile at the target level
+		Level level = detail.getLevels().getLastLevel();
+		Angle dLat = level.getTileDelta().getLatitude();
+		Angle dLon = level.getTileDelta().getLongitude();
+		Angle originLat = detail.getLevels().getTileOrigin().getLatitude();
+		Angle originLon = detail.getLevels().getTileOrigin().getLongitude();
+		for (Sector sector : detail.groupSectors)
+		{
+			assertEquals(Tile.computeRow(dLat, sector.getMinLatitude(), originLat),
+					Tile.computeRow(dLat, sector.getMaxLatitude(), originLat));
+			assertEquals(Tile.computeColumn(dLon, sector.getMinLongitude(), originLon),
+					Tile.computeColumn(dLon, sector.getMaxLongitude(), originLon));
+		}
+	}
+
+	/**
+	 * Tiled elevation model whose elevations are a function of the location,
+	 * with an optional sector that has no data.
+	 */
+	private static class FunctionElevationModel extends BasicElevationModel
+	{
+		private static final double MISSING = -9999;
+
+		private final double offset;
+		private final Sector missing;
+		private final List<Sector> groupSectors = new ArrayList<Sector>();
+
+		public FunctionElevationModel(Sector sector, double levelZeroDelta, int numLevels, double offset,
+				Sector missing)
+		{
+			super(createParams(sector, levelZeroDelta, numLevels));
+			this.offset = offset;
+			this.missing = missing;
+		}
+
+		private static AVList createParams(Sector sector, double levelZeroDelta, int numLevels)
+		{
+			AVList params = new AVListImpl();
+			params.setValue(AVKey.SECTOR, sector);
+			params.setValue(AVKey.LEVEL_ZERO_TILE_DELTA, LatLon.fromDegrees(levelZeroDelta, levelZeroDelta));
+			params.setValue(AVKey.NUM_LEVELS, numLevels);
+			params.setValue(AVKey.TILE_WIDTH, 150);
+			params.setValue(AVKey.TILE_HEIGHT, 150);
+			params.setValue(AVKey.DATASET_NAME, "test");
+			params.setValue(AVKey.DATA_CACHE_NAME, "BulkElevationHelperTest/" + levelZeroDelta);
+			params.setValue(AVKey.FORMAT_SUFFIX, ".bil");
+			params.setValue(AVKey.MISSING_DATA_SIGNAL, MISSING);
+			return params;
+		}
+
+		public boolean isMissing(double lat, double lon)
+		{
+			return missing != null && lat >= missing.getMinLatitude().degrees
+					&& lat < missing.getMaxLatitude().degrees && lon >= missing.getMinLongitude().degrees
+					&& lon < missing.getMaxLongitude().degrees;
+		}
+
+		private double elevation(double lat, double lon)
+		{
+			return isMissing(lat, lon) ? MISSING : offset + lat * 10 + lon;
+		}
+
+		@Override
+		public double getUnmappedElevation(Angle latitude, Angle longitude)
+		{
+			if (!contains(latitude, longitude))
+			{
+				return getMissingDataSignal();
+			}
+			return elevation(latitude.degrees, longitude.degrees);
+		}
+
+		@Override
+		public double getUnmappedElevations(Sector sector, List<? extends LatLon> latlons, double targetResolution,
+				double[] buffer)
+		{
+			groupSectors.add(sector);
+			for (int i = 0; i < latlons.size(); i++)
+			{
+				LatLon ll = latlons.get(i);
+				buffer[i] = elevation(ll.getLatitude().degrees, ll.getLongitude().degrees);
+			}
+			return targetResolution;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.terrain;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link PackedElevationPyramid} and
+ * {@link PackedElevationPyramidConverter} classes
+ */
+public class PackedElevationPyramidTest
+{
+	private File directory;
+	private File output;
+
+	@Before
+	public void setup() throws IOException
+	{
+		directory = File.createTempFile("pyramid", "");
+		directory.delete();
+		directory.mkdirs();
+		output = File.createTempFile("pyramid", "." + PackedElevationPyramid.EXTENSION);
+
+		writeTile(0, 0, 0, createData(1));
+		writeTile(0, 0, 1, createData(2));
+		writeTile(1, 1, 3, createData(3));
+		writeZippedTile(1, 12, 2, createData(4));
+	}
+
+	@After
+	public void cleanup()
+	{
+		delete(directory);
+		output.delete();
+	}
+
+	@Test
+	public void testUncompressedRoundTrip() throws IOException
+	{
+		assertRoundTrip(false);
+	}
+
+	@Test
+	public void testDeflatedRoundTrip() throws IOException
+	{
+		assertRoundTrip(true);
+	}
+
+	@Test(expected = IOException.class)
+	public void testInvalidFile() throws IOException
+	{
+		FileOutputStream fos = new FileOutputStream(output);
+		fos.write(new byte[PackedElevationPyramid.HEADER_SIZE]);
+		fos.close();
+		new PackedElevationPyramid(output);
+	}
+
+	@Test
+	public void testOpenSharesReader() throws IOException
+	{
+		PackedElevationPyramidConverter.convert(directory, output, false);
+		PackedElevationPyramid pyramid = PackedElevationPyramid.open(output);
+		try
+		{
+			assertSame(pyramid, PackedElevationPyramid.open(output));
+		}
+		finally
+		{
+			PackedElevationPyramid.evict(output);
+		}
+		assertFalse(pyramid.isCurrent());
+	}
+
+	@Test
+	public void testOpenReplacesModifiedFile() throws IOException
+	{
+		PackedElevationPyramidConverter.convert(directory, output, false);
+		PackedElevationPyramid pyramid = PackedElevationPyramid.open(output);
+		//a tile read before the file is replaced remains readable after the reader is closed
+		ByteBuffer tile = pyramid.readTile(0, 0, 0);
+
+		writeTile(2, 0, 0, createData(5));
+		PackedElevationPyramidConverter.convert(directory, output, false);
+		output.setLastModified(output.lastModified() + 2000);
+
+		//the file is only checked for changes once the check interval has passed
+		assertSame(pyramid, PackedElevationPyramid.open(output));
+		PackedElevationPyramid reopened = PackedElevationPyramid.open(output, 0);
+		try
+		{
+			assertNotSame(pyramid, reopened);
+			assertFalse(pyramid.isCurrent());
+			assertEquals(5, reopened.getTileCount());
+			assertTileEquals(createData(1), tile);
+		}
+		finally
+		{
+			PackedElevationPyramid.evict(output);
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadAfterClose() throws IOException
+	{
+		PackedElevationPyramidConverter.convert(directory, output, false);
+		PackedElevationPyramid pyramid = new PackedElevationPyramid(output);
+		pyramid.close();
+		pyramid.readTile(0, 0, 0);
+	}
+
+	private void assertRoundTrip(boolean deflate) throws IOException
+	{
+		assertEquals(4, PackedElevationPyramidConverter.convert(directory, output, deflate));
+
+		PackedElevationPyramid pyramid = new PackedElevationPyramid(output);
+		try
+		{
+			assertEquals(4, pyramid.getTileCount());
+			assertEquals(deflate, pyramid.isDeflated());
+			assertTrue(pyramid.contains(1, 12, 2));
+			assertFalse(pyramid.contains(1, 0, 0));
+			assertNull(pyramid.readTile(2, 0, 0));
+
+			assertTileEquals(createData(1), pyramid.readTile(0, 0, 0));
+			assertTileEquals(createData(2), pyramid.readTile(0, 0, 1));
+			assertTileEquals(createData(3), pyramid.readTile(1, 1, 3));
+			assertTileEquals(createData(4), pyramid.readTile(1, 12, 2));
+		}
+		finally
+		{
+			pyramid.close();
+		}
+	}
+
+	private static void assertTileEquals(byte[] expected, ByteBuffer actual)
+	{
+		byte[] bytes = new byte[actual.remaining()];
+		actual.get(bytes);
+		assertArrayEquals(expected, bytes);
+	}
+
+	private static byte[] createData(int seed)
+	{
+		byte[] data = new byte[150 * 150 * 2];
+		for (int i = 0; i < data.length; i++)
+		{
+			data[i] = (byte) ((i / 300) * seed);
+		}
+		return data;
+	}
+
+	private File getTileFile(int level, int row, int col, String ext)
+	{
+		String rowString = String.format("%04d", row);
+		File rowDir = new File(new File(directory, String.valueOf(level)), rowString);
+		rowDir.mkdirs();
+		return new File(rowDir, rowString + "_" + String.format("%04d", col) + "." + ext);
+	}
+
+	private void writeTile(int level, int row, int col, byte[] data) throws IOException
+	{
+		FileOutputStream fos = new FileOutputStream(getTileFile(level, row, col, "bil"));
+		fos.write(data);
+		fos.close();
+	}
+
+	private void writeZippedTile(int level, int row, int col, byte[] data) throws IOException
+	{
+		ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(getTileFile(level, row, col, "zip")));
+		zos.putNextEntry(new ZipEntry("tile.bil"));
+		zos.write(data);
+		zos.closeEntry();
+		zos.close();
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if (children != null)
+		{
+			for (File child : children)
+			{
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+}
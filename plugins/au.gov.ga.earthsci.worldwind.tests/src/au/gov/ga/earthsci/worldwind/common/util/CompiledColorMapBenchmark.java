@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * Throughput benchmark comparing per-value {@link ColorMap} colour
+ * calculation to the bulk colouring methods of the {@link CompiledColorMap}.
+ * <p/>
+ * Colours the number of random values given by the <code>count</code> system
+ * property in millions (default 16), for both RGB and hue interpolation. Run
+ * as a Java application.
+ */
+public class CompiledColorMapBenchmark
+{
+	public static void main(String[] args)
+	{
+		int count = Integer.getInteger("count", 16) * 1000000;
+		float[] values = new float[count];
+		Random random = new Random(0);
+		for (int i = 0; i < count; i++)
+		{
+			values[i] = random.nextInt(100) == 0 ? Float.NaN : random.nextFloat() * 5000 - 1000;
+		}
+
+		for (boolean hue : new boolean[] { false, true })
+		{
+			ColorMap colorMap = new ColorMap();
+			colorMap.setInterpolateHue(hue);
+			colorMap.put(-1000d, Color.blue);
+			colorMap.put(0d, Color.cyan);
+			colorMap.put(500d, Color.green);
+			colorMap.put(2000d, Color.yellow);
+			colorMap.put(4000d, Color.red);
+
+			int[] argb = new int[count];
+			float[] rgba = new float[count * 4];
+			for (int i = 0; i < 2; i++)
+			{
+				System.out.println(hue ? "Hue interpolation:" : "RGB interpolation:");
+				benchmarkColorMap(colorMap, values, argb);
+				benchmarkCompiled(colorMap, values, argb, rgba);
+			}
+		}
+	}
+
+	private static void benchmarkColorMap(ColorMap colorMap, float[] values, int[] argb)
+	{
+		long start = System.nanoTime();
+		long checksum = 0;
+		for (int i = 0; i < values.length; i++)
+		{
+			float value = values[i];
+			argb[i] = Float.isNaN(value) ? 0 : colorMap.calculateColor(value).getRGB();
+			checksum += argb[i];
+		}
+		report("ColorMap", values.length, start, checksum);
+	}
+
+	private static void benchmarkCompiled(ColorMap colorMap, float[] values, int[] argb, float[] rgba)
+	{
+		long start = System.nanoTime();
+		CompiledColorMap compiled = colorMap.compile();
+		report("Compile", 1, start, compiled.getTableSize());
+
+		start = System.nanoTime();
+		compiled.colorize(values, Float.NaN, 0, argb);
+		long checksum = 0;
+		for (int i = 0; i < argb.length; i++)
+		{
+			checksum += argb[i];
+		}
+		report("int[]", values.length, start, checksum);
+
+		start = System.nanoTime();
+		compiled.colorize(values, Float.NaN, rgba);
+		checksum = 0;
+		for (int i = 0; i < rgba.length; i++)
+		{
+			checksum += (long) (rgba[i] * 255f);
+		}
+		report("float[]", values.length, start, checksum);
+	}
+
+	private static void report(String name, int count, long start, long checksum)
+	{
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("  %-8s %8.3fs %8.1f Mvalues/s (checksum %d)", name, seconds, count / 1e6
+				/ seconds, checksum));
+	}
+}
@@ -0,0 +1,131 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link CompiledColorMap} class
+ */
+public class CompiledColorMapTest
+{
+	@Test
+	public void testGetRGBMatchesColorMap()
+	{
+		for (boolean hue : new boolean[] { true, false })
+		{
+			ColorMap colorMap = createColorMap(hue, false);
+			CompiledColorMap compiled = colorMap.compile();
+			Random random = new Random(0);
+			for (int i = 0; i < 10000; i++)
+			{
+				double value = random.nextDouble() * 3000 - 1500;
+				assertEquals(colorMap.calculateColor(value).getRGB(), compiled.getRGB(value));
+			}
+			for (double value : new double[] { -1000, 0, -0.0, 250, 1000, Double.NaN, Double.NEGATIVE_INFINITY })
+			{
+				assertEquals(colorMap.calculateColor(value).getRGB(), compiled.getRGB(value));
+				assertEquals(colorMap.calculateColor(value).getRGB(), compiled.lookupRGB(value));
+			}
+		}
+	}
+
+	@Test
+	public void testPercentages()
+	{
+		ColorMap colorMap = createColorMap(false, true);
+		CompiledColorMap compiled = colorMap.compile(-50, 150);
+		for (double value = -100; value <= 200; value += 0.5)
+		{
+			assertEquals(colorMap.calculateColorNotingIsValuesPercentages(value, -50, 150).getRGB(),
+					compiled.getRGB(value));
+		}
+	}
+
+	@Test
+	public void testLookupWithinTableResolution()
+	{
+		ColorMap colorMap = createColorMap(false, false);
+		CompiledColorMap compiled = colorMap.compile();
+		Random random = new Random(1);
+		for (int i = 0; i < 10000; i++)
+		{
+			double value = -random.nextDouble() * 1000;
+			int expected = compiled.getRGB(value);
+			int actual = compiled.lookupRGB(value);
+			for (int shift = 0; shift < 32; shift += 8)
+			{
+				assertTrue(Math.abs(((expected >> shift) & 0xff) - ((actual >> shift) & 0xff)) <= 1);
+			}
+		}
+	}
+
+	@Test
+	public void testColorizeInt()
+	{
+		ColorMap colorMap = createColorMap(true, false);
+		CompiledColorMap compiled = colorMap.compile();
+		float[] values = { -2000, -1000, 0, Float.NaN, 1000, 2000, -9999 };
+		int[] out = compiled.colorize(values, -9999, 0x12345678, null);
+
+		int[] expected = new int[values.length];
+		for (int i = 0; i < values.length; i++)
+		{
+			expected[i] = compiled.lookupRGB(values[i]);
+		}
+		expected[6] = 0x12345678;
+		assertArrayEquals(expected, out);
+	}
+
+	@Test
+	public void testColorizeFloatSkipsNoData()
+	{
+		ColorMap colorMap = createColorMap(false, false);
+		CompiledColorMap compiled = colorMap.compile();
+		float[] values = { Float.NaN, -1000, Float.NaN, 1000 };
+		float[] out = compiled.colorize(values, Float.NaN, null);
+
+		assertArrayEquals(new float[] { 0, 0, 1, 1, 1, 0, 0, 1 }, out, 0f);
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		CompiledColorMap compiled = new ColorMap().compile();
+		assertEquals(Color.black.getRGB(), compiled.getRGB(5));
+		assertEquals(Color.black.getRGB(), compiled.lookupRGB(5));
+	}
+
+	private static ColorMap createColorMap(boolean hue, boolean percentages)
+	{
+		ColorMap colorMap = new ColorMap();
+		colorMap.setInterpolateHue(hue);
+		colorMap.setValuesPercentages(percentages);
+		double scale = percentages ? 0.001 : 1;
+		colorMap.put(-1000 * scale, Color.blue);
+		colorMap.put(0d, new Color(0, 255, 0, 128));
+		colorMap.put(10 * scale, Color.yellow);
+		colorMap.put(1000 * scale, Color.red);
+		return colorMap;
+	}
+}
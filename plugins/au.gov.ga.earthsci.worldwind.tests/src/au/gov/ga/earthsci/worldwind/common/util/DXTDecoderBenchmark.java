@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+/**
+ * Throughput benchmark for DXT decompression. Compares the previous
+ * per-block <code>setRGB</code> DXT3 decompression to the {@link DXTDecoder}.
+ * Also reports the compressed size, which is what {@link DDSTextureData}
+ * passes to OpenGL instead of decompressing.
+ * <p/>
+ * Decodes random 512x512 blocks the number of times given by the
+ * <code>count</code> system property (default 50). Run as a Java application.
+ */
+public class DXTDecoderBenchmark
+{
+	private static final int SIZE = 512;
+
+	public static void main(String[] args)
+	{
+		int count = Integer.getInteger("count", 50);
+		int[] pixels = new int[SIZE * SIZE];
+		double megapixels = count * SIZE * SIZE / 1e6;
+
+		for (int i = 0; i < 2; i++)
+		{
+			for (DXTDecoder.Format format : DXTDecoder.Format.values())
+			{
+				ByteBuffer buffer = createRandomBlocks(format);
+				System.out.println(format + " (" + buffer.limit() + " compressed bytes, " + (SIZE * SIZE * 4)
+						+ " decompressed bytes):");
+
+				if (format == DXTDecoder.Format.DXT3)
+				{
+					long start = System.nanoTime();
+					long checksum = 0;
+					for (int j = 0; j < count; j++)
+					{
+						buffer.rewind();
+						checksum += legacyReadDxt3Buffer(buffer, SIZE, SIZE).getRGB(1, 1);
+					}
+					report("setRGB", megapixels, start, checksum);
+					buffer.rewind();
+				}
+
+				long start = System.nanoTime();
+				long checksum = 0;
+				for (int j = 0; j < count; j++)
+				{
+					checksum += DXTDecoder.decode(buffer, format, SIZE, SIZE, pixels)[SIZE + 1];
+				}
+				report("int[]", megapixels, start, checksum);
+
+				start = System.nanoTime();
+				checksum = 0;
+				for (int j = 0; j < count; j++)
+				{
+					checksum += DDSUncompressor.readBuffer(buffer, format, SIZE, SIZE).getRGB(1, 1);
+				}
+				report("image", megapixels, start, checksum);
+			}
+		}
+	}
+
+	private static ByteBuffer createRandomBlocks(DXTDecoder.Format format)
+	{
+		byte[] bytes = new byte[format.getDataSize(SIZE, SIZE)];
+		new Random(0).nextBytes(bytes);
+		return ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private static void report(String name, double megapixels, long start, long checksum)
+	{
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("  %-8s %8.3fs %8.1f Mpixels/s (checksum %d)", name, seconds, megapixels
+				/ seconds, checksum));
+	}
+
+	/**
+	 * The previous DDSUncompressor DXT3 implementation, which allocates color
+	 * objects per block and per pixel, and writes each block using
+	 * {@link BufferedImage#setRGB(int, int, int, int, int[], int, int)}.
+	 */
+	private static BufferedImage legacyReadDxt3Buffer(ByteBuffer buffer, int width, int height)
+	{
+		int[] pixels = new int[16];
+		int[] alphas = new int[16];
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+		for (int i = 0; i < height / 4; i++)
+		{
+			for (int j = 0; j < width / 4; j++)
+			{
+				long alphaData = buffer.getLong();
+				for (int k = alphas.length - 1; k >= 0; k--)
+				{
+					alphas[k] = ((int) (alphaData >>> (k * 4)) & 0xF) << 4;
+				}
+
+				int[][] lookupTable = expandLookupTable(buffer.getShort(), buffer.getShort());
+				int colorData = buffer.getInt();
+				for (int k = pixels.length - 1; k >= 0; k--)
+				{
+					int[] color = lookupTable[(colorData >>> k * 2) & 0x03];
+					double alphaF = alphas[k] / 256.0;
+					int[] multiplied =
+							new int[] { (int) (color[0] * alphaF), (int) (color[1] * alphaF), (int) (color[2] * alphaF) };
+					pixels[k] = (alphas[k] << 24) | multiplied[0] << 16 | multiplied[1] << 8 | multiplied[2];
+				}
+				result.setRGB(j * 4, i * 4, 4, 4, pixels, 0, 4);
+			}
+		}
+		return result;
+	}
+
+	private static int[][] expandLookupTable(short minColor, short maxColor)
+	{
+		int[][] result = new int[][] { getColor565(minColor), getColor565(maxColor), new int[3], new int[3] };
+		for (int c = 0; c < 3; c++)
+		{
+			result[2][c] = (2 * result[0][c] + result[1][c] + 1) / 3;
+			result[3][c] = (result[0][c] + 2 * result[1][c] + 1) / 3;
+		}
+		return result;
+	}
+
+	private static int[] getColor565(int pixel)
+	{
+		return new int[] { (pixel & 0xf800) >>> 8, (pixel & 0x07e0) >>> 3, (pixel & 0x001f) << 3 };
+	}
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.awt.image.BufferedImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link DXTDecoder} and {@link DDSUncompressor} classes
+ */
+public class DXTDecoderTest
+{
+	private static final int RED = 0xf800;
+	private static final int BLUE = 0x001f;
+
+	@Test
+	public void testDxt1FourColor()
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		putColorBlock(buffer, RED, BLUE, indexPerColumn());
+		buffer.flip();
+
+		int[] pixels = DXTDecoder.decode(buffer, DXTDecoder.Format.DXT1, 4, 4, null);
+		int[] expected = { 0xffff0000, 0xff0000ff, 0xffaa0055, 0xff5500aa };
+		for (int k = 0; k < 16; k++)
+		{
+			assertEquals(expected[k % 4], pixels[k]);
+		}
+		assertEquals(0, buffer.position());
+	}
+
+	@Test
+	public void testDxt1ThreeColorWithTransparency()
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+		putColorBlock(buffer, BLUE, RED, indexPerColumn());
+		buffer.flip();
+
+		int[] pixels = DXTDecoder.decode(buffer, DXTDecoder.Format.DXT1, 4, 4, null);
+		int[] expected = { 0xff0000ff, 0xffff0000, 0xff7f007f, 0 };
+		for (int k = 0; k < 16; k++)
+		{
+			assertEquals(expected[k % 4], pixels[k]);
+		}
+	}
+
+	@Test
+	public void testDxt3ExplicitAlpha()
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		long alphaBits = 0;
+		for (int k = 0; k < 16; k++)
+		{
+			alphaBits |= ((long) k) << (k * 4);
+		}
+		buffer.putLong(alphaBits);
+		putColorBlock(buffer, RED, RED, 0);
+		buffer.flip();
+
+		int[] pixels = DXTDecoder.decode(buffer, DXTDecoder.Format.DXT3, 4, 4, null);
+		for (int k = 0; k < 16; k++)
+		{
+			assertEquals(((k * 17) << 24) | 0xff0000, pixels[k]);
+		}
+	}
+
+	@Test
+	public void testDxt5InterpolatedAlpha()
+	{
+		int[] pixels = DXTDecoder.decode(createDxt5Block(255, 0), DXTDecoder.Format.DXT5, 4, 4, null);
+		int[] expected = { 255, 0, 218, 182, 145, 109, 72, 36 };
+		for (int k = 0; k < 16; k++)
+		{
+			assertEquals(expected[k % 8], pixels[k] >>> 24);
+		}
+
+		pixels = DXTDecoder.decode(createDxt5Block(0, 255), DXTDecoder.Format.DXT5, 4, 4, null);
+		expected = new int[] { 0, 255, 51, 102, 153, 204, 0, 255 };
+		for (int k = 0; k < 16; k++)
+		{
+			assertEquals(expected[k % 8], pixels[k] >>> 24);
+		}
+	}
+
+	@Test
+	public void testPartialBlocks()
+	{
+		//6x5 image requires 2x2 blocks, each a different solid color
+		int[] colors = { RED, BLUE, 0x07e0, 0xffff };
+		int[] expected = { 0xffff0000, 0xff0000ff, 0xff00ff00, 0xffffffff };
+		ByteBuffer buffer = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+		for (int color : colors)
+		{
+			putColorBlock(buffer, color, color, 0);
+		}
+		buffer.flip();
+
+		int[] pixels = DXTDecoder.decode(buffer, DXTDecoder.Format.DXT1, 6, 5, null);
+		assertEquals(30, pixels.length);
+		for (int y = 0; y < 5; y++)
+		{
+			for (int x = 0; x < 6; x++)
+			{
+				assertEquals(expected[(y / 4) * 2 + x / 4], pixels[y * 6 + x]);
+			}
+		}
+	}
+
+	@Test
+	public void testReadDDS()
+	{
+		ByteBuffer buffer =
+				ByteBuffer.allocate(DDSUncompressor.HEADER_SIZE + 8 * 4).order(ByteOrder.LITTLE_ENDIAN);
+		putHeader(buffer, 8, 8, "DXT1");
+		for (int i = 0; i < 4; i++)
+		{
+			putColorBlock(buffer, RED, BLUE, indexPerColumn());
+		}
+		buffer.flip();
+
+		DDSUncompressor.Header header = DDSUncompressor.readHeader(buffer);
+		assertEquals(8, header.width);
+		assertEquals(8, header.height);
+		assertEquals(1, header.mipMapCount);
+		assertEquals(DXTDecoder.Format.DXT1, header.format);
+
+		BufferedImage image = DDSUncompressor.readDDS(buffer);
+		assertEquals(8, image.getWidth());
+		assertEquals(8, image.getHeight());
+		assertEquals(0xffff0000, image.getRGB(4, 7));
+		assertEquals(0xff5500aa, image.getRGB(7, 0));
+		assertEquals(0, buffer.position());
+	}
+
+	@Test
+	public void testUnsupportedDDS()
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(DDSUncompressor.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		putHeader(buffer, 8, 8, "ATI2");
+		buffer.flip();
+		assertNull(DDSUncompressor.readHeader(buffer).format);
+
+		assertNull(DDSUncompressor.readHeader(ByteBuffer.allocate(DDSUncompressor.HEADER_SIZE)));
+	}
+
+	private static int indexPerColumn()
+	{
+		//pixel k uses color index (k % 4)
+		int bits = 0;
+		for (int k = 0; k < 16; k++)
+		{
+			bits |= (k % 4) << (k * 2);
+		}
+		return bits;
+	}
+
+	private static void putColorBlock(ByteBuffer buffer, int color0, int color1, int indices)
+	{
+		buffer.putShort((short) color0);
+		buffer.putShort((short) color1);
+		buffer.putInt(indices);
+	}
+
+	private static ByteBuffer createDxt5Block(int alpha0, int alpha1)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+		long alphaBits = 0;
+		for (int k = 0; k < 16; k++)
+		{
+			alphaBits |= ((long) (k % 8)) << (k * 3);
+		}
+		buffer.put((byte) alpha0);
+		buffer.put((byte) alpha1);
+		for (int i = 0; i < 6; i++)
+		{
+			buffer.put((byte) (alphaBits >>> (i * 8)));
+		}
+		putColorBlock(buffer, RED, RED, 0);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static void putHeader(ByteBuffer buffer, int width, int height, String fourCC)
+	{
+		buffer.put("DDS ".getBytes());
+		buffer.putInt(124);
+		buffer.putInt(0x1007); //caps, height, width, pixel format
+		buffer.putInt(height);
+		buffer.putInt(width);
+		buffer.putInt(0);
+		buffer.putInt(0);
+		buffer.putInt(0);
+		buffer.position(76);
+		buffer.putInt(32);
+		buffer.putInt(0x4); //DDPF_FOURCC
+		buffer.put(fourCC.getBytes());
+		buffer.position(DDSUncompressor.HEADER_SIZE);
+	}
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Throughput benchmark comparing the {@link AsciiColumnScanner} to the
+ * line-by-line regular expression matching previously used to read ASCII
+ * SGrid data files.
+ * <p/>
+ * Generates a synthetic SGrid ASCII data file (3 coordinates followed by 3
+ * properties per line) of the size given by the <code>size</code> system
+ * property in megabytes (default 2048), and reads the 2nd property using both
+ * methods. Run as a Java application.
+ */
+public class AsciiColumnScannerBenchmark
+{
+	public static void main(String[] args) throws IOException
+	{
+		long size = Long.getLong("size", 2048) * 1024 * 1024;
+		File file = File.createTempFile("sgrid", ".sg_ascii");
+		file.deleteOnExit();
+
+		System.out.println("Generating " + (size >> 20) + "MB synthetic SGrid data file: " + file);
+		generate(file, size);
+
+		for (int i = 0; i < 2; i++)
+		{
+			benchmarkRegex(file);
+			benchmarkScanner(file);
+		}
+
+		file.delete();
+	}
+
+	private static void generate(File file, long size) throws IOException
+	{
+		Random random = new Random(0);
+		Writer writer = new BufferedWriter(new FileWriter(file), 1 << 20);
+		try
+		{
+			long written = 0;
+			StringBuilder sb = new StringBuilder();
+			while (written < size)
+			{
+				sb.setLength(0);
+				sb.append(random.nextInt(1000000)).append('.').append(random.nextInt(1000)).append(' ');
+				sb.append(random.nextInt(10000000)).append('.').append(random.nextInt(1000)).append(' ');
+				sb.append(-random.nextInt(10000)).append('.').append(random.nextInt(100)).append(' ');
+				sb.append(random.nextInt(100)).append(' ');
+				sb.append(random.nextFloat() * 1000).append(' ');
+				sb.append(random.nextInt(2) == 0 ? "-99999" : "1").append('\n');
+				writer.write(sb.toString());
+				written += sb.length();
+			}
+		}
+		finally
+		{
+			writer.close();
+		}
+	}
+
+	private static void benchmarkRegex(File file) throws IOException
+	{
+		Pattern pattern =
+				Pattern.compile("\\s*([\\d.\\-]+)\\s+([\\d.\\-]+)\\s+([\\d.\\-]+)\\s+(?:[\\d.\\-]+)\\s+([\\d.\\-]+).*");
+		long start = System.nanoTime();
+		double sum = 0;
+		BufferedReader reader = new BufferedReader(new FileReader(file));
+		try
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				Matcher matcher = pattern.matcher(line);
+				if (matcher.matches())
+				{
+					sum += Float.parseFloat(matcher.group(4));
+				}
+			}
+		}
+		finally
+		{
+			reader.close();
+		}
+		report("Regex", file, start, sum);
+	}
+
+	private static void benchmarkScanner(File file) throws IOException
+	{
+		final double[] sum = new double[1];
+		long start = System.nanoTime();
+		new AsciiColumnScanner(4).scan(file, new AsciiColumnScanner.LineHandler()
+		{
+			@Override
+			public void line(ByteBuffer block, int lineStart, float value)
+			{
+				sum[0] += value;
+			}
+		});
+		report("Scanner", file, start, sum[0]);
+	}
+
+	private static void report(String name, File file, long start, double sum)
+	{
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-8s %8.2fs %8.1f MB/s (checksum %f)", name, seconds, file.length()
+				/ (1024.0 * 1024.0) / seconds, sum));
+	}
+}
@@ -0,0 +1,135 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util.io;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link AsciiColumnScanner} class
+ */
+public class AsciiColumnScannerTest
+{
+	private static final String DATA = "# comment line\n"
+			+ "1 2 3 4.5 6\n"
+			+ "  -1.25\t2\t3 -99999\r\n"
+			+ "1 2 3\n"
+			+ "1 2 3 x 5\n"
+			+ "10 20 30 0.1 trailing text\n"
+			+ "\n"
+			+ "7 8 9 123456789.123\n"
+			+ "7 8 9 .5";
+
+	@Test
+	public void testMatchesRegex() throws Exception
+	{
+		assertEquals(scanWithRegex(DATA, 3), scan(DATA, 3, AsciiColumnScanner.DEFAULT_BLOCK_SIZE));
+		assertEquals(scanWithRegex(DATA, 4), scan(DATA, 4, AsciiColumnScanner.DEFAULT_BLOCK_SIZE));
+	}
+
+	@Test
+	public void testSmallBlocks() throws Exception
+	{
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+		{
+			sb.append(i).append(' ').append(i * 2).append(' ').append(-i).append(' ').append(i * 0.25).append('\n');
+		}
+		String data = sb.toString();
+		assertEquals(scanWithRegex(data, 3), scan(data, 3, 64));
+	}
+
+	@Test
+	public void testReadDouble() throws Exception
+	{
+		final List<Double> xs = new ArrayList<Double>();
+		AsciiColumnScanner scanner = new AsciiColumnScanner(3);
+		scanner.scan(stream(DATA), new AsciiColumnScanner.LineHandler()
+		{
+			@Override
+			public void line(ByteBuffer block, int lineStart, float value)
+			{
+				xs.add(AsciiColumnScanner.readDouble(block, lineStart, 0));
+			}
+		});
+		assertEquals(-1.25, xs.get(1), 0);
+		assertEquals(10, xs.get(2), 0);
+	}
+
+	@Test
+	public void testParseFloatMatchesFloatParseFloat()
+	{
+		String[] values = { "0", "-0", "1", "0.1", "-12345.678", "16777217", "0.30000001", "123456789.123", ".5", "5.",
+				"1.00000000001" };
+		for (String value : values)
+		{
+			ByteBuffer buffer = ByteBuffer.wrap(value.getBytes());
+			assertEquals(Float.floatToIntBits(Float.parseFloat(value)),
+					Float.floatToIntBits(AsciiColumnScanner.parseFloat(buffer, 0, value.length())));
+		}
+	}
+
+	private List<Float> scan(String data, int column, int blockSize) throws Exception
+	{
+		final List<Float> values = new ArrayList<Float>();
+		AsciiColumnScanner scanner = new AsciiColumnScanner(column, blockSize);
+		scanner.scan(stream(data), new AsciiColumnScanner.LineHandler()
+		{
+			@Override
+			public void line(ByteBuffer block, int lineStart, float value)
+			{
+				values.add(value);
+			}
+		});
+		return values;
+	}
+
+	private List<Float> scanWithRegex(String data, int column)
+	{
+		String regex = "\\s*([\\d.\\-]+)";
+		for (int i = 1; i < column; i++)
+		{
+			regex += "\\s+(?:[\\d.\\-]+)";
+		}
+		regex += "\\s+([\\d.\\-]+).*";
+		Pattern pattern = Pattern.compile(regex);
+
+		List<Float> values = new ArrayList<Float>();
+		for (String line : data.split("\r?\n"))
+		{
+			Matcher matcher = pattern.matcher(line);
+			if (matcher.matches())
+			{
+				values.add(Float.parseFloat(matcher.group(2)));
+			}
+		}
+		return values;
+	}
+
+	private static InputStream stream(String data)
+	{
+		return new ByteArrayInputStream(data.getBytes());
+	}
+}
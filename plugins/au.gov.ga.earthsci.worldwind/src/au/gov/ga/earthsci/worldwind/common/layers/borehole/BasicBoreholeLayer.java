@@ -43,8 +43,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.media.opengl.GL2;
-
 import au.gov.ga.earthsci.worldwind.common.WorldWindowRegistry;
 import au.gov.ga.earthsci.worldwind.common.layers.point.types.MarkerPointLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.styled.Attribute;
@@ -60,7 +58,8 @@ import au.gov.ga.earthsci.worldwind.common.util.Validate;
 
 /**
  * Basic implementation of the {@link BoreholeLayer}. Draws markers for each
- * borehole location, and coloured lines for borehole samples.
+ * borehole location, and coloured lines for borehole samples. The samples of
+ * all boreholes are drawn as a single batch by a {@link BoreholeSampleRenderer}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -76,6 +75,7 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 	protected final Map<Object, BoreholeImpl> idToBorehole = new HashMap<Object, BoreholeImpl>();
 	protected final MarkerRenderer markerRenderer = new MarkerRenderer();
 	protected final AnnotationRenderer annotationRenderer = new BasicAnnotationRenderer();
+	protected final BoreholeSampleRenderer sampleRenderer = new BoreholeSampleRenderer();
 
 	protected URL context;
 	protected String url;
@@ -212,9 +212,9 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 	@Override
 	public void loadComplete()
 	{
-		for (BoreholeImpl borehole : boreholes)
+		synchronized (boreholes)
 		{
-			borehole.loadComplete();
+			sampleRenderer.setBoreholes(boreholes, getDefaultSampleColor());
 		}
 	}
 
@@ -243,22 +243,7 @@ public class BasicBoreholeLayer extends AbstractLayer implements BoreholeLayer,
 		{
 			markerRenderer.render(dc, markers);
 			annotationRenderer.render(dc, tooltipAnnotation, tooltipAnnotation.getAnnotationDrawPoint(dc), this);
-
-			GL2 gl = dc.getGL().getGL2();
-			try
-			{
-				gl.glPushAttrib(GL2.GL_LINE_BIT);
-				gl.glLineWidth((float) lineWidth);
-
-				for (BoreholeImpl borehole : boreholes)
-				{
-					borehole.render(dc);
-				}
-			}
-			finally
-			{
-				gl.glPopAttrib();
-			}
+			sampleRenderer.render(dc, this, minimumDistance, lineWidth);
 		}
 	}
 
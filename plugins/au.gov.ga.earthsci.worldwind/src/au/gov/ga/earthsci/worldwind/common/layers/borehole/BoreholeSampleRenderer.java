@@ -0,0 +1,507 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.borehole;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sphere;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.layers.Layer;
+import gov.nasa.worldwind.pick.PickSupport;
+import gov.nasa.worldwind.pick.PickedObject;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.OGLStackHandler;
+
+import java.awt.Color;
+import java.util.List;
+
+import javax.media.opengl.GL2;
+
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.FloatVBO;
+
+/**
+ * Renders the samples of a set of {@link Borehole}s as a single batch. The
+ * depth range and color of every sample is packed into one vertex buffer (with
+ * the borehole centrelines appended), so that the samples of all visible
+ * boreholes are drawn with a single draw call, instead of one shape per
+ * borehole.
+ * <p/>
+ * Vertices are calculated from a surface point and normal per borehole, so the
+ * terrain elevation is only sampled once per borehole, not once per sample.
+ * <p/>
+ * Picking uses a color id buffer: each borehole is first drawn with a unique
+ * pick color, and if a borehole is picked its samples are then drawn with a
+ * pick color per sample. The borehole pick colors are only uploaded when they
+ * change between frames.
+ */
+public class BoreholeSampleRenderer
+{
+	protected static final Color CENTRELINE_COLOR = Color.LIGHT_GRAY;
+	protected static final long FOLLOW_TERRAIN_UPDATE_FREQUENCY = 2000; //ms
+
+	private final FloatVBO vertexVBO = new FloatVBO(3);
+	private final FloatVBO colorVBO = new FloatVBO(3);
+	private final FloatVBO pickingColorVBO = new FloatVBO(3);
+	private final FloatVBO samplePickingColorVBO = new FloatVBO(3);
+	private final PickSupport pickSupport = new PickSupport();
+
+	private Borehole[] boreholes = new Borehole[0];
+	private int[] sampleOffsets = { 0 };
+	private float[] depths = new float[0];
+	private float[] colors = new float[0];
+
+	private Vec4 referenceCenter = Vec4.ZERO;
+	private Sphere[] extents = new Sphere[0];
+	private Globe lastGlobe;
+	private double lastVerticalExaggeration;
+	private long lastUpdateTime;
+	private boolean verticesDirty = true;
+
+	private int[] visible = new int[0];
+	private int visibleCount;
+	private int[] pickColors = new int[0];
+	private int[] firsts = new int[0];
+	private int[] counts = new int[0];
+
+	/**
+	 * Pack the samples of the given boreholes into this renderer's buffers,
+	 * replacing any previously set boreholes.
+	 * 
+	 * @param boreholes
+	 *            Boreholes to render
+	 * @param defaultSampleColor
+	 *            Color used for samples that don't define a color
+	 */
+	public synchronized void setBoreholes(List<? extends Borehole> boreholes, Color defaultSampleColor)
+	{
+		int boreholeCount = boreholes.size();
+		int sampleCount = 0;
+		for (Borehole borehole : boreholes)
+		{
+			sampleCount += borehole.getSamples().size();
+		}
+
+		//each sample and each centreline is a line with 2 vertices; centrelines follow the samples
+		int vertexCount = (sampleCount + boreholeCount) * 2;
+		int centrelineStart = sampleCount * 2;
+		this.boreholes = boreholes.toArray(new Borehole[boreholeCount]);
+		this.sampleOffsets = new int[boreholeCount + 1];
+		this.depths = new float[vertexCount];
+		this.colors = new float[vertexCount * 3];
+
+		int sample = 0;
+		for (int i = 0; i < boreholeCount; i++)
+		{
+			sampleOffsets[i] = sample;
+			float maxDepth = 0;
+			for (BoreholeSample s : this.boreholes[i].getSamples())
+			{
+				Color color = s.getColor() == null ? defaultSampleColor : s.getColor();
+				depths[sample * 2] = (float) s.getDepthFrom();
+				depths[sample * 2 + 1] = (float) s.getDepthTo();
+				maxDepth = depths[sample * 2 + 1];
+				putColor(colors, sample * 2, 2, color);
+				sample++;
+			}
+
+			int centreline = centrelineStart + i * 2;
+			depths[centreline] = (float) -this.boreholes[i].getPosition().getElevation();
+			depths[centreline + 1] = maxDepth;
+			putColor(colors, centreline, 2, CENTRELINE_COLOR);
+		}
+		sampleOffsets[boreholeCount] = sample;
+
+		colorVBO.setBuffer(colors);
+		pickingColorVBO.setBuffer(null);
+		pickColors = new int[boreholeCount];
+		visible = new int[boreholeCount];
+		visibleCount = 0;
+		firsts = new int[boreholeCount];
+		counts = new int[boreholeCount];
+		verticesDirty = true;
+	}
+
+	/**
+	 * Render the samples, or pick them if the draw context is in picking
+	 * mode.
+	 * 
+	 * @param dc
+	 *            Draw context
+	 * @param layer
+	 *            Layer to associate with picked samples
+	 * @param minimumDistance
+	 *            Boreholes further than this distance from the eye are not
+	 *            drawn (null to draw all boreholes)
+	 * @param lineWidth
+	 *            Width of the sample lines
+	 */
+	public synchronized void render(DrawContext dc, Layer layer, Double minimumDistance, double lineWidth)
+	{
+		if (boreholes.length == 0 || !dc.getGLRuntimeCapabilities().isUseVertexBufferObject())
+		{
+			return;
+		}
+
+		recalculateIfRequired(dc);
+		collectVisible(dc, minimumDistance);
+		if (visibleCount == 0)
+		{
+			return;
+		}
+
+		if (dc.isPickingMode())
+		{
+			pick(dc, layer, lineWidth);
+		}
+		else
+		{
+			draw(dc, colorVBO, -1, lineWidth);
+		}
+	}
+
+	protected void recalculateIfRequired(DrawContext dc)
+	{
+		long currentTime = System.currentTimeMillis();
+		if (verticesDirty || lastGlobe != dc.getGlobe() || lastVerticalExaggeration != dc.getVerticalExaggeration()
+				|| currentTime - lastUpdateTime > FOLLOW_TERRAIN_UPDATE_FREQUENCY)
+		{
+			calculateVertices(dc);
+			lastGlobe = dc.getGlobe();
+			lastVerticalExaggeration = dc.getVerticalExaggeration();
+			lastUpdateTime = currentTime;
+			verticesDirty = false;
+		}
+	}
+
+	/**
+	 * Calculate the sample vertices, relative to the reference center. Each
+	 * vertex is offset along its borehole's surface normal by the
+	 * (exaggerated) depth, which is equivalent to calculating the point at
+	 * the vertex's elevation below the terrain.
+	 */
+	protected void calculateVertices(DrawContext dc)
+	{
+		Globe globe = dc.getGlobe();
+		double verticalExaggeration = dc.getVerticalExaggeration();
+		int boreholeCount = boreholes.length;
+
+		Vec4[] points = new Vec4[boreholeCount];
+		Vec4[] normals = new Vec4[boreholeCount];
+		double x = 0, y = 0, z = 0;
+		for (int i = 0; i < boreholeCount; i++)
+		{
+			Position position = boreholes[i].getPosition();
+			double elevation = globe.getElevation(position.getLatitude(), position.getLongitude());
+			points[i] =
+					globe.computePointFromPosition(position.getLatitude(), position.getLongitude(), elevation
+							* verticalExaggeration);
+			normals[i] = globe.computeSurfaceNormalAtLocation(position.getLatitude(), position.getLongitude());
+			x += points[i].x;
+			y += points[i].y;
+			z += points[i].z;
+		}
+		Vec4 center = boreholeCount == 0 ? Vec4.ZERO : new Vec4(x / boreholeCount, y / boreholeCount, z / boreholeCount);
+
+		float[] vertices = vertexVBO.getBuffer();
+		if (vertices == null || vertices.length != depths.length * 3)
+		{
+			vertices = new float[depths.length * 3];
+		}
+		Sphere[] extents = new Sphere[boreholeCount];
+		int centrelineStart = sampleOffsets[boreholeCount] * 2;
+		for (int i = 0; i < boreholeCount; i++)
+		{
+			Vec4 point = points[i].subtract3(center);
+			Vec4 normal = normals[i];
+			int centreline = centrelineStart + i * 2;
+			calculateVertices(vertices, point, normal, verticalExaggeration, sampleOffsets[i] * 2,
+					sampleOffsets[i + 1] * 2);
+			calculateVertices(vertices, point, normal, verticalExaggeration, centreline, centreline + 2);
+
+			double minDepth = depths[centreline];
+			double maxDepth = depths[centreline];
+			for (int j = sampleOffsets[i] * 2; j < sampleOffsets[i + 1] * 2; j++)
+			{
+				minDepth = Math.min(minDepth, depths[j]);
+				maxDepth = Math.max(maxDepth, depths[j]);
+			}
+			double radius = (maxDepth - minDepth) * verticalExaggeration * 0.5;
+			Vec4 extentCenter = points[i].subtract3(normal.multiply3((minDepth * verticalExaggeration) + radius));
+			extents[i] = new Sphere(extentCenter, Math.max(radius, 1));
+		}
+
+		vertexVBO.setBuffer(vertices);
+		this.extents = extents;
+		this.referenceCenter = center;
+	}
+
+	private void calculateVertices(float[] vertices, Vec4 point, Vec4 normal, double verticalExaggeration,
+			int fromVertex, int toVertex)
+	{
+		for (int i = fromVertex; i < toVertex; i++)
+		{
+			double offset = depths[i] * verticalExaggeration;
+			vertices[i * 3] = (float) (point.x - normal.x * offset);
+			vertices[i * 3 + 1] = (float) (point.y - normal.y * offset);
+			vertices[i * 3 + 2] = (float) (point.z - normal.z * offset);
+		}
+	}
+
+	/**
+	 * Collect the indices of the boreholes that are within the view frustum
+	 * and the minimum distance.
+	 */
+	protected void collectVisible(DrawContext dc, Double minimumDistance)
+	{
+		visibleCount = 0;
+		Vec4 eyePoint = dc.getView().getEyePoint();
+		for (int i = 0; i < boreholes.length; i++)
+		{
+			Sphere extent = extents[i];
+			if (sampleOffsets[i] == sampleOffsets[i + 1])
+			{
+				continue;
+			}
+			if (minimumDistance != null
+					&& extent.getCenter().distanceTo3(eyePoint) - extent.getRadius() > minimumDistance)
+			{
+				continue;
+			}
+			if (!dc.getView().getFrustumInModelCoordinates().intersects(extent))
+			{
+				continue;
+			}
+			visible[visibleCount++] = i;
+		}
+	}
+
+	protected void pick(DrawContext dc, Layer layer, double lineWidth)
+	{
+		//pick colors are allocated for all boreholes, so that they (and the picking buffer) remain
+		//the same between frames as long as the number of pick colors used before this layer doesn't change
+		boolean pickColorsChanged = pickingColorVBO.getBuffer() == null;
+		for (int i = 0; i < boreholes.length; i++)
+		{
+			int color = dc.getUniquePickColor().getRGB();
+			pickColorsChanged |= pickColors[i] != color;
+			pickColors[i] = color;
+		}
+		if (pickColorsChanged)
+		{
+			float[] pickingColors = new float[sampleOffsets[boreholes.length] * 2 * 3];
+			for (int i = 0; i < boreholes.length; i++)
+			{
+				int from = sampleOffsets[i] * 2;
+				putColor(pickingColors, from, sampleOffsets[i + 1] * 2 - from, new Color(pickColors[i]));
+			}
+			pickingColorVBO.setBuffer(pickingColors);
+		}
+
+		boolean oldDeepPicking = dc.isDeepPickingEnabled();
+		try
+		{
+			//deep picking needs to be enabled, because boreholes are below the surface
+			dc.setDeepPickingEnabled(true);
+			pickSupport.beginPicking(dc);
+
+			//First pick the boreholes. This will determine if we have to go further and pick individual samples.
+			for (int i = 0; i < visibleCount; i++)
+			{
+				int borehole = visible[i];
+				pickSupport.addPickableObject(pickColors[borehole], Integer.valueOf(borehole),
+						boreholes[borehole].getPosition());
+			}
+			draw(dc, pickingColorVBO, -1, lineWidth);
+
+			PickedObject object = pickSupport.getTopObject(dc, dc.getPickPoint());
+			pickSupport.clearPickList();
+
+			if (object != null && object.getObject() instanceof Integer)
+			{
+				//A borehole has been picked; now pick its samples individually
+				int borehole = (Integer) object.getObject();
+				Position position = boreholes[borehole].getPosition();
+				List<BoreholeSample> samples = boreholes[borehole].getSamples();
+				float[] samplePickingColors = samplePickingColorVBO.getBuffer();
+				if (samplePickingColors == null || samplePickingColors.length < samples.size() * 2 * 3)
+				{
+					samplePickingColors = new float[samples.size() * 2 * 3];
+				}
+				int vertex = 0;
+				for (BoreholeSample sample : samples)
+				{
+					Color color = dc.getUniquePickColor();
+					pickSupport.addPickableObject(color.getRGB(), sample, position);
+					putColor(samplePickingColors, vertex, 2, color);
+					vertex += 2;
+				}
+				samplePickingColorVBO.setBuffer(samplePickingColors);
+
+				draw(dc, samplePickingColorVBO, borehole, lineWidth);
+				pickSupport.resolvePick(dc, dc.getPickPoint(), layer);
+			}
+		}
+		finally
+		{
+			pickSupport.endPicking(dc);
+			dc.setDeepPickingEnabled(oldDeepPicking);
+		}
+	}
+
+	/**
+	 * Draw the samples.
+	 * 
+	 * @param dc
+	 *            Draw context
+	 * @param colors
+	 *            Color buffer to draw with
+	 * @param borehole
+	 *            Index of a single borehole whose samples should be drawn
+	 *            (with colors starting at the beginning of the color buffer),
+	 *            or -1 to draw the samples and centrelines of all visible
+	 *            boreholes
+	 * @param lineWidth
+	 *            Width of the sample lines
+	 */
+	protected void draw(DrawContext dc, FloatVBO colors, int borehole, double lineWidth)
+	{
+		GL2 gl = dc.getGL().getGL2();
+		OGLStackHandler stack = new OGLStackHandler();
+		try
+		{
+			stack.pushAttrib(gl, GL2.GL_CURRENT_BIT | GL2.GL_LINE_BIT | GL2.GL_FOG_BIT);
+			stack.pushClientAttrib(gl, GL2.GL_CLIENT_VERTEX_ARRAY_BIT);
+			dc.getView().pushReferenceCenter(dc, referenceCenter);
+
+			gl.glDisable(GL2.GL_FOG);
+			gl.glLineWidth((float) lineWidth);
+
+			gl.glEnableClientState(GL2.GL_COLOR_ARRAY);
+			colors.bind(gl);
+			gl.glColorPointer(colors.getElementStride(), GL2.GL_FLOAT, 0, 0);
+			gl.glEnableClientState(GL2.GL_VERTEX_ARRAY);
+			vertexVBO.bind(gl);
+
+			if (borehole >= 0)
+			{
+				int first = sampleOffsets[borehole] * 2;
+				int count = sampleOffsets[borehole + 1] * 2 - first;
+				gl.glVertexPointer(vertexVBO.getElementStride(), GL2.GL_FLOAT, 0, first
+						* vertexVBO.getElementStride() * (Float.SIZE / 8));
+				gl.glDrawArrays(GL2.GL_LINES, 0, count);
+			}
+			else
+			{
+				gl.glVertexPointer(vertexVBO.getElementStride(), GL2.GL_FLOAT, 0, 0);
+				int ranges = calculateSampleRanges();
+				gl.glMultiDrawArrays(GL2.GL_LINES, firsts, 0, counts, 0, ranges);
+
+				if (!dc.isPickingMode())
+				{
+					gl.glLineWidth(1f);
+					ranges = calculateCentrelineRanges();
+					gl.glMultiDrawArrays(GL2.GL_LINES, firsts, 0, counts, 0, ranges);
+				}
+			}
+
+			gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
+		}
+		finally
+		{
+			stack.pop(gl);
+			dc.getView().popReferenceCenter(dc);
+		}
+	}
+
+	/**
+	 * Calculate the vertex ranges of the visible boreholes' samples, merging
+	 * adjacent boreholes into a single range.
+	 * 
+	 * @return Number of ranges in the firsts/counts arrays
+	 */
+	protected int calculateSampleRanges()
+	{
+		int ranges = 0;
+		for (int i = 0; i < visibleCount; i++)
+		{
+			int borehole = visible[i];
+			int first = sampleOffsets[borehole] * 2;
+			int count = sampleOffsets[borehole + 1] * 2 - first;
+			ranges = addRange(ranges, first, count);
+		}
+		return ranges;
+	}
+
+	/**
+	 * Calculate the vertex ranges of the visible boreholes' centrelines,
+	 * merging adjacent boreholes into a single range.
+	 * 
+	 * @return Number of ranges in the firsts/counts arrays
+	 */
+	protected int calculateCentrelineRanges()
+	{
+		int ranges = 0;
+		int centrelineStart = sampleOffsets[boreholes.length] * 2;
+		for (int i = 0; i < visibleCount; i++)
+		{
+			ranges = addRange(ranges, centrelineStart + visible[i] * 2, 2);
+		}
+		return ranges;
+	}
+
+	private int addRange(int ranges, int first, int count)
+	{
+		if (ranges > 0 && firsts[ranges - 1] + counts[ranges - 1] == first)
+		{
+			counts[ranges - 1] += count;
+			return ranges;
+		}
+		firsts[ranges] = first;
+		counts[ranges] = count;
+		return ranges + 1;
+	}
+
+	private static void putColor(float[] buffer, int vertex, int vertexCount, Color color)
+	{
+		float r = color.getRed() / 255f, g = color.getGreen() / 255f, b = color.getBlue() / 255f;
+		for (int i = vertex * 3; i < (vertex + vertexCount) * 3; i += 3)
+		{
+			buffer[i] = r;
+			buffer[i + 1] = g;
+			buffer[i + 2] = b;
+		}
+	}
+
+	int getVertexCount()
+	{
+		return depths.length;
+	}
+
+	float[] getDepths()
+	{
+		return depths;
+	}
+
+	float[] getColors()
+	{
+		return colors;
+	}
+
+	int[] getSampleOffsets()
+	{
+		return sampleOffsets;
+	}
+}
@@ -15,7 +15,7 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.borehole.providers;
 
-import gov.nasa.worldwind.formats.shapefile.DBaseRecord;
+import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.formats.shapefile.Shapefile;
 import gov.nasa.worldwind.formats.shapefile.ShapefileRecord;
 import gov.nasa.worldwind.formats.shapefile.ShapefileUtils;
@@ -30,6 +30,7 @@ import java.util.logging.Level;
 import au.gov.ga.earthsci.worldwind.common.layers.borehole.BoreholeLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.borehole.BoreholeProvider;
 import au.gov.ga.earthsci.worldwind.common.layers.data.AbstractDataProvider;
+import au.gov.ga.earthsci.worldwind.common.layers.data.ColumnarAttributeStore;
 import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 
 /**
@@ -41,17 +42,20 @@ import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 public class ShapefileBoreholeProvider extends AbstractDataProvider<BoreholeLayer> implements BoreholeProvider
 {
 	private Sector sector;
+	private final ColumnarAttributeStore attributes = new ColumnarAttributeStore();
 
 	@Override
 	protected boolean doLoadData(URL url, BoreholeLayer layer)
 	{
 		try
 		{
+			attributes.clear();
 			Shapefile shapefile = ShapefileUtils.openZippedShapefile(URLUtil.urlToFile(url));
 			while (shapefile.hasNext())
 			{
 				ShapefileRecord record = shapefile.nextRecord();
-				DBaseRecord values = record.getAttributes();
+				//copy the record's attributes into the columnar store, and only keep a view of them
+				AVList values = attributes.getRecord(attributes.add(record.getAttributes()));
 
 				for (int part = 0; part < record.getNumberOfParts(); part++)
 				{
@@ -94,6 +98,7 @@ public class ShapefileBoreholeProvider extends AbstractDataProvider<BoreholeLaye
 				}
 			}
 
+			attributes.trimToSize();
 			sector = Sector.fromDegrees(shapefile.getBoundingRectangle());
 			layer.loadComplete();
 		}
@@ -111,4 +116,13 @@ public class ShapefileBoreholeProvider extends AbstractDataProvider<BoreholeLaye
 	{
 		return sector;
 	}
+
+	/**
+	 * @return The attribute values of the loaded features, indexed by the
+	 *         order of the features in the shapefile
+	 */
+	public ColumnarAttributeStore getAttributes()
+	{
+		return attributes;
+	}
 }
@@ -24,10 +24,10 @@ import gov.nasa.worldwind.formats.dds.DDSCompressor;
 import gov.nasa.worldwind.formats.dds.DXTCompressionAttributes;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.LatLon;
-import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.ScreenCredit;
 import gov.nasa.worldwind.retrieve.AbstractRetrievalPostProcessor;
+import gov.nasa.worldwind.retrieve.RetrievalPostProcessor;
 import gov.nasa.worldwind.retrieve.Retriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.util.Logging;
@@ -42,6 +42,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 
 import com.jogamp.opengl.util.texture.TextureData;
@@ -155,6 +156,14 @@ public class BasicTiledCurtainLayer extends TiledCurtainLayer
 		if (i != null)
 			this.setSubsegments(i);
 
+		i = (Integer) params.getValue(AVKeyMore.REQUEST_BUDGET);
+		if (i != null)
+			this.setRequestBudget(i);
+
+		i = (Integer) params.getValue(AVKeyMore.PREFETCH_COLUMNS);
+		if (i != null)
+			this.setPrefetchColumns(i);
+
 		Path path = (Path) params.getValue(AVKeyMore.PATH);
 		if (path != null)
 			this.setPath(path);
@@ -236,17 +245,61 @@ public class BasicTiledCurtainLayer extends TiledCurtainLayer
 	@Override
 	protected void requestTexture(DrawContext dc, CurtainTextureTile tile)
 	{
-		Vec4 centroid =
-				getPath().getSegmentCenterPoint(dc, tile.getSegment(), getCurtainTop(), getCurtainBottom(),
-						isFollowTerrain());
-		Vec4 referencePoint = this.getReferencePoint(dc);
-		if (referencePoint != null)
-			tile.setPriority(centroid.distanceTo3(referencePoint));
+		this.updateRequestPriority(dc, tile);
 
 		RequestTask task = new RequestTask(tile, this);
 		this.getRequestQ().add(task);
 	}
 
+	@Override
+	protected boolean prefetchTexture(CurtainTextureTile tile)
+	{
+		TilePrefetcher prefetcher = TilePrefetcher.getInstance();
+		URL textureURL = this.findLocalTexture(tile);
+		if (textureURL != null)
+		{
+			//already downloaded, so just load the texture data into the memory cache
+			return prefetcher.submitLocal(this.createLoadTask(tile, textureURL));
+		}
+
+		if (this.isNetworkRetrievalEnabled() && prefetcher.isRetrieverAvailable())
+		{
+			Retriever retriever = this.createRetriever(tile, null);
+			if (retriever != null)
+				return prefetcher.submitRetriever(retriever, tile.getPriority());
+		}
+		return false;
+	}
+
+	/**
+	 * @return The URL of the tile's texture in the local cache, or null if it
+	 *         has not been downloaded (or has expired)
+	 */
+	protected URL findLocalTexture(CurtainTextureTile tile)
+	{
+		URL textureURL = this.getDataFileStore().findFile(tile.getPath(), false);
+		if (textureURL == null || this.isTextureFileExpired(tile, textureURL, this.getDataFileStore()))
+			return null;
+		return textureURL;
+	}
+
+	/**
+	 * Create a task that loads the tile's texture from the local cache into
+	 * the memory cache.
+	 */
+	protected Runnable createLoadTask(final CurtainTextureTile tile, final URL textureURL)
+	{
+		return new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (CurtainTextureTile.getMemoryCache().getObject(tile.getTileKey()) == null)
+					loadTexture(tile, textureURL);
+			}
+		};
+	}
+
 	protected boolean isTextureFileExpired(CurtainTextureTile tile, URL textureURL, FileStore fileStore)
 	{
 		if (!WWIO.isFileOutOfDate(textureURL, tile.getLevel().getExpiryTime()))
@@ -433,15 +486,32 @@ public class BasicTiledCurtainLayer extends TiledCurtainLayer
 	}*/
 
 	protected void retrieveRemoteTexture(final CurtainTextureTile tile, DownloadPostProcessor postProcessor)
+	{
+		Retriever retriever = this.createRetriever(tile, postProcessor);
+		if (retriever != null)
+			WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
+	}
+
+	/**
+	 * Create a retriever that downloads the tile's texture.
+	 * 
+	 * @param tile
+	 *            Tile to download
+	 * @param postProcessor
+	 *            Post processor for the retriever; if null, a
+	 *            {@link DownloadPostProcessor} is created
+	 * @return Retriever for the tile, or null if the tile cannot be retrieved
+	 */
+	protected Retriever createRetriever(final CurtainTextureTile tile, RetrievalPostProcessor postProcessor)
 	{
 		if (!this.isNetworkRetrievalEnabled())
 		{
 			this.getLevels().markResourceAbsent(tile);
-			return;
+			return null;
 		}
 
 		if (!WorldWind.getRetrievalService().isAvailable())
-			return;
+			return null;
 
 		java.net.URL url;
 		try
@@ -449,19 +519,19 @@ public class BasicTiledCurtainLayer extends TiledCurtainLayer
 			url = tile.getResourceURL();
 
 			if (url == null)
-				return;
+				return null;
 
 			if (WorldWind.getNetworkStatus().isHostUnavailable(url))
 			{
 				this.getLevels().markResourceAbsent(tile);
-				return;
+				return null;
 			}
 		}
 		catch (java.net.MalformedURLException e)
 		{
 			Logging.logger().log(java.util.logging.Level.SEVERE,
 					Logging.getMessage("layers.TextureLayer.ExceptionCreatingTextureUrl", tile), e);
-			return;
+			return null;
 		}
 
 		Retriever retriever;
@@ -473,7 +543,7 @@ public class BasicTiledCurtainLayer extends TiledCurtainLayer
 		if (retriever == null)
 		{
 			Logging.logger().severe(Logging.getMessage("layers.TextureLayer.UnknownRetrievalProtocol", url.toString()));
-			return;
+			return null;
 		}
 
 		// Apply any overridden timeouts.
@@ -487,7 +557,7 @@ public class BasicTiledCurtainLayer extends TiledCurtainLayer
 		if (srl != null && srl > 0)
 			retriever.setStaleRequestLimit(srl);
 
-		WorldWind.getRetrievalService().runRetriever(retriever, tile.getPriority());
+		return retriever;
 	}
 
 	protected static class DownloadPostProcessor extends AbstractRetrievalPostProcessor
@@ -24,9 +24,10 @@ import gov.nasa.worldwind.util.TileKey;
 import javax.media.opengl.GL2;
 import javax.media.opengl.GLContext;
 
+import au.gov.ga.earthsci.worldwind.common.render.TextureUploader;
+
 import com.jogamp.opengl.util.texture.Texture;
 import com.jogamp.opengl.util.texture.TextureData;
-import com.jogamp.opengl.util.texture.TextureIO;
 
 /**
  * Extension of the {@link CurtainTile} class which contains texture data for
@@ -40,6 +41,7 @@ public class CurtainTextureTile extends CurtainTile
 	private CurtainTextureTile fallbackTile = null; // holds texture to use if own texture not available
 	private boolean hasMipmapData = false;
 	private long updateTime = 0;
+	private double uploadPriority = 0;
 
 	public static synchronized MemoryCache getMemoryCache()
 	{
@@ -120,6 +122,24 @@ public class CurtainTextureTile extends CurtainTile
 		}
 	}
 
+	/**
+	 * @return Priority of this tile's texture upload; see
+	 *         {@link TextureUploader#requestUpload(DrawContext, Object, double, long)}
+	 */
+	public double getUploadPriority()
+	{
+		return uploadPriority;
+	}
+
+	/**
+	 * Set the priority of this tile's texture upload. Tiles that are larger on
+	 * screen should have lower values, so they are uploaded first.
+	 */
+	public void setUploadPriority(double uploadPriority)
+	{
+		this.uploadPriority = uploadPriority;
+	}
+
 	public Texture getTexture(GpuResourceCache tc)
 	{
 		if (tc == null)
@@ -155,6 +175,22 @@ public class CurtainTextureTile extends CurtainTile
 	}
 
 	public void setTexture(GpuResourceCache tc, Texture texture)
+	{
+		setTexture(tc, texture, -1);
+	}
+
+	/**
+	 * Set this tile's texture, specifying the texture's size in the cache.
+	 * 
+	 * @param tc
+	 *            Texture cache
+	 * @param texture
+	 *            Texture
+	 * @param size
+	 *            Size of the texture in bytes, or -1 to use the texture's
+	 *            estimated size
+	 */
+	public void setTexture(GpuResourceCache tc, Texture texture, long size)
 	{
 		if (tc == null)
 		{
@@ -163,7 +199,14 @@ public class CurtainTextureTile extends CurtainTile
 			throw new IllegalStateException(message);
 		}
 
-		tc.put(this.getTileKey(), texture);
+		if (size < 0)
+		{
+			tc.put(this.getTileKey(), texture);
+		}
+		else
+		{
+			tc.put(this.getTileKey(), texture, GpuResourceCache.TEXTURE, size);
+		}
 		this.updateTime = System.currentTimeMillis();
 
 		// No more need for texture data; allow garbage collector and memory cache to reclaim it.
@@ -274,22 +317,35 @@ public class CurtainTextureTile extends CurtainTile
 		}
 
 		Texture t = this.getTexture(dc.getTextureCache());
+		TextureData textureData = this.getTextureData();
 		// Return texture if found and there is no new texture data
-		if (t != null && this.getTextureData() == null)
+		if (t != null && textureData == null)
 		{
 			return t;
 		}
 
-		if (this.getTextureData() == null) // texture not in cache yet texture data is null, can't initialize
+		if (textureData == null) // texture not in cache yet texture data is null, can't initialize
 		{
 			String msg = Logging.getMessage("nullValue.TextureDataIsNull");
 			Logging.logger().severe(msg);
 			throw new IllegalStateException(msg);
 		}
 
+		// Limit the texture bytes uploaded per frame; until it is this tile's turn, the
+		// previous texture (if any) or the fallback tile's texture is used
+		TextureUploader uploader = TextureUploader.getInstance();
+		if (!uploader.requestUpload(dc, this, this.uploadPriority, TextureUploader.getSize(textureData)))
+		{
+			if (t != null)
+			{
+				t.bind(dc.getGL());
+			}
+			return t;
+		}
+
 		try
 		{
-			t = TextureIO.newTexture(this.getTextureData());
+			t = uploader.upload(dc, textureData);
 		}
 		catch (Exception e)
 		{
@@ -298,10 +354,11 @@ public class CurtainTextureTile extends CurtainTile
 			return null;
 		}
 
-		this.setTexture(dc.getTextureCache(), t);
+		this.setTexture(dc.getTextureCache(), t, TextureUploader.getTextureMemorySize(textureData));
 		t.bind(dc.getGL());
 
 		this.setTextureParameters(dc, t);
+		TextureUploader.applyMipmapFilter(dc, t, textureData);
 
 		return t;
 	}
@@ -37,12 +37,23 @@ import java.util.List;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.jogamp.common.nio.Buffers;
 
 /**
  * Defines a path consisting of lat/lon coordinates. Contains functionality for
  * generating vertex geometry for segments within the path.
+ * <p/>
+ * The path is immutable once created. The locations of the subdivided path
+ * for each curtain level are calculated once and stored as arrays, along
+ * with their model coordinates, so segment geometry can be generated without
+ * locking and without recalculating the path locations. Segment geometry is
+ * cached and updated in place, so
+ * {@link #getGeometry(DrawContext, CurtainTile, double, double, int, boolean)}
+ * must only be called on the rendering thread; the other methods can be
+ * called from any thread.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -51,12 +62,30 @@ public class Path
 	protected final NavigableMap<Double, LatLon> positions = new TreeMap<Double, LatLon>();
 	protected Angle length;
 
+	/**
+	 * Percentages along the path of each path position, in ascending order
+	 */
+	protected double[] percents;
+	/**
+	 * Path positions, in the same order as {@link #percents}
+	 */
+	protected LatLon[] locations;
+	/**
+	 * Subdivided path for each curtain level, keyed by the distance (in
+	 * percent) between subdivisions
+	 */
+	protected final ConcurrentMap<Double, Subdivision> levelSubdivisions =
+			new ConcurrentHashMap<Double, Subdivision>();
+
 	protected static final String CACHE_NAME = "CurtainPath";
 	protected static final String CACHE_ID = Path.class.getName();
 
-	protected long updateFrequency = 2000; // milliseconds
-	protected long exaggerationChangeTime = -1;
-	protected double lastVerticalExaggeration = -Double.MAX_VALUE;
+	/**
+	 * Subdivision percentages closer than this are considered equal
+	 */
+	protected static final double EPSILON = 1e-12;
+
+	protected volatile long updateFrequency = 2000; // milliseconds
 
 	public Path(List<LatLon> positions)
 	{
@@ -74,7 +103,7 @@ public class Path
 	/*
 	 * Private; should only be called by constructor, as vertices are cached.
 	 */
-	private synchronized void setPositions(List<LatLon> positions)
+	private void setPositions(List<LatLon> positions)
 	{
 		this.positions.clear();
 		double[] distances = new double[positions.size()]; //last array value is unused, but required for simple second loop
@@ -96,12 +125,22 @@ public class Path
 			this.positions.put(sum / total, positions.get(i));
 			sum += distances[i];
 		}
+
+		this.percents = new double[this.positions.size()];
+		this.locations = new LatLon[this.positions.size()];
+		int i = 0;
+		for (Entry<Double, LatLon> entry : this.positions.entrySet())
+		{
+			this.percents[i] = entry.getKey();
+			this.locations[i] = entry.getValue();
+			i++;
+		}
 	}
 
 	/**
 	 * @return The length of the path, expressed as an angle.
 	 */
-	public synchronized Angle getLength()
+	public Angle getLength()
 	{
 		return length;
 	}
@@ -131,29 +170,31 @@ public class Path
 	 * @return The {@link LatLon} location that lies <code>percent</code>% of
 	 *         the way along the path
 	 */
-	public synchronized LatLon getPercentLatLon(double percent)
+	public LatLon getPercentLatLon(double percent)
 	{
 		if (percent <= 0)
 		{
-			return positions.firstEntry().getValue();
+			return locations[0];
 		}
 		if (percent >= 1)
 		{
-			return positions.lastEntry().getValue();
+			return locations[locations.length - 1];
 		}
-		if (positions.containsKey(percent))
+
+		int index = Arrays.binarySearch(percents, percent);
+		if (index >= 0)
 		{
-			return positions.get(percent);
+			return locations[index];
 		}
 
-		Entry<Double, LatLon> lower = positions.lowerEntry(percent);
-		Entry<Double, LatLon> higher = positions.higherEntry(percent);
-		double p = (percent - lower.getKey()) / (higher.getKey() - lower.getKey());
+		int higher = -index - 1;
+		int lower = higher - 1;
+		double p = (percent - percents[lower]) / (percents[higher] - percents[lower]);
 		//TODO add different interpolation methods
-		return LatLon.interpolateGreatCircle(p, lower.getValue(), higher.getValue());
+		return LatLon.interpolateGreatCircle(p, locations[lower], locations[higher]);
 	}
 
-	public synchronized Vec4 getSegmentCenterPoint(DrawContext dc, Segment segment, double top, double bottom,
+	public Vec4 getSegmentCenterPoint(DrawContext dc, Segment segment, double top, double bottom,
 			boolean followTerrain)
 	{
 		top *= dc.getVerticalExaggeration();
@@ -170,35 +211,67 @@ public class Path
 		return dc.getGlobe().computePointFromPosition(ll, e);
 	}
 
-	public synchronized SegmentGeometry getGeometry(DrawContext dc, CurtainTile tile, double top, double bottom,
+	/**
+	 * Get the vertex geometry for the given tile's segment. The geometry is
+	 * cached, and when it is regenerated its vertex buffers are refilled in
+	 * place; this method must therefore only be called on the rendering
+	 * thread, which is the only user of the returned geometry.
+	 */
+	public SegmentGeometry getGeometry(DrawContext dc, CurtainTile tile, double top, double bottom,
 			int subsegments, boolean followTerrain)
 	{
-		if (lastVerticalExaggeration != dc.getVerticalExaggeration())
-		{
-			exaggerationChangeTime = System.currentTimeMillis();
-			lastVerticalExaggeration = dc.getVerticalExaggeration();
-		}
+		Globe globe = dc.getGlobe();
+		Object globeStateKey = globe.getGlobeStateKey(dc);
+		double verticalExaggeration = dc.getVerticalExaggeration();
 
 		MemoryCache cache = WorldWind.getMemoryCache(CACHE_ID);
 		TileKey tileKey = tile.getTileKey();
 		SegmentGeometry geometry = (SegmentGeometry) cache.getObject(tileKey);
-		if (geometry != null && geometry.getTime() >= System.currentTimeMillis() - this.getUpdateFrequency()
-				&& geometry.getTime() >= exaggerationChangeTime)
+		boolean generated =
+				geometry != null
+						&& geometry.isGeneratedFor(globeStateKey, verticalExaggeration, top, bottom, followTerrain);
+		if (generated
+				&& (!followTerrain || geometry.isElevationsComplete() || geometry.getTime() >= System
+						.currentTimeMillis() - this.getUpdateFrequency()))
 		{
 			return geometry;
 		}
 
 		Segment segment = tile.getSegment();
-		NavigableMap<Double, LatLon> betweenMap = segmentMap(segment, subsegments);
-		int numVertices = betweenMap.size() * 2;
-
-		Globe globe = dc.getGlobe();
+		Subdivision subdivision = getSubdivision(tile, subsegments);
+		int from = subdivision.indexOf(segment.getStart());
+		int to = subdivision.indexAfter(segment.getEnd());
+		int count = to - from;
+
+		//sample the terrain under the segment in bulk
+		double[] elevations = null;
+		boolean elevationsComplete = true;
+		if (followTerrain)
+		{
+			elevations = new double[count];
+			List<LatLon> sampleLocations = Arrays.asList(subdivision.locations).subList(from, to);
+			Sector sector = Sector.boundingSector(sampleLocations);
+			double targetResolution = subdivision.step * length.radians;
+			double resolution = globe.getElevations(sector, sampleLocations, targetResolution, elevations);
+			double bestResolution = globe.getElevationModel().getBestResolution(sector);
+			elevationsComplete = resolution <= Math.max(targetResolution, bestResolution);
+
+			if (generated && Arrays.equals(elevations, geometry.getElevations()))
+			{
+				//the terrain hasn't changed, so the existing vertices are still valid
+				geometry.setElevations(elevations, elevationsComplete);
+				return geometry;
+			}
+		}
 
+		int numVertices = count * 2;
 		FloatBuffer verts, texCoords;
-		if (geometry != null)
+		if (geometry != null && geometry.getVertices().capacity() == numVertices * 3)
 		{
 			verts = geometry.getVertices();
 			texCoords = geometry.getTexCoords();
+			verts.clear();
+			texCoords.clear();
 		}
 		else if (dc.getGLRuntimeCapabilities().isUseVertexBufferObject())
 		{
@@ -213,11 +286,11 @@ public class Path
 		Vec4 refCenter = getSegmentCenterPoint(dc, segment, top, bottom, followTerrain);
 
 		//calculate exaggerated segment top/bottom elevations
-		top *= dc.getVerticalExaggeration();
-		bottom *= dc.getVerticalExaggeration();
-		double height = top - bottom;
-		double t = top - segment.getTop() * height;
-		double b = top - segment.getBottom() * height;
+		double exaggeratedTop = top * verticalExaggeration;
+		double exaggeratedBottom = bottom * verticalExaggeration;
+		double height = exaggeratedTop - exaggeratedBottom;
+		double t = exaggeratedTop - segment.getTop() * height;
+		double b = exaggeratedTop - segment.getBottom() * height;
 
 		//ensure t is greater than b (this can occur if exaggeration is 0)
 		if (t <= b)
@@ -225,30 +298,32 @@ public class Path
 			t = b + 1;
 		}
 
+		//each vertex is the projected surface point, offset along the elevation normal
+		Projection projection = subdivision.getProjection(globe, globeStateKey);
+		double[] points = projection.points;
+		double[] normals = projection.normals;
 		double percentDistance = segment.getHorizontalDelta();
-		for (Entry<Double, LatLon> entry : betweenMap.entrySet())
+		for (int i = 0; i < count; i++)
 		{
-			LatLon ll = entry.getValue();
-
-			double e = 0;
-			if (followTerrain)
-			{
-				e = globe.getElevation(ll.latitude, ll.longitude) * dc.getVerticalExaggeration();
-			}
-
-			Vec4 point1 = globe.computePointFromPosition(ll, t + e);
-			Vec4 point2 = globe.computePointFromPosition(ll, b + e);
-			double percent = (entry.getKey() - segment.getStart()) / percentDistance;
-
-			verts.put((float) (point1.x - refCenter.x)).put((float) (point1.y - refCenter.y))
-					.put((float) (point1.z - refCenter.z));
-			verts.put((float) (point2.x - refCenter.x)).put((float) (point2.y - refCenter.y))
-					.put((float) (point2.z - refCenter.z));
+			int index = from + i;
+			int j = index * 3;
+			double e = elevations != null ? elevations[i] * verticalExaggeration : 0;
+			double top1 = t + e;
+			double bottom1 = b + e;
+			double x = points[j] - refCenter.x, y = points[j + 1] - refCenter.y, z = points[j + 2] - refCenter.z;
+			double nx = normals[j], ny = normals[j + 1], nz = normals[j + 2];
+			double percent = (subdivision.percents[index] - segment.getStart()) / percentDistance;
+			percent = Math.max(0, Math.min(1, percent));
+
+			verts.put((float) (x + nx * top1)).put((float) (y + ny * top1)).put((float) (z + nz * top1));
+			verts.put((float) (x + nx * bottom1)).put((float) (y + ny * bottom1)).put((float) (z + nz * bottom1));
 			texCoords.put((float) percent).put(1f);
 			texCoords.put((float) percent).put(0f);
 		}
+		verts.flip();
+		texCoords.flip();
 
-		if (geometry == null)
+		if (geometry == null || verts != geometry.getVertices())
 		{
 			geometry = new SegmentGeometry(dc, verts, texCoords, refCenter);
 			cache.add(tileKey, geometry, geometry.getSizeInBytes());
@@ -257,19 +332,45 @@ public class Path
 		{
 			geometry.update(dc, refCenter);
 		}
+		geometry.setGeneratedFor(globeStateKey, verticalExaggeration, top, bottom, followTerrain);
+		geometry.setElevations(elevations, elevationsComplete);
 		return geometry;
 	}
 
-	public synchronized Vec4[] getPointsInSegment(DrawContext dc, Segment segment, double top, double bottom,
-			int subsegments, boolean followTerrain)
+	public Vec4[] getPointsInSegment(DrawContext dc, Segment segment, double top, double bottom, int subsegments,
+			boolean followTerrain)
 	{
 		//TODO ?? cache value returned from this method, and if called twice with same input parameters, return cached value ??
 		//TODO create a new function to return some object with a vertex buffer and texture buffer instead of just a Vec4[] array
 
-		NavigableMap<Double, LatLon> betweenMap = segmentMap(segment, subsegments);
+		Subdivision subdivision = createSubdivision(segment, subsegments);
+		return getPointsInSegment(dc, segment, top, bottom, followTerrain, subdivision, 0,
+				subdivision.percents.length);
+	}
+
+	/**
+	 * Calculate the points at the top and bottom of the given tile's segment,
+	 * using the cached subdivided path for the tile's level.
+	 * 
+	 * @see #getPointsInSegment(DrawContext, Segment, double, double, int,
+	 *      boolean)
+	 */
+	public Vec4[] getPointsInSegment(DrawContext dc, CurtainTile tile, double top, double bottom, int subsegments,
+			boolean followTerrain)
+	{
+		Segment segment = tile.getSegment();
+		Subdivision subdivision = getSubdivision(tile, subsegments);
+		return getPointsInSegment(dc, segment, top, bottom, followTerrain, subdivision,
+				subdivision.indexOf(segment.getStart()), subdivision.indexAfter(segment.getEnd()));
+	}
 
+	protected Vec4[] getPointsInSegment(DrawContext dc, Segment segment, double top, double bottom,
+			boolean followTerrain, Subdivision subdivision, int from, int to)
+	{
 		Globe globe = dc.getGlobe();
-		Vec4[] points = new Vec4[betweenMap.size() * 2];
+		int count = to - from;
+		Vec4[] points = new Vec4[count * 2];
+		Projection projection = subdivision.getProjection(globe, globe.getGlobeStateKey(dc));
 
 		//calculate exaggerated segment top/bottom elevations
 		top *= dc.getVerticalExaggeration();
@@ -279,9 +380,10 @@ public class Path
 		double b = top - segment.getBottom() * height;
 
 		//add top points, and add bottom points (add them backwards, so it's a loop)
-		int j = 0, k = betweenMap.size() * 2;
-		for (LatLon ll : betweenMap.values())
+		int j = 0, k = count * 2;
+		for (int i = from; i < to; i++)
 		{
+			LatLon ll = subdivision.locations[i];
 			double e = 0;
 			if (followTerrain)
 			{
@@ -289,60 +391,141 @@ public class Path
 				e = globe.getElevation(ll.latitude, ll.longitude) * dc.getVerticalExaggeration();
 			}
 
-			points[j++] = globe.computePointFromPosition(ll, t + e);
-			points[--k] = globe.computePointFromPosition(ll, b + e);
+			points[j++] = projection.getPoint(i, t + e);
+			points[--k] = projection.getPoint(i, b + e);
 		}
 
 		return points;
 	}
 
-	protected NavigableMap<Double, LatLon> segmentMap(Segment segment, int subsegments)
+	/**
+	 * Get the subdivided path for the given tile's level. The subdivisions are
+	 * evenly spaced, with <code>subsegments</code> subdivisions per tile, and
+	 * include the path positions.
+	 */
+	protected Subdivision getSubdivision(CurtainTile tile, int subsegments)
+	{
+		CurtainLevel level = tile.getLevel();
+		double step = level.getTileWidth() / (double) level.getLevelWidth() / Math.max(1, subsegments);
+		Subdivision subdivision = levelSubdivisions.get(step);
+		if (subdivision == null)
+		{
+			subdivision = createSubdivision(step);
+			Subdivision existing = levelSubdivisions.putIfAbsent(step, subdivision);
+			if (existing != null)
+			{
+				subdivision = existing;
+			}
+		}
+		return subdivision;
+	}
+
+	/**
+	 * Create a subdivision of the whole path, containing samples every
+	 * <code>step</code> percent, the end of the path, and the path positions.
+	 */
+	protected Subdivision createSubdivision(double step)
 	{
-		LatLon start = getPercentLatLon(segment.getStart());
-		LatLon end = getPercentLatLon(segment.getEnd());
+		int count = (int) Math.ceil(1 / step - EPSILON);
+		double[] samples = new double[count + 1];
+		for (int i = 0; i < count; i++)
+		{
+			samples[i] = i * step;
+		}
+		samples[count] = 1;
+		return createSubdivision(samples, step);
+	}
 
-		NavigableMap<Double, LatLon> betweenMap = new TreeMap<Double, LatLon>();
-		//get a sublist of all the points between start and end (non-inclusive)
-		betweenMap.putAll(positions.subMap(segment.getStart(), false, segment.getEnd(), false));
-		//add the start and end points
-		betweenMap.put(segment.getStart(), start);
-		betweenMap.put(segment.getEnd(), end);
+	/**
+	 * Create a subdivision of the given segment, containing the segment's
+	 * start and end, <code>subsegments</code> evenly spaced subdivisions, and
+	 * the path positions within the segment.
+	 */
+	protected Subdivision createSubdivision(Segment segment, int subsegments)
+	{
+		int count = Math.max(1, subsegments);
+		double step = segment.getHorizontalDelta() / count;
+		double[] samples = new double[count + 1];
+		for (int i = 0; i < count; i++)
+		{
+			samples[i] = segment.getStart() + i * step;
+		}
+		samples[count] = segment.getEnd();
+		return createSubdivision(samples, step);
+	}
+
+	/**
+	 * Merge the given ascending sample percentages with the path positions
+	 * between the first and last sample.
+	 */
+	protected Subdivision createSubdivision(double[] samples, double step)
+	{
+		double first = samples[0];
+		double last = samples[samples.length - 1];
+		int vertex = 0;
+		while (vertex < percents.length && percents[vertex] <= first)
+		{
+			vertex++;
+		}
+		int lastVertex = vertex;
+		while (lastVertex < percents.length && percents[lastVertex] < last)
+		{
+			lastVertex++;
+		}
 
-		//insert any subsegment points
-		for (int i = 0; i < subsegments - 1; i++)
+		double[] mergedPercents = new double[samples.length + lastVertex - vertex];
+		LatLon[] mergedLocations = new LatLon[mergedPercents.length];
+		int sample = 0, count = 0;
+		while (sample < samples.length || vertex < lastVertex)
 		{
-			double subsegment = (i + 1) / (double) subsegments;
-			double percent = segment.getStart() + subsegment * segment.getHorizontalDelta();
-			LatLon pos = getPercentLatLon(percent);
-			betweenMap.put(percent, pos);
+			double percent;
+			LatLon location;
+			if (vertex >= lastVertex || (sample < samples.length && samples[sample] <= percents[vertex]))
+			{
+				percent = samples[sample++];
+				location = null;
+			}
+			else
+			{
+				percent = percents[vertex];
+				location = locations[vertex++];
+			}
+
+			if (count > 0 && percent - mergedPercents[count - 1] <= EPSILON)
+			{
+				continue;
+			}
+			mergedPercents[count] = percent;
+			mergedLocations[count] = location != null ? location : getPercentLatLon(percent);
+			count++;
 		}
 
-		return betweenMap;
+		return new Subdivision(Arrays.copyOf(mergedPercents, count), Arrays.copyOf(mergedLocations, count), step);
 	}
 
-	public synchronized Extent getSegmentExtent(DrawContext dc, Segment segment, double top, double bottom,
-			int subsegments, boolean followTerrain)
+	public Extent getSegmentExtent(DrawContext dc, Segment segment, double top, double bottom, int subsegments,
+			boolean followTerrain)
 	{
 		Vec4[] points = getPointsInSegment(dc, segment, top, bottom, subsegments, followTerrain);
 		return Box.computeBoundingBox(Arrays.asList(points));
 	}
 
-	public synchronized Angle getSegmentLength(Segment segment)
+	public Angle getSegmentLength(Segment segment)
 	{
 		return Angle.fromRadians(getSegmentLengthInRadians(segment));
 	}
 
-	public synchronized double getSegmentLengthInRadians(Segment segment)
+	public double getSegmentLengthInRadians(Segment segment)
 	{
 		return segment.getHorizontalDelta() * length.radians;
 	}
 
-	public synchronized Angle getPercentLength(double percent)
+	public Angle getPercentLength(double percent)
 	{
 		return Angle.fromRadians(getPercentLengthInRadians(percent));
 	}
 
-	public synchronized double getPercentLengthInRadians(double percent)
+	public double getPercentLengthInRadians(double percent)
 	{
 		return length.radians * percent;
 	}
@@ -350,7 +533,7 @@ public class Path
 	/**
 	 * @return The sector that bounds the path
 	 */
-	public synchronized Sector getBoundingSector()
+	public Sector getBoundingSector()
 	{
 		if (isEmpty(positions))
 		{
@@ -384,4 +567,106 @@ public class Path
 
 		return new Sector(minLat, maxLat, minLon, maxLon);
 	}
+
+	/**
+	 * Locations along the path at which curtain vertices are generated, in
+	 * ascending order of percentage along the path.
+	 */
+	protected static class Subdivision
+	{
+		public final double[] percents;
+		public final LatLon[] locations;
+		/**
+		 * Distance (in percent) between the evenly spaced subdivisions
+		 */
+		public final double step;
+		private volatile Projection projection;
+
+		public Subdivision(double[] percents, LatLon[] locations, double step)
+		{
+			this.percents = percents;
+			this.locations = locations;
+			this.step = step;
+		}
+
+		/**
+		 * @return Index of the first location at or after the given percent
+		 */
+		public int indexOf(double percent)
+		{
+			int index = Arrays.binarySearch(percents, percent - EPSILON);
+			return index >= 0 ? index : -index - 1;
+		}
+
+		/**
+		 * @return Index after the last location at or before the given percent
+		 */
+		public int indexAfter(double percent)
+		{
+			int index = Arrays.binarySearch(percents, percent + EPSILON);
+			return index >= 0 ? index + 1 : -index - 1;
+		}
+
+		/**
+		 * Get the model coordinates of this subdivision's locations for the
+		 * given globe, which are calculated once per globe state.
+		 */
+		public Projection getProjection(Globe globe, Object globeStateKey)
+		{
+			Projection projection = this.projection;
+			if (projection == null || !projection.globeStateKey.equals(globeStateKey))
+			{
+				projection = new Projection(globe, globeStateKey, locations);
+				this.projection = projection;
+			}
+			return projection;
+		}
+	}
+
+	/**
+	 * Model coordinates of a set of locations for a particular globe. For
+	 * each location, stores the point on the globe at zero elevation, and the
+	 * direction in which the point moves per metre of elevation, so points at
+	 * any elevation can be calculated without reprojecting the location.
+	 */
+	protected static class Projection
+	{
+		/**
+		 * Elevation used to calculate the normals; large enough to be precise
+		 */
+		private static final double NORMAL_ELEVATION = 10000;
+
+		public final Object globeStateKey;
+		public final double[] points;
+		public final double[] normals;
+
+		public Projection(Globe globe, Object globeStateKey, LatLon[] locations)
+		{
+			this.globeStateKey = globeStateKey;
+			this.points = new double[locations.length * 3];
+			this.normals = new double[locations.length * 3];
+			for (int i = 0, j = 0; i < locations.length; i++, j += 3)
+			{
+				Vec4 point = globe.computePointFromPosition(locations[i], 0);
+				Vec4 raised = globe.computePointFromPosition(locations[i], NORMAL_ELEVATION);
+				points[j] = point.x;
+				points[j + 1] = point.y;
+				points[j + 2] = point.z;
+				normals[j] = (raised.x - point.x) / NORMAL_ELEVATION;
+				normals[j + 1] = (raised.y - point.y) / NORMAL_ELEVATION;
+				normals[j + 2] = (raised.z - point.z) / NORMAL_ELEVATION;
+			}
+		}
+
+		/**
+		 * @return The point of the location at the given index, at the given
+		 *         elevation
+		 */
+		public Vec4 getPoint(int index, double elevation)
+		{
+			int j = index * 3;
+			return new Vec4(points[j] + normals[j] * elevation, points[j + 1] + normals[j + 1] * elevation,
+					points[j + 2] + normals[j + 2] * elevation);
+		}
+	}
 }
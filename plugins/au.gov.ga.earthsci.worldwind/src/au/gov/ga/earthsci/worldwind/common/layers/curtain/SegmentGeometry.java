@@ -39,6 +39,14 @@ public class SegmentGeometry implements Renderable
 	private Vec4 referenceCenter;
 	private long time;
 
+	private Object globeStateKey;
+	private double verticalExaggeration;
+	private double top;
+	private double bottom;
+	private boolean followTerrain;
+	private double[] elevations;
+	private boolean elevationsComplete = true;
+
 	protected Object vboCacheKey = new Object();
 
 	public SegmentGeometry(DrawContext dc, FloatBuffer vertices, FloatBuffer texCoords, Vec4 referenceCenter)
@@ -143,6 +151,61 @@ public class SegmentGeometry implements Renderable
 		return 5 * vertexCount * Float.SIZE / 8;
 	}
 
+	/**
+	 * @return Has this geometry been generated with the given parameters?
+	 */
+	public boolean isGeneratedFor(Object globeStateKey, double verticalExaggeration, double top, double bottom,
+			boolean followTerrain)
+	{
+		return this.globeStateKey != null && this.globeStateKey.equals(globeStateKey)
+				&& this.verticalExaggeration == verticalExaggeration && this.top == top && this.bottom == bottom
+				&& this.followTerrain == followTerrain;
+	}
+
+	/**
+	 * Record the parameters this geometry was generated with.
+	 */
+	protected void setGeneratedFor(Object globeStateKey, double verticalExaggeration, double top, double bottom,
+			boolean followTerrain)
+	{
+		this.globeStateKey = globeStateKey;
+		this.verticalExaggeration = verticalExaggeration;
+		this.top = top;
+		this.bottom = bottom;
+		this.followTerrain = followTerrain;
+	}
+
+	/**
+	 * @return The terrain elevations this geometry was generated with, or null
+	 *         if it doesn't follow the terrain
+	 */
+	public double[] getElevations()
+	{
+		return elevations;
+	}
+
+	/**
+	 * @return Were the elevations sampled at the target resolution? If not,
+	 *         the elevations should be resampled once more terrain data is
+	 *         available.
+	 */
+	public boolean isElevationsComplete()
+	{
+		return elevationsComplete;
+	}
+
+	/**
+	 * Set the terrain elevations this geometry was generated with. Also resets
+	 * the time, so the elevations are not resampled until the update
+	 * frequency has elapsed.
+	 */
+	protected void setElevations(double[] elevations, boolean complete)
+	{
+		this.elevations = elevations;
+		this.elevationsComplete = complete;
+		this.time = System.currentTimeMillis();
+	}
+
 	protected void update(DrawContext dc, Vec4 referenceCenter)
 	{
 		this.time = System.currentTimeMillis();
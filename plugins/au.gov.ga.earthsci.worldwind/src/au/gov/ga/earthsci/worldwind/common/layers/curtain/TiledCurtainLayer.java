@@ -37,8 +37,12 @@ import gov.nasa.worldwind.util.WWXML;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.media.opengl.GL2;
 import javax.xml.xpath.XPath;
@@ -46,6 +50,8 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.Bounded;
+import au.gov.ga.earthsci.worldwind.common.render.TextureUploader;
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 
 import com.jogamp.opengl.util.awt.TextRenderer;
@@ -58,6 +64,32 @@ import com.jogamp.opengl.util.awt.TextRenderer;
  */
 public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 {
+	/**
+	 * Default maximum number of tile requests sent per frame
+	 */
+	public static final int DEFAULT_REQUEST_BUDGET = 16;
+	/**
+	 * Default number of columns of tiles prefetched beyond the visible tiles
+	 */
+	public static final int DEFAULT_PREFETCH_COLUMNS = 2;
+	/**
+	 * Per-frame statistic key for the number of tile requests sent
+	 */
+	public static final String REQUEST_STATISTIC =
+			"au.gov.ga.earthsci.worldwind.common.layers.curtain.CurtainTileRequests";
+	/**
+	 * Per-frame statistic key for the number of tiles rendered with a fallback
+	 * texture
+	 */
+	public static final String FALLBACK_STATISTIC =
+			"au.gov.ga.earthsci.worldwind.common.layers.curtain.CurtainFallbackTiles";
+
+	/**
+	 * Minimum change in the view's position along the path (as a percentage)
+	 * that changes the prefetch direction
+	 */
+	protected static final double VIEW_MOVEMENT_THRESHOLD = 1e-6;
+
 	//TODO where should this live
 	protected CurtainTileRenderer renderer = new CurtainTileRenderer();
 
@@ -93,11 +125,33 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 	protected CurtainTextureTile currentResourceTile;
 	protected boolean atMaxResolution = false;
 	protected PriorityBlockingQueue<Runnable> requestQ = new PriorityBlockingQueue<Runnable>(200);
+	protected int fallbackTileCount = 0;
+
+	// Request scheduling
+	protected int requestBudget = DEFAULT_REQUEST_BUDGET;
+	protected int prefetchColumns = DEFAULT_PREFETCH_COLUMNS;
+	protected double lastViewPercent = Double.NaN;
+	protected int viewDirection = 0;
+	protected String requestCountName;
+	protected String fallbackCountName;
+	protected final AtomicLong requestCount = new AtomicLong();
+	protected final AtomicLong deferredRequestCount = new AtomicLong();
+	protected final AtomicLong prefetchCount = new AtomicLong();
 
 	abstract protected void requestTexture(DrawContext dc, CurtainTextureTile tile);
 
 	abstract protected void forceTextureLoad(CurtainTextureTile tile);
 
+	/**
+	 * Prefetch the texture of a tile that is not yet visible, without delaying
+	 * the requests for visible tiles.
+	 * 
+	 * @param tile
+	 *            Tile to prefetch
+	 * @return True if a prefetch request was submitted
+	 */
+	abstract protected boolean prefetchTexture(CurtainTextureTile tile);
+
 	public TiledCurtainLayer(CurtainLevelSet levelSet)
 	{
 		if (levelSet == null)
@@ -110,7 +164,14 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 		this.levels = new CurtainLevelSet(levelSet); // the caller's levelSet may change internally, so we copy it.
 
 		this.setPickEnabled(false); // textures are assumed to be terrain unless specifically indicated otherwise.
+		this.setStatisticNames();
+	}
+
+	protected void setStatisticNames()
+	{
 		this.tileCountName = this.getName() + " Tiles";
+		this.requestCountName = this.getName() + " Tile Requests";
+		this.fallbackCountName = this.getName() + " Fallback Tiles";
 	}
 
 	@Override
@@ -137,7 +198,7 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 	public void setName(String name)
 	{
 		super.setName(name);
-		this.tileCountName = this.getName() + " Tiles";
+		this.setStatisticNames();
 	}
 
 	public Path getPath()
@@ -284,6 +345,68 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 		this.detailHint = detailHint;
 	}
 
+	/**
+	 * @return The maximum number of tile requests sent per frame; requests
+	 *         over the budget are dropped, and requested again in a later
+	 *         frame if still required
+	 */
+	public int getRequestBudget()
+	{
+		return requestBudget;
+	}
+
+	/**
+	 * Set the maximum number of tile requests sent per frame. Values less than
+	 * 1 disable the limit.
+	 */
+	public void setRequestBudget(int requestBudget)
+	{
+		this.requestBudget = requestBudget;
+	}
+
+	/**
+	 * @return The number of columns of tiles beyond the visible tiles that are
+	 *         prefetched, in the direction the view is moving along the path
+	 */
+	public int getPrefetchColumns()
+	{
+		return prefetchColumns;
+	}
+
+	/**
+	 * Set the number of columns of tiles beyond the visible tiles that are
+	 * prefetched. 0 disables prefetching.
+	 */
+	public void setPrefetchColumns(int prefetchColumns)
+	{
+		this.prefetchColumns = prefetchColumns;
+	}
+
+	/**
+	 * @return Total number of tile requests sent
+	 */
+	public long getRequestCount()
+	{
+		return requestCount.get();
+	}
+
+	/**
+	 * @return Total number of tile requests dropped because the request budget
+	 *         was exceeded or the task service was full
+	 */
+	public long getDeferredRequestCount()
+	{
+		return deferredRequestCount.get();
+	}
+
+	/**
+	 * @return Total number of tile prefetch requests submitted
+	 */
+	public long getPrefetchCount()
+	{
+		return prefetchCount.get();
+	}
+
 	protected CurtainLevelSet getLevels()
 	{
 		return levels;
@@ -453,6 +576,7 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 	protected void assembleTiles(DrawContext dc)
 	{
 		this.currentTiles.clear();
+		this.fallbackTileCount = 0;
 
 		for (CurtainTextureTile tile : this.getTopLevels())
 		{
@@ -504,18 +628,11 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 				ancestorResource = this.currentResourceTile;
 				this.currentResourceTile = tile;
 			}
-			else if (!tile.getLevel().isEmpty())
+			else if (!tile.getLevel().isEmpty() && !this.levels.isResourceAbsent(tile))
 			{
-				//                this.addTile(dc, tile);
-				//                return;
-
-				// Issue a request for the parent before descending to the children.
-				//                if (tile.getLevelNumber() < this.levels.getNumLevels())
-				//                {
-				//                    // Request only tiles with data associated at this level
-				//                    if (!this.levels.isResourceAbsent(tile))
-				//                        this.requestTexture(dc, tile);
-				//                }
+				// Issue a request for the parent before descending to the children, so that its texture can be
+				// used as a fallback while the children load.
+				this.requestTexture(dc, tile);
 			}
 
 			CurtainTextureTile[] subTiles = tile.createSubTiles(this.levels.getLevel(tile.getLevelNumber() + 1));
@@ -542,6 +659,18 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 
 		if (tile.isTextureInMemory(dc.getTextureCache()))
 		{
+			if (tile.getTextureData() != null && tile.getTexture(dc.getTextureCache()) == null)
+			{
+				//texture data is waiting to be uploaded (see TextureUploader); until it is, use the
+				//current resource tile's texture
+				tile.setUploadPriority(computeUploadPriority(dc, tile));
+				if (this.currentResourceTile != null
+						&& this.currentResourceTile.getTexture(dc.getTextureCache()) != null)
+				{
+					tile.setFallbackTile(this.currentResourceTile);
+					this.fallbackTileCount++;
+				}
+			}
 			this.addTileToCurrent(tile);
 			return;
 		}
@@ -580,11 +709,134 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 			if (this.currentResourceTile.isTextureInMemory(dc.getTextureCache()))
 			{
 				tile.setFallbackTile(currentResourceTile);
+				this.fallbackTileCount++;
 				this.addTileToCurrent(tile);
 			}
 		}
 	}
 
+	/**
+	 * Calculate the texture upload priority of a tile: the distance from the
+	 * eye in units of the tile's texel size, so tiles that are larger on
+	 * screen are uploaded first.
+	 */
+	protected double computeUploadPriority(DrawContext dc, CurtainTextureTile tile)
+	{
+		Vec4 centerPoint = path.getSegmentCenterPoint(dc, tile.getSegment(), curtainTop, curtainBottom, followTerrain);
+		double distance = dc.getView().getEyePoint().distanceTo3(centerPoint);
+		double texelSize = tile.getLevel().getTexelSize() * centerPoint.getLength3();
+		return TextureUploader.getScreenPriority(distance, texelSize);
+	}
+
+	/**
+	 * Set the request priority of a tile to its distance from the reference
+	 * point; tiles with a lower priority value are requested first.
+	 */
+	protected void updateRequestPriority(DrawContext dc, CurtainTextureTile tile)
+	{
+		Vec4 centroid = path.getSegmentCenterPoint(dc, tile.getSegment(), curtainTop, curtainBottom, followTerrain);
+		Vec4 referencePoint = this.getReferencePoint(dc);
+		if (referencePoint != null)
+		{
+			tile.setPriority(centroid.distanceTo3(referencePoint));
+		}
+	}
+
+	/**
+	 * Prefetch the tiles in the columns beyond the current tiles, for each
+	 * level with current tiles. Tiles are prefetched ahead of the direction
+	 * the view is moving along the path, or on both sides if it hasn't moved.
+	 */
+	protected void prefetchTiles(DrawContext dc)
+	{
+		if (this.prefetchColumns <= 0 || this.currentTiles.isEmpty() || !TilePrefetcher.getInstance().isEnabled())
+		{
+			return;
+		}
+
+		//find the column and row range of the current tiles in each level (min column, max column, min row, max row)
+		Map<Integer, int[]> ranges = new HashMap<Integer, int[]>();
+		double minPercent = 1, maxPercent = 0;
+		for (CurtainTextureTile tile : this.currentTiles)
+		{
+			minPercent = Math.min(minPercent, tile.getSegment().getStart());
+			maxPercent = Math.max(maxPercent, tile.getSegment().getEnd());
+			int[] range = ranges.get(tile.getLevelNumber());
+			if (range == null)
+			{
+				ranges.put(tile.getLevelNumber(),
+						new int[] { tile.getColumn(), tile.getColumn(), tile.getRow(), tile.getRow() });
+			}
+			else
+			{
+				range[0] = Math.min(range[0], tile.getColumn());
+				range[1] = Math.max(range[1], tile.getColumn());
+				range[2] = Math.min(range[2], tile.getRow());
+				range[3] = Math.max(range[3], tile.getRow());
+			}
+		}
+
+		//determine which direction the view is moving along the path
+		double viewPercent = (minPercent + maxPercent) * 0.5;
+		if (!Double.isNaN(this.lastViewPercent))
+		{
+			double delta = viewPercent - this.lastViewPercent;
+			if (Math.abs(delta) > VIEW_MOVEMENT_THRESHOLD)
+			{
+				this.viewDirection = delta > 0 ? 1 : -1;
+			}
+		}
+		this.lastViewPercent = viewPercent;
+
+		for (Entry<Integer, int[]> entry : ranges.entrySet())
+		{
+			//level zero tiles are always created as top level tiles, so don't need prefetching
+			if (entry.getKey() == 0 || this.levels.isLevelEmpty(entry.getKey()))
+			{
+				continue;
+			}
+
+			CurtainLevel level = this.levels.getLevel(entry.getKey());
+			int[] range = entry.getValue();
+			for (int i = 1; i <= this.prefetchColumns; i++)
+			{
+				if (this.viewDirection >= 0)
+				{
+					this.prefetchColumn(dc, level, range[1] + i, range[2], range[3]);
+				}
+				if (this.viewDirection <= 0)
+				{
+					this.prefetchColumn(dc, level, range[0] - i, range[2], range[3]);
+				}
+			}
+		}
+	}
+
+	protected void prefetchColumn(DrawContext dc, CurtainLevel level, int column, int minRow, int maxRow)
+	{
+		if (column < 0 || column >= level.getColumnCount())
+		{
+			return;
+		}
+
+		for (int row = minRow; row <= maxRow; row++)
+		{
+			Segment segment = level.computeSegmentForRowColumn(row, column);
+			CurtainTextureTile tile = this.createCurtainTextureTile(segment, level, row, column);
+			if (CurtainTextureTile.getMemoryCache().getObject(tile.getTileKey()) != null
+					|| this.levels.isResourceAbsent(tile))
+			{
+				continue;
+			}
+
+			this.updateRequestPriority(dc, tile);
+			if (this.prefetchTexture(tile))
+			{
+				this.prefetchCount.incrementAndGet();
+			}
+		}
+	}
+
 	protected void addTileToCurrent(CurtainTextureTile tile)
 	{
 		this.currentTiles.add(tile);
@@ -614,7 +866,7 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 	protected boolean needToSplit(DrawContext dc, CurtainTextureTile tile)
 	{
 		Vec4[] points =
-				path.getPointsInSegment(dc, tile.getSegment(), curtainTop, curtainBottom, subsegments, followTerrain);
+				path.getPointsInSegment(dc, tile, curtainTop, curtainBottom, subsegments, followTerrain);
 		Vec4 centerPoint = path.getSegmentCenterPoint(dc, tile.getSegment(), curtainTop, curtainBottom, followTerrain);
 
 		View view = dc.getView();
@@ -729,11 +981,15 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 				this.checkTextureExpiration(dc, this.currentTiles);
 			}
 
+			this.prefetchTiles(dc);
 			this.currentTiles.clear();
 		}
 
-		this.sendRequests();
+		int requests = this.sendRequests();
 		this.requestQ.clear();
+
+		dc.setPerFrameStatistic(REQUEST_STATISTIC, this.requestCountName, requests);
+		dc.setPerFrameStatistic(FALLBACK_STATISTIC, this.fallbackCountName, this.fallbackTileCount);
 	}
 
 	protected void checkTextureExpiration(DrawContext dc, List<CurtainTextureTile> tiles)
@@ -762,17 +1018,31 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 		gl.glBlendFunc(GL2.GL_ONE, GL2.GL_ONE_MINUS_SRC_ALPHA);
 	}
 
-	protected void sendRequests()
+	/**
+	 * Send the queued requests to the task service, in priority order, up to
+	 * the request budget.
+	 * 
+	 * @return Number of requests sent
+	 */
+	protected int sendRequests()
 	{
+		int sent = 0;
 		Runnable task = this.requestQ.poll();
 		while (task != null)
 		{
-			if (!WorldWind.getTaskService().isFull())
+			if ((this.requestBudget <= 0 || sent < this.requestBudget) && !WorldWind.getTaskService().isFull())
 			{
 				WorldWind.getTaskService().addTask(task);
+				sent++;
+			}
+			else
+			{
+				this.deferredRequestCount.incrementAndGet();
 			}
 			task = this.requestQ.poll();
 		}
+		this.requestCount.addAndGet(sent);
+		return sent;
 	}
 
 	@Override
@@ -958,6 +1228,8 @@ public abstract class TiledCurtainLayer extends AbstractLayer implements Bounded
 		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.CURTAIN_BOTTOM, "CurtainBottom", xpath);
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.FOLLOW_TERRAIN, "FollowTerrain", xpath);
 		WWXML.checkAndSetIntegerParam(domElement, params, AVKeyMore.SUBSEGMENTS, "Subsegments", xpath);
+		WWXML.checkAndSetIntegerParam(domElement, params, AVKeyMore.REQUEST_BUDGET, "RequestBudget", xpath);
+		WWXML.checkAndSetIntegerParam(domElement, params, AVKeyMore.PREFETCH_COLUMNS, "PrefetchColumns", xpath);
 
 		// Curtain path
 		List<LatLon> positions = new ArrayList<LatLon>();
@@ -22,7 +22,6 @@ import gov.nasa.worldwind.avlist.AVListImpl;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.formats.dds.DDSCompressor;
 import gov.nasa.worldwind.formats.dds.DXTCompressionAttributes;
-import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.TextureTile;
 import gov.nasa.worldwind.render.DrawContext;
@@ -50,10 +49,10 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileRequesterDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+import au.gov.ga.earthsci.worldwind.common.util.DDSTextureData;
 import au.gov.ga.earthsci.worldwind.common.util.DDSUncompressor;
 
 import com.jogamp.opengl.util.texture.TextureData;
-import com.jogamp.opengl.util.texture.TextureIO;
 import javax.media.opengl.GLProfile;
 import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 
@@ -156,12 +155,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 
 		currentGlobe = dc.getGlobe();
 
-		Vec4 centroid =
-				getPath().getSegmentCenterPoint(dc, tile.getSegment(), getCurtainTop(), getCurtainBottom(),
-						isFollowTerrain());
-		Vec4 referencePoint = this.getReferencePoint(dc);
-		if (referencePoint != null)
-			tile.setPriority(centroid.distanceTo3(referencePoint));
+		updateRequestPriority(dc, tile);
 
 		//pass request to delegate
 		Runnable task = delegateKit.createRequestTask((DelegatorCurtainTextureTile) tile, this);
@@ -174,6 +168,28 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 		}
 	}
 
+	@Override
+	protected URL findLocalTexture(CurtainTextureTile tile)
+	{
+		validateTileClass(tile);
+		return delegateKit.getLocalTileURL((DelegatorCurtainTextureTile) tile, this, false);
+	}
+
+	@Override
+	protected Runnable createLoadTask(final CurtainTextureTile tile, final URL textureURL)
+	{
+		validateTileClass(tile);
+		return new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				if (CurtainTextureTile.getMemoryCache().getObject(tile.getTileKey()) == null)
+					loadTexture((DelegatorCurtainTextureTile) tile, textureURL);
+			}
+		};
+	}
+
 	protected void validateTileClass(Object tile)
 	{
 		if (!(tile instanceof DelegatorCurtainTextureTile))
@@ -228,7 +244,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 		{
 			//if the file is a DDS file, just read it directly (skip all delegate readers/transformers)
 			if (url.toString().toLowerCase().endsWith("dds"))
-				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), url, isUseMipMaps(), null);
+				return DDSTextureData.newTextureData(GLProfile.get(GLProfile.GL2), url, isUseMipMaps());
 
 			BufferedImage image = readImage(tile, url);
 
@@ -249,7 +265,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 				}
 
 				//return the dds image as TextureData
-				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), WWIO.getInputStreamFromByteBuffer(buffer), isUseMipMaps(), null);
+				return DDSTextureData.newTextureData(GLProfile.get(GLProfile.GL2), buffer, isUseMipMaps());
 			}
 
 			//return the image as TextureData
@@ -283,7 +299,7 @@ public class DelegatorTiledCurtainLayer extends BasicTiledCurtainLayer implement
 			if (url.toString().toLowerCase().endsWith(".dds"))
 			{
 				ByteBuffer buffer = WWIO.readURLContentToBuffer(url, false);
-				image = DDSUncompressor.readDxt3(buffer);
+				image = DDSUncompressor.readDDS(buffer);
 			}
 			else
 			{
@@ -0,0 +1,656 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.data;
+
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.avlist.AVListImpl;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+/**
+ * Stores the attribute values of a set of features in columns, one per
+ * attribute, instead of one {@link AVList} per feature. Integer, long and
+ * double attributes are stored in primitive arrays; all other values (such as
+ * strings, booleans and dates) are dictionary encoded, so that each distinct
+ * value is only stored once.
+ * <p/>
+ * Features are appended in a single streaming pass using {@link #add(AVList)},
+ * which returns the index of the feature. The attribute values of a feature
+ * can then be read by index using {@link #getValue(int, String)}, or through
+ * the lightweight {@link AVList} view returned by {@link #getRecord(int)}.
+ * <p/>
+ * Values are returned as the same type that was added; if an attribute
+ * contains values of different types, its column is converted to a dictionary
+ * column.
+ * <p/>
+ * This class is thread safe.
+ */
+public class ColumnarAttributeStore
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final Map<String, Column> columns = new LinkedHashMap<String, Column>();
+	private int size = 0;
+
+	/**
+	 * Append the attribute values of a feature to this store.
+	 * 
+	 * @param values
+	 *            Attribute values of the feature
+	 * @return Index of the feature
+	 */
+	public synchronized int add(AVList values)
+	{
+		int index = addRecord();
+		for (Entry<String, Object> entry : values.getEntries())
+		{
+			setValue(index, entry.getKey(), entry.getValue());
+		}
+		return index;
+	}
+
+	/**
+	 * Append an empty feature to this store. Its values can be set using
+	 * {@link #setValue(int, String, Object)}.
+	 * 
+	 * @return Index of the feature
+	 */
+	public synchronized int addRecord()
+	{
+		return size++;
+	}
+
+	/**
+	 * Set an attribute value of a feature.
+	 * 
+	 * @param index
+	 *            Index of the feature
+	 * @param name
+	 *            Attribute name
+	 * @param value
+	 *            Attribute value
+	 */
+	public synchronized void setValue(int index, String name, Object value)
+	{
+		checkIndex(index);
+		Column column = columns.get(name);
+		if (column == null)
+		{
+			column = createColumn(value);
+			columns.put(name, column);
+		}
+		else if (!column.accepts(value))
+		{
+			column = new DictionaryColumn(column);
+			columns.put(name, column);
+		}
+		column.set(index, value);
+	}
+
+	/**
+	 * Get an attribute value of a feature.
+	 * 
+	 * @param index
+	 *            Index of the feature
+	 * @param name
+	 *            Attribute name
+	 * @return Attribute value, or null if the feature has no value for the
+	 *         attribute
+	 */
+	public synchronized Object getValue(int index, String name)
+	{
+		checkIndex(index);
+		Column column = columns.get(name);
+		return column == null ? null : column.get(index);
+	}
+
+	/**
+	 * @return True if any feature in this store has the given attribute
+	 */
+	public synchronized boolean hasAttribute(String name)
+	{
+		return columns.containsKey(name);
+	}
+
+	/**
+	 * @return The attribute names in this store, in the order they were first
+	 *         added
+	 */
+	public synchronized List<String> getAttributeNames()
+	{
+		return Collections.unmodifiableList(new ArrayList<String>(columns.keySet()));
+	}
+
+	/**
+	 * @return Number of features in this store
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get a lightweight {@link AVList} view of the attribute values of a
+	 * feature. The view reads the attribute values from this store; any values
+	 * set on the view are stored in the view only.
+	 * 
+	 * @param index
+	 *            Index of the feature
+	 * @return {@link AVList} view of the feature's attribute values
+	 */
+	public AVList getRecord(int index)
+	{
+		synchronized (this)
+		{
+			checkIndex(index);
+		}
+		return new Record(this, index);
+	}
+
+	/**
+	 * Release any unused capacity in the columns. Should be called once all
+	 * features have been added.
+	 */
+	public synchronized void trimToSize()
+	{
+		for (Column column : columns.values())
+		{
+			column.trimToSize(size);
+		}
+	}
+
+	/**
+	 * @return Approximate number of bytes used by the column data
+	 */
+	public synchronized long getMemorySize()
+	{
+		long memorySize = 0;
+		for (Column column : columns.values())
+		{
+			memorySize += column.getMemorySize();
+		}
+		return memorySize;
+	}
+
+	/**
+	 * Remove all features from this store.
+	 */
+	public synchronized void clear()
+	{
+		columns.clear();
+		size = 0;
+	}
+
+	private void checkIndex(int index)
+	{
+		if (index < 0 || index >= size)
+		{
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+		}
+	}
+
+	private static Column createColumn(Object value)
+	{
+		if (value instanceof Integer)
+		{
+			return new IntColumn();
+		}
+		if (value instanceof Long)
+		{
+			return new LongColumn();
+		}
+		if (value instanceof Double)
+		{
+			return new DoubleColumn();
+		}
+		return new DictionaryColumn();
+	}
+
+	private static int newCapacity(int capacity, int index)
+	{
+		int newCapacity = Math.max(INITIAL_CAPACITY, capacity);
+		while (newCapacity <= index)
+		{
+			newCapacity *= 2;
+		}
+		return newCapacity;
+	}
+
+	/**
+	 * Storage of the values of a single attribute.
+	 */
+	private static abstract class Column
+	{
+		/**
+		 * @return Can the given value be stored in this column?
+		 */
+		public abstract boolean accepts(Object value);
+
+		public abstract void set(int index, Object value);
+
+		public abstract Object get(int index);
+
+		/**
+		 * @return The number of rows that have storage allocated
+		 */
+		public abstract int length();
+
+		public abstract void trimToSize(int size);
+
+		public abstract long getMemorySize();
+	}
+
+	/**
+	 * Base class for columns storing primitives, which use a {@link BitSet}
+	 * to record which rows have a value.
+	 */
+	private static abstract class PrimitiveColumn extends Column
+	{
+		protected final BitSet present = new BitSet();
+
+		@Override
+		public void set(int index, Object value)
+		{
+			if (value == null)
+			{
+				present.clear(index);
+				return;
+			}
+			ensureCapacity(index);
+			setPrimitive(index, value);
+			present.set(index);
+		}
+
+		@Override
+		public Object get(int index)
+		{
+			if (!present.get(index))
+			{
+				return null;
+			}
+			return getPrimitive(index);
+		}
+
+		@Override
+		public long getMemorySize()
+		{
+			return present.size() / 8;
+		}
+
+		protected abstract void ensureCapacity(int index);
+
+		protected abstract void setPrimitive(int index, Object value);
+
+		protected abstract Object getPrimitive(int index);
+	}
+
+	private static class IntColumn extends PrimitiveColumn
+	{
+		private int[] values = new int[0];
+
+		@Override
+		public boolean accepts(Object value)
+		{
+			return value == null || value instanceof Integer;
+		}
+
+		@Override
+		protected void ensureCapacity(int index)
+		{
+			if (index >= values.length)
+			{
+				int[] newValues = new int[newCapacity(values.length, index)];
+				System.arraycopy(values, 0, newValues, 0, values.length);
+				values = newValues;
+			}
+		}
+
+		@Override
+		protected void setPrimitive(int index, Object value)
+		{
+			values[index] = (Integer) value;
+		}
+
+		@Override
+		protected Object getPrimitive(int index)
+		{
+			return values[index];
+		}
+
+		@Override
+		public int length()
+		{
+			return values.length;
+		}
+
+		@Override
+		public void trimToSize(int size)
+		{
+			if (values.length > size)
+			{
+				int[] newValues = new int[size];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+		}
+
+		@Override
+		public long getMemorySize()
+		{
+			return super.getMemorySize() + values.length * 4L;
+		}
+	}
+
+	private static class LongColumn extends PrimitiveColumn
+	{
+		private long[] values = new long[0];
+
+		@Override
+		public boolean accepts(Object value)
+		{
+			return value == null || value instanceof Long;
+		}
+
+		@Override
+		protected void ensureCapacity(int index)
+		{
+			if (index >= values.length)
+			{
+				long[] newValues = new long[newCapacity(values.length, index)];
+				System.arraycopy(values, 0, newValues, 0, values.length);
+				values = newValues;
+			}
+		}
+
+		@Override
+		protected void setPrimitive(int index, Object value)
+		{
+			values[index] = (Long) value;
+		}
+
+		@Override
+		protected Object getPrimitive(int index)
+		{
+			return values[index];
+		}
+
+		@Override
+		public int length()
+		{
+			return values.length;
+		}
+
+		@Override
+		public void trimToSize(int size)
+		{
+			if (values.length > size)
+			{
+				long[] newValues = new long[size];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+		}
+
+		@Override
+		public long getMemorySize()
+		{
+			return super.getMemorySize() + values.length * 8L;
+		}
+	}
+
+	private static class DoubleColumn extends PrimitiveColumn
+	{
+		private double[] values = new double[0];
+
+		@Override
+		public boolean accepts(Object value)
+		{
+			return value == null || value instanceof Double;
+		}
+
+		@Override
+		protected void ensureCapacity(int index)
+		{
+			if (index >= values.length)
+			{
+				double[] newValues = new double[newCapacity(values.length, index)];
+				System.arraycopy(values, 0, newValues, 0, values.length);
+				values = newValues;
+			}
+		}
+
+		@Override
+		protected void setPrimitive(int index, Object value)
+		{
+			values[index] = (Double) value;
+		}
+
+		@Override
+		protected Object getPrimitive(int index)
+		{
+			return values[index];
+		}
+
+		@Override
+		public int length()
+		{
+			return values.length;
+		}
+
+		@Override
+		public void trimToSize(int size)
+		{
+			if (values.length > size)
+			{
+				double[] newValues = new double[size];
+				System.arraycopy(values, 0, newValues, 0, size);
+				values = newValues;
+			}
+		}
+
+		@Override
+		public long getMemorySize()
+		{
+			return super.getMemorySize() + values.length * 8L;
+		}
+	}
+
+	/**
+	 * Column that stores an integer code per row, which indexes into a
+	 * dictionary of the distinct values. A code of 0 means no value.
+	 */
+	private static class DictionaryColumn extends Column
+	{
+		private final List<Object> dictionary = new ArrayList<Object>();
+		private final Map<Object, Integer> codes = new HashMap<Object, Integer>();
+		private int[] rows = new int[0];
+
+		public DictionaryColumn()
+		{
+		}
+
+		/**
+		 * Create a dictionary column containing the values of another column.
+		 */
+		public DictionaryColumn(Column column)
+		{
+			int length = column.length();
+			for (int i = 0; i < length; i++)
+			{
+				Object value = column.get(i);
+				if (value != null)
+				{
+					set(i, value);
+				}
+			}
+		}
+
+		@Override
+		public boolean accepts(Object value)
+		{
+			return true;
+		}
+
+		@Override
+		public void set(int index, Object value)
+		{
+			if (value == null)
+			{
+				if (index < rows.length)
+				{
+					rows[index] = 0;
+				}
+				return;
+			}
+			if (index >= rows.length)
+			{
+				int[] newRows = new int[newCapacity(rows.length, index)];
+				System.arraycopy(rows, 0, newRows, 0, rows.length);
+				rows = newRows;
+			}
+			Integer code = codes.get(value);
+			if (code == null)
+			{
+				dictionary.add(value);
+				code = dictionary.size();
+				codes.put(value, code);
+			}
+			rows[index] = code;
+		}
+
+		@Override
+		public Object get(int index)
+		{
+			if (index >= rows.length || rows[index] == 0)
+			{
+				return null;
+			}
+			return dictionary.get(rows[index] - 1);
+		}
+
+		@Override
+		public int length()
+		{
+			return rows.length;
+		}
+
+		@Override
+		public void trimToSize(int size)
+		{
+			if (rows.length > size)
+			{
+				int[] newRows = new int[size];
+				System.arraycopy(rows, 0, newRows, 0, size);
+				rows = newRows;
+			}
+		}
+
+		@Override
+		public long getMemorySize()
+		{
+			return rows.length * 4L + dictionary.size() * 8L;
+		}
+	}
+
+	/**
+	 * {@link AVList} view of a single feature in a store. Values set on the
+	 * view itself take precedence over the values in the store.
+	 */
+	protected static class Record extends AVListImpl
+	{
+		private final ColumnarAttributeStore store;
+		private final int index;
+
+		public Record(ColumnarAttributeStore store, int index)
+		{
+			this.store = store;
+			this.index = index;
+		}
+
+		public ColumnarAttributeStore getStore()
+		{
+			return store;
+		}
+
+		public int getIndex()
+		{
+			return index;
+		}
+
+		@Override
+		public Object getValue(String key)
+		{
+			if (super.hasKey(key))
+			{
+				return super.getValue(key);
+			}
+			return store.getValue(index, key);
+		}
+
+		@Override
+		public boolean hasKey(String key)
+		{
+			return super.hasKey(key) || store.hasAttribute(key);
+		}
+
+		@Override
+		public Set<Entry<String, Object>> getEntries()
+		{
+			Map<String, Object> values = new LinkedHashMap<String, Object>();
+			for (String name : store.getAttributeNames())
+			{
+				values.put(name, store.getValue(index, name));
+			}
+			for (Entry<String, Object> entry : super.getEntries())
+			{
+				values.put(entry.getKey(), entry.getValue());
+			}
+			Set<Entry<String, Object>> entries = new HashSet<Entry<String, Object>>();
+			for (Entry<String, Object> entry : values.entrySet())
+			{
+				entries.add(new AbstractMap.SimpleImmutableEntry<String, Object>(entry));
+			}
+			return entries;
+		}
+
+		@Override
+		public AVList getValues()
+		{
+			AVList values = new AVListImpl();
+			for (Entry<String, Object> entry : getEntries())
+			{
+				values.setValue(entry.getKey(), entry.getValue());
+			}
+			return values;
+		}
+
+		@Override
+		public AVList copy()
+		{
+			return getValues();
+		}
+	}
+}
@@ -24,6 +24,7 @@ import gov.nasa.worldwind.util.TileKey;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -34,8 +35,13 @@ import java.util.Set;
 
 import javax.xml.xpath.XPath;
 
+import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer.PixelTransformerHelper;
+import au.gov.ga.earthsci.worldwind.common.util.BufferedImagePool;
+import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
+
 /**
  * Abstract generic implementation of the {@link IDelegateKit} interface. Stores
  * the delegate objects for each of the delegate types, and forward the delegate
@@ -160,6 +166,39 @@ public abstract class AbstractDelegateKit<TILE extends IDelegatorTile, BOUNDS, L
 		return context;
 	}
 
+	/**
+	 * Create a string that identifies the image processing performed by this
+	 * kit. It contains the definitions of the reader and transformer
+	 * delegates, in order, and any extra XML they save to the layer element,
+	 * such as a color map. Two kits with the same processing definition
+	 * produce the same images for a tile.
+	 * 
+	 * @return Processing definition of this kit
+	 */
+	public String getProcessingDefinition()
+	{
+		Document document = WWXML.createDocumentBuilder(false).newDocument();
+		Element layerElement = document.createElement("Layer");
+		document.appendChild(layerElement);
+
+		StringBuilder sb = new StringBuilder();
+		for (ITileReaderDelegate reader : readerDelegates)
+		{
+			sb.append(reader.toDefinition(layerElement)).append(';');
+		}
+		sb.append('|');
+		for (IImageTransformerDelegate transformer : transformerDelegates)
+		{
+			sb.append(transformer.toDefinition(layerElement)).append(';');
+		}
+		sb.append('|');
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		XMLUtil.saveDocumentToFormattedStream(document, baos);
+		sb.append(baos.toString());
+		return sb.toString();
+	}
+
 	/* ********************
 	 * Setters and adders *
 	 ******************** */
@@ -210,12 +249,55 @@ public abstract class AbstractDelegateKit<TILE extends IDelegatorTile, BOUNDS, L
 	 * Delegate Interface functions *
 	 ****************************** */
 
+	/**
+	 * {@inheritDoc}
+	 * <p/>
+	 * Consecutive {@link IPixelTransformerDelegate}s are fused into a single
+	 * pass over the image. Intermediate images created by the fused passes and
+	 * by {@link IPooledImageTransformerDelegate}s are acquired from, and
+	 * released back to, the {@link TileProcessingPipeline}'s image pool.
+	 */
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
 	{
-		for (IImageTransformerDelegate transformer : transformerDelegates)
+		BufferedImagePool pool = TileProcessingPipeline.getInstance().getImagePool();
+		BufferedImage pooled = null;
+		int count = transformerDelegates.size();
+		for (int i = 0; i < count && image != null;)
 		{
-			image = transformer.transformImage(image, tile);
+			BufferedImage transformed;
+			boolean fromPool = false;
+			if (transformerDelegates.get(i) instanceof IPixelTransformerDelegate)
+			{
+				List<IPixelTransformerDelegate> fused = new ArrayList<IPixelTransformerDelegate>();
+				while (i < count && transformerDelegates.get(i) instanceof IPixelTransformerDelegate)
+				{
+					fused.add((IPixelTransformerDelegate) transformerDelegates.get(i++));
+				}
+				transformed = PixelTransformerHelper.transform(image, fused, pool);
+				fromPool = true;
+			}
+			else if (transformerDelegates.get(i) instanceof IPooledImageTransformerDelegate)
+			{
+				IPooledImageTransformerDelegate delegate = (IPooledImageTransformerDelegate) transformerDelegates.get(i++);
+				transformed = delegate.transformImage(image, tile, pool);
+				fromPool = true;
+			}
+			else
+			{
+				transformed = transformerDelegates.get(i++).transformImage(image, tile);
+			}
+
+			if (transformed != image)
+			{
+				//the previous pooled image has been consumed by this stage, so it can be reused
+				if (image == pooled)
+				{
+					pool.release(pooled);
+				}
+				pooled = fromPool ? transformed : null;
+			}
+			image = transformed;
 		}
 		return image;
 	}
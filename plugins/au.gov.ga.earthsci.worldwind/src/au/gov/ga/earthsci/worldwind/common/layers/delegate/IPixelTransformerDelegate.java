@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * {@link IImageTransformerDelegate} that transforms each pixel of an image
+ * independently of all other pixels. Consecutive pixel transformers in a
+ * delegate kit are fused into a single pass over the image (see
+ * {@link au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer.PixelTransformerHelper}
+ * ).
+ */
+public interface IPixelTransformerDelegate extends IImageTransformerDelegate
+{
+	/**
+	 * Transform a single pixel.
+	 * 
+	 * @param argb
+	 *            Non-premultiplied ARGB pixel to transform
+	 * @return Transformed non-premultiplied ARGB pixel
+	 */
+	int transformPixel(int argb);
+
+	/**
+	 * @return The {@link BufferedImage} type of the images created by this
+	 *         transformer
+	 */
+	int getTransformedImageType();
+}
@@ -0,0 +1,43 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate;
+
+import java.awt.image.BufferedImage;
+
+import au.gov.ga.earthsci.worldwind.common.util.BufferedImagePool;
+
+/**
+ * {@link IImageTransformerDelegate} that can acquire the images it creates
+ * from a {@link BufferedImagePool}. When used in a delegate kit, the images
+ * returned are released back to the {@link TileProcessingPipeline}'s pool once
+ * they have been consumed by the next transformer.
+ */
+public interface IPooledImageTransformerDelegate extends IImageTransformerDelegate
+{
+	/**
+	 * Transform an image, acquiring the transformed image from the given pool.
+	 * 
+	 * @param image
+	 *            Image to transform (not modified)
+	 * @param tile
+	 *            Tile associated with this image
+	 * @param pool
+	 *            Pool from which to acquire the transformed image
+	 * @return Transformed image, or <code>image</code> if no transformation
+	 *         was required
+	 */
+	BufferedImage transformImage(BufferedImage image, IDelegatorTile tile, BufferedImagePool pool);
+}
@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.cache.BasicMemoryCache;
+import gov.nasa.worldwind.cache.MemoryCache;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.TileKey;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import au.gov.ga.earthsci.worldwind.common.render.TextureUploader;
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+
+import com.jogamp.opengl.util.texture.TextureData;
+
+/**
+ * Process-wide memory cache of decoded and transformed tile
+ * {@link TextureData}, shared by all delegator layers.
+ * <p/>
+ * Texture data is keyed by a layer configuration key (which should change if
+ * anything that affects the tile images, such as the reader and transformer
+ * delegates, changes), the tile key, and a version (normally the last modified
+ * time of the tile's file). This allows a layer that is disabled and
+ * re-enabled, or another layer with the same configuration, to reuse texture
+ * data without re-reading and re-transforming the tile images.
+ * <p/>
+ * The cache is a {@link BasicMemoryCache} registered with the World Wind
+ * memory cache set, sized by the {@link AVKeyMore#TEXTURE_DATA_CACHE_SIZE}
+ * configuration value. Hit, miss and eviction counts are recorded.
+ */
+public class TextureDataCache
+{
+	public static final long DEFAULT_CACHE_SIZE = 150000000L;
+	protected static final String CACHE_NAME = "Texture Data";
+	protected static final String CACHE_ID = TextureDataCache.class.getName();
+
+	private static TextureDataCache instance;
+
+	/**
+	 * @return The shared texture data cache
+	 */
+	public static synchronized TextureDataCache getInstance()
+	{
+		if (instance == null)
+		{
+			long size = Configuration.getLongValue(AVKeyMore.TEXTURE_DATA_CACHE_SIZE, DEFAULT_CACHE_SIZE);
+			instance = new TextureDataCache(size);
+		}
+		return instance;
+	}
+
+	private final MemoryCache cache;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * Create a new texture data cache. The cache is registered with the World
+	 * Wind memory cache set.
+	 * 
+	 * @param capacity
+	 *            Maximum size of the cache, in bytes
+	 */
+	public TextureDataCache(long capacity)
+	{
+		cache = new BasicMemoryCache((long) (0.85 * capacity), capacity);
+		cache.setName(CACHE_NAME);
+		cache.addCacheListener(new MemoryCache.CacheListener()
+		{
+			@Override
+			public void entryRemoved(Object key, Object clientObject)
+			{
+				evictions.incrementAndGet();
+			}
+
+			@Override
+			public void removalException(Throwable t, Object key, Object clientObject)
+			{
+				Logging.logger().log(Level.FINE, "Exception removing texture data from cache", t);
+			}
+		});
+		if (!WorldWind.getMemoryCacheSet().containsCache(CACHE_ID))
+		{
+			WorldWind.getMemoryCacheSet().addCache(CACHE_ID, cache);
+		}
+	}
+
+	/**
+	 * Get cached texture data.
+	 * 
+	 * @param configKey
+	 *            Layer configuration key
+	 * @param tileKey
+	 *            Key of the tile
+	 * @param version
+	 *            Version of the tile's source data
+	 * @return Cached texture data, or <code>null</code> if no matching texture
+	 *         data is cached
+	 */
+	public TextureData get(String configKey, TileKey tileKey, long version)
+	{
+		TextureData textureData = (TextureData) cache.getObject(new Key(configKey, tileKey, version));
+		if (textureData != null)
+		{
+			hits.incrementAndGet();
+		}
+		else
+		{
+			misses.incrementAndGet();
+		}
+		return textureData;
+	}
+
+	/**
+	 * Add texture data to the cache.
+	 * 
+	 * @param configKey
+	 *            Layer configuration key
+	 * @param tileKey
+	 *            Key of the tile
+	 * @param version
+	 *            Version of the tile's source data
+	 * @param textureData
+	 *            Texture data to cache
+	 * @see TextureUploader#getSize(TextureData)
+	 */
+	public void put(String configKey, TileKey tileKey, long version, TextureData textureData)
+	{
+		long size = TextureUploader.getSize(textureData);
+		if (size > 0 && size <= cache.getCapacity())
+		{
+			cache.add(new Key(configKey, tileKey, version), textureData, size);
+		}
+	}
+
+	/**
+	 * Remove all texture data from the cache.
+	 */
+	public void clear()
+	{
+		cache.clear();
+	}
+
+	/**
+	 * @return Number of cache lookups that found texture data
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return Number of cache lookups that didn't find texture data
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @return Number of entries removed from the cache
+	 */
+	public long getEvictionCount()
+	{
+		return evictions.get();
+	}
+
+	/**
+	 * @return Ratio of cache lookups that found texture data (0 if there have
+	 *         been no lookups)
+	 */
+	public double getHitRate()
+	{
+		long h = hits.get();
+		long total = h + misses.get();
+		return total == 0 ? 0 : h / (double) total;
+	}
+
+	/**
+	 * @return Number of bytes currently used by the cache
+	 */
+	public long getUsedCapacity()
+	{
+		return cache.getUsedCapacity();
+	}
+
+	/**
+	 * @return Maximum number of bytes used by the cache
+	 */
+	public long getCapacity()
+	{
+		return cache.getCapacity();
+	}
+
+	/**
+	 * Key of a single cache entry.
+	 */
+	protected static class Key
+	{
+		private final String configKey;
+		private final TileKey tileKey;
+		private final long version;
+		private final int hashCode;
+
+		public Key(String configKey, TileKey tileKey, long version)
+		{
+			this.configKey = configKey;
+			this.tileKey = tileKey;
+			this.version = version;
+
+			int result = configKey != null ? configKey.hashCode() : 0;
+			result = 31 * result + (tileKey != null ? tileKey.hashCode() : 0);
+			result = 31 * result + (int) (version ^ (version >>> 32));
+			this.hashCode = result;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hashCode == other.hashCode && version == other.version
+					&& (configKey == null ? other.configKey == null : configKey.equals(other.configKey))
+					&& (tileKey == null ? other.tileKey == null : tileKey.equals(other.tileKey));
+		}
+	}
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import au.gov.ga.earthsci.worldwind.common.util.BufferedImagePool;
+import au.gov.ga.earthsci.worldwind.common.util.DaemonThreadFactory;
+import au.gov.ga.earthsci.worldwind.common.util.ParallelUtil;
+
+/**
+ * Bounded executor used to run the CPU intensive stages of tile loading (the
+ * {@link ITileReaderDelegate}s and {@link IImageTransformerDelegate}s of an
+ * {@link IDelegateKit}, and texture data creation).
+ * <p/>
+ * Tiles are requested by many retrieval threads at once; running their
+ * processing on this pool limits the number of tiles being decoded and
+ * transformed concurrently to the number of processors. The number of tiles
+ * waiting for the pool is also bounded; when the queue is full the requesting
+ * thread blocks until a tile has been processed, which throttles the retrieval
+ * threads instead of queueing an unbounded number of decoded images in memory.
+ * <p/>
+ * The pipeline also provides a {@link BufferedImagePool} for reusing the
+ * intermediate images created between transformer stages.
+ */
+public class TileProcessingPipeline
+{
+	private static TileProcessingPipeline instance;
+
+	/**
+	 * @return The shared tile processing pipeline
+	 */
+	public static synchronized TileProcessingPipeline getInstance()
+	{
+		if (instance == null)
+		{
+			int threads = ParallelUtil.getThreadCount();
+			instance = new TileProcessingPipeline(threads, threads * 2);
+		}
+		return instance;
+	}
+
+	private final ThreadPoolExecutor executor;
+	private final Semaphore permits;
+	private final BufferedImagePool imagePool;
+	private final ThreadLocal<Boolean> isWorker = new ThreadLocal<Boolean>();
+
+	/**
+	 * Create a new tile processing pipeline.
+	 * 
+	 * @param threads
+	 *            Number of threads processing tiles
+	 * @param queueCapacity
+	 *            Maximum number of tiles waiting to be processed
+	 */
+	public TileProcessingPipeline(int threads, int queueCapacity)
+	{
+		executor =
+				new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+						new ThreadFactory()
+				{
+					@Override
+					public Thread newThread(final Runnable r)
+					{
+						Thread thread = DaemonThreadFactory.newThread(new Runnable()
+						{
+							@Override
+							public void run()
+							{
+								isWorker.set(Boolean.TRUE);
+								r.run();
+							}
+						}, "Tile Processor");
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+		//the executor's queue is unbounded; the permits bound the running and queued tasks
+		permits = new Semaphore(threads + queueCapacity, true);
+		imagePool = new BufferedImagePool(threads);
+	}
+
+	/**
+	 * @return Pool used for the intermediate images created while processing
+	 *         tiles
+	 */
+	public BufferedImagePool getImagePool()
+	{
+		return imagePool;
+	}
+
+	/**
+	 * Run the given tile processing task on the pipeline, and wait for its
+	 * result. If the pipeline's queue is full, blocks until there is space
+	 * for the task. If called from a pipeline thread, the task is run on the
+	 * calling thread.
+	 * 
+	 * @param task
+	 *            Task to run
+	 * @return Result of the task
+	 * @throws Exception
+	 *             If the task throws an exception, or the calling thread is
+	 *             interrupted while waiting
+	 */
+	public <V> V process(Callable<V> task) throws Exception
+	{
+		if (isWorker.get() != null)
+		{
+			return task.call();
+		}
+
+		permits.acquire();
+		FutureTask<V> future = new FutureTask<V>(task)
+		{
+			@Override
+			protected void done()
+			{
+				//called once the task has completed or been cancelled
+				permits.release();
+			}
+		};
+		try
+		{
+			executor.execute(future);
+		}
+		catch (RejectedExecutionException e)
+		{
+			permits.release();
+			throw e;
+		}
+
+		try
+		{
+			return future.get();
+		}
+		catch (InterruptedException e)
+		{
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw e;
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception)
+			{
+				throw (Exception) cause;
+			}
+			if (cause instanceof Error)
+			{
+				throw (Error) cause;
+			}
+			throw e;
+		}
+	}
+}
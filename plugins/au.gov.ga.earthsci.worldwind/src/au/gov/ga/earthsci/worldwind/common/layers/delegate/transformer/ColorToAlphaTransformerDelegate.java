@@ -27,6 +27,7 @@ import org.w3c.dom.Element;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IImageTransformerDelegate;
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.IPixelTransformerDelegate;
 
 /**
  * Implementation of {@link IImageTransformerDelegate} which applies a
@@ -48,7 +49,7 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IImageTransformerDele
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class ColorToAlphaTransformerDelegate implements IImageTransformerDelegate
+public class ColorToAlphaTransformerDelegate implements IPixelTransformerDelegate
 {
 	private final static String DEFINITION_STRING = "ColorToAlphaTransformer";
 
@@ -103,21 +104,19 @@ public class ColorToAlphaTransformerDelegate implements IImageTransformerDelegat
 		if (image == null)
 			return null;
 
-		BufferedImage dst =
-				new BufferedImage(image.getWidth(), image.getHeight(),
-						BufferedImage.TYPE_INT_ARGB_PRE);
+		return PixelTransformerHelper.transform(image, this);
+	}
 
-		for (int y = 0; y < image.getHeight(); y++)
-		{
-			for (int x = 0; x < image.getWidth(); x++)
-			{
-				int rgb = image.getRGB(x, y);
-				rgb = colorToAlpha(rgb, color);
-				dst.setRGB(x, y, rgb);
-			}
-		}
+	@Override
+	public int transformPixel(int argb)
+	{
+		return colorToAlpha(argb, color);
+	}
 
-		return dst;
+	@Override
+	public int getTransformedImageType()
+	{
+		return BufferedImage.TYPE_INT_ARGB_PRE;
 	}
 
 	/**
@@ -0,0 +1,840 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+import au.gov.ga.earthsci.worldwind.common.util.BufferedImagePool;
+import au.gov.ga.earthsci.worldwind.common.util.ParallelUtil;
+
+/**
+ * Image resampling kernels that operate directly on the <code>int[]</code> or
+ * <code>byte[]</code> data banks of an image, instead of rendering the image
+ * with {@link Graphics2D#drawImage}.
+ * <p/>
+ * Supports nearest neighbour and bilinear resizing, and box filtered 2x2
+ * downsampling (as used for generating mipmaps). The output is identical to
+ * that of {@link Graphics2D#drawImage(java.awt.Image, int, int, int, int, java.awt.image.ImageObserver)}
+ * into a new image of the same type: the source coordinates are stepped using
+ * the same fixed point arithmetic as Java2D's software loops, and images with
+ * non-premultiplied alpha are interpolated in premultiplied space.
+ * <p/>
+ * Large images are processed in parallel, a range of rows per thread (see
+ * {@link ParallelUtil}). Destination buffers can be reused between calls.
+ */
+public class ImageResampler
+{
+	/**
+	 * Interpolation used when resizing.
+	 */
+	public static enum Interpolation
+	{
+		NEAREST_NEIGHBOR,
+		BILINEAR
+	}
+
+	/**
+	 * Minimum number of destination pixels processed by each parallel chunk
+	 */
+	private static final int MIN_PIXELS_PER_CHUNK = 1 << 16;
+
+	private static final long FIXED_ONE = 1L << 32;
+	private static final long FIXED_HALF = 1L << 31;
+
+	/**
+	 * Fixed point reciprocals used to unpremultiply, equivalent to Java2D's
+	 * <code>div8table</code>
+	 */
+	private static final long[] DIV8_INC = new long[256];
+
+	static
+	{
+		for (int a = 1; a < 256; a++)
+		{
+			DIV8_INC[a] = ((255L << 24) + a / 2) / a;
+		}
+	}
+
+	private static final ThreadLocal<int[]> intScratch = new ThreadLocal<int[]>();
+	private static final ThreadLocal<byte[]> byteScratch = new ThreadLocal<byte[]>();
+
+	/**
+	 * Is the given image's raster laid out in a way that can be resampled
+	 * directly by this class? Other images must be resized using
+	 * {@link Graphics2D}.
+	 * 
+	 * @param image
+	 *            Image to test
+	 * @return True if the image can be resampled directly
+	 */
+	public static boolean isSupported(BufferedImage image)
+	{
+		int channels = getChannels(image.getType());
+		if (channels == 0)
+		{
+			return false;
+		}
+
+		WritableRaster raster = image.getRaster();
+		if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0)
+		{
+			return false;
+		}
+		DataBuffer buffer = raster.getDataBuffer();
+		if (buffer.getNumBanks() != 1 || buffer.getOffset() != 0)
+		{
+			return false;
+		}
+
+		int width = image.getWidth();
+		SampleModel sampleModel = raster.getSampleModel();
+		if (buffer instanceof DataBufferInt && sampleModel instanceof SinglePixelPackedSampleModel)
+		{
+			return ((SinglePixelPackedSampleModel) sampleModel).getScanlineStride() == width
+					&& buffer.getSize() == width * image.getHeight();
+		}
+		if (buffer instanceof DataBufferByte && sampleModel instanceof ComponentSampleModel)
+		{
+			ComponentSampleModel componentSampleModel = (ComponentSampleModel) sampleModel;
+			return componentSampleModel.getPixelStride() == channels
+					&& componentSampleModel.getScanlineStride() == width * channels
+					&& buffer.getSize() == width * image.getHeight() * channels;
+		}
+		return false;
+	}
+
+	/**
+	 * Resize an image. Images that aren't supported by the direct kernels (see
+	 * {@link #isSupported(BufferedImage)}) are resized using {@link Graphics2D}
+	 * .
+	 * 
+	 * @param image
+	 *            Image to resize (not modified)
+	 * @param width
+	 *            Width of the resized image
+	 * @param height
+	 *            Height of the resized image
+	 * @param interpolation
+	 *            Interpolation to use
+	 * @param pool
+	 *            Pool from which to acquire the destination image (can be
+	 *            <code>null</code>)
+	 * @return New resized image, of the same type as the source image
+	 */
+	public static BufferedImage resize(BufferedImage image, int width, int height, Interpolation interpolation,
+			BufferedImagePool pool)
+	{
+		if (!isSupported(image))
+		{
+			return resizeGraphics(image, width, height, interpolation);
+		}
+
+		int type = image.getType();
+		BufferedImage dst = pool != null ? pool.acquire(width, height, type) : new BufferedImage(width, height, type);
+		Axis xAxis = new Axis(image.getWidth(), width, interpolation, isTranslucent(type), image.getWidth(),
+				image.getHeight());
+		Axis yAxis = new Axis(image.getHeight(), height, interpolation, isTranslucent(type), image.getWidth(),
+				image.getHeight());
+		resample(image, dst, xAxis, yAxis, interpolation == Interpolation.BILINEAR);
+		return dst;
+	}
+
+	/**
+	 * Downsample an image to half its width and height, using a 2x2 box
+	 * filter. For images with even dimensions, this gives the same result as
+	 * resizing the image to half size with bilinear interpolation.
+	 * 
+	 * @param image
+	 *            Image to downsample (not modified)
+	 * @param pool
+	 *            Pool from which to acquire the destination image (can be
+	 *            <code>null</code>)
+	 * @return New image of half the size of the source image (rounded down,
+	 *         minimum 1)
+	 */
+	public static BufferedImage downsample(BufferedImage image, BufferedImagePool pool)
+	{
+		int width = Math.max(1, image.getWidth() / 2);
+		int height = Math.max(1, image.getHeight() / 2);
+		if (!isSupported(image))
+		{
+			return resizeGraphics(image, width, height, Interpolation.BILINEAR);
+		}
+
+		int type = image.getType();
+		BufferedImage dst = pool != null ? pool.acquire(width, height, type) : new BufferedImage(width, height, type);
+		resample(image, dst, Axis.box(image.getWidth(), width), Axis.box(image.getHeight(), height), true);
+		return dst;
+	}
+
+	/**
+	 * Resize an image stored as packed 32-bit pixels (each of the four 8-bit
+	 * components is interpolated independently, so pixels with an alpha
+	 * component should be premultiplied).
+	 * 
+	 * @param src
+	 *            Source pixels
+	 * @param srcWidth
+	 *            Source image width
+	 * @param srcHeight
+	 *            Source image height
+	 * @param dst
+	 *            Array to store the resized pixels in; if <code>null</code> or
+	 *            too small, a new array is allocated
+	 * @param dstWidth
+	 *            Destination image width
+	 * @param dstHeight
+	 *            Destination image height
+	 * @param interpolation
+	 *            Interpolation to use
+	 * @return The destination array
+	 */
+	public static int[] resize(int[] src, int srcWidth, int srcHeight, int[] dst, int dstWidth, int dstHeight,
+			Interpolation interpolation)
+	{
+		if (dst == null || dst.length < dstWidth * dstHeight)
+		{
+			dst = new int[dstWidth * dstHeight];
+		}
+		Axis xAxis = new Axis(srcWidth, dstWidth, interpolation, false, srcWidth, srcHeight);
+		Axis yAxis = new Axis(srcHeight, dstHeight, interpolation, false, srcWidth, srcHeight);
+		resample(src, srcWidth, dst, dstWidth, xAxis, yAxis, interpolation == Interpolation.BILINEAR);
+		return dst;
+	}
+
+	/**
+	 * Resize an image stored as interleaved 8-bit components (such as RGB or
+	 * grayscale). Each component is interpolated independently, so pixels with
+	 * an alpha component should be premultiplied.
+	 * 
+	 * @param src
+	 *            Source components
+	 * @param srcWidth
+	 *            Source image width
+	 * @param srcHeight
+	 *            Source image height
+	 * @param dst
+	 *            Array to store the resized components in; if
+	 *            <code>null</code> or too small, a new array is allocated
+	 * @param dstWidth
+	 *            Destination image width
+	 * @param dstHeight
+	 *            Destination image height
+	 * @param channels
+	 *            Number of components per pixel
+	 * @param interpolation
+	 *            Interpolation to use
+	 * @return The destination array
+	 */
+	public static byte[] resize(byte[] src, int srcWidth, int srcHeight, byte[] dst, int dstWidth, int dstHeight,
+			int channels, Interpolation interpolation)
+	{
+		if (dst == null || dst.length < dstWidth * dstHeight * channels)
+		{
+			dst = new byte[dstWidth * dstHeight * channels];
+		}
+		Axis xAxis = new Axis(srcWidth, dstWidth, interpolation, false, srcWidth, srcHeight);
+		Axis yAxis = new Axis(srcHeight, dstHeight, interpolation, false, srcWidth, srcHeight);
+		resample(src, srcWidth, dst, dstWidth, channels, xAxis, yAxis, interpolation == Interpolation.BILINEAR);
+		return dst;
+	}
+
+	/**
+	 * Downsample an image stored as packed 32-bit pixels to half its width and
+	 * height using a 2x2 box filter.
+	 * 
+	 * @param src
+	 *            Source pixels
+	 * @param srcWidth
+	 *            Source image width
+	 * @param srcHeight
+	 *            Source image height
+	 * @param dst
+	 *            Array to store the downsampled pixels in; if
+	 *            <code>null</code> or too small, a new array is allocated
+	 * @return The destination array
+	 */
+	public static int[] downsample(int[] src, int srcWidth, int srcHeight, int[] dst)
+	{
+		int dstWidth = Math.max(1, srcWidth / 2);
+		int dstHeight = Math.max(1, srcHeight / 2);
+		if (dst == null || dst.length < dstWidth * dstHeight)
+		{
+			dst = new int[dstWidth * dstHeight];
+		}
+		resample(src, srcWidth, dst, dstWidth, Axis.box(srcWidth, dstWidth), Axis.box(srcHeight, dstHeight), true);
+		return dst;
+	}
+
+	/**
+	 * Downsample an image stored as interleaved 8-bit components to half its
+	 * width and height using a 2x2 box filter.
+	 * 
+	 * @param src
+	 *            Source components
+	 * @param srcWidth
+	 *            Source image width
+	 * @param srcHeight
+	 *            Source image height
+	 * @param dst
+	 *            Array to store the downsampled components in; if
+	 *            <code>null</code> or too small, a new array is allocated
+	 * @param channels
+	 *            Number of components per pixel
+	 * @return The destination array
+	 */
+	public static byte[] downsample(byte[] src, int srcWidth, int srcHeight, byte[] dst, int channels)
+	{
+		int dstWidth = Math.max(1, srcWidth / 2);
+		int dstHeight = Math.max(1, srcHeight / 2);
+		if (dst == null || dst.length < dstWidth * dstHeight * channels)
+		{
+			dst = new byte[dstWidth * dstHeight * channels];
+		}
+		resample(src, srcWidth, dst, dstWidth, channels, Axis.box(srcWidth, dstWidth),
+				Axis.box(srcHeight, dstHeight), true);
+		return dst;
+	}
+
+	/**
+	 * Resize an image by drawing it with {@link Graphics2D}; used for image
+	 * types not supported by the direct kernels.
+	 */
+	protected static BufferedImage resizeGraphics(BufferedImage image, int width, int height,
+			Interpolation interpolation)
+	{
+		BufferedImage resized = new BufferedImage(width, height, image.getType());
+		Graphics2D g = resized.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+				interpolation == Interpolation.BILINEAR ? RenderingHints.VALUE_INTERPOLATION_BILINEAR
+						: RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+		g.drawImage(image, 0, 0, width, height, null);
+		g.dispose();
+		return resized;
+	}
+
+	/**
+	 * @return Number of 8-bit components per pixel for the image types
+	 *         supported by the direct kernels (packed int types return 4), or
+	 *         0 if the type is not supported
+	 */
+	protected static int getChannels(int type)
+	{
+		switch (type)
+		{
+		case BufferedImage.TYPE_INT_RGB:
+		case BufferedImage.TYPE_INT_BGR:
+		case BufferedImage.TYPE_INT_ARGB:
+		case BufferedImage.TYPE_INT_ARGB_PRE:
+		case BufferedImage.TYPE_4BYTE_ABGR:
+		case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+			return 4;
+		case BufferedImage.TYPE_3BYTE_BGR:
+			return 3;
+		case BufferedImage.TYPE_BYTE_GRAY:
+			return 1;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @return Does the image type have an alpha component?
+	 */
+	protected static boolean isTranslucent(int type)
+	{
+		return type == BufferedImage.TYPE_INT_ARGB || type == BufferedImage.TYPE_INT_ARGB_PRE
+				|| type == BufferedImage.TYPE_4BYTE_ABGR || type == BufferedImage.TYPE_4BYTE_ABGR_PRE;
+	}
+
+	protected static void resample(BufferedImage image, BufferedImage dst, Axis xAxis, Axis yAxis, boolean bilinear)
+	{
+		int type = image.getType();
+		int srcWidth = image.getWidth();
+		int srcHeight = image.getHeight();
+		int dstWidth = dst.getWidth();
+		int dstHeight = dst.getHeight();
+		DataBuffer srcBuffer = image.getRaster().getDataBuffer();
+		DataBuffer dstBuffer = dst.getRaster().getDataBuffer();
+
+		if (srcBuffer instanceof DataBufferInt)
+		{
+			int[] src = ((DataBufferInt) srcBuffer).getData();
+			int[] out = ((DataBufferInt) dstBuffer).getData();
+			if (type == BufferedImage.TYPE_INT_ARGB)
+			{
+				//interpolate in premultiplied space, as Java2D does
+				int[] scratch = intScratch.get();
+				if (scratch == null || scratch.length < src.length)
+				{
+					scratch = new int[src.length];
+					intScratch.set(scratch);
+				}
+				premultiply(src, scratch, src.length);
+				resample(scratch, srcWidth, out, dstWidth, xAxis, yAxis, bilinear);
+				unpremultiply(out, dstWidth * dstHeight);
+			}
+			else
+			{
+				resample(src, srcWidth, out, dstWidth, xAxis, yAxis, bilinear);
+			}
+		}
+		else
+		{
+			int channels = getChannels(type);
+			byte[] src = ((DataBufferByte) srcBuffer).getData();
+			byte[] out = ((DataBufferByte) dstBuffer).getData();
+			if (type == BufferedImage.TYPE_4BYTE_ABGR)
+			{
+				byte[] scratch = byteScratch.get();
+				if (scratch == null || scratch.length < src.length)
+				{
+					scratch = new byte[src.length];
+					byteScratch.set(scratch);
+				}
+				premultiply(src, scratch, srcWidth * srcHeight);
+				resample(scratch, srcWidth, out, dstWidth, channels, xAxis, yAxis, bilinear);
+				unpremultiply(out, dstWidth * dstHeight);
+			}
+			else
+			{
+				resample(src, srcWidth, out, dstWidth, channels, xAxis, yAxis, bilinear);
+			}
+		}
+	}
+
+	protected static void resample(final int[] src, final int srcWidth, final int[] dst, final int dstWidth,
+			final Axis xAxis, final Axis yAxis, final boolean bilinear)
+	{
+		ParallelUtil.forRange(yAxis.length, rowsPerChunk(dstWidth), new ParallelUtil.RangeTask()
+		{
+			@Override
+			public void run(int start, int end)
+			{
+				if (!bilinear)
+				{
+					int[] x0 = xAxis.index0;
+					for (int y = start; y < end; y++)
+					{
+						int dstOffset = y * dstWidth;
+						if (y > start && yAxis.index0[y] == yAxis.index0[y - 1])
+						{
+							//same source row as the previous destination row
+							System.arraycopy(dst, dstOffset - dstWidth, dst, dstOffset, dstWidth);
+							continue;
+						}
+						int row = yAxis.index0[y] * srcWidth;
+						for (int x = 0; x < dstWidth; x++)
+						{
+							dst[dstOffset + x] = src[row + x0[x]];
+						}
+					}
+					return;
+				}
+
+				RowCache cache = new RowCache(dstWidth * 4)
+				{
+					@Override
+					protected void fill(int row, int[] values)
+					{
+						int[] x0 = xAxis.index0;
+						int[] x1 = xAxis.index1;
+						int[] xf = xAxis.fraction;
+						int offset = row * srcWidth;
+						for (int x = 0, i = 0; x < dstWidth; x++)
+						{
+							int p0 = src[offset + x0[x]];
+							int p1 = src[offset + x1[x]];
+							int f = xf[x];
+							for (int shift = 24; shift >= 0; shift -= 8)
+							{
+								int c0 = (p0 >>> shift) & 0xff;
+								int c1 = (p1 >>> shift) & 0xff;
+								values[i++] = (c0 << 8) + (c1 - c0) * f;
+							}
+						}
+					}
+				};
+				for (int y = start; y < end; y++)
+				{
+					cache.prepare(yAxis.index0[y], yAxis.index1[y]);
+					int[] top = cache.top;
+					int[] bottom = cache.bottom;
+					int yf = yAxis.fraction[y];
+					int dstOffset = y * dstWidth;
+					for (int x = 0, i = 0; x < dstWidth; x++, i += 4)
+					{
+						dst[dstOffset + x] =
+								(interpolate(top[i], bottom[i], yf) << 24)
+										| (interpolate(top[i + 1], bottom[i + 1], yf) << 16)
+										| (interpolate(top[i + 2], bottom[i + 2], yf) << 8)
+										| interpolate(top[i + 3], bottom[i + 3], yf);
+					}
+				}
+			}
+		});
+	}
+
+	protected static void resample(final byte[] src, final int srcWidth, final byte[] dst, final int dstWidth,
+			final int channels, final Axis xAxis, final Axis yAxis, final boolean bilinear)
+	{
+		final int srcStride = srcWidth * channels;
+		final int dstStride = dstWidth * channels;
+		ParallelUtil.forRange(yAxis.length, rowsPerChunk(dstWidth), new ParallelUtil.RangeTask()
+		{
+			@Override
+			public void run(int start, int end)
+			{
+				if (!bilinear)
+				{
+					int[] x0 = xAxis.index0;
+					for (int y = start; y < end; y++)
+					{
+						int dstOffset = y * dstStride;
+						if (y > start && yAxis.index0[y] == yAxis.index0[y - 1])
+						{
+							System.arraycopy(dst, dstOffset - dstStride, dst, dstOffset, dstStride);
+							continue;
+						}
+						int row = yAxis.index0[y] * srcStride;
+						for (int x = 0, d = dstOffset; x < dstWidth; x++)
+						{
+							int s = row + x0[x] * channels;
+							for (int c = 0; c < channels; c++)
+							{
+								dst[d++] = src[s + c];
+							}
+						}
+					}
+					return;
+				}
+
+				RowCache cache = new RowCache(dstStride)
+				{
+					@Override
+					protected void fill(int row, int[] values)
+					{
+						int[] x0 = xAxis.index0;
+						int[] x1 = xAxis.index1;
+						int[] xf = xAxis.fraction;
+						int offset = row * srcStride;
+						for (int x = 0, i = 0; x < dstWidth; x++)
+						{
+							int s0 = offset + x0[x] * channels;
+							int s1 = offset + x1[x] * channels;
+							int f = xf[x];
+							for (int c = 0; c < channels; c++)
+							{
+								int c0 = src[s0 + c] & 0xff;
+								int c1 = src[s1 + c] & 0xff;
+								values[i++] = (c0 << 8) + (c1 - c0) * f;
+							}
+						}
+					}
+				};
+				for (int y = start; y < end; y++)
+				{
+					cache.prepare(yAxis.index0[y], yAxis.index1[y]);
+					int[] top = cache.top;
+					int[] bottom = cache.bottom;
+					int yf = yAxis.fraction[y];
+					int dstOffset = y * dstStride;
+					for (int i = 0; i < dstStride; i++)
+					{
+						dst[dstOffset + i] = (byte) interpolate(top[i], bottom[i], yf);
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Vertically interpolate between two horizontally interpolated 8-bit
+	 * components (each with 8 fractional bits), using the same rounding as
+	 * Java2D's bilinear loop.
+	 */
+	private static int interpolate(int top, int bottom, int yf)
+	{
+		return ((bottom - top) * yf + (top << 8) + 0x8000) >> 16;
+	}
+
+	private static int rowsPerChunk(int width)
+	{
+		return Math.max(1, MIN_PIXELS_PER_CHUNK / Math.max(1, width));
+	}
+
+	private static int mul8(int a, int b)
+	{
+		return (int) (((long) a * b * 0x10101 + (1 << 23)) >>> 24);
+	}
+
+	private static int div8(int value, int a)
+	{
+		return value >= a ? 0xff : (int) ((value * DIV8_INC[a] + (1 << 23)) >>> 24);
+	}
+
+	private static void premultiply(int[] src, int[] dst, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			int argb = src[i];
+			int a = argb >>> 24;
+			if (a == 0)
+			{
+				argb = 0;
+			}
+			else if (a < 0xff)
+			{
+				argb =
+						(a << 24) | (mul8(a, (argb >> 16) & 0xff) << 16) | (mul8(a, (argb >> 8) & 0xff) << 8)
+								| mul8(a, argb & 0xff);
+			}
+			dst[i] = argb;
+		}
+	}
+
+	private static void unpremultiply(int[] pixels, int count)
+	{
+		for (int i = 0; i < count; i++)
+		{
+			int argb = pixels[i];
+			int a = argb >>> 24;
+			if (a == 0)
+			{
+				pixels[i] = 0;
+			}
+			else if (a < 0xff)
+			{
+				pixels[i] =
+						(a << 24) | (div8((argb >> 16) & 0xff, a) << 16) | (div8((argb >> 8) & 0xff, a) << 8)
+								| div8(argb & 0xff, a);
+			}
+		}
+	}
+
+	/**
+	 * Premultiply 4-byte ABGR components (alpha first).
+	 */
+	private static void premultiply(byte[] src, byte[] dst, int pixels)
+	{
+		for (int i = 0, o = 0; i < pixels; i++, o += 4)
+		{
+			int a = src[o] & 0xff;
+			if (a == 0)
+			{
+				dst[o] = dst[o + 1] = dst[o + 2] = dst[o + 3] = 0;
+			}
+			else
+			{
+				dst[o] = (byte) a;
+				for (int c = 1; c < 4; c++)
+				{
+					dst[o + c] = a < 0xff ? (byte) mul8(a, src[o + c] & 0xff) : src[o + c];
+				}
+			}
+		}
+	}
+
+	private static void unpremultiply(byte[] components, int pixels)
+	{
+		for (int i = 0, o = 0; i < pixels; i++, o += 4)
+		{
+			int a = components[o] & 0xff;
+			if (a == 0)
+			{
+				components[o + 1] = components[o + 2] = components[o + 3] = 0;
+			}
+			else if (a < 0xff)
+			{
+				for (int c = 1; c < 4; c++)
+				{
+					components[o + c] = (byte) div8(components[o + c] & 0xff, a);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Cache of the two most recently used horizontally interpolated source
+	 * rows. When upsampling, consecutive destination rows interpolate between
+	 * the same pair of source rows, so each source row is only interpolated
+	 * horizontally once per chunk.
+	 */
+	protected static abstract class RowCache
+	{
+		private final int[][] rows;
+		private final int[] sourceRows = { -1, -1 };
+		public int[] top;
+		public int[] bottom;
+
+		public RowCache(int length)
+		{
+			rows = new int[2][length];
+		}
+
+		/**
+		 * Set {@link #top} and {@link #bottom} to the interpolated values of
+		 * the given source rows.
+		 */
+		public void prepare(int row0, int row1)
+		{
+			top = get(row0, -1);
+			bottom = row1 == row0 ? top : get(row1, row0);
+		}
+
+		private int[] get(int row, int keep)
+		{
+			for (int i = 0; i < 2; i++)
+			{
+				if (sourceRows[i] == row)
+				{
+					return rows[i];
+				}
+			}
+			int slot = sourceRows[0] == keep ? 1 : 0;
+			fill(row, rows[slot]);
+			sourceRows[slot] = row;
+			return rows[slot];
+		}
+
+		/**
+		 * Horizontally interpolate a source row into the given array.
+		 */
+		protected abstract void fill(int row, int[] values);
+	}
+
+	/**
+	 * Precalculated mapping from destination to source pixels along one axis
+	 * of an image.
+	 */
+	protected static class Axis
+	{
+		public final int length;
+		/**
+		 * First source pixel for each destination pixel (the only source
+		 * pixel when using nearest neighbour interpolation)
+		 */
+		public final int[] index0;
+		/**
+		 * Second source pixel for each destination pixel (bilinear only)
+		 */
+		public final int[] index1;
+		/**
+		 * Weight of the second source pixel, from 0 to 255 (bilinear only)
+		 */
+		public final int[] fraction;
+
+		/**
+		 * Calculate the source pixels for resizing from srcLength to
+		 * dstLength. Java2D uses different fixed point precision for opaque
+		 * nearest neighbour scaling (ScaledBlit) and transformed drawing
+		 * (TransformHelper), which can select different source pixels when a
+		 * destination pixel center falls exactly on a source pixel edge.
+		 */
+		public Axis(int srcLength, int dstLength, Interpolation interpolation, boolean translucent, int srcWidth,
+				int srcHeight)
+		{
+			this.length = dstLength;
+			index0 = new int[dstLength];
+			double inverseScale = 1.0 / ((double) dstLength / srcLength);
+
+			if (interpolation == Interpolation.NEAREST_NEIGHBOR)
+			{
+				index1 = null;
+				fraction = null;
+				if (translucent)
+				{
+					long step = (long) (inverseScale * FIXED_ONE);
+					long position = (long) (0.5 * inverseScale * FIXED_ONE);
+					for (int i = 0; i < dstLength; i++, position += step)
+					{
+						index0[i] = clamp((int) (position >> 32), srcLength);
+					}
+				}
+				else
+				{
+					//precision is limited by the larger of the source dimensions
+					int shift = 0;
+					int bits = srcWidth | srcHeight;
+					while ((bits <<= 1) > 0)
+					{
+						shift++;
+					}
+					long one = 1L << shift;
+					long step = (long) Math.floor(one * inverseScale);
+					long position = (long) Math.ceil(0.5 * inverseScale * one - 0.5);
+					for (int i = 0; i < dstLength; i++, position += step)
+					{
+						index0[i] = clamp((int) (position >> shift), srcLength);
+					}
+				}
+				return;
+			}
+
+			index1 = new int[dstLength];
+			fraction = new int[dstLength];
+			long step = (long) (inverseScale * FIXED_ONE);
+			long position = (long) (0.5 * inverseScale * FIXED_ONE) - FIXED_HALF;
+			for (int i = 0; i < dstLength; i++, position += step)
+			{
+				int whole = (int) (position >> 32);
+				index0[i] = clamp(whole, srcLength);
+				index1[i] = clamp(whole + 1, srcLength);
+				fraction[i] = (int) (position >>> 24) & 0xff;
+			}
+		}
+
+		private Axis(int length, int[] index0, int[] index1, int[] fraction)
+		{
+			this.length = length;
+			this.index0 = index0;
+			this.index1 = index1;
+			this.fraction = fraction;
+		}
+
+		/**
+		 * Create an axis that averages pairs of source pixels (a 2 pixel box
+		 * filter).
+		 */
+		public static Axis box(int srcLength, int dstLength)
+		{
+			int[] index0 = new int[dstLength];
+			int[] index1 = new int[dstLength];
+			int[] fraction = new int[dstLength];
+			for (int i = 0; i < dstLength; i++)
+			{
+				index0[i] = clamp(i * 2, srcLength);
+				index1[i] = clamp(i * 2 + 1, srcLength);
+				fraction[i] = 0x80;
+			}
+			return new Axis(dstLength, index0, index1, fraction);
+		}
+
+		private static int clamp(int index, int length)
+		{
+			return index < 0 ? 0 : index >= length ? length - 1 : index;
+		}
+	}
+}
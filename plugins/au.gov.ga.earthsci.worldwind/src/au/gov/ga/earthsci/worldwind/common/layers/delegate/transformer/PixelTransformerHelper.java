@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Collections;
+import java.util.List;
+
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.IPixelTransformerDelegate;
+import au.gov.ga.earthsci.worldwind.common.util.BufferedImagePool;
+
+/**
+ * Helper class that applies a chain of {@link IPixelTransformerDelegate}s to an
+ * image in a single pass over the image raster.
+ */
+public class PixelTransformerHelper
+{
+	/**
+	 * Apply a single pixel transformer to an image.
+	 * 
+	 * @param image
+	 *            Image to transform
+	 * @param transformer
+	 *            Transformer to apply
+	 * @return New transformed image
+	 */
+	public static BufferedImage transform(BufferedImage image, IPixelTransformerDelegate transformer)
+	{
+		return transform(image, Collections.singletonList(transformer), null);
+	}
+
+	/**
+	 * Apply a chain of pixel transformers to an image, in order. The source
+	 * pixels are read in bulk, each pixel is passed through the whole chain,
+	 * and the result is written to an image of the type required by the last
+	 * transformer in the chain.
+	 * 
+	 * @param image
+	 *            Image to transform (not modified)
+	 * @param transformers
+	 *            Transformers to apply
+	 * @param pool
+	 *            Pool from which to acquire the destination image (can be
+	 *            <code>null</code>)
+	 * @return New transformed image
+	 */
+	public static BufferedImage transform(BufferedImage image, List<? extends IPixelTransformerDelegate> transformers,
+			BufferedImagePool pool)
+	{
+		int width = image.getWidth();
+		int height = image.getHeight();
+		int type = transformers.get(transformers.size() - 1).getTransformedImageType();
+		BufferedImage dst =
+				pool != null ? pool.acquire(width, height, type) : new BufferedImage(width, height, type);
+
+		IPixelTransformerDelegate[] chain = transformers.toArray(new IPixelTransformerDelegate[transformers.size()]);
+		if (type == BufferedImage.TYPE_INT_ARGB)
+		{
+			//non-premultiplied ARGB pixels can be read and transformed in place in the destination raster
+			int[] pixels = ((DataBufferInt) dst.getRaster().getDataBuffer()).getData();
+			image.getRGB(0, 0, width, height, pixels, 0, width);
+			for (int i = 0; i < pixels.length; i++)
+			{
+				pixels[i] = transformPixel(pixels[i], chain);
+			}
+		}
+		else
+		{
+			//other types require conversion by the colour model, so transform a row at a time
+			int[] row = new int[width];
+			for (int y = 0; y < height; y++)
+			{
+				image.getRGB(0, y, width, 1, row, 0, width);
+				for (int x = 0; x < width; x++)
+				{
+					row[x] = transformPixel(row[x], chain);
+				}
+				dst.setRGB(0, y, width, 1, row, 0, width);
+			}
+		}
+		return dst;
+	}
+
+	private static int transformPixel(int argb, IPixelTransformerDelegate[] chain)
+	{
+		for (IPixelTransformerDelegate transformer : chain)
+		{
+			argb = transformer.transformPixel(argb);
+		}
+		return argb;
+	}
+}
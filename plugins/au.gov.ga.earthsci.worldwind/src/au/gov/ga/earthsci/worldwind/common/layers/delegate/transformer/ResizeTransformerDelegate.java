@@ -17,8 +17,6 @@ package au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer;
 
 import gov.nasa.worldwind.avlist.AVList;
 
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -27,29 +25,36 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
-import au.gov.ga.earthsci.worldwind.common.layers.delegate.IImageTransformerDelegate;
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.IPooledImageTransformerDelegate;
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.transformer.ImageResampler.Interpolation;
+import au.gov.ga.earthsci.worldwind.common.util.BufferedImagePool;
 
 /**
  * Applies a resize transformation to each retrieved tile such that the resulting image dimensions match
  * those specified in the delegate definition. Where the target dimensions do not match those of the 
- * retrieved image tile, bilinear interpolation is used for resizing the tile.
+ * retrieved image tile, bilinear interpolation is used for resizing the tile, unless nearest neighbour
+ * interpolation is requested (useful in combination with the <code>NearestNeighborTile</code> delegate).
  * <p/>
- * Useful for resizing tiles on-the-fly to the standard 512x512 size.
+ * Useful for resizing tiles on-the-fly to the standard 512x512 size. Tiles are resized directly on the
+ * image raster by the {@link ImageResampler}.
  * <p/>
- * <code>&lt;Delegate&gt;ResizeTransformer(w,h)&lt;/Delegate&gt;</code>
+ * <code>&lt;Delegate&gt;ResizeTransformer(w,h[,nearest])&lt;/Delegate&gt;</code>
  * <ul>
  * 	<li>w = target image width (integer)
  *  <li>h = target image height (integer)
+ *  <li>nearest = use nearest neighbour interpolation (optional)
  * </ul> 
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class ResizeTransformerDelegate implements IImageTransformerDelegate
+public class ResizeTransformerDelegate implements IPooledImageTransformerDelegate
 {
 	private final static String DEFINITION_STRING = "ResizeTransformer";
+	private final static String NEAREST_STRING = "nearest";
 
 	private final int width;
 	private final int height;
+	private final Interpolation interpolation;
 
 	@SuppressWarnings("unused")
 	private ResizeTransformerDelegate()
@@ -58,23 +63,30 @@ public class ResizeTransformerDelegate implements IImageTransformerDelegate
 	}
 
 	public ResizeTransformerDelegate(int width, int height)
+	{
+		this(width, height, Interpolation.BILINEAR);
+	}
+
+	public ResizeTransformerDelegate(int width, int height, Interpolation interpolation)
 	{
 		this.width = width;
 		this.height = height;
+		this.interpolation = interpolation;
 	}
 
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
+	{
+		return transformImage(image, tile, null);
+	}
+
+	@Override
+	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile, BufferedImagePool pool)
 	{
 		if (image.getWidth() == width && image.getHeight() == height)
 			return image;
 
-		BufferedImage resized = new BufferedImage(width, height, image.getType());
-		Graphics2D g = resized.createGraphics();
-		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-		g.drawImage(image, 0, 0, width, height, null);
-		g.dispose();
-		return resized;
+		return ImageResampler.resize(image, width, height, interpolation, pool);
 	}
 
 	@Override
@@ -82,13 +94,16 @@ public class ResizeTransformerDelegate implements IImageTransformerDelegate
 	{
 		if (definition.toLowerCase().startsWith(DEFINITION_STRING.toLowerCase()))
 		{
-			Pattern pattern = Pattern.compile("(?:\\((\\d+),(\\d+)\\))");
+			Pattern pattern = Pattern.compile("(?:\\((\\d+),(\\d+)(?:,(\\w+))?\\))");
 			Matcher matcher = pattern.matcher(definition);
 			if (matcher.find())
 			{
 				int width = Integer.parseInt(matcher.group(1));
 				int height = Integer.parseInt(matcher.group(2));
-				return new ResizeTransformerDelegate(width, height);
+				Interpolation interpolation =
+						NEAREST_STRING.equalsIgnoreCase(matcher.group(3)) ? Interpolation.NEAREST_NEIGHBOR
+								: Interpolation.BILINEAR;
+				return new ResizeTransformerDelegate(width, height, interpolation);
 			}
 		}
 		return null;
@@ -97,6 +112,7 @@ public class ResizeTransformerDelegate implements IImageTransformerDelegate
 	@Override
 	public String toDefinition(Element layerElement)
 	{
-		return DEFINITION_STRING + "(" + width + "," + height + ")";
+		String nearest = interpolation == Interpolation.NEAREST_NEIGHBOR ? "," + NEAREST_STRING : "";
+		return DEFINITION_STRING + "(" + width + "," + height + nearest + ")";
 	}
 }
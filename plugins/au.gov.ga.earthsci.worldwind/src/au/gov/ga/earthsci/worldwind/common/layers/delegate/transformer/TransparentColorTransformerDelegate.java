@@ -27,6 +27,7 @@ import org.w3c.dom.Element;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IImageTransformerDelegate;
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.IPixelTransformerDelegate;
 
 /**
  * Implementation of {@link IImageTransformerDelegate} which converts a targeted
@@ -48,12 +49,13 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.IImageTransformerDele
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class TransparentColorTransformerDelegate implements IImageTransformerDelegate
+public class TransparentColorTransformerDelegate implements IPixelTransformerDelegate
 {
 	private final static String DEFINITION_STRING = "TransparentColorTransformer";
 
 	protected final Color color;
 	protected final double fuzz;
+	private final int fuzzi;
 
 	//for reflection instantiation
 	@SuppressWarnings("unused")
@@ -66,37 +68,37 @@ public class TransparentColorTransformerDelegate implements IImageTransformerDel
 	{
 		this.color = color;
 		this.fuzz = fuzz;
+		this.fuzzi = Math.max(0, Math.min(255, (int) Math.round(fuzz * 255d)));
 	}
 
 	@Override
 	public BufferedImage transformImage(BufferedImage image, IDelegatorTile tile)
 	{
-		int fuzzi = Math.max(0, Math.min(255, (int) Math.round(fuzz * 255d)));
-		BufferedImage trans =
-				new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+		return PixelTransformerHelper.transform(image, this);
+	}
 
+	@Override
+	public int transformPixel(int argb)
+	{
 		int cr = color.getRed();
 		int cg = color.getGreen();
 		int cb = color.getBlue();
 
-		for (int x = 0; x < image.getWidth(); x++)
+		int sr = (argb >> 16) & 0xff;
+		int sg = (argb >> 8) & 0xff;
+		int sb = (argb >> 0) & 0xff;
+		if (cr - fuzzi <= sr && sr <= cr + fuzzi && cg - fuzzi <= sg && sg <= cg + fuzzi && cb - fuzzi <= sb
+				&& sb <= cb + fuzzi)
 		{
-			for (int y = 0; y < image.getHeight(); y++)
-			{
-				int rgb = image.getRGB(x, y);
-				int sr = (rgb >> 16) & 0xff;
-				int sg = (rgb >> 8) & 0xff;
-				int sb = (rgb >> 0) & 0xff;
-				if (cr - fuzzi <= sr && sr <= cr + fuzzi && cg - fuzzi <= sg && sg <= cg + fuzzi
-						&& cb - fuzzi <= sb && sb <= cb + fuzzi)
-				{
-					rgb = (rgb & 0xffffff);
-				}
-				trans.setRGB(x, y, rgb);
-			}
+			argb = (argb & 0xffffff);
 		}
+		return argb;
+	}
 
-		return trans;
+	@Override
+	public int getTransformedImageType()
+	{
+		return BufferedImage.TYPE_INT_ARGB;
 	}
 
 	@Override
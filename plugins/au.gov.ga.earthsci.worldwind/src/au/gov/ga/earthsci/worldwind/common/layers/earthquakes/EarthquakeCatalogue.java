@@ -0,0 +1,528 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.earthquakes;
+
+import gov.nasa.worldwind.geom.Position;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar store of earthquakes, used by the {@link HistoricEarthquakesLayer}.
+ * Each earthquake property is stored in its own primitive array, so that no
+ * objects are created per earthquake; {@link #getPositions(int)} returns a
+ * view of the columns that can be passed straight to a FastShape.
+ * <p/>
+ * Catalogues can be read from a columnar file, which can be memory mapped, or
+ * from the older record-per-earthquake format written by an
+ * {@link java.io.ObjectOutputStream}. The columnar file has the following
+ * format (big-endian):
+ * 
+ * <pre>
+ * int magic ('EQKC')
+ * int version
+ * int count (number of earthquakes)
+ * int block size
+ * blocks of min(block size, remaining) earthquakes, each containing:
+ *   double[] latitude (in degrees)
+ *   double[] longitude (in degrees)
+ *   double[] elevation (in metres - negative indicates subsurface)
+ *   double[] magnitude
+ *   long[] timestamp (in milliseconds since epoc 01 01 1970 00:00:00 UTC)
+ * </pre>
+ * 
+ * The columns are split into blocks so that a catalogue read from a stream
+ * can be displayed before the whole file has been read.
+ * <p/>
+ * This class is thread safe; earthquakes can be read on one thread while
+ * views of the earthquakes already read are used on another.
+ */
+public class EarthquakeCatalogue
+{
+	public final static int MAGIC = 0x45514b43;
+	public final static int VERSION = 1;
+	public final static int DEFAULT_BLOCK_SIZE = 65536;
+
+	/**
+	 * Number of earthquakes read from the record format between progress
+	 * notifications
+	 */
+	protected final static int RECORD_PROGRESS_INTERVAL = 65536;
+
+	private final static int BYTES_PER_EARTHQUAKE = 5 * 8;
+
+	private double[] latitudes;
+	private double[] longitudes;
+	private double[] elevations;
+	private double[] magnitudes;
+	private long[] times;
+	private int size;
+
+	public EarthquakeCatalogue()
+	{
+		this(1024);
+	}
+
+	public EarthquakeCatalogue(int capacity)
+	{
+		allocate(Math.max(1, capacity));
+	}
+
+	/**
+	 * Listener notified as earthquakes are read into a catalogue.
+	 */
+	public interface ProgressListener
+	{
+		/**
+		 * Called after a block of earthquakes has been read.
+		 * 
+		 * @param count
+		 *            Number of earthquakes in the catalogue
+		 */
+		void progress(int count);
+	}
+
+	/**
+	 * Add an earthquake to this catalogue.
+	 */
+	public synchronized void add(double latitude, double longitude, double elevation, double magnitude,
+			long timeInMillis)
+	{
+		ensureCapacity(size + 1);
+		latitudes[size] = latitude;
+		longitudes[size] = longitude;
+		elevations[size] = elevation;
+		magnitudes[size] = magnitude;
+		times[size] = timeInMillis;
+		size++;
+	}
+
+	/**
+	 * @return Number of earthquakes in this catalogue
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	public synchronized double getLatitude(int index)
+	{
+		return latitudes[index];
+	}
+
+	public synchronized double getLongitude(int index)
+	{
+		return longitudes[index];
+	}
+
+	public synchronized double getElevation(int index)
+	{
+		return elevations[index];
+	}
+
+	public synchronized double getMagnitude(int index)
+	{
+		return magnitudes[index];
+	}
+
+	public synchronized long getTimeInMillis(int index)
+	{
+		return times[index];
+	}
+
+	/**
+	 * Create a view of the positions of the first <code>count</code>
+	 * earthquakes. The view creates {@link Position}s on demand, and is not
+	 * affected by earthquakes subsequently added to this catalogue.
+	 * 
+	 * @param count
+	 *            Number of earthquakes in the view
+	 * @return List of earthquake positions
+	 */
+	public synchronized List<Position> getPositions(int count)
+	{
+		if (count < 0 || count > size)
+		{
+			throw new IndexOutOfBoundsException("Count " + count + " is outside 0-" + size);
+		}
+		return new PositionList(latitudes, longitudes, elevations, count);
+	}
+
+	/**
+	 * Calculate the indices of the earthquakes within a time window, for
+	 * drawing a subset of the earthquakes without changing their positions.
+	 * 
+	 * @param count
+	 *            Number of earthquakes to search (from the start of the
+	 *            catalogue)
+	 * @param minTime
+	 *            Start of the time window, in milliseconds since epoc (null
+	 *            for no start)
+	 * @param maxTime
+	 *            End of the time window, in milliseconds since epoc (null for
+	 *            no end)
+	 * @return Indices of the earthquakes within the time window, or null if
+	 *         both ends of the window are null
+	 */
+	public synchronized int[] getIndicesWithinTime(int count, Long minTime, Long maxTime)
+	{
+		if (minTime == null && maxTime == null)
+		{
+			return null;
+		}
+
+		long min = minTime != null ? minTime : Long.MIN_VALUE;
+		long max = maxTime != null ? maxTime : Long.MAX_VALUE;
+		int[] indices = new int[count];
+		int length = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (times[i] >= min && times[i] <= max)
+			{
+				indices[length++] = i;
+			}
+		}
+		return Arrays.copyOf(indices, length);
+	}
+
+	/**
+	 * Write this catalogue in the columnar format.
+	 * 
+	 * @param os
+	 *            Stream to write to (not closed)
+	 * @param blockSize
+	 *            Number of earthquakes per block
+	 * @throws IOException
+	 */
+	public synchronized void write(OutputStream os, int blockSize) throws IOException
+	{
+		DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		dos.writeInt(size);
+		dos.writeInt(blockSize);
+		for (int start = 0; start < size; start += blockSize)
+		{
+			int end = Math.min(size, start + blockSize);
+			writeColumn(dos, latitudes, start, end);
+			writeColumn(dos, longitudes, start, end);
+			writeColumn(dos, elevations, start, end);
+			writeColumn(dos, magnitudes, start, end);
+			for (int i = start; i < end; i++)
+			{
+				dos.writeLong(times[i]);
+			}
+		}
+		dos.flush();
+	}
+
+	private static void writeColumn(DataOutputStream dos, double[] column, int start, int end) throws IOException
+	{
+		for (int i = start; i < end; i++)
+		{
+			dos.writeDouble(column[i]);
+		}
+	}
+
+	/**
+	 * Read earthquakes from a stream containing either the columnar format or
+	 * the record format, and add them to this catalogue.
+	 * 
+	 * @param is
+	 *            Stream to read (not closed)
+	 * @param listener
+	 *            Listener to notify as blocks of earthquakes are read (can be
+	 *            null)
+	 * @throws IOException
+	 */
+	public void read(InputStream is, ProgressListener listener) throws IOException
+	{
+		BufferedInputStream bis = new BufferedInputStream(is);
+		bis.mark(4);
+		DataInputStream dis = new DataInputStream(bis);
+		int magic;
+		try
+		{
+			magic = dis.readInt();
+		}
+		catch (EOFException e)
+		{
+			return;
+		}
+
+		if (magic == MAGIC)
+		{
+			readColumnar(dis, listener);
+		}
+		else
+		{
+			bis.reset();
+			readRecords(bis, listener);
+		}
+	}
+
+	/**
+	 * Read earthquakes from a file containing either the columnar format or
+	 * the record format, and add them to this catalogue. Columnar files are
+	 * memory mapped; record format files are read as a stream.
+	 * 
+	 * @param file
+	 *            File to read
+	 * @param listener
+	 *            Listener to notify as blocks of earthquakes are read (can be
+	 *            null)
+	 * @throws IOException
+	 */
+	public void read(File file, ProgressListener listener) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			if (raf.length() >= 4 && raf.readInt() == MAGIC)
+			{
+				FileChannel channel = raf.getChannel();
+				read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), listener);
+				return;
+			}
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		//not columnar, so fall back to the record format
+		InputStream is = new FileInputStream(file);
+		try
+		{
+			read(is, listener);
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * Read earthquakes from a buffer containing the columnar format, and add
+	 * them to this catalogue.
+	 * 
+	 * @param buffer
+	 *            Buffer to read, such as a memory mapped file
+	 * @param listener
+	 *            Listener to notify as blocks of earthquakes are read (can be
+	 *            null)
+	 * @throws IOException
+	 *             If the buffer doesn't contain the columnar format
+	 */
+	public void read(ByteBuffer buffer, ProgressListener listener) throws IOException
+	{
+		if (buffer.remaining() < 16 || buffer.getInt() != MAGIC)
+		{
+			throw new IOException("Not a columnar earthquake catalogue");
+		}
+		checkVersion(buffer.getInt());
+		int count = buffer.getInt();
+		int blockSize = buffer.getInt();
+		checkHeader(count, blockSize);
+		if (buffer.remaining() < (long) count * BYTES_PER_EARTHQUAKE)
+		{
+			throw new EOFException("Earthquake catalogue is truncated");
+		}
+
+		synchronized (this)
+		{
+			ensureCapacity(size + count);
+		}
+		for (int read = 0; read < count; read += blockSize)
+		{
+			readBlock(buffer, Math.min(blockSize, count - read));
+			notifyProgress(listener);
+		}
+	}
+
+	protected void readColumnar(DataInputStream dis, ProgressListener listener) throws IOException
+	{
+		checkVersion(dis.readInt());
+		int count = dis.readInt();
+		int blockSize = dis.readInt();
+		checkHeader(count, blockSize);
+
+		synchronized (this)
+		{
+			ensureCapacity(size + count);
+		}
+		byte[] bytes = new byte[Math.min(blockSize, count) * BYTES_PER_EARTHQUAKE];
+		for (int read = 0; read < count; read += blockSize)
+		{
+			int length = Math.min(blockSize, count - read);
+			dis.readFully(bytes, 0, length * BYTES_PER_EARTHQUAKE);
+			readBlock(ByteBuffer.wrap(bytes), length);
+			notifyProgress(listener);
+		}
+	}
+
+	protected void readRecords(InputStream is, ProgressListener listener) throws IOException
+	{
+		ObjectInputStream ois = new ObjectInputStream(is);
+		try
+		{
+			while (true)
+			{
+				double lat = ois.readDouble();
+				double lon = ois.readDouble();
+				double elevation = ois.readDouble();
+				double magnitude = ois.readDouble();
+				long timeInMillis = ois.readLong();
+				add(lat, lon, elevation, magnitude, timeInMillis);
+
+				if (listener != null && size() % RECORD_PROGRESS_INTERVAL == 0)
+				{
+					listener.progress(size());
+				}
+			}
+		}
+		catch (EOFException e)
+		{
+			//ObjectInputStream.available() cannot be relied upon (it always returns 0 for a ZipInputStream),
+			//so read until an EOFException is thrown, which means we are at the end of the file.
+		}
+		notifyProgress(listener);
+	}
+
+	/**
+	 * Read a block of columns from the buffer, starting at the buffer's
+	 * position. The buffer's position is moved to the end of the block.
+	 */
+	protected synchronized void readBlock(ByteBuffer buffer, int length)
+	{
+		ensureCapacity(size + length);
+		int position = buffer.position();
+		buffer.asDoubleBuffer().get(latitudes, size, length);
+		buffer.position(position += length * 8);
+		buffer.asDoubleBuffer().get(longitudes, size, length);
+		buffer.position(position += length * 8);
+		buffer.asDoubleBuffer().get(elevations, size, length);
+		buffer.position(position += length * 8);
+		buffer.asDoubleBuffer().get(magnitudes, size, length);
+		buffer.position(position += length * 8);
+		buffer.asLongBuffer().get(times, size, length);
+		buffer.position(position += length * 8);
+		size += length;
+	}
+
+	private void notifyProgress(ProgressListener listener)
+	{
+		if (listener != null)
+		{
+			listener.progress(size());
+		}
+	}
+
+	private static void checkVersion(int version) throws IOException
+	{
+		if (version != VERSION)
+		{
+			throw new IOException("Unsupported earthquake catalogue version: " + version);
+		}
+	}
+
+	private static void checkHeader(int count, int blockSize) throws IOException
+	{
+		if (count < 0 || blockSize <= 0)
+		{
+			throw new IOException("Invalid earthquake catalogue header");
+		}
+	}
+
+	private void ensureCapacity(int capacity)
+	{
+		if (capacity > latitudes.length)
+		{
+			int length = latitudes.length;
+			double[] oldLatitudes = latitudes, oldLongitudes = longitudes, oldElevations = elevations;
+			double[] oldMagnitudes = magnitudes;
+			long[] oldTimes = times;
+
+			//new arrays are allocated (rather than using Arrays.copyOf) so that existing position views are unaffected
+			allocate(Math.max(capacity, length + (length >> 1)));
+			System.arraycopy(oldLatitudes, 0, latitudes, 0, size);
+			System.arraycopy(oldLongitudes, 0, longitudes, 0, size);
+			System.arraycopy(oldElevations, 0, elevations, 0, size);
+			System.arraycopy(oldMagnitudes, 0, magnitudes, 0, size);
+			System.arraycopy(oldTimes, 0, times, 0, size);
+		}
+	}
+
+	private void allocate(int capacity)
+	{
+		latitudes = new double[capacity];
+		longitudes = new double[capacity];
+		elevations = new double[capacity];
+		magnitudes = new double[capacity];
+		times = new long[capacity];
+	}
+
+	/**
+	 * List of positions backed by the catalogue columns.
+	 */
+	private static class PositionList extends AbstractList<Position> implements RandomAccess
+	{
+		private final double[] latitudes;
+		private final double[] longitudes;
+		private final double[] elevations;
+		private final int size;
+
+		public PositionList(double[] latitudes, double[] longitudes, double[] elevations, int size)
+		{
+			this.latitudes = latitudes;
+			this.longitudes = longitudes;
+			this.elevations = elevations;
+			this.size = size;
+		}
+
+		@Override
+		public Position get(int index)
+		{
+			if (index < 0 || index >= size)
+			{
+				throw new IndexOutOfBoundsException("Index " + index + " is outside 0-" + (size - 1));
+			}
+			return Position.fromDegrees(latitudes[index], longitudes[index], elevations[index]);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+}
@@ -24,19 +24,19 @@ import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.WWXML;
 
-import java.awt.Color;
-import java.io.EOFException;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 import java.util.zip.ZipInputStream;
 
 import javax.media.opengl.GL2;
+import javax.media.opengl.GLContext;
 import javax.xml.xpath.XPath;
 
 import org.w3c.dom.Document;
@@ -47,8 +47,10 @@ import au.gov.ga.earthsci.worldwind.common.downloader.RetrievalHandler;
 import au.gov.ga.earthsci.worldwind.common.downloader.RetrievalResult;
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+import au.gov.ga.earthsci.worldwind.common.util.CompiledColorMap;
 import au.gov.ga.earthsci.worldwind.common.util.HSLColor;
 import au.gov.ga.earthsci.worldwind.common.util.Loader;
+import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
 
 /**
@@ -59,13 +61,23 @@ import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
  * recorded earthquake depth.
  * <p/>
  * Colouring is configurable, and can be based on Date, Magnitude or Depth.
+ * The value used for colouring is uploaded to the GPU once per earthquake, and
+ * coloured by the {@link FastShape}'s scalar colouring shader, so changing the
+ * colouring date range requires no recalculation of colours.
  * <p/>
  * This implementation makes use of the {@link FastShape} class to load
  * earthquake data outside the rendering thread to ensure the interface remains
- * responsive.
+ * responsive. Earthquakes are read into an {@link EarthquakeCatalogue}, and
+ * are displayed progressively as they are read; the shape displaying the
+ * earthquakes read so far is rebuilt each time the number read has doubled,
+ * and the vertex buffers of replaced shapes are deleted on the render thread.
+ * The displayed earthquakes can
+ * be limited to a time window, without recalculating their positions.
  * <p/>
- * Each record in the data file should have the following format (without line
- * breaks):
+ * The data file can be in the columnar format described by
+ * {@link EarthquakeCatalogue}, which is memory mapped if the file is local and
+ * not compressed. Alternatively each record in the data file should have the
+ * following format (without line breaks):
  * 
  * <pre>
  * double latitude (in degrees)
@@ -87,11 +99,15 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 	public final static String DEPTH_COLORING = "Depth";
 
 	private final static int MAX_DOWNLOAD_ATTEMPTS = 3;
+	private final static long PROGRESS_INTERVAL = 500; //ms
+	private final static double MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
 
 	private final URL url;
-	private final String coloring;
+	private String coloring;
 	private Long coloringMinDate;
 	private Long coloringMaxDate;
+	private Long filterMinDate;
+	private Long filterMaxDate;
 
 	private double pointSize;
 
@@ -102,7 +118,13 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 	private final List<LoadingListener> loadingListeners = new ArrayList<LoadingListener>();
 
 	private FastShape shape;
+	private EarthquakeCatalogue shapeCatalogue;
+	private FastShape pendingShape;
+	private EarthquakeCatalogue pendingCatalogue;
+	private final List<FastShape> replacedShapes = new ArrayList<FastShape>();
 	private final Object shapeLock = new Object();
+	private long lastProgressTime;
+	private int lastProgressCount;
 
 	public HistoricEarthquakesLayer(AVList params)
 	{
@@ -137,6 +159,8 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 
 		coloringMinDate = (Long) params.getValue(AVKeyMore.COLORING_MIN_DATE);
 		coloringMaxDate = (Long) params.getValue(AVKeyMore.COLORING_MAX_DATE);
+		filterMinDate = (Long) params.getValue(AVKeyMore.FILTER_MIN_DATE);
+		filterMaxDate = (Long) params.getValue(AVKeyMore.FILTER_MAX_DATE);
 	}
 
 	public HistoricEarthquakesLayer(Document dom, AVList params)
@@ -164,6 +188,8 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 		WWXML.checkAndSetDoubleParam(domElement, params, AVKeyMore.POINT_SIZE, "PointSize", xpath);
 		XMLUtil.checkAndSetFormattedDateParam(domElement, params, AVKeyMore.COLORING_MIN_DATE, "ColoringMinDate", xpath);
 		XMLUtil.checkAndSetFormattedDateParam(domElement, params, AVKeyMore.COLORING_MAX_DATE, "ColoringMaxDate", xpath);
+		XMLUtil.checkAndSetFormattedDateParam(domElement, params, AVKeyMore.FILTER_MIN_DATE, "FilterMinDate", xpath);
+		XMLUtil.checkAndSetFormattedDateParam(domElement, params, AVKeyMore.FILTER_MAX_DATE, "FilterMaxDate", xpath);
 
 		return params;
 	}
@@ -180,6 +206,27 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 
 		synchronized (shapeLock)
 		{
+			deleteReplacedShapes(dc.getGL().getGL2());
+
+			if (pendingShape != null)
+			{
+				//keep rendering the previous shape until the vertices of the pending shape have been calculated
+				boolean ready = pendingShape.getExtent() != null;
+				pendingShape.setPointSize(pointSize);
+				pendingShape.render(dc);
+				if (ready)
+				{
+					if (shape != null)
+					{
+						replacedShapes.add(shape);
+					}
+					shape = pendingShape;
+					shapeCatalogue = pendingCatalogue;
+					pendingShape = null;
+					pendingCatalogue = null;
+					return;
+				}
+			}
 			if (shape != null)
 			{
 				shape.setPointSize(pointSize);
@@ -188,6 +235,169 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 		}
 	}
 
+	/**
+	 * Delete the OpenGL resources of the shapes that have been replaced by a
+	 * newer shape. Must be called with the shapeLock held, on a thread with a
+	 * current OpenGL context.
+	 */
+	private void deleteReplacedShapes(GL2 gl)
+	{
+		for (FastShape replaced : replacedShapes)
+		{
+			replaced.dispose(gl);
+		}
+		replacedShapes.clear();
+	}
+
+	@Override
+	public void dispose()
+	{
+		super.dispose();
+		synchronized (shapeLock)
+		{
+			if (shape != null)
+			{
+				replacedShapes.add(shape);
+			}
+			if (pendingShape != null)
+			{
+				replacedShapes.add(pendingShape);
+			}
+			shape = null;
+			shapeCatalogue = null;
+			pendingShape = null;
+			pendingCatalogue = null;
+			if (GLContext.getCurrent() != null)
+			{
+				deleteReplacedShapes(GLContext.getCurrent().getGL().getGL2());
+			}
+		}
+	}
+
+	/**
+	 * @return Start of the time window of displayed earthquakes, in
+	 *         milliseconds since epoc (null if there is no start)
+	 */
+	public Long getFilterMinDate()
+	{
+		return filterMinDate;
+	}
+
+	/**
+	 * @return End of the time window of displayed earthquakes, in milliseconds
+	 *         since epoc (null if there is no end)
+	 */
+	public Long getFilterMaxDate()
+	{
+		return filterMaxDate;
+	}
+
+	/**
+	 * Limit the displayed earthquakes to a time window. Only the indices of
+	 * the displayed earthquakes are recalculated; the positions are unchanged.
+	 * 
+	 * @param minDate
+	 *            Start of the time window, in milliseconds since epoc (null for
+	 *            no start)
+	 * @param maxDate
+	 *            End of the time window, in milliseconds since epoc (null for
+	 *            no end)
+	 */
+	public void setTimeWindow(Long minDate, Long maxDate)
+	{
+		synchronized (shapeLock)
+		{
+			this.filterMinDate = minDate;
+			this.filterMaxDate = maxDate;
+			updateIndices(shape, shapeCatalogue);
+			updateIndices(pendingShape, pendingCatalogue);
+		}
+		firePropertyChange(AVKey.LAYER, null, this);
+	}
+
+	private void updateIndices(FastShape shape, EarthquakeCatalogue catalogue)
+	{
+		if (shape != null)
+		{
+			shape.setIndices(catalogue.getIndicesWithinTime(shape.getPositions().size(), filterMinDate, filterMaxDate));
+		}
+	}
+
+	/**
+	 * @return Colouring used for the earthquakes (one of
+	 *         {@link #DATE_COLORING}, {@link #MAGNITUDE_COLORING} or
+	 *         {@link #DEPTH_COLORING})
+	 */
+	public String getColoring()
+	{
+		return coloring;
+	}
+
+	/**
+	 * Change the colouring used for the earthquakes. The positions are
+	 * unchanged; only the scalar value used for colouring is uploaded.
+	 * 
+	 * @param coloring
+	 *            One of {@link #DATE_COLORING}, {@link #MAGNITUDE_COLORING} or
+	 *            {@link #DEPTH_COLORING}
+	 */
+	public void setColoring(String coloring)
+	{
+		synchronized (shapeLock)
+		{
+			this.coloring = coloring;
+			updateScalars(shape, shapeCatalogue);
+			updateScalars(pendingShape, pendingCatalogue);
+		}
+		firePropertyChange(AVKey.LAYER, null, this);
+	}
+
+	/**
+	 * Change the date range used for date colouring. This only changes the
+	 * range of the shape's scalar colouring, and doesn't recalculate any
+	 * colours.
+	 * 
+	 * @param minDate
+	 *            Date coloured blue, in milliseconds since epoc (null to use
+	 *            the earliest earthquake)
+	 * @param maxDate
+	 *            Date coloured red, in milliseconds since epoc (null to use the
+	 *            latest earthquake)
+	 */
+	public void setColoringDateRange(Long minDate, Long maxDate)
+	{
+		synchronized (shapeLock)
+		{
+			this.coloringMinDate = minDate;
+			this.coloringMaxDate = maxDate;
+			if (DATE_COLORING.equalsIgnoreCase(coloring))
+			{
+				updateScalarRange(shape);
+				updateScalarRange(pendingShape);
+			}
+		}
+		firePropertyChange(AVKey.LAYER, null, this);
+	}
+
+	private void updateScalars(FastShape shape, EarthquakeCatalogue catalogue)
+	{
+		if (shape != null)
+		{
+			shape.setScalarBuffer(createScalars(catalogue, shape.getPositions().size(), coloring));
+			shape.setScalarColorTable(createColorTable(coloring));
+			updateScalarRange(shape);
+		}
+	}
+
+	private void updateScalarRange(FastShape shape)
+	{
+		if (shape != null)
+		{
+			double[] range = calculateScalarRange(shape.getScalarBuffer(), coloring);
+			shape.setScalarRange(range[0], range[1]);
+		}
+	}
+
 	protected void downloadData()
 	{
 		//run download in separate thread, so that data loading from download
@@ -198,6 +408,14 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 			@Override
 			public void run()
 			{
+				//local uncompressed files are memory mapped
+				File file = URLUtil.urlToFile(url);
+				if (file != null && file.isFile() && !isZipFile())
+				{
+					loadFile(file);
+					return;
+				}
+
 				RetrievalHandler handler = new RetrievalHandler()
 				{
 					@Override
@@ -209,7 +427,8 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 						}
 						else if (result.getError() != null)
 						{
-							result.getError().printStackTrace();
+							Logging.logger().log(Level.SEVERE, "Error downloading earthquakes from " + url,
+									result.getError());
 						}
 					}
 				};
@@ -221,179 +440,330 @@ public class HistoricEarthquakesLayer extends AbstractLayer implements Loader
 		thread.start();
 	}
 
+	protected boolean isZipFile()
+	{
+		return url.toExternalForm().toLowerCase().endsWith(".zip");
+	}
+
 	protected void loadData(InputStream is)
 	{
 		try
 		{
-			boolean isZipFile = url.toExternalForm().toLowerCase().endsWith(".zip");
-			if (isZipFile)
+			if (isZipFile())
 			{
 				ZipInputStream zis = new ZipInputStream(is);
 				zis.getNextEntry(); //move to first entry
 				is = zis;
 			}
 
-			List<Earthquake> quakes = new ArrayList<Earthquake>();
-			ObjectInputStream ois = new ObjectInputStream(is);
+			EarthquakeCatalogue catalogue = new EarthquakeCatalogue();
 			try
 			{
-				while (is.available() > 0)
-				{
-					double lat = ois.readDouble();
-					double lon = ois.readDouble();
-					double elevation = ois.readDouble();
-					double magnitude = ois.readDouble();
-					long timeInMillis = ois.readLong();
-
-					Position position = Position.fromDegrees(lat, lon, elevation);
-					Earthquake quake = new Earthquake(position, magnitude, timeInMillis);
-					quakes.add(quake);
-				}
+				catalogue.read(is, createProgressListener(catalogue));
 			}
-			catch (EOFException e)
+			finally
 			{
-				//When reading from a ZipInputStream, the ObjectInputStream.available() method always returns 0,
-				//so just read it anyway. This will throw an EOFException at some stage (when there's no data
-				//left), this means we are at the end of the file. Ignore it.
+				is.close();
 			}
-			ois.close();
 
-			loadEarthquakes(quakes);
+			loadCatalogue(catalogue, catalogue.size(), true);
 		}
 		catch (IOException e)
 		{
-			e.printStackTrace();
-			if (loadAttempts < MAX_DOWNLOAD_ATTEMPTS)
-			{
-				loaded = false;
-				Downloader.removeCache(url);
-				Logging.logger().warning("Deleted corrupt cached data file for " + url);
-			}
-			else
-			{
-				e.printStackTrace();
-			}
+			loadFailed(e);
 		}
 	}
 
-	protected void loadEarthquakes(List<Earthquake> earthquakes)
+	protected void loadFile(File file)
 	{
-		List<Position> positions = new ArrayList<Position>();
-		for (Earthquake earthquake : earthquakes)
+		try
+		{
+			EarthquakeCatalogue catalogue = new EarthquakeCatalogue();
+			catalogue.read(file, createProgressListener(catalogue));
+			loadCatalogue(catalogue, catalogue.size(), true);
+		}
+		catch (IOException e)
 		{
-			positions.add(earthquake.position);
+			//local files are not cached, so don't retry
+			Logging.logger().log(Level.SEVERE, "Error reading earthquakes from " + file, e);
+			setLoading(false);
+			fireLoadingStateChanged();
 		}
+	}
 
-		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * 3);
-		generateColorBuffer(colorBuffer, earthquakes);
+	private void loadFailed(IOException e)
+	{
+		Logging.logger().log(Level.SEVERE, "Error reading earthquakes from " + url, e);
+		setLoading(false);
+		fireLoadingStateChanged();
+		if (loadAttempts < MAX_DOWNLOAD_ATTEMPTS)
+		{
+			loaded = false;
+			Downloader.removeCache(url);
+			Logging.logger().warning("Deleted corrupt cached data file for " + url);
+		}
+	}
+
+	/**
+	 * Create a listener that displays the earthquakes read so far, at most
+	 * every {@link #PROGRESS_INTERVAL} milliseconds. As the displayed shape is
+	 * rebuilt from the start of the catalogue, it is only rebuilt once the
+	 * number of earthquakes read has doubled, so that the total number of
+	 * vertices calculated while loading is at most twice the catalogue size.
+	 */
+	protected EarthquakeCatalogue.ProgressListener createProgressListener(final EarthquakeCatalogue catalogue)
+	{
+		lastProgressTime = 0;
+		lastProgressCount = 0;
+		setLoading(true);
+		fireLoadingStateChanged();
 
+		return new EarthquakeCatalogue.ProgressListener()
+		{
+			@Override
+			public void progress(int count)
+			{
+				long currentTime = System.currentTimeMillis();
+				if (currentTime - lastProgressTime >= PROGRESS_INTERVAL && count >= lastProgressCount * 2)
+				{
+					lastProgressTime = currentTime;
+					lastProgressCount = count;
+					loadCatalogue(catalogue, count, false);
+				}
+			}
+		};
+	}
+
+	protected void loadEarthquakes(List<Earthquake> earthquakes)
+	{
+		EarthquakeCatalogue catalogue = toCatalogue(earthquakes);
+		loadCatalogue(catalogue, catalogue.size(), true);
+	}
+
+	/**
+	 * Display the first <code>count</code> earthquakes in the catalogue. The
+	 * shape's positions are a view of the catalogue, so no positions are
+	 * copied.
+	 * 
+	 * @param catalogue
+	 *            Catalogue to display
+	 * @param count
+	 *            Number of earthquakes to display
+	 * @param complete
+	 *            Has the whole catalogue been read?
+	 */
+	protected void loadCatalogue(EarthquakeCatalogue catalogue, int count, boolean complete)
+	{
+		List<Position> positions = catalogue.getPositions(count);
 		FastShape shape = new FastShape(positions, GL2.GL_POINTS);
-		shape.setColorBuffer(colorBuffer.array());
-		shape.setColorBufferElementSize(3);
 
 		synchronized (shapeLock)
 		{
-			this.shape = shape;
+			updateIndices(shape, catalogue);
+			updateScalars(shape, catalogue);
+			if (this.pendingShape != null)
+			{
+				//the pending shape may have been rendered before it was replaced
+				replacedShapes.add(this.pendingShape);
+			}
+			this.pendingShape = shape;
+			this.pendingCatalogue = catalogue;
 		}
 
+		if (complete)
+		{
+			setLoading(false);
+			fireLoadingStateChanged();
+		}
 		firePropertyChange(AVKey.LAYER, null, this);
 	}
 
-	private void generateColorBuffer(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	private static EarthquakeCatalogue toCatalogue(List<Earthquake> earthquakes)
 	{
-		if (DEPTH_COLORING.equalsIgnoreCase(coloring))
+		EarthquakeCatalogue catalogue = new EarthquakeCatalogue(earthquakes.size());
+		for (Earthquake earthquake : earthquakes)
 		{
-			generateDepthColoring(colorBuffer, earthquakes);
+			catalogue.add(earthquake.position.latitude.degrees, earthquake.position.longitude.degrees,
+					earthquake.position.elevation, earthquake.magnitude, earthquake.timeInMillis);
 		}
-		else if (DATE_COLORING.equalsIgnoreCase(coloring))
+		return catalogue;
+	}
+
+	/**
+	 * Create the scalar values used to colour the first <code>count</code>
+	 * earthquakes in the catalogue: the equalised magnitude, the elevation,
+	 * or the date in days since epoc (as milliseconds exceed the precision of
+	 * a float).
+	 * <p/>
+	 * Magnitudes are equalised on the CPU, before they are mapped through
+	 * the colour table, so that the steep low end of the equalisation curve
+	 * isn't collapsed into a few table entries.
+	 */
+	protected float[] createScalars(EarthquakeCatalogue catalogue, int count, String coloring)
+	{
+		float[] scalars = new float[count];
+		if (!DEPTH_COLORING.equalsIgnoreCase(coloring) && !DATE_COLORING.equalsIgnoreCase(coloring))
 		{
-			generateDateColoring(colorBuffer, earthquakes);
+			double minMagnitude = Double.MAX_VALUE;
+			double maxMagnitude = -Double.MAX_VALUE;
+			for (int i = 0; i < count; i++)
+			{
+				minMagnitude = Math.min(minMagnitude, catalogue.getMagnitude(i));
+				maxMagnitude = Math.max(maxMagnitude, catalogue.getMagnitude(i));
+			}
+			double magnitudeRange = maxMagnitude - minMagnitude;
+			for (int i = 0; i < count; i++)
+			{
+				double percent = magnitudeRange > 0 ? (catalogue.getMagnitude(i) - minMagnitude) / magnitudeRange : 0;
+				//scale the magnitude (VERY crude equalisation)
+				scalars[i] = (float) Math.pow(percent, 0.2);
+			}
+			return scalars;
 		}
-		else
+
+		for (int i = 0; i < count; i++)
 		{
-			generateMagnitudeColoring(colorBuffer, earthquakes);
+			if (DEPTH_COLORING.equalsIgnoreCase(coloring))
+			{
+				scalars[i] = (float) catalogue.getElevation(i);
+			}
+			else
+			{
+				scalars[i] = (float) (catalogue.getTimeInMillis(i) / MILLIS_PER_DAY);
+			}
 		}
+		return scalars;
 	}
 
 	/**
-	 * Populate the color buffer with colours based on earthquake date.
-	 * <p/>
-	 * Blue (shallow) -> Red (deep)
+	 * Calculate the range of scalar values mapped to the colour table. For
+	 * date colouring, the custom min/max dates are used if set.
+	 * 
+	 * @return Array containing the minimum and maximum
 	 */
-	protected void generateMagnitudeColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	protected double[] calculateScalarRange(float[] scalars, String coloring)
 	{
-		//magnitude coloring
-		double minMagnitude = Double.MAX_VALUE;
-		double maxMagnitude = -Double.MAX_VALUE;
-		for (Earthquake earthquake : earthquakes)
+		double[] range = new double[] { Double.MAX_VALUE, -Double.MAX_VALUE };
+		boolean date = DATE_COLORING.equalsIgnoreCase(coloring);
+		if (!date || coloringMinDate == null || coloringMaxDate == null)
 		{
-			minMagnitude = Math.min(minMagnitude, earthquake.magnitude);
-			maxMagnitude = Math.max(maxMagnitude, earthquake.magnitude);
+			for (float scalar : scalars)
+			{
+				range[0] = Math.min(range[0], scalar);
+				range[1] = Math.max(range[1], scalar);
+			}
 		}
-		for (Earthquake earthquake : earthquakes)
+		if (date)
 		{
-			double percent = (earthquake.magnitude - minMagnitude) / (maxMagnitude - minMagnitude);
-
-			//scale the magnitude (VERY crude equalisation)
-			percent = 1 - Math.pow(percent, 0.2);
-
-			Color color = new HSLColor((float) (240d * percent), 100f, 50f).getRGB();
-			colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
+			range[0] = coloringMinDate != null ? coloringMinDate / MILLIS_PER_DAY : range[0];
+			range[1] = coloringMaxDate != null ? coloringMaxDate / MILLIS_PER_DAY : range[1];
 		}
+		return range;
 	}
 
 	/**
-	 * Populate the color buffer with colours based on earthquake date.
-	 * <p/>
-	 * Blue (old) -> Red (new)
+	 * Create the colour table for the given colouring, with colours evenly
+	 * spaced between the minimum and maximum scalar values.
+	 * <ul>
+	 * <li>Magnitude: Blue (low) -> Red (high), of the equalised magnitudes</li>
+	 * <li>Date: Blue (old) -> Red (new)</li>
+	 * <li>Depth: Red (deep) -> Blue (shallow)</li>
+	 * </ul>
 	 */
-	protected void generateDateColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	protected int[] createColorTable(String coloring)
 	{
-		long minTime = Long.MAX_VALUE;
-		long maxTime = Long.MIN_VALUE;
-
-		//if either of the custom min/max dates are null, calculate from the data
-		if (coloringMinDate == null || coloringMaxDate == null)
+		int[] table = new int[CompiledColorMap.DEFAULT_TABLE_SIZE];
+		for (int i = 0; i < table.length; i++)
 		{
-			for (Earthquake earthquake : earthquakes)
+			//depth uses the percent as is; elevation is negative, so the maximum is the shallowest
+			double percent = i / (double) (table.length - 1);
+			if (!DEPTH_COLORING.equalsIgnoreCase(coloring))
 			{
-				minTime = Math.min(minTime, earthquake.timeInMillis);
-				maxTime = Math.max(maxTime, earthquake.timeInMillis);
+				percent = 1 - percent;
 			}
+			table[i] = new HSLColor((float) (240d * percent), 100f, 50f).getRGB().getRGB();
 		}
+		return table;
+	}
 
-		minTime = coloringMinDate != null ? coloringMinDate : minTime;
-		maxTime = coloringMaxDate != null ? coloringMaxDate : maxTime;
-
-		for (Earthquake earthquake : earthquakes)
+	/**
+	 * Populate the color buffer with colours for the first <code>count</code>
+	 * earthquakes in the catalogue, calculated on the CPU using the same
+	 * scalars and colour table as the shape's scalar colouring.
+	 */
+	protected void generateColoring(FloatBuffer colorBuffer, EarthquakeCatalogue catalogue, int count,
+			String coloring)
+	{
+		float[] scalars = createScalars(catalogue, count, coloring);
+		double[] range = calculateScalarRange(scalars, coloring);
+		float[] colors = FastShape.scalarsToColors(scalars, createColorTable(coloring), range[0], range[1], null, null);
+		for (int i = 0; i < count; i++)
 		{
-			double percent = (earthquake.timeInMillis - minTime) / (double) (maxTime - minTime);
-			percent = 1 - Math.max(0, Math.min(1, percent));
-			Color color = new HSLColor((float) (240d * percent), 100f, 50f).getRGB();
-			colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
+			colorBuffer.put(colors[i * 4]).put(colors[i * 4 + 1]).put(colors[i * 4 + 2]);
 		}
 	}
 
+	/**
+	 * Populate the color buffer with colours based on earthquake magnitude.
+	 * 
+	 * @see #generateMagnitudeColoring(FloatBuffer, EarthquakeCatalogue, int)
+	 */
+	protected void generateMagnitudeColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	{
+		generateMagnitudeColoring(colorBuffer, toCatalogue(earthquakes), earthquakes.size());
+	}
+
+	/**
+	 * Populate the color buffer with colours based on the magnitude of the
+	 * first <code>count</code> earthquakes in the catalogue.
+	 * <p/>
+	 * Blue (low) -> Red (high)
+	 */
+	protected void generateMagnitudeColoring(FloatBuffer colorBuffer, EarthquakeCatalogue catalogue, int count)
+	{
+		generateColoring(colorBuffer, catalogue, count, MAGNITUDE_COLORING);
+	}
+
+	/**
+	 * Populate the color buffer with colours based on earthquake date.
+	 * 
+	 * @see #generateDateColoring(FloatBuffer, EarthquakeCatalogue, int)
+	 */
+	protected void generateDateColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	{
+		generateDateColoring(colorBuffer, toCatalogue(earthquakes), earthquakes.size());
+	}
+
+	/**
+	 * Populate the color buffer with colours based on the date of the first
+	 * <code>count</code> earthquakes in the catalogue.
+	 * <p/>
+	 * Blue (old) -> Red (new)
+	 */
+	protected void generateDateColoring(FloatBuffer colorBuffer, EarthquakeCatalogue catalogue, int count)
+	{
+		generateColoring(colorBuffer, catalogue, count, DATE_COLORING);
+	}
+
 	/**
 	 * Populate the color buffer with colours based on earthquake depth.
+	 * 
+	 * @see #generateDepthColoring(FloatBuffer, EarthquakeCatalogue, int)
+	 */
+	protected void generateDepthColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	{
+		generateDepthColoring(colorBuffer, toCatalogue(earthquakes), earthquakes.size());
+	}
+
+	/**
+	 * Populate the color buffer with colours based on the depth of the first
+	 * <code>count</code> earthquakes in the catalogue.
 	 * <p/>
 	 * Blue (shallow) -> Red (deep)
 	 */
-	protected void generateDepthColoring(FloatBuffer colorBuffer, List<Earthquake> earthquakes)
+	protected void generateDepthColoring(FloatBuffer colorBuffer, EarthquakeCatalogue catalogue, int count)
 	{
-		double minElevation = Double.MAX_VALUE;
-		double maxElevation = -Double.MAX_VALUE;
-		for (Earthquake earthquake : earthquakes)
-		{
-			minElevation = Math.min(minElevation, earthquake.position.elevation);
-			maxElevation = Math.max(maxElevation, earthquake.position.elevation);
-		}
-		for (Earthquake earthquake : earthquakes)
-		{
-			double percent = (earthquake.position.elevation - minElevation) / (maxElevation - minElevation);
-			Color color = new HSLColor((float) (240d * percent), 100f, 50f).getRGB();
-			colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f);
-		}
+		generateColoring(colorBuffer, catalogue, count, DEPTH_COLORING);
 	}
 
 	protected static class Earthquake
@@ -23,13 +23,13 @@ import gov.nasa.worldwind.geom.LatLon;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.util.Calendar;
 
 /**
  * Helper class used for converting the large historic earthquakes shapefile
- * into a smaller double array, which is used by the
- * {@link HistoricEarthquakesLayer}.
+ * into a smaller columnar file (see {@link EarthquakeCatalogue}), which is used
+ * by the {@link HistoricEarthquakesLayer}.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -39,7 +39,7 @@ public class HistoricEarthquakesShapefileConverter
 	{
 		File file = new File("D:/Earthquakes/quakes.shp");
 		File output = new File("D:/Earthquakes/quakes.dat");
-		ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(output));
+		EarthquakeCatalogue catalogue = new EarthquakeCatalogue();
 		Shapefile shapefile = new Shapefile(file);
 
 		while (shapefile.hasNext())
@@ -62,14 +62,19 @@ public class HistoricEarthquakesShapefileConverter
 
 			//although we don't particularly need double/long accuracy, once the binary file
 			//is zipped there is not much difference in size between the two (around 15%)
-			oos.writeDouble(latlon.getLatitude().degrees);
-			oos.writeDouble(latlon.getLongitude().degrees);
-			oos.writeDouble(elevation);
-			oos.writeDouble(magnitude);
-			oos.writeLong(timeInMillis);
+			catalogue.add(latlon.getLatitude().degrees, latlon.getLongitude().degrees, elevation, magnitude,
+					timeInMillis);
 		}
 
-		oos.close();
+		OutputStream os = new FileOutputStream(output);
+		try
+		{
+			catalogue.write(os, EarthquakeCatalogue.DEFAULT_BLOCK_SIZE);
+		}
+		finally
+		{
+			os.close();
+		}
 	}
 
 	protected static double getDoubleFromObject(Object object, double defalt)
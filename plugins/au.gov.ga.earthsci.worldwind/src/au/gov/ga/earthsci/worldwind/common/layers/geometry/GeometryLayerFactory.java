@@ -28,6 +28,7 @@ import org.w3c.dom.Element;
 import au.gov.ga.earthsci.worldwind.common.layers.data.DataLayerFactory;
 import au.gov.ga.earthsci.worldwind.common.layers.geometry.provider.ShapefileShapeProvider;
 import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.airspace.AirspaceGeometryLayer;
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh.MeshGeometryLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.styled.StyleAndAttributeFactory;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 
@@ -54,6 +55,10 @@ public class GeometryLayerFactory
 		{
 			layer = new AirspaceGeometryLayer(params);
 		}
+		else if ("Mesh".equalsIgnoreCase(type))
+		{
+			layer = new MeshGeometryLayer(params);
+		}
 		else
 		{
 			throw new IllegalArgumentException("Could not find layer for GeometryLayer: " + type);
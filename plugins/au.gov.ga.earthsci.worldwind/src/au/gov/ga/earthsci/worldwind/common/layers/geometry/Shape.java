@@ -98,6 +98,14 @@ public interface Shape
 			}
 		}
 		
+		/**
+		 * @return The attribute values associated with this point
+		 */
+		public AVList getAttributeValues()
+		{
+			return attributeValues;
+		}
+
 		public Object getAttributeValue(String attributeName)
 		{
 			return attributeValues.getValue(attributeName);
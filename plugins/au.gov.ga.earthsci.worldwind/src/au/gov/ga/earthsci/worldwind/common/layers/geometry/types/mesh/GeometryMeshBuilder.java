@@ -0,0 +1,345 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh;
+
+import java.util.Arrays;
+
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh.PolygonTriangulator.IntArray;
+
+/**
+ * Builds a shared mesh from many polygon and polyline features, for rendering
+ * all of the features within a tile in a single draw call.
+ * <p/>
+ * Polygons are triangulated into an indexed triangle mesh, and polylines into
+ * an indexed line mesh. Each vertex is given the RGBA colour of its feature,
+ * so that the features can be coloured individually from a per-vertex colour
+ * buffer.
+ * <p/>
+ * Feature coordinates are snapped to a grid with the builder's tolerance
+ * before triangulation, removing detail smaller than the tolerance. As
+ * adjacent features snap shared boundaries to the same grid points, snapping
+ * doesn't open gaps between neighbouring polygons.
+ * <p/>
+ * This class is not thread safe.
+ */
+public class GeometryMeshBuilder
+{
+	private final double tolerance;
+	private final MeshData polygons = new MeshData();
+	private final MeshData lines = new MeshData();
+
+	/**
+	 * Create a new builder.
+	 * 
+	 * @param tolerance
+	 *            Grid size in degrees that feature coordinates are snapped
+	 *            to; 0 to use the coordinates unchanged
+	 */
+	public GeometryMeshBuilder(double tolerance)
+	{
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * @return Grid size in degrees that feature coordinates are snapped to
+	 */
+	public double getTolerance()
+	{
+		return tolerance;
+	}
+
+	/**
+	 * Triangulate a polygon feature and add it to the mesh.
+	 * <p/>
+	 * Rings wound in the same direction as the first ring are outer rings,
+	 * and rings wound in the opposite direction are holes in the preceding
+	 * outer ring (the Shapefile convention). Rings that collapse to less than
+	 * three points after snapping are ignored.
+	 * 
+	 * @param latitudes
+	 *            Latitudes of the feature's points, in degrees
+	 * @param longitudes
+	 *            Longitudes of the feature's points, in degrees
+	 * @param partStarts
+	 *            Index of the first point of each ring
+	 * @param color
+	 *            RGBA colour of the feature
+	 */
+	public void addPolygon(double[] latitudes, double[] longitudes, int[] partStarts, float[] color)
+	{
+		double[] coords = new double[latitudes.length * 2];
+		int[] ringStarts = new int[partStarts.length + 1];
+		double[] ringAreas = new double[partStarts.length];
+		int ringCount = 0;
+		int vertexCount = 0;
+
+		for (int part = 0; part < partStarts.length; part++)
+		{
+			int end = part < partStarts.length - 1 ? partStarts[part + 1] : latitudes.length;
+			int count = snap(latitudes, longitudes, partStarts[part], end, true, coords, vertexCount);
+			if (count < 3)
+			{
+				continue;
+			}
+			double area = PolygonTriangulator.signedArea(coords, vertexCount, vertexCount + count);
+			if (area == 0)
+			{
+				continue;
+			}
+			ringStarts[ringCount] = vertexCount;
+			ringAreas[ringCount] = area;
+			ringCount++;
+			vertexCount += count;
+		}
+		ringStarts[ringCount] = vertexCount;
+		if (ringCount == 0)
+		{
+			return;
+		}
+
+		boolean outerSign = ringAreas[0] > 0;
+		int ring = 0;
+		while (ring < ringCount)
+		{
+			//collect the holes following this outer ring
+			int last = ring + 1;
+			while (last < ringCount && (ringAreas[last] > 0) != outerSign)
+			{
+				last++;
+			}
+
+			int start = ringStarts[ring];
+			int end = ringStarts[last];
+			double[] polygon = Arrays.copyOfRange(coords, start * 2, end * 2);
+			int[] holeStarts = null;
+			if (last > ring + 1)
+			{
+				holeStarts = new int[last - ring - 1];
+				for (int i = 0; i < holeStarts.length; i++)
+				{
+					holeStarts[i] = ringStarts[ring + 1 + i] - start;
+				}
+			}
+
+			int[] triangles = PolygonTriangulator.triangulate(polygon, holeStarts);
+			if (triangles.length > 0)
+			{
+				int base = polygons.addVertices(polygon, end - start, color);
+				for (int index : triangles)
+				{
+					polygons.indices.add(base + index);
+				}
+			}
+			ring = last;
+		}
+	}
+
+	/**
+	 * Add a polyline feature to the mesh. Parts that collapse to a single
+	 * point after snapping are ignored.
+	 * 
+	 * @param latitudes
+	 *            Latitudes of the feature's points, in degrees
+	 * @param longitudes
+	 *            Longitudes of the feature's points, in degrees
+	 * @param partStarts
+	 *            Index of the first point of each part
+	 * @param color
+	 *            RGBA colour of the feature
+	 */
+	public void addLine(double[] latitudes, double[] longitudes, int[] partStarts, float[] color)
+	{
+		double[] coords = new double[latitudes.length * 2];
+		for (int part = 0; part < partStarts.length; part++)
+		{
+			int end = part < partStarts.length - 1 ? partStarts[part + 1] : latitudes.length;
+			int count = snap(latitudes, longitudes, partStarts[part], end, false, coords, 0);
+			if (count < 2)
+			{
+				continue;
+			}
+			int base = lines.addVertices(coords, count, color);
+			for (int i = 1; i < count; i++)
+			{
+				lines.indices.add(base + i - 1);
+				lines.indices.add(base + i);
+			}
+		}
+	}
+
+	/**
+	 * @return The triangle mesh containing the polygons added to this builder
+	 */
+	public Mesh getPolygons()
+	{
+		return polygons.toMesh();
+	}
+
+	/**
+	 * @return The line mesh containing the polylines added to this builder
+	 */
+	public Mesh getLines()
+	{
+		return lines.toMesh();
+	}
+
+	/**
+	 * Snap the points from start to end to the grid, writing them to the
+	 * interleaved longitude/latitude coords array, and skipping points that
+	 * snap to the same location as the previous point.
+	 * 
+	 * @return Number of points written
+	 */
+	private int snap(double[] latitudes, double[] longitudes, int start, int end, boolean ring, double[] coords,
+			int offset)
+	{
+		int count = 0;
+		for (int i = start; i < end; i++)
+		{
+			double x = snap(longitudes[i]);
+			double y = snap(latitudes[i]);
+			int index = (offset + count) * 2;
+			if (count > 0 && coords[index - 2] == x && coords[index - 1] == y)
+			{
+				continue;
+			}
+			coords[index] = x;
+			coords[index + 1] = y;
+			count++;
+		}
+		//remove the closing point of rings
+		while (ring && count > 1 && coords[offset * 2] == coords[(offset + count - 1) * 2]
+				&& coords[offset * 2 + 1] == coords[(offset + count - 1) * 2 + 1])
+		{
+			count--;
+		}
+		return count;
+	}
+
+	private double snap(double value)
+	{
+		if (tolerance <= 0)
+		{
+			return value;
+		}
+		return Math.round(value / tolerance) * tolerance;
+	}
+
+	/**
+	 * Find the starts of the rings in a polygon whose rings have been
+	 * concatenated into a single list of points. Each ring is assumed to be
+	 * closed, so a ring ends at the first point (after the third) that is
+	 * equal to the ring's first point.
+	 * 
+	 * @param latitudes
+	 *            Latitudes of the polygon's points
+	 * @param longitudes
+	 *            Longitudes of the polygon's points
+	 * @return Index of the first point of each ring
+	 */
+	public static int[] findRingStarts(double[] latitudes, double[] longitudes)
+	{
+		IntArray starts = new IntArray(4);
+		int start = 0;
+		while (start < latitudes.length)
+		{
+			starts.add(start);
+			int end = start + 3;
+			while (end < latitudes.length
+					&& (latitudes[end] != latitudes[start] || longitudes[end] != longitudes[start]))
+			{
+				end++;
+			}
+			start = end + 1;
+		}
+		return starts.toArray();
+	}
+
+	/**
+	 * An indexed mesh. Vertex attributes are stored in separate arrays, with
+	 * colours stored as 4 RGBA floats per vertex.
+	 */
+	public static class Mesh
+	{
+		public final int vertexCount;
+		public final double[] latitudes;
+		public final double[] longitudes;
+		public final float[] colors;
+		public final int[] indices;
+
+		public Mesh(int vertexCount, double[] latitudes, double[] longitudes, float[] colors, int[] indices)
+		{
+			this.vertexCount = vertexCount;
+			this.latitudes = latitudes;
+			this.longitudes = longitudes;
+			this.colors = colors;
+			this.indices = indices;
+		}
+
+		/**
+		 * @return Does this mesh contain no primitives?
+		 */
+		public boolean isEmpty()
+		{
+			return indices.length == 0;
+		}
+	}
+
+	/**
+	 * Growable vertex and index arrays.
+	 */
+	private static class MeshData
+	{
+		public int vertexCount;
+		public double[] latitudes = new double[64];
+		public double[] longitudes = new double[64];
+		public float[] colors = new float[256];
+		public final IntArray indices = new IntArray(64);
+
+		/**
+		 * Add vertices from an interleaved longitude/latitude array.
+		 * 
+		 * @return Index of the first added vertex
+		 */
+		public int addVertices(double[] coords, int count, float[] color)
+		{
+			int required = vertexCount + count;
+			if (required > latitudes.length)
+			{
+				int length = Math.max(required, latitudes.length * 2);
+				latitudes = Arrays.copyOf(latitudes, length);
+				longitudes = Arrays.copyOf(longitudes, length);
+				colors = Arrays.copyOf(colors, length * 4);
+			}
+
+			int base = vertexCount;
+			for (int i = 0; i < count; i++)
+			{
+				longitudes[base + i] = coords[i * 2];
+				latitudes[base + i] = coords[i * 2 + 1];
+				System.arraycopy(color, 0, colors, (base + i) * 4, 4);
+			}
+			vertexCount = required;
+			return base;
+		}
+
+		public Mesh toMesh()
+		{
+			return new Mesh(vertexCount, Arrays.copyOf(latitudes, vertexCount), Arrays.copyOf(longitudes,
+					vertexCount), Arrays.copyOf(colors, vertexCount * 4), indices.toArray());
+		}
+	}
+}
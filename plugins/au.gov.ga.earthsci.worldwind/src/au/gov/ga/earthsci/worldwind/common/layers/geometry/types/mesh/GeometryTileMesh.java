@@ -0,0 +1,159 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh;
+
+import gov.nasa.worldwind.cache.Cacheable;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.render.DrawContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.media.opengl.GL2;
+
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh.GeometryMeshBuilder.Mesh;
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+
+/**
+ * The renderable mesh of a single {@link MeshGeometryLayer} tile, containing
+ * the triangulated polygons and the polylines of all of the features in the
+ * tile at the tile's level of detail. Each is rendered as a single
+ * {@link FastShape}, coloured per feature from a per-vertex colour buffer.
+ */
+public class GeometryTileMesh implements Cacheable
+{
+	private final FastShape polygons;
+	private final FastShape lines;
+	private final long indicesSize;
+	private final long bufferSize;
+
+	/**
+	 * Create a tile mesh from the meshes generated by a
+	 * {@link GeometryMeshBuilder}.
+	 * 
+	 * @param polygons
+	 *            Triangle mesh of the tile's polygons
+	 * @param lines
+	 *            Line mesh of the tile's polylines
+	 * @param followTerrain
+	 *            Should the meshes follow the terrain?
+	 */
+	public GeometryTileMesh(Mesh polygons, Mesh lines, boolean followTerrain)
+	{
+		this.polygons = createShape(polygons, GL2.GL_TRIANGLES, followTerrain);
+		this.lines = createShape(lines, GL2.GL_LINES, followTerrain);
+		this.indicesSize = 4L * (polygons.indices.length + lines.indices.length);
+		//vertex buffer objects: 3 floats per vertex, 4 colour floats per vertex, and the indices
+		this.bufferSize = 28L * (polygons.vertexCount + lines.vertexCount) + indicesSize;
+	}
+
+	private static FastShape createShape(Mesh mesh, int mode, boolean followTerrain)
+	{
+		if (mesh.isEmpty())
+		{
+			return null;
+		}
+
+		List<Position> positions = new ArrayList<Position>(mesh.vertexCount);
+		for (int i = 0; i < mesh.vertexCount; i++)
+		{
+			positions.add(Position.fromDegrees(mesh.latitudes[i], mesh.longitudes[i], 0));
+		}
+
+		FastShape shape = new FastShape(positions, mesh.indices, mode);
+		shape.setColorBuffer(mesh.colors);
+		shape.setColorBufferElementSize(4);
+		shape.setFollowTerrain(followTerrain);
+		shape.setLighted(false);
+		shape.setBackfaceCulling(false);
+		shape.setSortTransparentPrimitives(false);
+		return shape;
+	}
+
+	/**
+	 * Set the opacity of the meshes, which is multiplied with the per-feature
+	 * colour alpha.
+	 */
+	public void setOpacity(double opacity)
+	{
+		if (polygons != null)
+		{
+			polygons.setOpacity(opacity);
+		}
+		if (lines != null)
+		{
+			lines.setOpacity(opacity);
+		}
+	}
+
+	/**
+	 * Render the polygons, followed by the polylines.
+	 */
+	public void render(DrawContext dc)
+	{
+		if (polygons != null)
+		{
+			polygons.render(dc);
+		}
+		if (lines != null)
+		{
+			lines.render(dc);
+		}
+	}
+
+	/**
+	 * Delete the meshes' vertex buffer objects from the video card. Must be
+	 * called on the rendering thread.
+	 */
+	public void deleteBuffers(GL2 gl)
+	{
+		if (polygons != null)
+		{
+			polygons.deleteVBOs(gl);
+		}
+		if (lines != null)
+		{
+			lines.deleteVBOs(gl);
+		}
+	}
+
+	/**
+	 * @return Does this mesh contain nothing to render?
+	 */
+	public boolean isEmpty()
+	{
+		return polygons == null && lines == null;
+	}
+
+	/**
+	 * @return Size of this mesh in bytes, including the copy held in the
+	 *         video card's vertex buffer objects
+	 */
+	@Override
+	public long getSizeInBytes()
+	{
+		long size = 32 + indicesSize + bufferSize;
+		if (polygons != null)
+		{
+			size += polygons.getSizeInBytes();
+		}
+		if (lines != null)
+		{
+			size += lines.getSizeInBytes();
+		}
+		return size;
+	}
+}
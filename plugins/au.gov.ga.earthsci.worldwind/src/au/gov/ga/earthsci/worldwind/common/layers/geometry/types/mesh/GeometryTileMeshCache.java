@@ -0,0 +1,248 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh;
+
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.WWIO;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.logging.Level;
+
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh.GeometryMeshBuilder.Mesh;
+
+/**
+ * Reads and writes the polygon and line {@link Mesh}es of a
+ * {@link MeshGeometryLayer} tile as a compact binary file, so that tiles
+ * don't need to be triangulated again each time unchanged source data is
+ * loaded.
+ * <p/>
+ * Like the {@link au.gov.ga.earthsci.worldwind.common.layers.model.gocad.GocadModelCache},
+ * the file contains a key which must match the key provided when reading; if
+ * it doesn't, the file is ignored.
+ */
+public class GeometryTileMeshCache
+{
+	private static final int MAGIC = 0x47544d42; //'GTMB'
+	private static final int VERSION = 1;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Read a tile's meshes from a file.
+	 * 
+	 * @param file
+	 *            File to read
+	 * @param key
+	 *            Key that the file must have been written with
+	 * @return Array containing the polygon mesh followed by the line mesh, or
+	 *         null if the file doesn't exist, is invalid, or has a different
+	 *         key
+	 */
+	public static Mesh[] read(File file, String key)
+	{
+		if (file == null || !file.isFile())
+		{
+			return null;
+		}
+
+		RandomAccessFile raf = null;
+		try
+		{
+			raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("Geometry mesh cache is too large: " + size + " bytes");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer) < 0)
+				{
+					throw new EOFException("Geometry mesh cache is truncated");
+				}
+			}
+			buffer.flip();
+			buffer.order(ByteOrder.nativeOrder());
+			return read(buffer, key);
+		}
+		catch (Exception e)
+		{
+			//a corrupt file shouldn't prevent the tile from being built from the source
+			Logging.logger().log(Level.WARNING, "Error reading geometry mesh cache: " + file, e);
+			return null;
+		}
+		finally
+		{
+			if (raf != null)
+			{
+				try
+				{
+					raf.close();
+				}
+				catch (IOException e)
+				{
+					//ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read a tile's meshes from a buffer.
+	 * 
+	 * @param buffer
+	 *            Buffer containing the meshes
+	 * @param key
+	 *            Key that the buffer must have been written with
+	 * @return Array containing the polygon mesh followed by the line mesh, or
+	 *         null if the buffer has a different key or version
+	 */
+	public static Mesh[] read(ByteBuffer buffer, String key)
+	{
+		if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+		{
+			return null;
+		}
+		int keyLength = buffer.getInt();
+		byte[] keyBytes = new byte[keyLength];
+		buffer.get(keyBytes);
+		if (!key.equals(new String(keyBytes, UTF8)))
+		{
+			return null;
+		}
+
+		Mesh polygons = readMesh(buffer);
+		Mesh lines = readMesh(buffer);
+		return new Mesh[] { polygons, lines };
+	}
+
+	/**
+	 * Write a tile's meshes to a file.
+	 * 
+	 * @param file
+	 *            File to write to
+	 * @param key
+	 *            Key to store with the meshes
+	 * @param polygons
+	 *            Triangle mesh of the tile's polygons
+	 * @param lines
+	 *            Line mesh of the tile's polylines
+	 * @return True if the file was written successfully
+	 */
+	public static boolean write(File file, String key, Mesh polygons, Mesh lines)
+	{
+		ByteBuffer buffer = write(key, polygons, lines);
+		FileOutputStream fos = null;
+		try
+		{
+			fos = new FileOutputStream(file);
+			FileChannel channel = fos.getChannel();
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			Logging.logger().log(Level.WARNING, "Error writing geometry mesh cache: " + file, e);
+			return false;
+		}
+		finally
+		{
+			WWIO.closeStream(fos, file.getPath());
+		}
+	}
+
+	/**
+	 * Write a tile's meshes to a buffer.
+	 * 
+	 * @param key
+	 *            Key to store with the meshes
+	 * @param polygons
+	 *            Triangle mesh of the tile's polygons
+	 * @param lines
+	 *            Line mesh of the tile's polylines
+	 * @return Buffer containing the meshes, ready to be read
+	 */
+	public static ByteBuffer write(String key, Mesh polygons, Mesh lines)
+	{
+		byte[] keyBytes = key.getBytes(UTF8);
+		long size = 12 + keyBytes.length + calculateMeshSize(polygons) + calculateMeshSize(lines);
+		if (size > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Meshes too large to cache");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		buffer.putInt(keyBytes.length);
+		buffer.put(keyBytes);
+		writeMesh(buffer, polygons);
+		writeMesh(buffer, lines);
+		buffer.flip();
+		return buffer;
+	}
+
+	protected static long calculateMeshSize(Mesh mesh)
+	{
+		//vertex count, latitudes and longitudes, 4 colour floats per vertex, and the index count and indices
+		return 4 + mesh.vertexCount * (2 * 8 + 4 * 4L) + 4 + mesh.indices.length * 4L;
+	}
+
+	protected static void writeMesh(ByteBuffer buffer, Mesh mesh)
+	{
+		int vertexCount = mesh.vertexCount;
+		buffer.putInt(vertexCount);
+		buffer.asDoubleBuffer().put(mesh.latitudes, 0, vertexCount);
+		buffer.position(buffer.position() + vertexCount * 8);
+		buffer.asDoubleBuffer().put(mesh.longitudes, 0, vertexCount);
+		buffer.position(buffer.position() + vertexCount * 8);
+		buffer.asFloatBuffer().put(mesh.colors, 0, vertexCount * 4);
+		buffer.position(buffer.position() + vertexCount * 16);
+		buffer.putInt(mesh.indices.length);
+		buffer.asIntBuffer().put(mesh.indices);
+		buffer.position(buffer.position() + mesh.indices.length * 4);
+	}
+
+	protected static Mesh readMesh(ByteBuffer buffer)
+	{
+		int vertexCount = buffer.getInt();
+		double[] latitudes = new double[vertexCount];
+		buffer.asDoubleBuffer().get(latitudes);
+		buffer.position(buffer.position() + vertexCount * 8);
+		double[] longitudes = new double[vertexCount];
+		buffer.asDoubleBuffer().get(longitudes);
+		buffer.position(buffer.position() + vertexCount * 8);
+		float[] colors = new float[vertexCount * 4];
+		buffer.asFloatBuffer().get(colors);
+		buffer.position(buffer.position() + vertexCount * 16);
+		int[] indices = new int[buffer.getInt()];
+		buffer.asIntBuffer().get(indices);
+		buffer.position(buffer.position() + indices.length * 4);
+		return new Mesh(vertexCount, latitudes, longitudes, colors, indices);
+	}
+}
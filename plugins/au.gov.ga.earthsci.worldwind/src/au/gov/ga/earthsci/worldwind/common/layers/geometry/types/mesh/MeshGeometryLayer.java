@@ -0,0 +1,801 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh;
+
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.avlist.AVKey;
+import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.cache.BasicMemoryCache;
+import gov.nasa.worldwind.cache.MemoryCache;
+import gov.nasa.worldwind.geom.Extent;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.render.airspaces.AirspaceAttributes;
+import gov.nasa.worldwind.render.airspaces.BasicAirspaceAttributes;
+import gov.nasa.worldwind.util.Logging;
+
+import java.awt.Color;
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.GeometryLayer;
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.Shape;
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.Shape.ShapePoint;
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.Shape.Type;
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.GeometryLayerBase;
+import au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh.GeometryMeshBuilder.Mesh;
+import au.gov.ga.earthsci.worldwind.common.layers.styled.StyleAndText;
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
+
+/**
+ * An implementation of the {@link GeometryLayer} interface that renders all of
+ * its polygons and polylines as shared meshes, rather than as a separate
+ * object per shape.
+ * <p/>
+ * When loaded, the shapes are binned into a quadtree of tiles: at each level,
+ * a shape belongs to the tile containing the centre of its bounding box.
+ * Shapes smaller than a level's grid cell are omitted from that level, as
+ * snapping would collapse them. Each tile's shapes are triangulated once into a
+ * single {@link GeometryTileMesh}, with coordinates snapped to a grid that is
+ * finer at each level, and the meshes are stored in a memory cache keyed by the
+ * layer's data cache name. The triangulated meshes are also written to the
+ * data file store (see {@link GeometryTileMeshCache}), under the data cache
+ * name and the last modified time of the source data, so they are only
+ * triangulated again when the source data changes; as the meshes include the
+ * shapes' colours, the data cache name should also change if the styles do.
+ * Each frame, the coarsest tiles whose grid is smaller than a pixel are
+ * rendered; meshes are built in the background, and a tile is only replaced
+ * by its children when the children's meshes are available. The vertex
+ * buffer objects of meshes removed from the cache are deleted on the
+ * rendering thread.
+ * <p/>
+ * Each shape is coloured by the material and opacity of the style matching
+ * the shape's attribute values, using the same style properties as the
+ * airspace layer.
+ */
+public class MeshGeometryLayer extends GeometryLayerBase implements GeometryLayer
+{
+	protected static final String CACHE_NAME = "Geometry Meshes";
+	protected static final String CACHE_ID = MeshGeometryLayer.class.getName();
+	protected static final long CACHE_SIZE = 100000000L;
+	protected static final String MESH_CACHE_SUFFIX = ".meshes";
+
+	/**
+	 * Size of the level zero tiles in degrees
+	 */
+	public static final double LEVEL_ZERO_TILE_DELTA = 36;
+	/**
+	 * Number of tile levels; the last level is rendered at full resolution
+	 */
+	public static final int LEVEL_COUNT = 10;
+	/**
+	 * Number of grid cells across a tile that shape coordinates are snapped
+	 * to
+	 */
+	public static final int TILE_RESOLUTION = 512;
+	/**
+	 * Maximum number of tile meshes to start building each frame
+	 */
+	public static final int MAX_BUILDS_PER_FRAME = 4;
+
+	protected static final double DEFAULT_OPACITY = 0.5;
+
+	private static final AtomicInteger loadCount = new AtomicInteger();
+	private static final ConcurrentLinkedQueue<GeometryTileMesh> removedMeshes =
+			new ConcurrentLinkedQueue<GeometryTileMesh>();
+
+	private final List<Shape> shapes = new ArrayList<Shape>();
+	private volatile List<Tile> topTiles = new ArrayList<Tile>();
+	private volatile String cacheKeyPrefix;
+	private volatile String meshCachePrefix;
+	private final ConcurrentMap<String, BuildTask> pendingBuilds = new ConcurrentHashMap<String, BuildTask>();
+	private final Set<String> cachedKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final List<Tile> buildCandidates = new ArrayList<Tile>();
+	private boolean followTerrain = true;
+
+	public MeshGeometryLayer(AVList params)
+	{
+		super(params);
+
+		if (!WorldWind.getMemoryCacheSet().containsCache(CACHE_ID))
+		{
+			MemoryCache cache = new BasicMemoryCache((long) (0.85 * CACHE_SIZE), CACHE_SIZE);
+			cache.setName(CACHE_NAME);
+			cache.addCacheListener(new MemoryCache.CacheListener()
+			{
+				@Override
+				public void entryRemoved(Object key, Object clientObject)
+				{
+					//VBOs can only be deleted on the rendering thread
+					if (clientObject instanceof GeometryTileMesh)
+					{
+						removedMeshes.add((GeometryTileMesh) clientObject);
+					}
+				}
+
+				@Override
+				public void removalException(Throwable t, Object key, Object clientObject)
+				{
+					Logging.logger().log(Level.FINE, "Exception removing geometry mesh from cache", t);
+				}
+			});
+			WorldWind.getMemoryCacheSet().addCache(CACHE_ID, cache);
+		}
+	}
+
+	@Override
+	public Iterable<? extends Shape> getShapes()
+	{
+		return shapes;
+	}
+
+	@Override
+	public void addShape(Shape shape)
+	{
+		synchronized (shapes)
+		{
+			if (shape == null)
+			{
+				return;
+			}
+			shapes.add(shape);
+		}
+	}
+
+	/**
+	 * Bin the loaded shapes into the tile quadtree. Meshes are triangulated
+	 * lazily, when their tile is first rendered.
+	 */
+	@Override
+	public void loadComplete()
+	{
+		List<Tile> topTiles = new ArrayList<Tile>();
+		Map<Integer, Tile> topTileMap = new HashMap<Integer, Tile>();
+		Map<StyleAndText, float[]> colorCache = new HashMap<StyleAndText, float[]>();
+		int topColumns = (int) Math.round(360 / LEVEL_ZERO_TILE_DELTA);
+
+		synchronized (shapes)
+		{
+			for (Shape shape : shapes)
+			{
+				Feature feature = createFeature(shape, colorCache);
+				if (feature == null)
+				{
+					continue;
+				}
+
+				double centerLatitude = (feature.minLatitude + feature.maxLatitude) * 0.5;
+				double centerLongitude = (feature.minLongitude + feature.maxLongitude) * 0.5;
+				int row = tileIndex(centerLatitude + 90, topColumns / 2);
+				int column = tileIndex(centerLongitude + 180, topColumns);
+
+				Integer key = row * topColumns + column;
+				Tile tile = topTileMap.get(key);
+				if (tile == null)
+				{
+					tile = new Tile(0, row, column);
+					topTileMap.put(key, tile);
+					topTiles.add(tile);
+				}
+
+				while (true)
+				{
+					//the last level isn't snapped, so all features are triangulated there
+					boolean triangulate =
+							tile.level >= LEVEL_COUNT - 1 || feature.getSize() >= tile.delta / TILE_RESOLUTION;
+					tile.add(feature, triangulate);
+					if (tile.level >= LEVEL_COUNT - 1)
+					{
+						break;
+					}
+					tile = tile.getChild(centerLatitude, centerLongitude);
+				}
+			}
+		}
+
+		cancelBuilds();
+		removeCachedMeshes();
+		long sourceTimestamp = getSourceTimestamp();
+		meshCachePrefix =
+				sourceTimestamp > 0 ? getDataCacheName() + MESH_CACHE_SUFFIX + "/" + sourceTimestamp + "/" : null;
+		cacheKeyPrefix = getDataCacheName() + "/" + loadCount.incrementAndGet() + "/";
+		this.topTiles = topTiles;
+		firePropertyChange(AVKey.LAYER, null, this);
+	}
+
+	/**
+	 * @return Last modified time of the file the shapes were loaded from (the
+	 *         downloaded copy for remote data), or 0 if unknown
+	 */
+	protected long getSourceTimestamp()
+	{
+		try
+		{
+			File file = URLUtil.urlToFile(getUrl());
+			if (file == null)
+			{
+				URL url = WorldWind.getDataFileStore().findFile(getDataCacheName(), false);
+				file = url != null ? URLUtil.urlToFile(url) : null;
+			}
+			return file != null && file.isFile() ? file.lastModified() : 0;
+		}
+		catch (MalformedURLException e)
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Create the feature used to build meshes for the given shape.
+	 * 
+	 * @return Feature, or null if the shape cannot be rendered as a mesh
+	 */
+	protected Feature createFeature(Shape shape, Map<StyleAndText, float[]> colorCache)
+	{
+		List<? extends ShapePoint> points = shape.getPoints();
+		Type type = shape.getType();
+		if (type == Type.POINT || points.size() < 2)
+		{
+			return null;
+		}
+
+		double[] latitudes = new double[points.size()];
+		double[] longitudes = new double[points.size()];
+		for (int i = 0; i < latitudes.length; i++)
+		{
+			latitudes[i] = points.get(i).getLatitude().degrees;
+			longitudes[i] = points.get(i).getLongitude().degrees;
+		}
+
+		//the shape provider concatenates parts; polygon rings are closed, so they can be separated again
+		int[] partStarts =
+				type == Type.POLYGON ? GeometryMeshBuilder.findRingStarts(latitudes, longitudes) : new int[] { 0 };
+
+		return new Feature(type, latitudes, longitudes, partStarts, getColor(points.get(0).getAttributeValues(),
+				colorCache));
+	}
+
+	/**
+	 * Calculate the RGBA colour of a shape from the material and opacity of
+	 * the style matching the shape's attribute values.
+	 */
+	protected float[] getColor(AVList attributeValues, Map<StyleAndText, float[]> colorCache)
+	{
+		StyleAndText style = getStyleProvider().getStyle(attributeValues);
+		if (style != null && style.style == null)
+		{
+			style = null;
+		}
+		boolean cacheable = style == null || !style.style.isAttributeDependent();
+		if (cacheable && colorCache.containsKey(style))
+		{
+			return colorCache.get(style);
+		}
+
+		AirspaceAttributes attributes = new BasicAirspaceAttributes();
+		if (style == null)
+		{
+			attributes.setOpacity(DEFAULT_OPACITY);
+		}
+		else
+		{
+			style.style.setPropertiesFromAttributes((URL) getValue(AVKeyMore.CONTEXT_URL), attributeValues,
+					attributes);
+		}
+
+		Color color = attributes.getMaterial().getDiffuse();
+		float[] rgba =
+				new float[] { color.getRed() / 255f, color.getGreen() / 255f, color.getBlue() / 255f,
+						(float) attributes.getOpacity() };
+		if (cacheable)
+		{
+			colorCache.put(style, rgba);
+		}
+		return rgba;
+	}
+
+	@Override
+	public void renderGeometry(DrawContext dc)
+	{
+		deleteRemovedMeshes(dc);
+
+		List<Tile> topTiles = this.topTiles;
+		String cacheKeyPrefix = this.cacheKeyPrefix;
+		if (topTiles.isEmpty() || cacheKeyPrefix == null)
+		{
+			return;
+		}
+
+		buildCandidates.clear();
+		for (Tile tile : topTiles)
+		{
+			renderTile(dc, tile, cacheKeyPrefix);
+		}
+		requestBuilds(cacheKeyPrefix, meshCachePrefix);
+	}
+
+	/**
+	 * Render the given tile, or its children if the tile's detail is too
+	 * coarse and the children's meshes are available.
+	 */
+	protected void renderTile(DrawContext dc, Tile tile, String cacheKeyPrefix)
+	{
+		if (!tile.isVisible(dc))
+		{
+			return;
+		}
+
+		GeometryTileMesh mesh = getMesh(tile, cacheKeyPrefix);
+		if (mesh == null)
+		{
+			buildCandidates.add(tile);
+			return;
+		}
+
+		if (tile.children != null && needToSplit(dc, tile) && areChildrenAvailable(dc, tile, cacheKeyPrefix))
+		{
+			for (Tile child : tile.children)
+			{
+				if (child != null)
+				{
+					renderTile(dc, child, cacheKeyPrefix);
+				}
+			}
+			return;
+		}
+
+		if (!mesh.isEmpty())
+		{
+			mesh.setOpacity(getOpacity());
+			mesh.render(dc);
+		}
+	}
+
+	/**
+	 * @return Is the tile's snapping grid larger than a pixel?
+	 */
+	protected boolean needToSplit(DrawContext dc, Tile tile)
+	{
+		Extent extent = tile.getExtent(dc);
+		double distance = dc.getView().getEyePoint().distanceTo3(extent.getCenter()) - extent.getRadius();
+		double pixelSize = dc.getView().computePixelSizeAtDistance(Math.max(distance, 1));
+		double gridSize = Math.toRadians(tile.delta / TILE_RESOLUTION) * dc.getGlobe().getRadius();
+		return gridSize > pixelSize;
+	}
+
+	/**
+	 * Check that the meshes of the tile's visible children are available,
+	 * adding those that aren't to the build candidates.
+	 */
+	protected boolean areChildrenAvailable(DrawContext dc, Tile tile, String cacheKeyPrefix)
+	{
+		boolean available = true;
+		for (Tile child : tile.children)
+		{
+			if (child != null && child.isVisible(dc) && getMesh(child, cacheKeyPrefix) == null)
+			{
+				buildCandidates.add(child);
+				available = false;
+			}
+		}
+		return available;
+	}
+
+	protected GeometryTileMesh getMesh(Tile tile, String cacheKeyPrefix)
+	{
+		MemoryCache cache = WorldWind.getMemoryCacheSet().getCache(CACHE_ID);
+		return (GeometryTileMesh) cache.getObject(cacheKeyPrefix + tile.key);
+	}
+
+	/**
+	 * Start building the meshes of the first {@link #MAX_BUILDS_PER_FRAME}
+	 * build candidates (coarsest first) that aren't already being built.
+	 * 
+	 * @param cacheKeyPrefix
+	 *            Prefix of the tiles' memory cache keys
+	 * @param meshCachePrefix
+	 *            Prefix of the tiles' data file store paths, or null if the
+	 *            meshes shouldn't be stored in the data file store
+	 */
+	protected void requestBuilds(String cacheKeyPrefix, String meshCachePrefix)
+	{
+		int requests = 0;
+		for (int i = 0; i < buildCandidates.size() && requests < MAX_BUILDS_PER_FRAME
+				&& !WorldWind.getTaskService().isFull(); i++)
+		{
+			String key = cacheKeyPrefix + buildCandidates.get(i).key;
+			if (pendingBuilds.containsKey(key))
+			{
+				continue;
+			}
+			BuildTask task = new BuildTask(buildCandidates.get(i), key, meshCachePrefix);
+			if (pendingBuilds.putIfAbsent(key, task) == null)
+			{
+				WorldWind.getTaskService().addTask(task);
+				requests++;
+			}
+		}
+		buildCandidates.clear();
+	}
+
+	protected void cancelBuilds()
+	{
+		for (BuildTask task : pendingBuilds.values())
+		{
+			task.cancelled = true;
+		}
+		pendingBuilds.clear();
+	}
+
+	/**
+	 * Remove the meshes built by this layer from the cache, such as when
+	 * the meshes are rebuilt with a new key prefix.
+	 */
+	protected void removeCachedMeshes()
+	{
+		MemoryCache cache = WorldWind.getMemoryCacheSet().getCache(CACHE_ID);
+		for (String key : cachedKeys)
+		{
+			cache.remove(key);
+		}
+		cachedKeys.clear();
+	}
+
+	/**
+	 * Delete the vertex buffer objects of meshes that have been removed from
+	 * the cache.
+	 */
+	protected static void deleteRemovedMeshes(DrawContext dc)
+	{
+		GeometryTileMesh mesh;
+		while ((mesh = removedMeshes.poll()) != null)
+		{
+			mesh.deleteBuffers(dc.getGL().getGL2());
+		}
+	}
+
+	/**
+	 * @return Should the meshes follow the terrain?
+	 */
+	public boolean isFollowTerrain()
+	{
+		return followTerrain;
+	}
+
+	/**
+	 * Set whether the meshes should follow the terrain. Only applies to meshes
+	 * built after the change.
+	 */
+	public void setFollowTerrain(boolean followTerrain)
+	{
+		this.followTerrain = followTerrain;
+	}
+
+	@Override
+	public Sector getSector()
+	{
+		List<Tile> topTiles = this.topTiles;
+		Sector sector = null;
+		for (Tile tile : topTiles)
+		{
+			Sector tileSector = tile.getFeatureSector();
+			sector = sector == null ? tileSector : sector.union(tileSector);
+		}
+		return sector != null ? sector : super.getSector();
+	}
+
+	@Override
+	public void dispose()
+	{
+		super.dispose();
+		cancelBuilds();
+		removeCachedMeshes();
+	}
+
+	private static int tileIndex(double value, int count)
+	{
+		return Math.max(0, Math.min((int) Math.floor(value / LEVEL_ZERO_TILE_DELTA), count - 1));
+	}
+
+	/**
+	 * Task that builds a tile's mesh (or reads it from the data file store)
+	 * and adds it to the cache.
+	 */
+	protected class BuildTask implements Runnable
+	{
+		private final Tile tile;
+		private final String key;
+		private final String meshCacheName;
+		private final String meshCacheKey;
+		private volatile boolean cancelled = false;
+
+		public BuildTask(Tile tile, String key, String meshCachePrefix)
+		{
+			this.tile = tile;
+			this.key = key;
+			this.meshCacheName = meshCachePrefix != null ? meshCachePrefix + tile.key + ".mesh" : null;
+			//the meshes also depend on the tiling parameters
+			this.meshCacheKey =
+					meshCacheName != null ? meshCacheName + "|" + LEVEL_ZERO_TILE_DELTA + "|" + LEVEL_COUNT + "|"
+							+ TILE_RESOLUTION : null;
+		}
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				if (cancelled)
+				{
+					return;
+				}
+
+				Mesh[] meshes = readMeshes();
+				if (meshes == null)
+				{
+					meshes = buildMeshes();
+					writeMeshes(meshes);
+				}
+
+				GeometryTileMesh mesh = new GeometryTileMesh(meshes[0], meshes[1], followTerrain);
+				if (!cancelled)
+				{
+					WorldWind.getMemoryCacheSet().getCache(CACHE_ID).add(key, mesh);
+					cachedKeys.add(key);
+					firePropertyChange(AVKey.LAYER, null, MeshGeometryLayer.this);
+				}
+			}
+			catch (Exception e)
+			{
+				Logging.logger().log(Level.SEVERE, "Error building geometry mesh " + key, e);
+			}
+			finally
+			{
+				pendingBuilds.remove(key, this);
+			}
+		}
+
+		/**
+		 * Triangulate the tile's features.
+		 * 
+		 * @return The polygon mesh followed by the line mesh
+		 */
+		protected Mesh[] buildMeshes()
+		{
+			double tolerance = tile.level >= LEVEL_COUNT - 1 ? 0 : tile.delta / TILE_RESOLUTION;
+			GeometryMeshBuilder builder = new GeometryMeshBuilder(tolerance);
+			for (Feature feature : tile.features)
+			{
+				if (feature.type == Type.POLYGON)
+				{
+					builder.addPolygon(feature.latitudes, feature.longitudes, feature.partStarts, feature.color);
+				}
+				else
+				{
+					builder.addLine(feature.latitudes, feature.longitudes, feature.partStarts, feature.color);
+				}
+			}
+			return new Mesh[] { builder.getPolygons(), builder.getLines() };
+		}
+
+		/**
+		 * @return The tile's meshes from the data file store, or null if they
+		 *         haven't been stored for the current source data
+		 */
+		protected Mesh[] readMeshes()
+		{
+			if (meshCacheName == null)
+			{
+				return null;
+			}
+			URL url = WorldWind.getDataFileStore().findFile(meshCacheName, false);
+			return url != null ? GeometryTileMeshCache.read(URLUtil.urlToFile(url), meshCacheKey) : null;
+		}
+
+		protected void writeMeshes(Mesh[] meshes)
+		{
+			if (meshCacheName == null || cancelled)
+			{
+				return;
+			}
+			File file = WorldWind.getDataFileStore().newFile(meshCacheName);
+			if (file != null)
+			{
+				GeometryTileMeshCache.write(file, meshCacheKey, meshes[0], meshes[1]);
+			}
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			return obj instanceof BuildTask && ((BuildTask) obj).key.equals(key);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return key.hashCode();
+		}
+	}
+
+	/**
+	 * A polygon or polyline shape, with its points stored in arrays for mesh
+	 * building.
+	 */
+	protected static class Feature
+	{
+		public final Type type;
+		public final double[] latitudes;
+		public final double[] longitudes;
+		public final int[] partStarts;
+		public final float[] color;
+		public double minLatitude = Double.MAX_VALUE;
+		public double maxLatitude = -Double.MAX_VALUE;
+		public double minLongitude = Double.MAX_VALUE;
+		public double maxLongitude = -Double.MAX_VALUE;
+
+		public Feature(Type type, double[] latitudes, double[] longitudes, int[] partStarts, float[] color)
+		{
+			this.type = type;
+			this.latitudes = latitudes;
+			this.longitudes = longitudes;
+			this.partStarts = partStarts;
+			this.color = color;
+
+			for (int i = 0; i < latitudes.length; i++)
+			{
+				minLatitude = Math.min(minLatitude, latitudes[i]);
+				maxLatitude = Math.max(maxLatitude, latitudes[i]);
+				minLongitude = Math.min(minLongitude, longitudes[i]);
+				maxLongitude = Math.max(maxLongitude, longitudes[i]);
+			}
+		}
+
+		/**
+		 * @return Larger of the feature's latitude and longitude extents, in
+		 *         degrees
+		 */
+		public double getSize()
+		{
+			return Math.max(maxLatitude - minLatitude, maxLongitude - minLongitude);
+		}
+	}
+
+	/**
+	 * A tile in the quadtree, containing the features whose centres are
+	 * within the tile and that are large enough for the tile's level. The
+	 * tile's extent covers the whole of the features within the tile and its
+	 * descendants, so may be larger than the tile itself.
+	 */
+	protected static class Tile
+	{
+		public final int level;
+		public final int row;
+		public final int column;
+		public final double delta;
+		public final String key;
+		public final List<Feature> features = new ArrayList<Feature>();
+		public Tile[] children;
+
+		private double minLatitude = Double.MAX_VALUE;
+		private double maxLatitude = -Double.MAX_VALUE;
+		private double minLongitude = Double.MAX_VALUE;
+		private double maxLongitude = -Double.MAX_VALUE;
+
+		private Sector featureSector;
+		private Extent extent;
+		private Globe extentGlobe;
+		private double extentVerticalExaggeration;
+
+		public Tile(int level, int row, int column)
+		{
+			this.level = level;
+			this.row = row;
+			this.column = column;
+			this.delta = LEVEL_ZERO_TILE_DELTA / (1 << level);
+			this.key = level + "/" + row + "/" + column;
+		}
+
+		/**
+		 * Add a feature whose centre is within this tile.
+		 * 
+		 * @param feature
+		 * @param triangulate
+		 *            Should the feature be triangulated in this tile's mesh?
+		 *            If not, it is only included in the tile's extent, so that
+		 *            the tile is visited when the feature is visible in a
+		 *            descendant.
+		 */
+		public void add(Feature feature, boolean triangulate)
+		{
+			if (triangulate)
+			{
+				features.add(feature);
+			}
+			minLatitude = Math.min(minLatitude, feature.minLatitude);
+			maxLatitude = Math.max(maxLatitude, feature.maxLatitude);
+			minLongitude = Math.min(minLongitude, feature.minLongitude);
+			maxLongitude = Math.max(maxLongitude, feature.maxLongitude);
+			featureSector = null;
+		}
+
+		/**
+		 * Get (creating if required) the child tile containing the given
+		 * location.
+		 */
+		public Tile getChild(double latitude, double longitude)
+		{
+			if (children == null)
+			{
+				children = new Tile[4];
+			}
+			int childRow = row * 2 + (latitude + 90 >= (row + 0.5) * delta ? 1 : 0);
+			int childColumn = column * 2 + (longitude + 180 >= (column + 0.5) * delta ? 1 : 0);
+			int index = (childRow % 2) * 2 + childColumn % 2;
+			if (children[index] == null)
+			{
+				children[index] = new Tile(level + 1, childRow, childColumn);
+			}
+			return children[index];
+		}
+
+		/**
+		 * @return The sector bounding the tile's features
+		 */
+		public Sector getFeatureSector()
+		{
+			if (featureSector == null)
+			{
+				featureSector = Sector.fromDegrees(minLatitude, maxLatitude, minLongitude, maxLongitude);
+			}
+			return featureSector;
+		}
+
+		/**
+		 * @return The extent of the tile's features
+		 */
+		public Extent getExtent(DrawContext dc)
+		{
+			if (extent == null || extentGlobe != dc.getGlobe()
+					|| extentVerticalExaggeration != dc.getVerticalExaggeration())
+			{
+				extent = Sector.computeBoundingBox(dc.getGlobe(), dc.getVerticalExaggeration(), getFeatureSector());
+				extentGlobe = dc.getGlobe();
+				extentVerticalExaggeration = dc.getVerticalExaggeration();
+			}
+			return extent;
+		}
+
+		public boolean isVisible(DrawContext dc)
+		{
+			return getExtent(dc).intersects(dc.getView().getFrustumInModelCoordinates());
+		}
+	}
+}
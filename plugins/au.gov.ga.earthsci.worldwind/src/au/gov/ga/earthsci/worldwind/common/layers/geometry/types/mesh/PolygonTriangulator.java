@@ -0,0 +1,655 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geometry.types.mesh;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Ear clipping triangulator for polygons with holes.
+ * <p/>
+ * Holes are joined to the outer ring by a pair of bridge edges, after which
+ * the resulting single ring is triangulated by repeatedly clipping convex
+ * vertices that contain no other vertex. If no such vertex can be found (for
+ * self-intersecting input), progressively weaker ear tests are used, so that
+ * triangulation always terminates.
+ * <p/>
+ * The vertices of large polygons are indexed along a z-order curve, so that
+ * each ear test only visits the vertices within the ear's bounding box rather
+ * than every vertex of the ring.
+ * <p/>
+ * Rings may be in either winding order, and may be closed (last point equal
+ * to the first) or open.
+ */
+public class PolygonTriangulator
+{
+	/**
+	 * Polygons with more vertices than this are indexed along a z-order curve
+	 */
+	public static final int Z_ORDER_THRESHOLD = 80;
+
+	private PolygonTriangulator()
+	{
+	}
+
+	/**
+	 * Triangulate a polygon.
+	 * 
+	 * @param coords
+	 *            Interleaved x,y coordinates of the outer ring, followed by
+	 *            the coordinates of each hole
+	 * @param holeStarts
+	 *            Index of the first vertex of each hole (vertex index, not
+	 *            coordinate index), or null if the polygon has no holes
+	 * @return Vertex indices of the triangles, three per triangle, all wound
+	 *         counter-clockwise
+	 */
+	public static int[] triangulate(double[] coords, int[] holeStarts)
+	{
+		int vertexCount = coords.length / 2;
+		int outerEnd = holeStarts != null && holeStarts.length > 0 ? holeStarts[0] : vertexCount;
+		Node outer = createRing(coords, 0, outerEnd, true);
+		if (outer == null)
+		{
+			return new int[0];
+		}
+
+		if (holeStarts != null && holeStarts.length > 0)
+		{
+			outer = eliminateHoles(coords, holeStarts, vertexCount, outer);
+		}
+
+		ZOrder zOrder = null;
+		if (vertexCount > Z_ORDER_THRESHOLD)
+		{
+			zOrder = new ZOrder(coords);
+			indexCurve(outer, zOrder);
+		}
+
+		IntArray triangles = new IntArray(vertexCount * 3);
+		clipEars(outer, triangles, zOrder, 0);
+		return triangles.toArray();
+	}
+
+	/**
+	 * Calculate twice the signed area of a ring; positive if the ring is wound
+	 * counter-clockwise.
+	 * 
+	 * @param coords
+	 *            Interleaved x,y coordinates
+	 * @param start
+	 *            First vertex of the ring
+	 * @param end
+	 *            Vertex after the last vertex of the ring
+	 */
+	public static double signedArea(double[] coords, int start, int end)
+	{
+		double sum = 0;
+		for (int i = start, j = end - 1; i < end; j = i++)
+		{
+			sum += (coords[j * 2] - coords[i * 2]) * (coords[i * 2 + 1] + coords[j * 2 + 1]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Create a circular linked list from a ring, in counter-clockwise order
+	 * for outer rings and clockwise for holes, removing duplicate and
+	 * collinear points.
+	 */
+	private static Node createRing(double[] coords, int start, int end, boolean outer)
+	{
+		Node last = null;
+		if ((signedArea(coords, start, end) > 0) == outer)
+		{
+			for (int i = start; i < end; i++)
+			{
+				last = insertNode(i, coords[i * 2], coords[i * 2 + 1], last);
+			}
+		}
+		else
+		{
+			for (int i = end - 1; i >= start; i--)
+			{
+				last = insertNode(i, coords[i * 2], coords[i * 2 + 1], last);
+			}
+		}
+		return filterPoints(last, null);
+	}
+
+	private static Node insertNode(int index, double x, double y, Node last)
+	{
+		Node node = new Node(index, x, y);
+		if (last == null)
+		{
+			node.prev = node;
+			node.next = node;
+		}
+		else
+		{
+			node.next = last.next;
+			node.prev = last;
+			last.next.prev = node;
+			last.next = node;
+		}
+		return node;
+	}
+
+	private static void removeNode(Node node)
+	{
+		node.next.prev = node.prev;
+		node.prev.next = node.next;
+		if (node.prevZ != null)
+		{
+			node.prevZ.nextZ = node.nextZ;
+		}
+		if (node.nextZ != null)
+		{
+			node.nextZ.prevZ = node.prevZ;
+		}
+	}
+
+	/**
+	 * Link the nodes of the ring in order of their position along the
+	 * z-order curve.
+	 */
+	private static void indexCurve(Node start, ZOrder zOrder)
+	{
+		int count = 0;
+		Node node = start;
+		do
+		{
+			node.z = zOrder.z(node.x, node.y);
+			count++;
+			node = node.next;
+		}
+		while (node != start);
+
+		Node[] nodes = new Node[count];
+		for (int i = 0; i < count; i++)
+		{
+			nodes[i] = node;
+			node = node.next;
+		}
+		Arrays.sort(nodes, new Comparator<Node>()
+		{
+			@Override
+			public int compare(Node o1, Node o2)
+			{
+				return o1.z < o2.z ? -1 : (o1.z == o2.z ? 0 : 1);
+			}
+		});
+
+		for (int i = 0; i < count; i++)
+		{
+			nodes[i].prevZ = i > 0 ? nodes[i - 1] : null;
+			nodes[i].nextZ = i < count - 1 ? nodes[i + 1] : null;
+		}
+	}
+
+	/**
+	 * Remove duplicate and collinear points from the ring between start and
+	 * end.
+	 * 
+	 * @return A node of the filtered ring, or null if fewer than three points
+	 *         remain
+	 */
+	private static Node filterPoints(Node start, Node end)
+	{
+		if (start == null)
+		{
+			return null;
+		}
+		if (end == null)
+		{
+			end = start;
+		}
+
+		Node node = start;
+		boolean again;
+		do
+		{
+			again = false;
+			if (node.sameLocation(node.next) || cross(node.prev, node, node.next) == 0)
+			{
+				removeNode(node);
+				node = end = node.prev;
+				if (node == node.next || node.next == node.prev)
+				{
+					return null;
+				}
+				again = true;
+			}
+			else
+			{
+				node = node.next;
+			}
+		}
+		while (again || node != end);
+
+		return end;
+	}
+
+	/**
+	 * Join each hole to the outer ring, leftmost hole first.
+	 */
+	private static Node eliminateHoles(double[] coords, int[] holeStarts, int vertexCount, Node outer)
+	{
+		Node[] holes = new Node[holeStarts.length];
+		int holeCount = 0;
+		for (int i = 0; i < holeStarts.length; i++)
+		{
+			int start = holeStarts[i];
+			int end = i < holeStarts.length - 1 ? holeStarts[i + 1] : vertexCount;
+			Node hole = createRing(coords, start, end, false);
+			if (hole != null)
+			{
+				holes[holeCount++] = getLeftmost(hole);
+			}
+		}
+
+		Arrays.sort(holes, 0, holeCount, new Comparator<Node>()
+		{
+			@Override
+			public int compare(Node o1, Node o2)
+			{
+				return Double.compare(o1.x, o2.x);
+			}
+		});
+
+		for (int i = 0; i < holeCount; i++)
+		{
+			Node bridge = findHoleBridge(holes[i], outer);
+			if (bridge != null)
+			{
+				Node bridgeReverse = splitPolygon(bridge, holes[i]);
+				filterPoints(bridgeReverse, bridgeReverse.next);
+				Node filtered = filterPoints(bridge, bridge.next);
+				if (filtered != null)
+				{
+					outer = filtered;
+				}
+			}
+		}
+		return outer;
+	}
+
+	private static Node getLeftmost(Node start)
+	{
+		Node node = start;
+		Node leftmost = start;
+		do
+		{
+			if (node.x < leftmost.x || (node.x == leftmost.x && node.y < leftmost.y))
+			{
+				leftmost = node;
+			}
+			node = node.next;
+		}
+		while (node != start);
+		return leftmost;
+	}
+
+	/**
+	 * Find a vertex of the outer ring that is visible from the given hole
+	 * vertex (David Eberly's algorithm). A ray is cast left from the hole
+	 * vertex; the nearest intersected edge's leftmost endpoint is visible
+	 * unless another outer vertex lies within the triangle formed by the hole
+	 * vertex, the intersection and that endpoint, in which case the vertex in
+	 * the triangle with the smallest angle to the ray is used.
+	 */
+	private static Node findHoleBridge(Node hole, Node outer)
+	{
+		double hx = hole.x;
+		double hy = hole.y;
+		double qx = Double.NEGATIVE_INFINITY;
+		Node candidate = null;
+
+		Node node = outer;
+		do
+		{
+			Node next = node.next;
+			if ((node.y <= hy && next.y >= hy || node.y >= hy && next.y <= hy) && next.y != node.y)
+			{
+				double x = node.x + (hy - node.y) * (next.x - node.x) / (next.y - node.y);
+				if (x <= hx && x > qx)
+				{
+					qx = x;
+					if (x == hx)
+					{
+						return hy == node.y ? node : next;
+					}
+					candidate = node.x < next.x ? node : next;
+				}
+			}
+			node = next;
+		}
+		while (node != outer);
+
+		if (candidate == null)
+		{
+			return null;
+		}
+
+		Node stop = candidate;
+		double mx = candidate.x;
+		double my = candidate.y;
+		double minTan = Double.POSITIVE_INFINITY;
+		node = candidate;
+		do
+		{
+			if (hx >= node.x && node.x >= mx && hx != node.x
+					&& pointInTriangle(hy < my ? hx : qx, hy, mx, my, hy < my ? qx : hx, hy, node.x, node.y))
+			{
+				double tan = Math.abs(hy - node.y) / (hx - node.x);
+				if (locallyInside(node, hole) && (tan < minTan || (tan == minTan && node.x > candidate.x)))
+				{
+					candidate = node;
+					minTan = tan;
+				}
+			}
+			node = node.next;
+		}
+		while (node != stop);
+
+		return candidate;
+	}
+
+	/**
+	 * @return Is the diagonal from a to b locally inside the polygon at a?
+	 */
+	private static boolean locallyInside(Node a, Node b)
+	{
+		if (cross(a.prev, a, a.next) > 0)
+		{
+			return cross(a, b, a.next) <= 0 && cross(a, a.prev, b) <= 0;
+		}
+		return cross(a, b, a.prev) > 0 || cross(a, a.next, b) > 0;
+	}
+
+	/**
+	 * Join two rings (or split one) with a bridge between vertices a and b,
+	 * duplicating both vertices.
+	 * 
+	 * @return The duplicate of b
+	 */
+	private static Node splitPolygon(Node a, Node b)
+	{
+		Node a2 = new Node(a.index, a.x, a.y);
+		Node b2 = new Node(b.index, b.x, b.y);
+		Node an = a.next;
+		Node bp = b.prev;
+
+		a.next = b;
+		b.prev = a;
+
+		a2.next = an;
+		an.prev = a2;
+
+		b2.next = a2;
+		a2.prev = b2;
+
+		bp.next = b2;
+		b2.prev = bp;
+
+		return b2;
+	}
+
+	/**
+	 * Clip ears from the ring until a single triangle remains.
+	 * 
+	 * @param zOrder
+	 *            Z-order curve the ring's nodes are indexed on, or null if
+	 *            the ring isn't indexed
+	 * @param pass
+	 *            0 for the strict ear test, 1 after removing duplicate and
+	 *            collinear points, 2 to ignore contained vertices, and 3 to
+	 *            clip any vertex
+	 */
+	private static void clipEars(Node ear, IntArray triangles, ZOrder zOrder, int pass)
+	{
+		if (ear == null)
+		{
+			return;
+		}
+
+		Node stop = ear;
+		while (ear.prev != ear.next)
+		{
+			Node prev = ear.prev;
+			Node next = ear.next;
+
+			if (pass == 3 || isEar(ear, zOrder, pass == 2))
+			{
+				triangles.add(prev.index);
+				triangles.add(ear.index);
+				triangles.add(next.index);
+				removeNode(ear);
+				ear = next.next;
+				stop = next.next;
+				continue;
+			}
+
+			ear = next;
+			if (ear == stop)
+			{
+				if (pass == 0)
+				{
+					clipEars(filterPoints(ear, null), triangles, zOrder, 1);
+				}
+				else
+				{
+					clipEars(ear, triangles, zOrder, pass + 1);
+				}
+				return;
+			}
+		}
+	}
+
+	private static boolean isEar(Node ear, ZOrder zOrder, boolean convexOnly)
+	{
+		Node a = ear.prev;
+		Node b = ear;
+		Node c = ear.next;
+
+		if (cross(a, b, c) <= 0)
+		{
+			//reflex
+			return false;
+		}
+		if (convexOnly)
+		{
+			return true;
+		}
+
+		double minX = Math.min(a.x, Math.min(b.x, c.x));
+		double minY = Math.min(a.y, Math.min(b.y, c.y));
+		double maxX = Math.max(a.x, Math.max(b.x, c.x));
+		double maxY = Math.max(a.y, Math.max(b.y, c.y));
+
+		if (zOrder != null)
+		{
+			//only the nodes between the bounding box corners on the curve can be within the triangle
+			int minZ = zOrder.z(minX, minY);
+			int maxZ = zOrder.z(maxX, maxY);
+			Node node = ear.prevZ;
+			while (node != null && node.z >= minZ)
+			{
+				if (blocksEar(a, b, c, node, minX, minY, maxX, maxY))
+				{
+					return false;
+				}
+				node = node.prevZ;
+			}
+			node = ear.nextZ;
+			while (node != null && node.z <= maxZ)
+			{
+				if (blocksEar(a, b, c, node, minX, minY, maxX, maxY))
+				{
+					return false;
+				}
+				node = node.nextZ;
+			}
+			return true;
+		}
+
+		Node node = c.next;
+		while (node != a)
+		{
+			if (blocksEar(a, b, c, node, minX, minY, maxX, maxY))
+			{
+				return false;
+			}
+			node = node.next;
+		}
+		return true;
+	}
+
+	/**
+	 * @return Is the node a reflex vertex within the triangle a, b, c (with
+	 *         the given bounding box), preventing the triangle from being
+	 *         clipped?
+	 */
+	private static boolean blocksEar(Node a, Node b, Node c, Node node, double minX, double minY, double maxX,
+			double maxY)
+	{
+		return node.x >= minX && node.x <= maxX && node.y >= minY && node.y <= maxY && !node.sameLocation(a)
+				&& !node.sameLocation(b) && !node.sameLocation(c)
+				&& pointInTriangle(a.x, a.y, b.x, b.y, c.x, c.y, node.x, node.y)
+				&& cross(node.prev, node, node.next) <= 0;
+	}
+
+	/**
+	 * @return Twice the signed area of the triangle; positive if a, b, c turn
+	 *         left
+	 */
+	private static double cross(Node a, Node b, Node c)
+	{
+		return (b.x - a.x) * (c.y - a.y) - (b.y - a.y) * (c.x - a.x);
+	}
+
+	private static boolean pointInTriangle(double ax, double ay, double bx, double by, double cx, double cy,
+			double px, double py)
+	{
+		double d1 = (bx - ax) * (py - ay) - (by - ay) * (px - ax);
+		double d2 = (cx - bx) * (py - by) - (cy - by) * (px - bx);
+		double d3 = (ax - cx) * (py - cy) - (ay - cy) * (px - cx);
+		boolean negative = d1 < 0 || d2 < 0 || d3 < 0;
+		boolean positive = d1 > 0 || d2 > 0 || d3 > 0;
+		return !(negative && positive);
+	}
+
+	private static class Node
+	{
+		public final int index;
+		public final double x;
+		public final double y;
+		public Node prev;
+		public Node next;
+		public int z;
+		public Node prevZ;
+		public Node nextZ;
+
+		public Node(int index, double x, double y)
+		{
+			this.index = index;
+			this.x = x;
+			this.y = y;
+		}
+
+		public boolean sameLocation(Node other)
+		{
+			return x == other.x && y == other.y;
+		}
+	}
+
+	/**
+	 * Maps coordinates within a polygon's bounding box to a position along a
+	 * z-order (Morton) curve, using 15 bits per axis.
+	 */
+	private static class ZOrder
+	{
+		private final double minX;
+		private final double minY;
+		private final double scale;
+
+		public ZOrder(double[] coords)
+		{
+			double minX = Double.POSITIVE_INFINITY;
+			double minY = Double.POSITIVE_INFINITY;
+			double maxX = Double.NEGATIVE_INFINITY;
+			double maxY = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < coords.length - 1; i += 2)
+			{
+				minX = Math.min(minX, coords[i]);
+				minY = Math.min(minY, coords[i + 1]);
+				maxX = Math.max(maxX, coords[i]);
+				maxY = Math.max(maxY, coords[i + 1]);
+			}
+			double size = Math.max(maxX - minX, maxY - minY);
+			this.minX = minX;
+			this.minY = minY;
+			this.scale = size > 0 ? 32767 / size : 0;
+		}
+
+		public int z(double x, double y)
+		{
+			return interleave((int) ((x - minX) * scale)) | (interleave((int) ((y - minY) * scale)) << 1);
+		}
+
+		private static int interleave(int value)
+		{
+			value = (value | (value << 8)) & 0x00FF00FF;
+			value = (value | (value << 4)) & 0x0F0F0F0F;
+			value = (value | (value << 2)) & 0x33333333;
+			value = (value | (value << 1)) & 0x55555555;
+			return value;
+		}
+	}
+
+	/**
+	 * Minimal growable int array.
+	 */
+	static class IntArray
+	{
+		private int[] values;
+		private int size;
+
+		public IntArray(int capacity)
+		{
+			values = new int[Math.max(capacity, 4)];
+		}
+
+		public void add(int value)
+		{
+			if (size == values.length)
+			{
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		public int size()
+		{
+			return size;
+		}
+
+		public int[] toArray()
+		{
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -20,6 +20,7 @@ import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVListImpl;
 import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Frustum;
 import gov.nasa.worldwind.geom.LatLon;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Sector;
@@ -37,21 +38,31 @@ import gov.nasa.worldwind.util.Logging;
 
 import java.awt.Color;
 import java.awt.Font;
+import java.awt.Rectangle;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.Queue;
-import java.util.concurrent.PriorityBlockingQueue;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Future;
 
 import au.gov.ga.earthsci.worldwind.common.util.ColorFont;
-import au.gov.ga.earthsci.worldwind.common.util.IterableProxy;
 
 /**
  * Place name layer which uses place data from geonames.org. Uses
  * level-of-detail to download levels in the GeoName hirarchy according to
  * camera altitude.
+ * <p/>
+ * Loaded GeoNames are stored in a {@link LevelTileIndex}, so each frame only
+ * visits the tiles within the visible sector. The number of labels examined
+ * per tile and per frame is bounded, keeping the labels nearest to the eye, and
+ * the labels are decluttered in screen space by a {@link LabelDeclutterer}. Requests for the children of GeoNames
+ * are sent nearest to the eye first, and are cancelled if the GeoName leaves
+ * the view before the request completes.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -60,11 +71,26 @@ public class GeoNamesLayer extends AbstractLayer
 	private final static String GEONAMES_CHILDREN = "http://ws.geonames.org/children";
 	private final static int GEONAMES_GLOBE_ID = 6295630;
 
+	private final static int MAX_LABELS_PER_TILE = 16;
+	private final static int MAX_LABELS_PER_FRAME = 1000;
+	private final static int MAX_REQUEST_CANDIDATES = 256;
+	private final static int MAX_REQUESTS_PER_FRAME = 8;
+	private final static long REQUEST_TIMEOUT = 60000; //ms
+	private final static int DECLUTTER_CELL_SIZE = 4;
+	private final static double LABEL_CHARACTER_WIDTH = 0.6; //relative to font size
+
 	private GeoName topGeoName;
 	private VisibilityCalculatorImpl visibilityCalculator = new VisibilityCalculatorImpl();
-	private Queue<GeoName> requestQ;
+
+	private final LevelTileIndex<GeoName> labelIndex = new LevelTileIndex<GeoName>();
+	private final LevelTileIndex<GeoName> requestIndex = new LevelTileIndex<GeoName>();
+	private final Set<Integer> indexedIds = new HashSet<Integer>();
+	private final ConcurrentMap<Integer, RequestTask> pendingRequests = new ConcurrentHashMap<Integer, RequestTask>();
 
 	private final GeographicTextRenderer nameRenderer = new GeographicTextRenderer();
+	private final LabelDeclutterer declutterer = new LabelDeclutterer(DECLUTTER_CELL_SIZE);
+	private final List<GeoName> candidates = new ArrayList<GeoName>();
+	private final List<GeographicText> labels = new ArrayList<GeographicText>();
 	private Object lock = new Object();
 
 	//TODO different attributes for different feature codes (fcode)
@@ -77,17 +103,6 @@ public class GeoNamesLayer extends AbstractLayer
 		ColorFontProvider fontProvider = setupFontProvider();
 		topGeoName =
 				new GeoName(null, GEONAMES_GLOBE_ID, LatLon.ZERO, null, null, -1, fontProvider, visibilityCalculator);
-
-		requestQ = new PriorityBlockingQueue<GeoName>(64, new Comparator<GeoName>()
-		{
-			@Override
-			public int compare(GeoName o1, GeoName o2)
-			{
-				double distance1 = visibilityCalculator.distanceSquaredFromEye(o1);
-				double distance2 = visibilityCalculator.distanceSquaredFromEye(o2);
-				return distance1 > distance2 ? 1 : distance1 == distance2 ? 0 : -1;
-			}
-		});
 	}
 
 	private ColorFontProvider setupFontProvider()
@@ -141,28 +156,151 @@ public class GeoNamesLayer extends AbstractLayer
 		visibilityCalculator.setLevels(levels);
 		visibilityCalculator.setEye(eye);
 
-		synchronized (lock)
+		if (sector == null)
 		{
-			render(dc, topGeoName);
+			sector = Sector.FULL_SPHERE;
 		}
 
-		sendRequests();
+		cancelRequests(sector, levels);
+		sendRequests(sector, levels);
+		renderLabels(dc, sector, levels);
 	}
 
-	public void sendRequests()
+	/**
+	 * Cancel any pending requests for GeoNames that have left the view, or
+	 * that have not completed within the {@link #REQUEST_TIMEOUT}.
+	 */
+	protected void cancelRequests(Sector sector, int levels)
 	{
-		GeoName geoname = requestQ.poll();
-		while (geoname != null && !WorldWind.getTaskService().isFull())
+		long currentTime = System.currentTimeMillis();
+		for (RequestTask task : pendingRequests.values())
 		{
-			WorldWind.getTaskService().addTask(new RequestTask(geoname));
-			geoname = requestQ.poll();
+			if (!isRequestRequired(task.geoname, sector, levels) || currentTime - task.startTime > REQUEST_TIMEOUT)
+			{
+				task.cancel();
+				pendingRequests.remove(task.geoname.geonameId, task);
+			}
 		}
-		requestQ.clear();
+	}
+
+	private boolean isRequestRequired(GeoName geoname, Sector sector, int levels)
+	{
+		return geoname == topGeoName || (geoname.level + 1 < levels && sector.contains(geoname.latlon));
+	}
+
+	/**
+	 * Request the children of the visible GeoNames whose children haven't
+	 * been loaded, nearest to the eye first. The candidates are the
+	 * {@link #MAX_REQUEST_CANDIDATES} nearest to the eye, coarsest level first,
+	 * and at most {@link #MAX_REQUESTS_PER_FRAME} requests are sent each
+	 * frame.
+	 */
+	protected void sendRequests(Sector sector, int levels)
+	{
+		candidates.clear();
+		if (!topGeoName.loadedChildren() && !pendingRequests.containsKey(topGeoName.geonameId))
+		{
+			candidates.add(topGeoName);
+		}
+		Position eye = visibilityCalculator.getEye();
+		requestIndex.query(levels - 1, sector.getMinLatitude().degrees, sector.getMaxLatitude().degrees, sector
+				.getMinLongitude().degrees, sector.getMaxLongitude().degrees, eye.getLatitude().degrees, eye
+				.getLongitude().degrees, Integer.MAX_VALUE, MAX_REQUEST_CANDIDATES,
+				new LevelTileIndex.Visitor<GeoName>()
+				{
+					@Override
+					public void visit(GeoName geoname, int level)
+					{
+						if (!pendingRequests.containsKey(geoname.geonameId))
+						{
+							candidates.add(geoname);
+						}
+					}
+				});
+
+		//only the nearest few are required, so select them rather than sorting all of the candidates
+		for (int requests = 0; requests < MAX_REQUESTS_PER_FRAME && !candidates.isEmpty()
+				&& !WorldWind.getTaskService().isFull(); requests++)
+		{
+			int nearest = 0;
+			double nearestDistance = Double.MAX_VALUE;
+			for (int i = 0; i < candidates.size(); i++)
+			{
+				double distance = visibilityCalculator.distanceSquaredFromEye(candidates.get(i));
+				if (distance < nearestDistance)
+				{
+					nearest = i;
+					nearestDistance = distance;
+				}
+			}
+
+			GeoName geoname = candidates.get(nearest);
+			candidates.set(nearest, candidates.get(candidates.size() - 1));
+			candidates.remove(candidates.size() - 1);
+
+			RequestTask task = new RequestTask(geoname);
+			pendingRequests.put(geoname.geonameId, task);
+			WorldWind.getTaskService().addTask(task);
+		}
+		candidates.clear();
+	}
+
+	/**
+	 * Render the labels of the visible GeoNames. At most
+	 * {@link #MAX_LABELS_PER_TILE} labels are examined per index tile, and
+	 * {@link #MAX_LABELS_PER_FRAME} per frame, coarsest level first and then
+	 * nearest to the eye first; labels that overlap a previously placed label
+	 * are skipped.
+	 */
+	protected void renderLabels(DrawContext dc, Sector sector, int levels)
+	{
+		Position eye = visibilityCalculator.getEye();
+		labelIndex.query(levels, sector.getMinLatitude().degrees, sector.getMaxLatitude().degrees, sector
+				.getMinLongitude().degrees, sector.getMaxLongitude().degrees, eye.getLatitude().degrees, eye
+				.getLongitude().degrees, MAX_LABELS_PER_TILE, MAX_LABELS_PER_FRAME,
+				new LevelTileIndex.Visitor<GeoName>()
+				{
+					@Override
+					public void visit(GeoName geoname, int level)
+					{
+						candidates.add(geoname);
+					}
+				});
+
+		View view = dc.getView();
+		Rectangle viewport = view.getViewport();
+		Vec4 eyePoint = view.getEyePoint();
+		double horizonDistance = view.getHorizonDistance();
+		Frustum frustum = view.getFrustumInModelCoordinates();
+		declutterer.reset(viewport.width, viewport.height);
+
+		for (GeoName geoname : candidates)
+		{
+			Vec4 point = getSurfacePoint(dc, geoname.latlon.getLatitude(), geoname.latlon.getLongitude());
+			if (eyePoint.distanceTo3(point) > horizonDistance || !frustum.contains(point))
+			{
+				continue;
+			}
+			Vec4 screenPoint = view.project(point);
+			double height = geoname.getFont().getSize2D();
+			double width = geoname.name.length() * height * LABEL_CHARACTER_WIDTH;
+			if (declutterer.place(screenPoint.x - viewport.x, screenPoint.y - viewport.y, width, height))
+			{
+				labels.add(geoname);
+			}
+		}
+		candidates.clear();
+
+		nameRenderer.render(dc, labels);
+		labels.clear();
 	}
 
 	private class RequestTask implements Runnable
 	{
-		private GeoName geoname;
+		private final GeoName geoname;
+		private final long startTime = System.currentTimeMillis();
+		private volatile boolean cancelled = false;
+		private volatile Future<?> future;
 
 		public RequestTask(GeoName geoname)
 		{
@@ -172,15 +310,45 @@ public class GeoNamesLayer extends AbstractLayer
 		@Override
 		public void run()
 		{
+			if (cancelled)
+			{
+				return;
+			}
+
 			if (geoname.cacheFileExists())
 			{
 				loadChildren(geoname);
+				requestComplete(this);
 			}
 			else
 			{
-				download(geoname);
+				download(this);
+			}
+		}
+
+		public void setFuture(Future<?> future)
+		{
+			this.future = future;
+			if (cancelled)
+			{
+				future.cancel(true);
 			}
 		}
+
+		public void cancel()
+		{
+			cancelled = true;
+			Future<?> future = this.future;
+			if (future != null)
+			{
+				future.cancel(true);
+			}
+		}
+	}
+
+	private void requestComplete(RequestTask task)
+	{
+		pendingRequests.remove(task.geoname.geonameId, task);
 	}
 
 	private int calculateLevel(DrawContext dc)
@@ -207,43 +375,47 @@ public class GeoNamesLayer extends AbstractLayer
 		return surfacePoint;
 	}
 
-	public void render(DrawContext dc, GeoName geoname)
+	/**
+	 * Load the children of the given GeoName from the cache, and add them to
+	 * the spatial indices.
+	 */
+	private void loadChildren(GeoName geoname)
 	{
-		if (visibilityCalculator.isVisible(geoname))
+		synchronized (lock)
 		{
+			geoname.loadChildren();
 			if (!geoname.loadedChildren())
 			{
-				requestChildren(geoname);
+				return;
 			}
-			else
+
+			for (GeoName child : geoname.getChildren())
 			{
-				Collection<GeoName> children = geoname.getChildren();
-				for (GeoName child : children)
+				//children can be moved between parents, but are only indexed once
+				if (indexedIds.add(child.geonameId))
 				{
-					render(dc, child);
+					double latitude = child.latlon.getLatitude().degrees;
+					double longitude = child.latlon.getLongitude().degrees;
+					labelIndex.add(child.level, latitude, longitude, child);
+					requestIndex.add(child.level, latitude, longitude, child);
 				}
-				nameRenderer.render(dc, new IterableProxy<GeographicText>(children));
+			}
+			if (geoname != topGeoName)
+			{
+				requestIndex.remove(geoname.level, geoname.latlon.getLatitude().degrees,
+						geoname.latlon.getLongitude().degrees, geoname);
 			}
 		}
 	}
 
-	public void requestChildren(GeoName geoname)
-	{
-		requestQ.add(geoname);
-	}
-
-	private void loadChildren(GeoName geoname)
-	{
-		synchronized (lock)
-		{
-			geoname.loadChildren();
-		}
-	}
-
-	private void download(GeoName geoname)
+	private void download(RequestTask task)
 	{
+		GeoName geoname = task.geoname;
 		if (!WorldWind.getRetrievalService().isAvailable())
+		{
+			requestComplete(task);
 			return;
+		}
 
 		URL url = null;
 		try
@@ -253,14 +425,18 @@ public class GeoNamesLayer extends AbstractLayer
 		catch (Exception e)
 		{
 			e.printStackTrace();
+			requestComplete(task);
 			return;
 		}
 
 		if (WorldWind.getNetworkStatus().isHostUnavailable(url))
+		{
+			requestComplete(task);
 			return;
+		}
 
 		Retriever retriever;
-		DownloadPostProcessor dpp = new DownloadPostProcessor(geoname);
+		DownloadPostProcessor dpp = new DownloadPostProcessor(task);
 
 		if ("http".equalsIgnoreCase(url.getProtocol()))
 		{
@@ -269,6 +445,7 @@ public class GeoNamesLayer extends AbstractLayer
 		else
 		{
 			Logging.logger().severe("UnknownRetrievalProtocol: " + url.toString());
+			requestComplete(task);
 			return;
 		}
 
@@ -283,21 +460,42 @@ public class GeoNamesLayer extends AbstractLayer
 		if (srl != null && srl > 0)
 			retriever.setStaleRequestLimit(srl);
 
-		WorldWind.getRetrievalService().runRetriever(retriever);
+		Future<?> future = WorldWind.getRetrievalService().runRetriever(retriever);
+		if (future != null)
+		{
+			task.setFuture(future);
+		}
+		else
+		{
+			requestComplete(task);
+		}
 	}
 
 	private class DownloadPostProcessor implements RetrievalPostProcessor
 	{
-		private GeoName geoname;
+		private RequestTask task;
 
-		public DownloadPostProcessor(GeoName geoname)
+		public DownloadPostProcessor(RequestTask task)
 		{
-			this.geoname = geoname;
+			this.task = task;
 		}
 
 		@Override
 		public ByteBuffer run(Retriever retriever)
 		{
+			try
+			{
+				return process(retriever);
+			}
+			finally
+			{
+				requestComplete(task);
+			}
+		}
+
+		private ByteBuffer process(Retriever retriever)
+		{
+			GeoName geoname = task.geoname;
 			ByteBuffer buffer = getBuffer(retriever);
 			if (buffer != null)
 			{
@@ -359,5 +557,10 @@ public class GeoNamesLayer extends AbstractLayer
 	public void dispose()
 	{
 		super.dispose();
+		for (RequestTask task : pendingRequests.values())
+		{
+			task.cancel();
+		}
+		pendingRequests.clear();
 	}
 }
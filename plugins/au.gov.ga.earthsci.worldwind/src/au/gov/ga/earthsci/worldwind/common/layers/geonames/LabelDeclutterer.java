@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geonames;
+
+import java.util.BitSet;
+
+/**
+ * Removes overlapping labels in screen space. The screen is divided into a grid
+ * of square cells, and each placed label occupies the cells covered by its
+ * rectangle; a label is only placed if none of its cells are occupied.
+ * <p/>
+ * The work done for each label is proportional to the number of cells it
+ * covers, rather than to the number of labels already placed, so the cost of
+ * decluttering is linear in the number of labels.
+ */
+public class LabelDeclutterer
+{
+	private final int cellSize;
+	private final BitSet occupied = new BitSet();
+	private int columns;
+	private int rows;
+
+	/**
+	 * Create a new declutterer.
+	 * 
+	 * @param cellSize
+	 *            Size of the grid cells in pixels; smaller cells allow labels
+	 *            to be placed more tightly, but increase the work per label
+	 */
+	public LabelDeclutterer(int cellSize)
+	{
+		if (cellSize <= 0)
+		{
+			throw new IllegalArgumentException("Cell size must be positive");
+		}
+		this.cellSize = cellSize;
+	}
+
+	/**
+	 * Remove all placed labels, and set the size of the screen.
+	 * 
+	 * @param width
+	 *            Screen width in pixels
+	 * @param height
+	 *            Screen height in pixels
+	 */
+	public void reset(int width, int height)
+	{
+		columns = Math.max(0, (width + cellSize - 1) / cellSize);
+		rows = Math.max(0, (height + cellSize - 1) / cellSize);
+		occupied.clear();
+	}
+
+	/**
+	 * Attempt to place a label.
+	 * 
+	 * @param x
+	 *            Screen x coordinate of the label's center
+	 * @param y
+	 *            Screen y coordinate of the label's center
+	 * @param width
+	 *            Label width in pixels
+	 * @param height
+	 *            Label height in pixels
+	 * @return True if the label is on screen and doesn't overlap any label
+	 *         already placed; the label then occupies its rectangle
+	 */
+	public boolean place(double x, double y, double width, double height)
+	{
+		int minColumn = Math.max(0, (int) Math.floor((x - width * 0.5) / cellSize));
+		int maxColumn = Math.min(columns - 1, (int) Math.floor((x + width * 0.5) / cellSize));
+		int minRow = Math.max(0, (int) Math.floor((y - height * 0.5) / cellSize));
+		int maxRow = Math.min(rows - 1, (int) Math.floor((y + height * 0.5) / cellSize));
+		if (minColumn > maxColumn || minRow > maxRow || x < 0 || y < 0 || x >= columns * cellSize
+				|| y >= rows * cellSize)
+		{
+			return false;
+		}
+
+		for (int row = minRow; row <= maxRow; row++)
+		{
+			int start = row * columns;
+			int next = occupied.nextSetBit(start + minColumn);
+			if (next >= 0 && next <= start + maxColumn)
+			{
+				return false;
+			}
+		}
+		for (int row = minRow; row <= maxRow; row++)
+		{
+			int start = row * columns;
+			occupied.set(start + minColumn, start + maxColumn + 1);
+		}
+		return true;
+	}
+}
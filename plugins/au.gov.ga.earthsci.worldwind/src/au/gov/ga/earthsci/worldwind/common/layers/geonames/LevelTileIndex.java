@@ -0,0 +1,483 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.geonames;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index of items that each belong to a level of detail, keyed by
+ * latitude/longitude in degrees. Each level is divided into square tiles,
+ * whose size halves with each level, and items are stored in the tile of their
+ * level that contains them.
+ * <p/>
+ * Queries visit only the tiles that intersect the query sector, in order of
+ * increasing level, so that the coarsest (and most important) items are
+ * visited first. Within each level, items are visited nearest to a focus point
+ * first. The number of items visited per tile and per query can be limited,
+ * which bounds the number of items returned by a query and spreads them evenly
+ * over the query sector; the limits keep the items nearest to the focus point.
+ * <p/>
+ * This class is thread safe.
+ * 
+ * @param <T>
+ *            Type of the indexed items
+ */
+public class LevelTileIndex<T>
+{
+	/**
+	 * Default size of the level 0 tiles in degrees
+	 */
+	public static final double DEFAULT_LEVEL_ZERO_TILE_DELTA = 180;
+
+	private final double levelZeroTileDelta;
+	private final List<Map<Long, Tile<T>>> levels = new ArrayList<Map<Long, Tile<T>>>();
+	private int size;
+
+	private final NearestSelector tileSelector = new NearestSelector();
+	private final NearestSelector levelSelector = new NearestSelector();
+
+	public LevelTileIndex()
+	{
+		this(DEFAULT_LEVEL_ZERO_TILE_DELTA);
+	}
+
+	/**
+	 * Create a new index.
+	 * 
+	 * @param levelZeroTileDelta
+	 *            Size of the level 0 tiles in degrees
+	 */
+	public LevelTileIndex(double levelZeroTileDelta)
+	{
+		if (levelZeroTileDelta <= 0)
+		{
+			throw new IllegalArgumentException("Tile delta must be positive");
+		}
+		this.levelZeroTileDelta = levelZeroTileDelta;
+	}
+
+	/**
+	 * Calculate the size of the tiles in the given level.
+	 * 
+	 * @param level
+	 * @return Tile size in degrees
+	 */
+	public double getTileDelta(int level)
+	{
+		return levelZeroTileDelta / (1L << Math.min(level, 62));
+	}
+
+	/**
+	 * Add an item to the index.
+	 * 
+	 * @param level
+	 *            Level of detail of the item (must not be negative)
+	 * @param latitude
+	 *            Latitude of the item in degrees
+	 * @param longitude
+	 *            Longitude of the item in degrees
+	 * @param item
+	 *            Item to add
+	 */
+	public synchronized void add(int level, double latitude, double longitude, T item)
+	{
+		if (level < 0)
+		{
+			throw new IllegalArgumentException("Level must not be negative");
+		}
+		while (levels.size() <= level)
+		{
+			levels.add(new HashMap<Long, Tile<T>>());
+		}
+
+		latitude = Math.max(-90, Math.min(90, latitude));
+		longitude = Math.max(-180, Math.min(180, longitude));
+		double delta = getTileDelta(level);
+		Long key = tileKey(row(latitude, delta), column(longitude, delta));
+		Map<Long, Tile<T>> tiles = levels.get(level);
+		Tile<T> tile = tiles.get(key);
+		if (tile == null)
+		{
+			tile = new Tile<T>();
+			tiles.put(key, tile);
+		}
+		tile.add(latitude, longitude, item);
+		size++;
+	}
+
+	/**
+	 * Remove an item from the index. The level and location must be the same
+	 * as when the item was added.
+	 * 
+	 * @return True if the item was found and removed
+	 */
+	public synchronized boolean remove(int level, double latitude, double longitude, T item)
+	{
+		if (level < 0 || level >= levels.size())
+		{
+			return false;
+		}
+
+		latitude = Math.max(-90, Math.min(90, latitude));
+		longitude = Math.max(-180, Math.min(180, longitude));
+		double delta = getTileDelta(level);
+		Long key = tileKey(row(latitude, delta), column(longitude, delta));
+		Map<Long, Tile<T>> tiles = levels.get(level);
+		Tile<T> tile = tiles.get(key);
+		if (tile == null || !tile.remove(item))
+		{
+			return false;
+		}
+		if (tile.count == 0)
+		{
+			tiles.remove(key);
+		}
+		size--;
+		return true;
+	}
+
+	/**
+	 * @return Number of items in the index
+	 */
+	public synchronized int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Remove all items from the index.
+	 */
+	public synchronized void clear()
+	{
+		levels.clear();
+		size = 0;
+	}
+
+	/**
+	 * Visit the items within the given sector, in order of increasing level,
+	 * and then of increasing distance from the focus point.
+	 * 
+	 * @param maxLevel
+	 *            Only items with a level less than this are visited
+	 * @param minLatitude
+	 *            Minimum latitude of the sector in degrees
+	 * @param maxLatitude
+	 *            Maximum latitude of the sector in degrees
+	 * @param minLongitude
+	 *            Minimum longitude of the sector in degrees
+	 * @param maxLongitude
+	 *            Maximum longitude of the sector in degrees
+	 * @param focusLatitude
+	 *            Latitude of the focus point in degrees
+	 * @param focusLongitude
+	 *            Longitude of the focus point in degrees
+	 * @param maxItemsPerTile
+	 *            Maximum number of items visited in each tile; the items
+	 *            nearest to the focus point are kept
+	 * @param maxItems
+	 *            Maximum number of items visited by this query; the items
+	 *            nearest to the focus point are kept from the last level
+	 *            visited
+	 * @param visitor
+	 *            Visitor that receives the items
+	 * @return Number of items visited
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized int query(int maxLevel, double minLatitude, double maxLatitude, double minLongitude,
+			double maxLongitude, double focusLatitude, double focusLongitude, int maxItemsPerTile, int maxItems,
+			Visitor<T> visitor)
+	{
+		int visited = 0;
+		for (int level = 0; level < Math.min(maxLevel, levels.size()) && visited < maxItems; level++)
+		{
+			Map<Long, Tile<T>> tiles = levels.get(level);
+			if (tiles.isEmpty())
+			{
+				continue;
+			}
+
+			double delta = getTileDelta(level);
+			int minRow = row(Math.max(-90, minLatitude), delta);
+			int maxRow = row(Math.min(90, maxLatitude), delta);
+			int minColumn = column(Math.max(-180, minLongitude), delta);
+			int maxColumn = column(Math.min(180, maxLongitude), delta);
+			long tileCount = (long) (maxRow - minRow + 1) * (long) (maxColumn - minColumn + 1);
+
+			//select the nearest items of this level, up to the remaining limit
+			levelSelector.reset(maxItems - visited);
+			if (tileCount > tiles.size())
+			{
+				//fewer tiles are occupied than intersect the sector, so check the occupied tiles
+				for (Map.Entry<Long, Tile<T>> entry : tiles.entrySet())
+				{
+					long key = entry.getKey();
+					int row = (int) (key >> 32);
+					int column = (int) key;
+					if (row >= minRow && row <= maxRow && column >= minColumn && column <= maxColumn)
+					{
+						select(entry.getValue(), minLatitude, maxLatitude, minLongitude, maxLongitude, focusLatitude,
+								focusLongitude, maxItemsPerTile);
+					}
+				}
+			}
+			else
+			{
+				for (int row = minRow; row <= maxRow; row++)
+				{
+					for (int column = minColumn; column <= maxColumn; column++)
+					{
+						Tile<T> tile = tiles.get(tileKey(row, column));
+						if (tile != null)
+						{
+							select(tile, minLatitude, maxLatitude, minLongitude, maxLongitude, focusLatitude,
+									focusLongitude, maxItemsPerTile);
+						}
+					}
+				}
+			}
+
+			levelSelector.sort();
+			for (int i = 0; i < levelSelector.size; i++)
+			{
+				visitor.visit((T) levelSelector.items[i], level);
+			}
+			visited += levelSelector.size;
+			levelSelector.clear();
+		}
+		return visited;
+	}
+
+	/**
+	 * Offer the items of a tile within the sector to the level selector,
+	 * keeping at most maxItemsPerTile of them.
+	 */
+	private void select(Tile<T> tile, double minLatitude, double maxLatitude, double minLongitude,
+			double maxLongitude, double focusLatitude, double focusLongitude, int maxItemsPerTile)
+	{
+		if (tile.count <= maxItemsPerTile)
+		{
+			tile.select(minLatitude, maxLatitude, minLongitude, maxLongitude, focusLatitude, focusLongitude,
+					levelSelector);
+			return;
+		}
+
+		tileSelector.reset(maxItemsPerTile);
+		tile.select(minLatitude, maxLatitude, minLongitude, maxLongitude, focusLatitude, focusLongitude, tileSelector);
+		for (int i = 0; i < tileSelector.size; i++)
+		{
+			levelSelector.offer(tileSelector.distances[i], tileSelector.items[i]);
+		}
+		tileSelector.clear();
+	}
+
+	private static int row(double latitude, double delta)
+	{
+		return (int) Math.floor((latitude + 90) / delta);
+	}
+
+	private static int column(double longitude, double delta)
+	{
+		return (int) Math.floor((longitude + 180) / delta);
+	}
+
+	private static Long tileKey(int row, int column)
+	{
+		return ((long) row << 32) | (column & 0xffffffffL);
+	}
+
+	/**
+	 * Visitor used when querying the index.
+	 */
+	public interface Visitor<T>
+	{
+		/**
+		 * Visit an item within the query sector.
+		 * 
+		 * @param item
+		 * @param level
+		 *            Level of the item
+		 */
+		void visit(T item, int level);
+	}
+
+	private static class Tile<T>
+	{
+		public int count;
+		public double[] latitudes = new double[4];
+		public double[] longitudes = new double[4];
+		public Object[] items = new Object[4];
+
+		public void add(double latitude, double longitude, T item)
+		{
+			if (count == items.length)
+			{
+				int length = items.length * 2;
+				double[] newLatitudes = new double[length];
+				double[] newLongitudes = new double[length];
+				Object[] newItems = new Object[length];
+				System.arraycopy(latitudes, 0, newLatitudes, 0, count);
+				System.arraycopy(longitudes, 0, newLongitudes, 0, count);
+				System.arraycopy(items, 0, newItems, 0, count);
+				latitudes = newLatitudes;
+				longitudes = newLongitudes;
+				items = newItems;
+			}
+			latitudes[count] = latitude;
+			longitudes[count] = longitude;
+			items[count] = item;
+			count++;
+		}
+
+		public boolean remove(T item)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				if (items[i] == item)
+				{
+					//shift the remaining items, to keep them in the order they were added
+					int moved = count - i - 1;
+					System.arraycopy(latitudes, i + 1, latitudes, i, moved);
+					System.arraycopy(longitudes, i + 1, longitudes, i, moved);
+					System.arraycopy(items, i + 1, items, i, moved);
+					count--;
+					items[count] = null;
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public void select(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+				double focusLatitude, double focusLongitude, NearestSelector selector)
+		{
+			for (int i = 0; i < count; i++)
+			{
+				double latitude = latitudes[i];
+				double longitude = longitudes[i];
+				if (latitude >= minLatitude && latitude <= maxLatitude && longitude >= minLongitude
+						&& longitude <= maxLongitude)
+				{
+					double latDelta = latitude - focusLatitude;
+					double lonDelta = longitude - focusLongitude;
+					selector.offer(latDelta * latDelta + lonDelta * lonDelta, items[i]);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Selects the items nearest to the focus point, up to a limit, using a
+	 * max-heap keyed by the squared distance so that the farthest selected
+	 * item can be replaced in logarithmic time.
+	 */
+	private static class NearestSelector
+	{
+		public int limit;
+		public int size;
+		public double[] distances = new double[16];
+		public Object[] items = new Object[16];
+
+		public void reset(int limit)
+		{
+			this.limit = limit;
+			size = 0;
+		}
+
+		public void offer(double distance, Object item)
+		{
+			if (size < limit)
+			{
+				if (size == items.length)
+				{
+					int length = (int) Math.min(limit, size * 2L);
+					distances = Arrays.copyOf(distances, length);
+					items = Arrays.copyOf(items, length);
+				}
+				//sift the new item up from the bottom of the heap
+				int i = size++;
+				while (i > 0)
+				{
+					int parent = (i - 1) / 2;
+					if (distances[parent] >= distance)
+					{
+						break;
+					}
+					distances[i] = distances[parent];
+					items[i] = items[parent];
+					i = parent;
+				}
+				distances[i] = distance;
+				items[i] = item;
+			}
+			else if (size > 0 && distance < distances[0])
+			{
+				//replace the farthest selected item
+				siftDown(distance, item, size);
+			}
+		}
+
+		/**
+		 * Sort the selected items in order of increasing distance.
+		 */
+		public void sort()
+		{
+			for (int n = size - 1; n > 0; n--)
+			{
+				double distance = distances[n];
+				Object item = items[n];
+				distances[n] = distances[0];
+				items[n] = items[0];
+				siftDown(distance, item, n);
+			}
+		}
+
+		public void clear()
+		{
+			Arrays.fill(items, 0, size, null);
+			size = 0;
+		}
+
+		private void siftDown(double distance, Object item, int n)
+		{
+			int i = 0;
+			while (true)
+			{
+				int child = 2 * i + 1;
+				if (child >= n)
+				{
+					break;
+				}
+				if (child + 1 < n && distances[child + 1] > distances[child])
+				{
+					child++;
+				}
+				if (distances[child] <= distance)
+				{
+					break;
+				}
+				distances[i] = distances[child];
+				items[i] = items[child];
+				i = child;
+			}
+			distances[i] = distance;
+			items[i] = item;
+		}
+	}
+}
@@ -68,11 +68,11 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileRequesterDelegat
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.URLTransformerBasicTiledImageLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+import au.gov.ga.earthsci.worldwind.common.util.DDSTextureData;
 import au.gov.ga.earthsci.worldwind.common.util.DDSUncompressor;
 import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
 
 import com.jogamp.opengl.util.texture.TextureData;
-import com.jogamp.opengl.util.texture.TextureIO;
 import javax.media.opengl.GLProfile;
 import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 
@@ -338,7 +338,7 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 		{
 			//if the file is a DDS file, just read it directly (skip all delegate readers/transformers)
 			if (url.toString().toLowerCase().endsWith("dds"))
-				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), url, isUseMipMaps(), null);
+				return DDSTextureData.newTextureData(GLProfile.get(GLProfile.GL2), url, isUseMipMaps());
 
 			BufferedImage image = readImage(tile, url);
 
@@ -359,7 +359,7 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 				}
 
 				//return the dds image as TextureData
-				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), WWIO.getInputStreamFromByteBuffer(buffer), isUseMipMaps(), null);
+				return DDSTextureData.newTextureData(GLProfile.get(GLProfile.GL2), buffer, isUseMipMaps());
 			}
 
 			//return the image as TextureData
@@ -393,7 +393,7 @@ public class DelegatorMercatorTiledImageLayer extends URLTransformerBasicTiledIm
 			if (url.toString().toLowerCase().endsWith(".dds"))
 			{
 				ByteBuffer buffer = WWIO.readURLContentToBuffer(url, false);
-				image = DDSUncompressor.readDxt3(buffer);
+				image = DDSUncompressor.readDDS(buffer);
 			}
 			else
 			{
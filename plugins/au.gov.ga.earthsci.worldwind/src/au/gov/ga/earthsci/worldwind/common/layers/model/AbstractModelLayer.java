@@ -25,6 +25,8 @@ import java.awt.Color;
 import java.util.ArrayList;
 import java.util.List;
 
+import javax.media.opengl.GLContext;
+
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
 
 /**
@@ -95,6 +97,23 @@ public abstract class AbstractModelLayer extends AbstractLayer implements ModelL
 		}
 	}
 
+	@Override
+	public void dispose()
+	{
+		super.dispose();
+		if (GLContext.getCurrent() != null)
+		{
+			//release the shapes' buffers and scalar color shaders
+			synchronized (shapes)
+			{
+				for (FastShape shape : shapes)
+				{
+					shape.dispose(GLContext.getCurrent().getGL().getGL2());
+				}
+			}
+		}
+	}
+
 	@Override
 	public Sector getSector()
 	{
@@ -0,0 +1,452 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
+
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.WWIO;
+
+import java.awt.Color;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+
+/**
+ * Reads and writes a compact binary snapshot of the {@link FastShape}s parsed
+ * from a GOCAD file, so that unchanged GOCAD files don't need to be re-parsed
+ * each time they are loaded.
+ * <p/>
+ * The snapshot contains a key (see
+ * {@link GocadModelProvider#createCacheKey(java.net.URL, File)}) which must
+ * match the key provided when reading; if it doesn't, the snapshot is ignored.
+ * Snapshots are read into memory with a single channel read, and the shapes'
+ * buffers are bulk copied from the read buffer. Snapshots are not memory
+ * mapped, as a mapping keeps the file locked (on Windows) until the mapped
+ * buffer is garbage collected.
+ */
+public class GocadModelCache
+{
+	private static final int MAGIC = 0x474f4342; //'GOCB'
+	private static final int VERSION = 2;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int FLAG_LIGHTED = 1 << 0;
+	private static final int FLAG_TWO_SIDED_LIGHTING = 1 << 1;
+	private static final int FLAG_CALCULATE_NORMALS = 1 << 2;
+	private static final int FLAG_FORCE_SORTED_PRIMITIVES = 1 << 3;
+	private static final int FLAG_FOLLOW_TERRAIN = 1 << 4;
+	private static final int FLAG_HAS_COLOR = 1 << 5;
+	private static final int FLAG_HAS_SCALAR_NO_DATA = 1 << 6;
+
+	/**
+	 * Can the given shapes be stored in a snapshot? Only plain
+	 * {@link FastShape}s without textures are supported.
+	 * 
+	 * @param shapes
+	 * @return True if the shapes can be written to a snapshot
+	 */
+	public static boolean isCacheable(List<FastShape> shapes)
+	{
+		for (FastShape shape : shapes)
+		{
+			if (shape.getClass() != FastShape.class || shape.getTexture() != null)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Read the shapes from a snapshot file.
+	 * 
+	 * @param file
+	 *            Snapshot file to read
+	 * @param key
+	 *            Key that the snapshot must have been written with
+	 * @return List of shapes read from the snapshot, or null if the snapshot
+	 *         doesn't exist, is invalid, or has a different key
+	 */
+	public static List<FastShape> read(File file, String key)
+	{
+		if (file == null || !file.isFile())
+		{
+			return null;
+		}
+
+		RandomAccessFile raf = null;
+		try
+		{
+			raf = new RandomAccessFile(file, "r");
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+			{
+				throw new IOException("GOCAD model cache is too large: " + size + " bytes");
+			}
+			ByteBuffer buffer = ByteBuffer.allocate((int) size);
+			while (buffer.hasRemaining())
+			{
+				if (channel.read(buffer) < 0)
+				{
+					throw new EOFException("GOCAD model cache is truncated");
+				}
+			}
+			buffer.flip();
+			buffer.order(ByteOrder.nativeOrder());
+			return read(buffer, key);
+		}
+		catch (Exception e)
+		{
+			//a corrupt snapshot shouldn't prevent the model from loading from the source
+			Logging.logger().log(Level.WARNING, "Error reading GOCAD model cache: " + file, e);
+			return null;
+		}
+		finally
+		{
+			if (raf != null)
+			{
+				try
+				{
+					raf.close();
+				}
+				catch (IOException e)
+				{
+					//ignore
+				}
+			}
+		}
+	}
+
+	/**
+	 * Read the shapes from a snapshot buffer.
+	 * 
+	 * @param buffer
+	 *            Buffer containing the snapshot
+	 * @param key
+	 *            Key that the snapshot must have been written with
+	 * @return List of shapes read from the snapshot, or null if the snapshot
+	 *         has a different key or version
+	 */
+	public static List<FastShape> read(ByteBuffer buffer, String key)
+	{
+		if (buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+		{
+			return null;
+		}
+		if (!key.equals(getString(buffer)))
+		{
+			return null;
+		}
+
+		int shapeCount = buffer.getInt();
+		List<FastShape> shapes = new ArrayList<FastShape>(shapeCount);
+		for (int i = 0; i < shapeCount; i++)
+		{
+			shapes.add(readShape(buffer));
+		}
+		return shapes;
+	}
+
+	protected static FastShape readShape(ByteBuffer buffer)
+	{
+		String name = getString(buffer);
+		int mode = buffer.getInt();
+		int flags = buffer.getInt();
+		int color = buffer.getInt();
+		Double lineWidth = getDouble(buffer);
+		Double pointSize = getDouble(buffer);
+		Double pointMinSize = getDouble(buffer);
+		Double pointMaxSize = getDouble(buffer);
+		Double pointConstantAttenuation = getDouble(buffer);
+		Double pointLinearAttenuation = getDouble(buffer);
+		Double pointQuadraticAttenuation = getDouble(buffer);
+
+		int positionCount = buffer.getInt();
+		double[] coordinates = new double[positionCount * 3];
+		DoubleBuffer doubles = buffer.asDoubleBuffer();
+		doubles.get(coordinates);
+		buffer.position(buffer.position() + coordinates.length * 8);
+		List<Position> positions = new ArrayList<Position>(positionCount);
+		for (int i = 0; i < coordinates.length; i += 3)
+		{
+			positions.add(Position.fromDegrees(coordinates[i], coordinates[i + 1], coordinates[i + 2]));
+		}
+
+		int[] indices = getIntArray(buffer);
+		int colorBufferElementSize = buffer.getInt();
+		float[] colorBuffer = getFloatArray(buffer);
+		float[] textureCoordinateBuffer = getFloatArray(buffer);
+		float[] scalarBuffer = getFloatArray(buffer);
+		int[] scalarColorTable = getIntArray(buffer);
+		double scalarMinimum = buffer.getDouble();
+		double scalarMaximum = buffer.getDouble();
+		float scalarNoDataValue = buffer.getFloat();
+
+		FastShape shape =
+				indices == null ? new FastShape(positions, mode) : new FastShape(positions, indices, mode);
+		shape.setName(name);
+		shape.setLighted((flags & FLAG_LIGHTED) != 0);
+		shape.setTwoSidedLighting((flags & FLAG_TWO_SIDED_LIGHTING) != 0);
+		shape.setCalculateNormals((flags & FLAG_CALCULATE_NORMALS) != 0);
+		shape.setForceSortedPrimitives((flags & FLAG_FORCE_SORTED_PRIMITIVES) != 0);
+		shape.setFollowTerrain((flags & FLAG_FOLLOW_TERRAIN) != 0);
+		if ((flags & FLAG_HAS_COLOR) != 0)
+		{
+			shape.setColor(new Color(color, true));
+		}
+		shape.setLineWidth(lineWidth);
+		shape.setPointSize(pointSize);
+		shape.setPointMinSize(pointMinSize);
+		shape.setPointMaxSize(pointMaxSize);
+		shape.setPointConstantAttenuation(pointConstantAttenuation);
+		shape.setPointLinearAttenuation(pointLinearAttenuation);
+		shape.setPointQuadraticAttenuation(pointQuadraticAttenuation);
+		if (colorBuffer != null)
+		{
+			shape.setColorBufferElementSize(colorBufferElementSize);
+			shape.setColorBuffer(colorBuffer);
+		}
+		shape.setTextureCoordinateBuffer(textureCoordinateBuffer);
+		if (scalarBuffer != null)
+		{
+			shape.setScalarBuffer(scalarBuffer);
+			shape.setScalarColorTable(scalarColorTable);
+			shape.setScalarRange(scalarMinimum, scalarMaximum);
+			shape.setScalarNoDataValue((flags & FLAG_HAS_SCALAR_NO_DATA) != 0 ? scalarNoDataValue : null);
+		}
+		return shape;
+	}
+
+	/**
+	 * Write the shapes to a snapshot file.
+	 * 
+	 * @param file
+	 *            File to write to
+	 * @param key
+	 *            Key to store with the snapshot
+	 * @param shapes
+	 *            Shapes to write
+	 * @return True if the snapshot was written successfully
+	 */
+	public static boolean write(File file, String key, List<FastShape> shapes)
+	{
+		ByteBuffer buffer = write(key, shapes);
+		FileOutputStream fos = null;
+		try
+		{
+			fos = new FileOutputStream(file);
+			FileChannel channel = fos.getChannel();
+			while (buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			Logging.logger().log(Level.WARNING, "Error writing GOCAD model cache: " + file, e);
+			return false;
+		}
+		finally
+		{
+			WWIO.closeStream(fos, file.getPath());
+		}
+	}
+
+	/**
+	 * Write the shapes to a snapshot buffer.
+	 * 
+	 * @param key
+	 *            Key to store with the snapshot
+	 * @param shapes
+	 *            Shapes to write
+	 * @return Buffer containing the snapshot, ready to be read
+	 */
+	public static ByteBuffer write(String key, List<FastShape> shapes)
+	{
+		byte[] keyBytes = key.getBytes(UTF8);
+		long size = 16 + keyBytes.length;
+		for (FastShape shape : shapes)
+		{
+			size += calculateShapeSize(shape);
+		}
+		if (size > Integer.MAX_VALUE)
+		{
+			throw new IllegalArgumentException("Shapes too large to cache");
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocateDirect((int) size).order(ByteOrder.nativeOrder());
+		buffer.putInt(MAGIC);
+		buffer.putInt(VERSION);
+		putBytes(buffer, keyBytes);
+		buffer.putInt(shapes.size());
+		for (FastShape shape : shapes)
+		{
+			writeShape(buffer, shape);
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	protected static long calculateShapeSize(FastShape shape)
+	{
+		long size = 4 + (shape.getName() == null ? 0 : shape.getName().getBytes(UTF8).length);
+		size += 12 + 7 * 8;
+		size += 4 + shape.getPositions().size() * 3l * 8;
+		size += 4 + (shape.getIndices() == null ? 0 : shape.getIndices().length * 4l);
+		size += 4;
+		size += 4 + (shape.getColorBuffer() == null ? 0 : shape.getColorBuffer().length * 4l);
+		size += 4 + (shape.getTextureCoordinateBuffer() == null ? 0 : shape.getTextureCoordinateBuffer().length * 4l);
+		size += 4 + (shape.getScalarBuffer() == null ? 0 : shape.getScalarBuffer().length * 4l);
+		size += 4 + (shape.getScalarColorTable() == null ? 0 : shape.getScalarColorTable().length * 4l);
+		size += 2 * 8 + 4;
+		return size;
+	}
+
+	protected static void writeShape(ByteBuffer buffer, FastShape shape)
+	{
+		int flags = 0;
+		flags |= shape.isLighted() ? FLAG_LIGHTED : 0;
+		flags |= shape.isTwoSidedLighting() ? FLAG_TWO_SIDED_LIGHTING : 0;
+		flags |= shape.isCalculateNormals() ? FLAG_CALCULATE_NORMALS : 0;
+		flags |= shape.isForceSortedPrimitives() ? FLAG_FORCE_SORTED_PRIMITIVES : 0;
+		flags |= shape.isFollowTerrain() ? FLAG_FOLLOW_TERRAIN : 0;
+		flags |= shape.getColor() != null ? FLAG_HAS_COLOR : 0;
+		flags |= shape.getScalarNoDataValue() != null ? FLAG_HAS_SCALAR_NO_DATA : 0;
+
+		putBytes(buffer, shape.getName() == null ? null : shape.getName().getBytes(UTF8));
+		buffer.putInt(shape.getMode());
+		buffer.putInt(flags);
+		buffer.putInt(shape.getColor() != null ? shape.getColor().getRGB() : 0);
+		putDouble(buffer, shape.getLineWidth());
+		putDouble(buffer, shape.getPointSize());
+		putDouble(buffer, shape.getPointMinSize());
+		putDouble(buffer, shape.getPointMaxSize());
+		putDouble(buffer, shape.getPointConstantAttenuation());
+		putDouble(buffer, shape.getPointLinearAttenuation());
+		putDouble(buffer, shape.getPointQuadraticAttenuation());
+
+		List<Position> positions = shape.getPositions();
+		buffer.putInt(positions.size());
+		DoubleBuffer doubles = buffer.asDoubleBuffer();
+		for (Position position : positions)
+		{
+			doubles.put(position.latitude.degrees).put(position.longitude.degrees).put(position.elevation);
+		}
+		buffer.position(buffer.position() + doubles.position() * 8);
+
+		putIntArray(buffer, shape.getIndices());
+		buffer.putInt(shape.getColorBufferElementSize());
+		putFloatArray(buffer, shape.getColorBuffer());
+		putFloatArray(buffer, shape.getTextureCoordinateBuffer());
+		putFloatArray(buffer, shape.getScalarBuffer());
+		putIntArray(buffer, shape.getScalarColorTable());
+		buffer.putDouble(shape.getScalarMinimum());
+		buffer.putDouble(shape.getScalarMaximum());
+		buffer.putFloat(shape.getScalarNoDataValue() != null ? shape.getScalarNoDataValue() : 0);
+	}
+
+	private static void putBytes(ByteBuffer buffer, byte[] bytes)
+	{
+		buffer.putInt(bytes == null ? -1 : bytes.length);
+		if (bytes != null)
+		{
+			buffer.put(bytes);
+		}
+	}
+
+	private static String getString(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if (length < 0)
+		{
+			return null;
+		}
+		byte[] bytes = new byte[length];
+		buffer.get(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void putDouble(ByteBuffer buffer, Double value)
+	{
+		buffer.putDouble(value == null ? Double.NaN : value);
+	}
+
+	private static Double getDouble(ByteBuffer buffer)
+	{
+		double value = buffer.getDouble();
+		return Double.isNaN(value) ? null : value;
+	}
+
+	private static void putIntArray(ByteBuffer buffer, int[] array)
+	{
+		buffer.putInt(array == null ? -1 : array.length);
+		if (array != null)
+		{
+			buffer.asIntBuffer().put(array);
+			buffer.position(buffer.position() + array.length * 4);
+		}
+	}
+
+	private static int[] getIntArray(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if (length < 0)
+		{
+			return null;
+		}
+		int[] array = new int[length];
+		buffer.asIntBuffer().get(array);
+		buffer.position(buffer.position() + length * 4);
+		return array;
+	}
+
+	private static void putFloatArray(ByteBuffer buffer, float[] array)
+	{
+		buffer.putInt(array == null ? -1 : array.length);
+		if (array != null)
+		{
+			buffer.asFloatBuffer().put(array);
+			buffer.position(buffer.position() + array.length * 4);
+		}
+	}
+
+	private static float[] getFloatArray(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+		if (length < 0)
+		{
+			return null;
+		}
+		float[] array = new float[length];
+		buffer.asFloatBuffer().get(array);
+		buffer.position(buffer.position() + length * 4);
+		return array;
+	}
+}
@@ -39,6 +39,12 @@ import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
  */
 public class GocadModelProvider extends AbstractDataProvider<ModelLayer> implements ModelProvider
 {
+	/**
+	 * Suffix appended to the layer's data cache name to create the filename
+	 * of the parsed shape cache.
+	 */
+	protected static final String CACHE_SUFFIX = ".shapes";
+
 	private Sector sector = null;
 	private final GocadReaderParameters parameters;
 
@@ -56,8 +62,87 @@ public class GocadModelProvider extends AbstractDataProvider<ModelLayer> impleme
 	@Override
 	protected boolean doLoadData(URL url, ModelLayer layer)
 	{
-		List<FastShape> shapes;
 		File file = URLUtil.urlToFile(url);
+		String cacheName = layer.getDataCacheName() == null ? null : layer.getDataCacheName() + CACHE_SUFFIX;
+		String cacheKey = cacheName == null ? null : createCacheKey(url, file);
+
+		List<FastShape> shapes = null;
+		if (cacheKey != null)
+		{
+			URL cacheUrl = getDataFileStore().findFile(cacheName, false);
+			if (cacheUrl != null)
+			{
+				shapes = GocadModelCache.read(URLUtil.urlToFile(cacheUrl), cacheKey);
+			}
+		}
+
+		if (shapes == null)
+		{
+			shapes = readShapes(url, file);
+			if (cacheKey != null && shapes != null && !shapes.isEmpty() && GocadModelCache.isCacheable(shapes))
+			{
+				File cacheFile = getDataFileStore().newFile(cacheName);
+				if (cacheFile != null)
+				{
+					GocadModelCache.write(cacheFile, cacheKey, shapes);
+				}
+			}
+		}
+
+		if (shapes != null && !shapes.isEmpty())
+		{
+			for (FastShape shape : shapes)
+			{
+				layer.addShape(shape);
+				if(sector == null)
+				{
+					sector = shape.getSector();
+				}
+				else
+				{
+					sector = sector.union(shape.getSector());
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Create the key used to validate the cached shapes for the given GOCAD
+	 * file. The key changes if the file's url, length or last modified time
+	 * change, or if the reader parameters change.
+	 * 
+	 * @param url
+	 *            URL of the GOCAD file
+	 * @param file
+	 *            GOCAD file
+	 * @return Cache key, or null if the shapes read from the file should not
+	 *         be cached
+	 */
+	protected String createCacheKey(URL url, File file)
+	{
+		String parametersKey = parameters.getCacheKey();
+		if (file == null || !file.isFile() || parametersKey == null)
+		{
+			return null;
+		}
+		return url.toExternalForm() + "|" + file.length() + "|" + file.lastModified() + "|" + parametersKey;
+	}
+
+	/**
+	 * Parse the shapes from the given GOCAD file (or zip file containing GOCAD
+	 * files).
+	 * 
+	 * @param url
+	 *            URL of the file
+	 * @param file
+	 *            File to read
+	 * @return Shapes read from the file, or null if reading failed
+	 */
+	protected List<FastShape> readShapes(URL url, File file)
+	{
+		List<FastShape> shapes;
 		if (file.getName().endsWith(".zip"))
 		{
 			shapes = new ArrayList<FastShape>();
@@ -88,29 +173,13 @@ public class GocadModelProvider extends AbstractDataProvider<ModelLayer> impleme
 			catch (Exception e)
 			{
 				e.printStackTrace();
-				return false;
+				return null;
 			}
 		}
 		else
 		{
 			shapes = GocadFactory.read(file, parameters);
 		}
-		if (shapes != null && !shapes.isEmpty())
-		{
-			for (FastShape shape : shapes)
-			{
-				layer.addShape(shape);
-				if(sector == null)
-				{
-					sector = shape.getSector();
-				}
-				else
-				{
-					sector = sector.union(shape.getSector());
-				}
-			}
-			return true;
-		}
-		return false;
+		return shapes;
 	}
 }
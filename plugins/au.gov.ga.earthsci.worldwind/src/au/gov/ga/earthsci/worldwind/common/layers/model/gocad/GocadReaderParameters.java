@@ -20,6 +20,7 @@ import gov.nasa.worldwind.avlist.AVList;
 
 import java.awt.Color;
 import java.nio.ByteOrder;
+import java.util.Map.Entry;
 
 import org.gdal.osr.CoordinateTransformation;
 
@@ -44,6 +45,7 @@ public class GocadReaderParameters
 	private int dynamicSubsamplingSamplesPerAxis = 50;
 	private boolean bilinearMinification = false;
 	private CoordinateTransformation coordinateTransformation = null;
+	private String coordinateSystem = null;
 	private Color color = null; // To use it no colormap found
 	private ColorMap colorMap = null;
 	private float maxVariance = 0;
@@ -74,6 +76,7 @@ public class GocadReaderParameters
 		this.dynamicSubsamplingSamplesPerAxis = other.dynamicSubsamplingSamplesPerAxis;
 		this.bilinearMinification = other.bilinearMinification;
 		this.coordinateTransformation = other.coordinateTransformation;
+		this.coordinateSystem = other.coordinateSystem;
 		this.color = other.color;
 		this.colorMap = other.colorMap;
 		this.maxVariance = other.maxVariance;
@@ -141,6 +144,7 @@ public class GocadReaderParameters
 		if (s != null)
 		{
 			setCoordinateTransformation(CoordinateTransformationUtil.getTransformationToWGS84(s));
+			coordinateSystem = s;
 		}
 
 		ColorMap cm = (ColorMap) params.getValue(AVKeyMore.COLOR_MAP);
@@ -323,6 +327,7 @@ public class GocadReaderParameters
 	public void setCoordinateTransformation(CoordinateTransformation coordinateTransformation)
 	{
 		this.coordinateTransformation = coordinateTransformation;
+		this.coordinateSystem = null;
 	}
 
 	/**
@@ -503,4 +508,39 @@ public class GocadReaderParameters
 	{
 		this.pointQuadraticAttenuation = pointQuadraticAttenuation;
 	}
+
+	/**
+	 * @return A string that uniquely identifies the parameters that affect the
+	 *         shapes read by the {@link GocadFactory}; used to validate cached
+	 *         shapes. Returns null if the parameters cannot be identified (for
+	 *         example, if a coordinate transformation was provided without a
+	 *         coordinate system).
+	 */
+	public String getCacheKey()
+	{
+		if (coordinateTransformation != null && coordinateSystem == null)
+		{
+			return null;
+		}
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(byteOrder).append(',');
+		sb.append(subsamplingU).append(',').append(subsamplingV).append(',').append(subsamplingW).append(',');
+		sb.append(dynamicSubsampling).append(',').append(dynamicSubsamplingSamplesPerAxis).append(',');
+		sb.append(bilinearMinification).append(',').append(coordinateSystem).append(',');
+		sb.append(color == null ? null : color.getRGB()).append(',');
+		sb.append(maxVariance).append(',').append(paintedVariable).append(',');
+		sb.append(pointSize).append(',').append(pointMinSize).append(',').append(pointMaxSize).append(',');
+		sb.append(pointConstantAttenuation).append(',').append(pointLinearAttenuation).append(',');
+		sb.append(pointQuadraticAttenuation).append(',');
+		if (colorMap != null)
+		{
+			sb.append(colorMap.isInterpolateHue()).append(',').append(colorMap.isValuesPercentages());
+			for (Entry<Double, Color> entry : colorMap.entrySet())
+			{
+				sb.append(',').append(entry.getKey()).append('=').append(entry.getValue().getRGB());
+			}
+		}
+		return sb.toString();
+	}
 }
@@ -19,7 +19,6 @@ import gov.nasa.worldwind.geom.Position;
 
 import java.awt.Color;
 import java.net.URL;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -30,6 +29,7 @@ import java.util.regex.Pattern;
 import javax.media.opengl.GL2;
 
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.util.CompiledColorMap;
 
 /**
  * A {@link GocadReader} that reads a VSet object into a {@link FastShape}
@@ -172,9 +172,11 @@ public class GocadVSetReader implements GocadReader<FastShape>
 
 		if (parameters.getColorMap() != null)
 		{
-			float[] colorBuffer = createColorBuffer();
-			shape.setColorBufferElementSize(4);
-			shape.setColorBuffer(colorBuffer);
+			shape.setScalarBuffer(createScalarBuffer());
+			shape.setScalarNoDataValue(noDataValue);
+			shape.setScalarColorTable(parameters.getColorMap().compile(min, max)
+					.createTable(min, max, CompiledColorMap.DEFAULT_TABLE_SIZE));
+			shape.setScalarRange(min, max);
 		}
 		else if (parameters.getColor() != null)
 		{
@@ -188,23 +190,16 @@ public class GocadVSetReader implements GocadReader<FastShape>
 		return shape;
 	}
 
-	private float[] createColorBuffer()
+	private float[] createScalarBuffer()
 	{
-		FloatBuffer colorBuffer = FloatBuffer.allocate(positions.size() * 4);
-		for (float value : values)
+		//NaN values are stored as the no-data value, so that they aren't drawn
+		float[] scalars = new float[values.size()];
+		for (int i = 0; i < scalars.length; i++)
 		{
-			if (Float.isNaN(value) || value == noDataValue)
-			{
-				colorBuffer.put(0).put(0).put(0).put(0);
-			}
-			else
-			{
-				Color color = parameters.getColorMap().calculateColorNotingIsValuesPercentages(value, min, max);
-				colorBuffer.put(color.getRed() / 255f).put(color.getGreen() / 255f).put(color.getBlue() / 255f)
-						.put(color.getAlpha() / 255f);
-			}
+			float value = values.get(i);
+			scalars[i] = Float.isNaN(value) ? noDataValue : value;
 		}
-		return colorBuffer.array();
+		return scalars;
 	}
 
 	private void processVertexLine(Matcher matcher)
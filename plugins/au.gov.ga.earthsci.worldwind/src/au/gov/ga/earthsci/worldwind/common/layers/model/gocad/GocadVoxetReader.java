@@ -18,11 +18,9 @@ package au.gov.ga.earthsci.worldwind.common.layers.model.gocad;
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Vec4;
 
-import java.awt.Color;
 import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.net.URL;
-import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.regex.Matcher;
@@ -30,6 +28,7 @@ import java.util.regex.Matcher;
 import javax.media.opengl.GL2;
 
 import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
+import au.gov.ga.earthsci.worldwind.common.util.CompiledColorMap;
 import au.gov.ga.earthsci.worldwind.common.util.HSLColor;
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader;
@@ -330,8 +329,6 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 			return null;
 		}
 
-		FloatBuffer colorBuffer = createColorBuffer(values, minmax);
-
 		if (name == null)
 		{
 			name = "Voxet";
@@ -339,8 +336,9 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 
 		FastShape shape = new FastShape(positions, GL2.GL_POINTS);
 		shape.setName(name);
-		shape.setColorBuffer(colorBuffer.array());
-		shape.setColorBufferElementSize(4);
+		shape.setScalarBuffer(createScalarBuffer(values, positions.size()));
+		shape.setScalarColorTable(createColorTable(minmax));
+		shape.setScalarRange(minmax[0], minmax[1]);
 		shape.setForceSortedPrimitives(true);
 		shape.setFollowTerrain(true);
 		return shape;
@@ -381,35 +379,36 @@ public class GocadVoxetReader implements GocadReader<FastShape>
 		Validate.isTrue("IBM".equals(etype) || "IEEE".equals(etype), "Unsupported PROP_ETYPE value: " + etype);
 	}
 	
-	private FloatBuffer createColorBuffer(float[] values, float[] minmax)
+	private float[] createScalarBuffer(float[] values, int count)
 	{
-		FloatBuffer colorBuffer = FloatBuffer.allocate(values.length * 4);
+		//only non-NaN floats have points associated, so NaN values are skipped
+		float[] scalars = new float[count];
+		int i = 0;
 		for (float value : values)
 		{
-			//check that this value is valid; only non-NaN floats have points associated
 			if (!Float.isNaN(value))
 			{
-				if (parameters.getColorMap() != null)
-				{
-					Color color = parameters.getColorMap().calculateColorNotingIsValuesPercentages(value, minmax[0], minmax[1]);
-					colorBuffer.put(color.getRed() / 255f)
-							   .put(color.getGreen() / 255f)
-							   .put(color.getBlue() / 255f)
-							   .put(color.getAlpha() / 255f);
-				}
-				else
-				{
-					float percent = (value - minmax[0]) / (minmax[1] - minmax[0]);
-					HSLColor hsl = new HSLColor((1f - percent) * 300f, 100f, 50f);
-					Color color = hsl.getRGB();
-					colorBuffer.put(color.getRed() / 255f)
-							   .put(color.getGreen() / 255f)
-							   .put(color.getBlue() / 255f)
-							   .put(255);
-				}
+				scalars[i++] = value;
 			}
 		}
-		return colorBuffer;
+		return scalars;
+	}
+
+	private int[] createColorTable(float[] minmax)
+	{
+		int size = CompiledColorMap.DEFAULT_TABLE_SIZE;
+		if (parameters.getColorMap() != null)
+		{
+			return parameters.getColorMap().compile(minmax[0], minmax[1]).createTable(minmax[0], minmax[1], size);
+		}
+		int[] table = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			float percent = i / (float) (size - 1);
+			HSLColor hsl = new HSLColor((1f - percent) * 300f, 100f, 50f);
+			table[i] = hsl.getRGB().getRGB();
+		}
+		return table;
 	}
 
 	private float[] createValuesArray(int[] samples)
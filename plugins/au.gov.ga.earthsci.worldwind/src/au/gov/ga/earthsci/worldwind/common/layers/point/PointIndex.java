@@ -0,0 +1,379 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.point;
+
+/**
+ * Quadtree spatial index of point features, keyed by latitude/longitude in
+ * degrees. Each node of the tree covers a sector (the root covers the whole
+ * globe), and keeps a count and centroid of the points within it, so that
+ * nodes can be rendered as a single cluster when they are small on screen.
+ * <p/>
+ * Queries visit only the nodes that intersect the query sector, and a
+ * {@link Visitor} decides for each node whether to descend into it or treat
+ * it as a {@link Cluster}.
+ * <p/>
+ * This class is thread safe.
+ * 
+ * @param <T>
+ *            Type of the indexed points
+ */
+public class PointIndex<T>
+{
+	/**
+	 * Default number of points stored in a node before it is split
+	 */
+	public static final int DEFAULT_NODE_CAPACITY = 64;
+	/**
+	 * Default maximum depth of the tree
+	 */
+	public static final int DEFAULT_MAX_DEPTH = 20;
+
+	private final int nodeCapacity;
+	private final int maxDepth;
+	private final Node<T> root;
+
+	public PointIndex()
+	{
+		this(DEFAULT_NODE_CAPACITY, DEFAULT_MAX_DEPTH);
+	}
+
+	/**
+	 * Create a new index.
+	 * 
+	 * @param nodeCapacity
+	 *            Number of points stored in a node before it is split into
+	 *            four children
+	 * @param maxDepth
+	 *            Maximum depth of the tree; nodes at this depth are never
+	 *            split
+	 */
+	public PointIndex(int nodeCapacity, int maxDepth)
+	{
+		if (nodeCapacity < 1)
+		{
+			throw new IllegalArgumentException("Node capacity must be positive");
+		}
+		this.nodeCapacity = nodeCapacity;
+		this.maxDepth = maxDepth;
+		this.root = new Node<T>(-90, 90, -180, 180, 0);
+	}
+
+	/**
+	 * Add a point to the index.
+	 * 
+	 * @param latitude
+	 *            Latitude of the point in degrees
+	 * @param longitude
+	 *            Longitude of the point in degrees
+	 * @param item
+	 *            Point to add
+	 */
+	public synchronized void add(double latitude, double longitude, T item)
+	{
+		latitude = Math.max(-90, Math.min(90, latitude));
+		longitude = Math.max(-180, Math.min(180, longitude));
+
+		Node<T> node = root;
+		while (true)
+		{
+			node.count++;
+			node.sumLatitude += latitude;
+			node.sumLongitude += longitude;
+			node.cluster = null;
+			if (node.first == null)
+			{
+				node.first = item;
+			}
+
+			if (node.children == null)
+			{
+				node.addItem(latitude, longitude, item);
+				if (node.itemCount > nodeCapacity && node.depth < maxDepth)
+				{
+					node.split(nodeCapacity, maxDepth);
+				}
+				return;
+			}
+			node = node.children[node.childIndex(latitude, longitude)];
+		}
+	}
+
+	/**
+	 * @return Number of points in the index
+	 */
+	public synchronized int size()
+	{
+		return root.count;
+	}
+
+	/**
+	 * Remove all points from the index.
+	 */
+	public synchronized void clear()
+	{
+		root.children = null;
+		root.clearItems();
+		root.count = 0;
+		root.sumLatitude = 0;
+		root.sumLongitude = 0;
+		root.first = null;
+		root.cluster = null;
+	}
+
+	/**
+	 * Visit the points and clusters within the given sector.
+	 * 
+	 * @param minLatitude
+	 *            Minimum latitude of the sector in degrees
+	 * @param maxLatitude
+	 *            Maximum latitude of the sector in degrees
+	 * @param minLongitude
+	 *            Minimum longitude of the sector in degrees
+	 * @param maxLongitude
+	 *            Maximum longitude of the sector in degrees
+	 * @param visitor
+	 *            Visitor that decides which nodes are clustered, and receives
+	 *            the points and clusters
+	 */
+	public synchronized void query(double minLatitude, double maxLatitude, double minLongitude,
+			double maxLongitude, Visitor<T> visitor)
+	{
+		query(root, minLatitude, maxLatitude, minLongitude, maxLongitude, visitor);
+	}
+
+	private void query(Node<T> node, double minLatitude, double maxLatitude, double minLongitude,
+			double maxLongitude, Visitor<T> visitor)
+	{
+		if (node.count == 0 || node.minLatitude > maxLatitude || node.maxLatitude < minLatitude
+				|| node.minLongitude > maxLongitude || node.maxLongitude < minLongitude)
+		{
+			return;
+		}
+
+		if (node.count > 1
+				&& visitor.isCluster(node.minLatitude, node.maxLatitude, node.minLongitude, node.maxLongitude,
+						node.depth, node.count))
+		{
+			if (node.cluster == null)
+			{
+				node.cluster =
+						new Cluster<T>(node.first, node.count, node.sumLatitude / node.count, node.sumLongitude
+								/ node.count);
+			}
+			visitor.visitCluster(node.cluster);
+			return;
+		}
+
+		if (node.children != null)
+		{
+			for (Node<T> child : node.children)
+			{
+				query(child, minLatitude, maxLatitude, minLongitude, maxLongitude, visitor);
+			}
+			return;
+		}
+
+		for (int i = 0; i < node.itemCount; i++)
+		{
+			double latitude = node.latitudes[i];
+			double longitude = node.longitudes[i];
+			if (latitude >= minLatitude && latitude <= maxLatitude && longitude >= minLongitude
+					&& longitude <= maxLongitude)
+			{
+				@SuppressWarnings("unchecked")
+				T item = (T) node.items[i];
+				visitor.visit(item);
+			}
+		}
+	}
+
+	/**
+	 * Visitor used when querying the index.
+	 */
+	public interface Visitor<T>
+	{
+		/**
+		 * Should the given node be treated as a single cluster, instead of
+		 * visiting the points within it? Only called for nodes containing
+		 * more than one point.
+		 * 
+		 * @param minLatitude
+		 *            Minimum latitude of the node in degrees
+		 * @param maxLatitude
+		 *            Maximum latitude of the node in degrees
+		 * @param minLongitude
+		 *            Minimum longitude of the node in degrees
+		 * @param maxLongitude
+		 *            Maximum longitude of the node in degrees
+		 * @param depth
+		 *            Depth of the node in the tree (the root is 0)
+		 * @param count
+		 *            Number of points within the node
+		 * @return True if the node should be visited as a cluster
+		 */
+		boolean isCluster(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+				int depth, int count);
+
+		/**
+		 * Visit a point within the query sector.
+		 */
+		void visit(T item);
+
+		/**
+		 * Visit a cluster of points intersecting the query sector.
+		 */
+		void visitCluster(Cluster<T> cluster);
+	}
+
+	/**
+	 * A cluster of points, represented by the first point added to the node.
+	 * Clusters are cached by the index until a point is added to the node, so
+	 * the {@link #getUserObject()} can be used to cache an object used to
+	 * render the cluster.
+	 */
+	public static class Cluster<T>
+	{
+		public final T representative;
+		public final int count;
+		public final double latitude;
+		public final double longitude;
+		private volatile Object userObject;
+
+		public Cluster(T representative, int count, double latitude, double longitude)
+		{
+			this.representative = representative;
+			this.count = count;
+			this.latitude = latitude;
+			this.longitude = longitude;
+		}
+
+		public Object getUserObject()
+		{
+			return userObject;
+		}
+
+		public void setUserObject(Object userObject)
+		{
+			this.userObject = userObject;
+		}
+	}
+
+	private static class Node<T>
+	{
+		public final double minLatitude;
+		public final double maxLatitude;
+		public final double minLongitude;
+		public final double maxLongitude;
+		public final int depth;
+
+		public int count;
+		public double sumLatitude;
+		public double sumLongitude;
+		public T first;
+		public Cluster<T> cluster;
+		public Node<T>[] children;
+
+		public int itemCount;
+		public double[] latitudes;
+		public double[] longitudes;
+		public Object[] items;
+
+		public Node(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude, int depth)
+		{
+			this.minLatitude = minLatitude;
+			this.maxLatitude = maxLatitude;
+			this.minLongitude = minLongitude;
+			this.maxLongitude = maxLongitude;
+			this.depth = depth;
+		}
+
+		public int childIndex(double latitude, double longitude)
+		{
+			int index = latitude >= (minLatitude + maxLatitude) * 0.5 ? 2 : 0;
+			return longitude >= (minLongitude + maxLongitude) * 0.5 ? index + 1 : index;
+		}
+
+		public void addItem(double latitude, double longitude, Object item)
+		{
+			if (items == null)
+			{
+				latitudes = new double[8];
+				longitudes = new double[8];
+				items = new Object[8];
+			}
+			else if (itemCount == items.length)
+			{
+				int length = items.length * 2;
+				double[] newLatitudes = new double[length];
+				double[] newLongitudes = new double[length];
+				Object[] newItems = new Object[length];
+				System.arraycopy(latitudes, 0, newLatitudes, 0, itemCount);
+				System.arraycopy(longitudes, 0, newLongitudes, 0, itemCount);
+				System.arraycopy(items, 0, newItems, 0, itemCount);
+				latitudes = newLatitudes;
+				longitudes = newLongitudes;
+				items = newItems;
+			}
+			latitudes[itemCount] = latitude;
+			longitudes[itemCount] = longitude;
+			items[itemCount] = item;
+			itemCount++;
+		}
+
+		public void clearItems()
+		{
+			itemCount = 0;
+			latitudes = null;
+			longitudes = null;
+			items = null;
+		}
+
+		@SuppressWarnings("unchecked")
+		public void split(int nodeCapacity, int maxDepth)
+		{
+			double midLatitude = (minLatitude + maxLatitude) * 0.5;
+			double midLongitude = (minLongitude + maxLongitude) * 0.5;
+			children = new Node[4];
+			children[0] = new Node<T>(minLatitude, midLatitude, minLongitude, midLongitude, depth + 1);
+			children[1] = new Node<T>(minLatitude, midLatitude, midLongitude, maxLongitude, depth + 1);
+			children[2] = new Node<T>(midLatitude, maxLatitude, minLongitude, midLongitude, depth + 1);
+			children[3] = new Node<T>(midLatitude, maxLatitude, midLongitude, maxLongitude, depth + 1);
+
+			for (int i = 0; i < itemCount; i++)
+			{
+				Node<T> child = children[childIndex(latitudes[i], longitudes[i])];
+				child.count++;
+				child.sumLatitude += latitudes[i];
+				child.sumLongitude += longitudes[i];
+				if (child.first == null)
+				{
+					child.first = (T) items[i];
+				}
+				child.addItem(latitudes[i], longitudes[i], items[i]);
+			}
+			clearItems();
+
+			//the items may all fall into the same child
+			for (Node<T> child : children)
+			{
+				if (child.itemCount > nodeCapacity && child.depth < maxDepth)
+				{
+					child.split(nodeCapacity, maxDepth);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.point;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
+import gov.nasa.worldwind.globes.Globe;
+import gov.nasa.worldwind.render.DrawContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import au.gov.ga.earthsci.worldwind.common.layers.point.PointIndex.Cluster;
+
+/**
+ * Collects the points in a {@link PointIndex} that are within the visible
+ * sector of a frame. Index nodes that are smaller on screen than the cluster
+ * pixel size are collected as a single cluster point, created by
+ * {@link #createCluster(Cluster)}.
+ * <p/>
+ * The collected list is reused, and the points are only collected once per
+ * frame, so the same list can be used for both picking and rendering.
+ * Collectors must only be used on the rendering thread.
+ * 
+ * @param <T>
+ *            Type of the indexed points
+ */
+public abstract class VisiblePointCollector<T> implements PointIndex.Visitor<T>
+{
+	/**
+	 * Default size on screen, in pixels, below which index nodes are
+	 * clustered
+	 */
+	public static final double DEFAULT_CLUSTER_PIXEL_SIZE = 48;
+
+	private final List<T> visible = new ArrayList<T>();
+	private double clusterPixelSize = DEFAULT_CLUSTER_PIXEL_SIZE;
+	private long frameTimeStamp = -1;
+	private DrawContext dc;
+
+	/**
+	 * @return Size on screen, in pixels, below which index nodes are rendered
+	 *         as a single cluster; 0 disables clustering
+	 */
+	public double getClusterPixelSize()
+	{
+		return clusterPixelSize;
+	}
+
+	/**
+	 * Set the size on screen, in pixels, below which index nodes are rendered
+	 * as a single cluster; 0 disables clustering.
+	 */
+	public void setClusterPixelSize(double clusterPixelSize)
+	{
+		this.clusterPixelSize = clusterPixelSize;
+		this.frameTimeStamp = -1;
+	}
+
+	/**
+	 * Collect the visible points and clusters from the index.
+	 * 
+	 * @param dc
+	 *            Current draw context
+	 * @param index
+	 *            Index to query
+	 * @return List of visible points; this list is reused by subsequent calls
+	 */
+	public List<T> collect(DrawContext dc, PointIndex<T> index)
+	{
+		if (dc.getFrameTimeStamp() == frameTimeStamp)
+		{
+			return visible;
+		}
+		frameTimeStamp = dc.getFrameTimeStamp();
+		visible.clear();
+
+		Sector sector = dc.getVisibleSector();
+		if (sector == null)
+		{
+			return visible;
+		}
+
+		this.dc = dc;
+		try
+		{
+			index.query(sector.getMinLatitude().degrees, sector.getMaxLatitude().degrees,
+					sector.getMinLongitude().degrees, sector.getMaxLongitude().degrees, this);
+		}
+		finally
+		{
+			this.dc = null;
+		}
+		return visible;
+	}
+
+	@Override
+	public boolean isCluster(double minLatitude, double maxLatitude, double minLongitude, double maxLongitude,
+			int depth, int count)
+	{
+		if (clusterPixelSize <= 0)
+		{
+			return false;
+		}
+
+		Globe globe = dc.getGlobe();
+		Vec4 center =
+				globe.computePointFromPosition(Angle.fromDegrees((minLatitude + maxLatitude) * 0.5),
+						Angle.fromDegrees((minLongitude + maxLongitude) * 0.5), 0);
+		double distance = dc.getView().getEyePoint().distanceTo3(center);
+		double size = Math.toRadians(maxLatitude - minLatitude) * globe.getRadius();
+		double pixelSize = dc.getView().computePixelSizeAtDistance(distance);
+		return size < pixelSize * clusterPixelSize;
+	}
+
+	@Override
+	public void visit(T item)
+	{
+		visible.add(item);
+	}
+
+	@Override
+	public void visitCluster(Cluster<T> cluster)
+	{
+		@SuppressWarnings("unchecked")
+		T clusterPoint = (T) cluster.getUserObject();
+		if (clusterPoint == null)
+		{
+			clusterPoint = createCluster(cluster);
+			cluster.setUserObject(clusterPoint);
+		}
+		visible.add(clusterPoint);
+	}
+
+	/**
+	 * Create the point used to render a cluster.
+	 * 
+	 * @param cluster
+	 *            Cluster of points
+	 * @return Point that represents the cluster
+	 */
+	protected abstract T createCluster(Cluster<T> cluster);
+}
@@ -15,7 +15,7 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.layers.point.providers;
 
-import gov.nasa.worldwind.formats.shapefile.DBaseRecord;
+import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.formats.shapefile.Shapefile;
 import gov.nasa.worldwind.formats.shapefile.ShapefileRecord;
 import gov.nasa.worldwind.formats.shapefile.ShapefileUtils;
@@ -27,6 +27,7 @@ import java.net.URL;
 import java.util.logging.Level;
 
 import au.gov.ga.earthsci.worldwind.common.layers.data.AbstractDataProvider;
+import au.gov.ga.earthsci.worldwind.common.layers.data.ColumnarAttributeStore;
 import au.gov.ga.earthsci.worldwind.common.layers.point.PointLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.point.PointProvider;
 import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
@@ -40,17 +41,20 @@ import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
 public class ShapefilePointProvider extends AbstractDataProvider<PointLayer> implements PointProvider
 {
 	private Sector sector;
+	private final ColumnarAttributeStore attributes = new ColumnarAttributeStore();
 
 	@Override
 	protected boolean doLoadData(URL url, PointLayer layer)
 	{
 		try
 		{
+			attributes.clear();
 			Shapefile shapefile = ShapefileUtils.openZippedShapefile(URLUtil.urlToFile(url));
 			while (shapefile.hasNext())
 			{
 				ShapefileRecord record = shapefile.nextRecord();
-				DBaseRecord values = record.getAttributes();
+				//copy the record's attributes into the columnar store, and only keep a view of them
+				AVList values = attributes.getRecord(attributes.add(record.getAttributes()));
 
 				for (int part = 0; part < record.getNumberOfParts(); part++)
 				{
@@ -63,6 +67,7 @@ public class ShapefilePointProvider extends AbstractDataProvider<PointLayer> imp
 				}
 			}
 
+			attributes.trimToSize();
 			sector = Sector.fromDegrees(shapefile.getBoundingRectangle());
 			layer.loadComplete();
 		}
@@ -80,4 +85,13 @@ public class ShapefilePointProvider extends AbstractDataProvider<PointLayer> imp
 	{
 		return sector;
 	}
+
+	/**
+	 * @return The attribute values of the loaded features, indexed by the
+	 *         order of the features in the shapefile
+	 */
+	public ColumnarAttributeStore getAttributes()
+	{
+		return attributes;
+	}
 }
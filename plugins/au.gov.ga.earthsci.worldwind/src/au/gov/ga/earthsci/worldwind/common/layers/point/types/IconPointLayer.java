@@ -27,18 +27,27 @@ import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.render.UserFacingIcon;
 import gov.nasa.worldwind.render.WWIcon;
 
+import java.awt.Point;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.List;
 
 import au.gov.ga.earthsci.worldwind.common.WorldWindowRegistry;
+import au.gov.ga.earthsci.worldwind.common.layers.point.PointIndex;
+import au.gov.ga.earthsci.worldwind.common.layers.point.PointIndex.Cluster;
 import au.gov.ga.earthsci.worldwind.common.layers.point.PointLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.point.PointLayerHelper;
+import au.gov.ga.earthsci.worldwind.common.layers.point.VisiblePointCollector;
 import au.gov.ga.earthsci.worldwind.common.layers.styled.StyleAndText;
 import au.gov.ga.earthsci.worldwind.common.util.DefaultLauncher;
 
 /**
  * {@link PointLayer} implementation which extends {@link IconLayer} and uses
  * Icons to represent points.
+ * <p/>
+ * Icons are stored in a {@link PointIndex}, and only the icons within the
+ * visible sector are rendered and picked. When zoomed out, icons that are
+ * close together on screen are rendered as a single cluster icon.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -46,6 +55,24 @@ public class IconPointLayer extends IconLayer implements PointLayer, SelectListe
 {
 	private final PointLayerHelper helper;
 	private WWIcon pickedIcon;
+	private List<WWIcon> visibleIcons;
+
+	private final PointIndex<WWIcon> index = new PointIndex<WWIcon>();
+	private final VisiblePointCollector<WWIcon> collector = new VisiblePointCollector<WWIcon>()
+	{
+		@Override
+		protected WWIcon createCluster(Cluster<WWIcon> cluster)
+		{
+			WWIcon representative = cluster.representative;
+			Position position =
+					Position.fromDegrees(cluster.latitude, cluster.longitude, representative.getPosition()
+							.getElevation());
+			UserFacingIcon icon = new UserFacingIcon(representative.getImageSource(), position);
+			icon.setSize(representative.getSize());
+			icon.setToolTipText(cluster.count + " points");
+			return icon;
+		}
+	};
 
 	public IconPointLayer(PointLayerHelper helper)
 	{
@@ -63,6 +90,45 @@ public class IconPointLayer extends IconLayer implements PointLayer, SelectListe
 		super.render(dc);
 	}
 
+	@Override
+	protected void doRender(DrawContext dc)
+	{
+		visibleIcons = collector.collect(dc, index);
+		super.doRender(dc);
+	}
+
+	@Override
+	protected void doPick(DrawContext dc, Point pickPoint)
+	{
+		visibleIcons = collector.collect(dc, index);
+		super.doPick(dc, pickPoint);
+	}
+
+	@Override
+	protected Iterable<WWIcon> getActiveIcons()
+	{
+		return visibleIcons != null ? visibleIcons : super.getActiveIcons();
+	}
+
+	/**
+	 * @return Size on screen, in pixels, below which nearby icons are rendered
+	 *         as a single cluster icon
+	 * @see VisiblePointCollector#getClusterPixelSize()
+	 */
+	public double getClusterPixelSize()
+	{
+		return collector.getClusterPixelSize();
+	}
+
+	/**
+	 * Set the size on screen, in pixels, below which nearby icons are rendered
+	 * as a single cluster icon; 0 disables clustering.
+	 */
+	public void setClusterPixelSize(double clusterPixelSize)
+	{
+		collector.setClusterPixelSize(clusterPixelSize);
+	}
+
 	@Override
 	public Sector getSector()
 	{
@@ -78,7 +144,7 @@ public class IconPointLayer extends IconLayer implements PointLayer, SelectListe
 		icon.setToolTipText(properties.text);
 		icon.setValue(AVKey.URL, properties.link);
 		properties.style.setPropertiesFromAttributes(helper.getContext(), attributeValues, icon);
-		this.addIcon(icon);
+		index.add(position.getLatitude().degrees, position.getLongitude().degrees, icon);
 	}
 
 	@Override
@@ -33,20 +33,30 @@ import gov.nasa.worldwind.render.markers.MarkerAttributes;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Font;
+import java.awt.Point;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
 import au.gov.ga.earthsci.worldwind.common.WorldWindowRegistry;
+import au.gov.ga.earthsci.worldwind.common.layers.point.PointIndex;
+import au.gov.ga.earthsci.worldwind.common.layers.point.PointIndex.Cluster;
 import au.gov.ga.earthsci.worldwind.common.layers.point.PointLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.point.PointLayerHelper;
+import au.gov.ga.earthsci.worldwind.common.layers.point.VisiblePointCollector;
+import au.gov.ga.earthsci.worldwind.common.layers.styled.Style;
 import au.gov.ga.earthsci.worldwind.common.layers.styled.StyleAndText;
 import au.gov.ga.earthsci.worldwind.common.util.DefaultLauncher;
 
 /**
  * {@link PointLayer} implementation which extends {@link MarkerLayer} and uses
  * Markers to represent points.
+ * <p/>
+ * Markers are stored in a {@link PointIndex}, and only the markers within the
+ * visible sector are passed to the marker renderer for rendering and picking.
+ * When zoomed out, markers that are close together on screen are rendered as
+ * a single cluster marker.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -54,7 +64,22 @@ public class MarkerPointLayer extends MarkerLayer implements PointLayer, SelectL
 {
 	private final PointLayerHelper helper;
 
-	private List<Marker> markers = new ArrayList<Marker>();
+	private final PointIndex<Marker> index = new PointIndex<Marker>();
+	private final VisiblePointCollector<Marker> collector = new VisiblePointCollector<Marker>()
+	{
+		@Override
+		protected Marker createCluster(Cluster<Marker> cluster)
+		{
+			Marker representative = cluster.representative;
+			Position position =
+					Position.fromDegrees(cluster.latitude, cluster.longitude, representative.getPosition()
+							.getElevation());
+			UrlMarker marker = new UrlMarker(position, representative.getAttributes());
+			marker.setTooltipText(cluster.count + " points");
+			return marker;
+		}
+	};
+	private final Map<Style, MarkerAttributes> sharedAttributes = new HashMap<Style, MarkerAttributes>();
 	private UrlMarker pickedMarker;
 	private Material highlightMaterial = new Material(Color.white);
 
@@ -91,6 +116,39 @@ public class MarkerPointLayer extends MarkerLayer implements PointLayer, SelectL
 		super.render(dc);
 	}
 
+	@Override
+	protected void doRender(DrawContext dc)
+	{
+		setMarkers(collector.collect(dc, index));
+		super.doRender(dc);
+	}
+
+	@Override
+	protected void doPick(DrawContext dc, Point pickPoint)
+	{
+		setMarkers(collector.collect(dc, index));
+		super.doPick(dc, pickPoint);
+	}
+
+	/**
+	 * @return Size on screen, in pixels, below which nearby markers are
+	 *         rendered as a single cluster marker
+	 * @see VisiblePointCollector#getClusterPixelSize()
+	 */
+	public double getClusterPixelSize()
+	{
+		return collector.getClusterPixelSize();
+	}
+
+	/**
+	 * Set the size on screen, in pixels, below which nearby markers are
+	 * rendered as a single cluster marker; 0 disables clustering.
+	 */
+	public void setClusterPixelSize(double clusterPixelSize)
+	{
+		collector.setClusterPixelSize(clusterPixelSize);
+	}
+
 	@Override
 	public Sector getSector()
 	{
@@ -100,14 +158,45 @@ public class MarkerPointLayer extends MarkerLayer implements PointLayer, SelectL
 	@Override
 	public void addPoint(Position position, AVList attributeValues)
 	{
-		MarkerAttributes attributes = new BasicMarkerAttributes();
 		StyleAndText properties = helper.getStyle(attributeValues);
-		properties.style.setPropertiesFromAttributes(helper.getContext(), attributeValues, attributes);
-		fixShapeType(attributes);
+		MarkerAttributes attributes = getMarkerAttributes(properties.style, attributeValues);
 		UrlMarker marker = new UrlMarker(position, attributes);
 		marker.setUrl(properties.link);
 		marker.setTooltipText(properties.text);
-		markers.add(marker);
+		index.add(position.getLatitude().degrees, position.getLongitude().degrees, marker);
+	}
+
+	/**
+	 * Create the marker attributes for a point. Points whose style doesn't
+	 * depend on the attribute values share the same attributes instance.
+	 */
+	protected MarkerAttributes getMarkerAttributes(Style style, AVList attributeValues)
+	{
+		boolean shared = !style.isAttributeDependent();
+		if (shared)
+		{
+			synchronized (sharedAttributes)
+			{
+				MarkerAttributes attributes = sharedAttributes.get(style);
+				if (attributes != null)
+				{
+					return attributes;
+				}
+			}
+		}
+
+		MarkerAttributes attributes = new BasicMarkerAttributes();
+		style.setPropertiesFromAttributes(helper.getContext(), attributeValues, attributes);
+		fixShapeType(attributes);
+
+		if (shared)
+		{
+			synchronized (sharedAttributes)
+			{
+				sharedAttributes.put(style, attributes);
+			}
+		}
+		return attributes;
 	}
 
 	/**
@@ -158,7 +247,6 @@ public class MarkerPointLayer extends MarkerLayer implements PointLayer, SelectL
 	@Override
 	public void loadComplete()
 	{
-		setMarkers(markers);
 	}
 
 	@Override
@@ -16,8 +16,8 @@
 package au.gov.ga.earthsci.worldwind.common.layers.point.types;
 
 import gov.nasa.worldwind.geom.Position;
-import gov.nasa.worldwind.render.Material;
 import gov.nasa.worldwind.render.markers.BasicMarker;
+import gov.nasa.worldwind.render.markers.BasicMarkerAttributes;
 import gov.nasa.worldwind.render.markers.MarkerAttributes;
 
 /**
@@ -30,7 +30,7 @@ public class UrlMarker extends BasicMarker
 {
 	private String url;
 	private String tooltipText;
-	private Material backupMaterial;
+	private MarkerAttributes backupAttributes;
 
 	public UrlMarker(Position position, MarkerAttributes attrs)
 	{
@@ -57,15 +57,26 @@ public class UrlMarker extends BasicMarker
 		this.tooltipText = tooltipText;
 	}
 	
+	/**
+	 * Backup this marker's attributes, and replace them with a copy that can
+	 * be modified (eg for highlighting) without affecting other markers that
+	 * share the same attributes.
+	 */
 	public void backupMaterial()
 	{
-		if(backupMaterial == null)
-			backupMaterial = getAttributes().getMaterial();
+		if (backupAttributes == null)
+		{
+			backupAttributes = getAttributes();
+			setAttributes(new BasicMarkerAttributes((BasicMarkerAttributes) backupAttributes));
+		}
 	}
-	
+
 	public void restoreMaterial()
 	{
-		if(backupMaterial != null)
-			getAttributes().setMaterial(backupMaterial);
+		if (backupAttributes != null)
+		{
+			setAttributes(backupAttributes);
+			backupAttributes = null;
+		}
 	}
 }
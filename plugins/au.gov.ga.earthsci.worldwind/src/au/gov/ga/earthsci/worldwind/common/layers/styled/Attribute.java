@@ -35,6 +35,7 @@ public class Attribute
 	protected String name;
 	protected Map<String, String> switches = new HashMap<String, String>();
 	protected Map<String, String> regexes = new HashMap<String, String>();
+	protected Map<String, Pattern> patterns = new HashMap<String, Pattern>();
 	protected Map<Range, String> ranges = new HashMap<Range, String>();
 	protected StringWithPlaceholder textString;
 	protected StringWithPlaceholder linkString;
@@ -84,6 +85,7 @@ public class Attribute
 	public void addRegex(String regex, String style)
 	{
 		regexes.put(regex, style);
+		patterns.put(regex, Pattern.compile(regex));
 	}
 
 	/**
@@ -183,7 +185,7 @@ public class Attribute
 
 		for (Entry<String, String> regex : regexes.entrySet())
 		{
-			if (Pattern.matches(regex.getKey(), stringValue))
+			if (getPattern(regex.getKey()).matcher(stringValue).matches())
 				return regex.getValue();
 		}
 
@@ -207,6 +209,16 @@ public class Attribute
 		return null;
 	}
 
+	/**
+	 * Get the compiled pattern for a regex match case, compiling it if it was
+	 * not added using {@link #addRegex(String, String)}.
+	 */
+	protected Pattern getPattern(String regex)
+	{
+		Pattern pattern = patterns.get(regex);
+		return pattern != null ? pattern : Pattern.compile(regex);
+	}
+
 	/**
 	 * Helper class for storing and testing a double range.
 	 */
@@ -228,16 +240,18 @@ public class Attribute
 	{
 		public final String string;
 		public final String placeholder;
+		private final Pattern pattern;
 		
 		public StringWithPlaceholder(String string, String placeholder)
 		{
 			this.string = string;
 			this.placeholder = placeholder;
+			this.pattern = Pattern.compile(placeholder);
 		}
 
 		public String replacePlaceholder(String with)
 		{
-			return string.replaceAll(placeholder, with);
+			return pattern.matcher(string).replaceAll(with);
 		}
 	}
 }
@@ -17,6 +17,7 @@ package au.gov.ga.earthsci.worldwind.common.layers.styled;
 
 import gov.nasa.worldwind.avlist.AVList;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,19 +30,60 @@ import java.util.Map;
  */
 public class BasicStyleProvider implements StyleProvider
 {
+	/**
+	 * Maximum number of cached {@link StyleAndText} instances
+	 */
+	protected static final int MAX_CACHED_STYLES = 4096;
+
 	protected List<Style> styles;
 	protected Map<String, Style> styleMap = new HashMap<String, Style>();
 	protected Style defaultStyle;
 	protected List<Attribute> attributes;
+	protected final Map<List<String>, StyleAndText> styleCache = new HashMap<List<String>, StyleAndText>();
 
 	/**
-	 * Get a matching style for the provided set of attribute values
+	 * Get a matching style for the provided set of attribute values. The
+	 * result only depends on the values of this provider's attributes, so
+	 * objects with the same values share the same {@link StyleAndText}
+	 * instance.
 	 * 
 	 * @param attributeValues
 	 * @return
 	 */
 	@Override
 	public StyleAndText getStyle(AVList attributeValues)
+	{
+		List<Attribute> attributes = this.attributes;
+		String[] values = new String[attributes.size()];
+		for (int i = 0; i < values.length; i++)
+		{
+			Object value = attributeValues.getValue(attributes.get(i).getName());
+			values[i] = value == null ? null : value.toString();
+		}
+		List<String> key = Arrays.asList(values);
+
+		synchronized (styleCache)
+		{
+			StyleAndText styleAndText = styleCache.get(key);
+			if (styleAndText != null)
+			{
+				return styleAndText;
+			}
+		}
+
+		StyleAndText styleAndText = createStyle(attributes, attributeValues);
+		synchronized (styleCache)
+		{
+			if (styleCache.size() >= MAX_CACHED_STYLES)
+			{
+				styleCache.clear();
+			}
+			styleCache.put(key, styleAndText);
+		}
+		return styleAndText;
+	}
+
+	protected StyleAndText createStyle(List<Attribute> attributes, AVList attributeValues)
 	{
 		String link = null;
 		String text = null;
@@ -81,6 +123,7 @@ public class BasicStyleProvider implements StyleProvider
 	public synchronized void setStyles(List<Style> styles)
 	{
 		this.styles = styles;
+		clearStyleCache();
 
 		styleMap.clear();
 		defaultStyle = null;
@@ -113,5 +156,14 @@ public class BasicStyleProvider implements StyleProvider
 	public synchronized void setAttributes(List<Attribute> attributes)
 	{
 		this.attributes = attributes;
+		clearStyleCache();
+	}
+
+	protected void clearStyleCache()
+	{
+		synchronized (styleCache)
+		{
+			styleCache.clear();
+		}
 	}
 }
@@ -34,6 +34,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -47,6 +48,13 @@ public class PropertySetter
 {
 	protected final Map<String, String> properties = new HashMap<String, String>();
 	protected final Map<String, String[]> typeOverrides = new HashMap<String, String[]>();
+	protected final Map<List<Class<?>>, PropertyBinding[]> bindingCache =
+			new ConcurrentHashMap<List<Class<?>>, PropertyBinding[]>();
+
+	private volatile Boolean attributeDependent;
+
+	private static final Pattern VARIABLE_PATTERN = Pattern.compile("%[^%]+%");
+	private static final int MAX_CACHED_VALUES = 1024;
 
 	/**
 	 * Add a property that this setter will set.
@@ -66,6 +74,8 @@ public class PropertySetter
 		{
 			this.typeOverrides.put(property, typeOverrides);
 		}
+		bindingCache.clear();
+		attributeDependent = null;
 	}
 
 	/**
@@ -85,6 +95,26 @@ public class PropertySetter
 		addProperty(property, value, splitPipeSeparatedString(typeOverrides));
 	}
 
+	/**
+	 * @return Do any of this setter's property values contain attribute
+	 *         placeholders? If not, the same property values are set for all
+	 *         attribute values.
+	 */
+	public boolean isAttributeDependent()
+	{
+		Boolean dependent = attributeDependent;
+		if (dependent == null)
+		{
+			dependent = false;
+			for (String value : properties.values())
+			{
+				dependent |= VARIABLE_PATTERN.matcher(value).find();
+			}
+			attributeDependent = dependent;
+		}
+		return dependent;
+	}
+
 	/**
 	 * Set the objects properties to the values in this setter. Iterates through
 	 * each of the properties in this setter, searches for a matching setter
@@ -101,20 +131,57 @@ public class PropertySetter
 	 *            reflection
 	 */
 	public void setPropertiesFromAttributes(URL context, AVList attributeValues, Object... objects)
+	{
+		for (PropertyBinding binding : getBindings(objects))
+		{
+			binding.apply(context, attributeValues, objects);
+		}
+	}
+
+	/**
+	 * Get the compiled property bindings for the classes of the given objects,
+	 * compiling and caching them if required. Searching for the setter
+	 * methods and parsing the property values is only performed once for each
+	 * combination of object classes.
+	 * 
+	 * @param objects
+	 *            Objects to search for matching setter properties
+	 * @return Bindings for each property that has a matching setter method
+	 */
+	protected PropertyBinding[] getBindings(Object... objects)
+	{
+		List<Class<?>> key = new ArrayList<Class<?>>(objects.length);
+		for (Object object : objects)
+		{
+			key.add(object.getClass());
+		}
+
+		PropertyBinding[] bindings = bindingCache.get(key);
+		if (bindings == null)
+		{
+			bindings = compileBindings(objects);
+			bindingCache.put(key, bindings);
+		}
+		return bindings;
+	}
+
+	protected PropertyBinding[] compileBindings(Object... objects)
 	{
 		Map<String, Method> methods = new HashMap<String, Method>();
-		Map<Method, Object> methodToObject = new HashMap<Method, Object>();
+		Map<Method, Integer> methodToObject = new HashMap<Method, Integer>();
 
 		//create a list of the methods in the objects
-		for (Object object : objects)
+		for (int i = 0; i < objects.length; i++)
 		{
-			for (Method method : object.getClass().getMethods())
+			for (Method method : objects[i].getClass().getMethods())
 			{
 				methods.put(method.getName(), method);
-				methodToObject.put(method, object);
+				methodToObject.put(method, i);
 			}
 		}
 
+		List<PropertyBinding> bindings = new ArrayList<PropertyBinding>(properties.size());
+
 		//for each of the properties in this setter
 		for (Entry<String, String> entry : properties.entrySet())
 		{
@@ -136,30 +203,14 @@ public class PropertySetter
 
 			//find out the method's parameters
 			Method setter = methods.get(methodName);
-			Object object = methodToObject.get(setter);
+			int objectIndex = methodToObject.get(setter);
+			Class<?> objectClass = objects[objectIndex].getClass();
 			Class<?>[] parameters = setter.getParameterTypes();
+			Class<?>[] types = new Class<?>[parameters.length];
+			String typeError = null;
+			String[] typeOverrides = getTypeOverridesForProperty(property, parameters.length);
 
-			//get the string value to pass to the method
-			String stringValue = entry.getValue();
-			stringValue = replaceVariablesWithAttributeValues(stringValue, attributeValues);
-
-			String[] paramValueStrings = splitPipeSeparatedString(stringValue);
-
-			if (parameters.length != paramValueStrings.length)
-			{
-				String message =
-						"Setter method '" + methodName + "' in class " + object.getClass() + " doesn't take "
-								+ paramValueStrings.length + " parameter(s)";
-				Logging.logger().severe(message);
-				// Continue on incase this is an overloaded method
-				continue;
-			}
-
-			Object[] parameterValues = new Object[paramValueStrings.length];
-			String[] typeOverrides = getTypeOverridesForProperty(property, parameterValues.length);
-
-			// Convert each parameter value string into a parameter
-			for (int i = 0; i < paramValueStrings.length; i++)
+			for (int i = 0; i < parameters.length; i++)
 			{
 				//find out the type to pass to the method
 				Class<?> parameterType = parameters[i];
@@ -167,49 +218,36 @@ public class PropertySetter
 
 				//check if the type has been overridden (useful if the type above is just 'Object')
 				String typeOverride = typeOverrides[i];
-				if (!isBlank(typeOverride))
+				if (!isBlank(typeOverride) && typeError == null)
 				{
 					type = convertTypeToClass(typeOverride);
 					if (type == null)
 					{
-						String message = "Could not find class for type " + type;
-						Logging.logger().severe(message);
-						throw new IllegalArgumentException(message);
+						typeError = "Could not find class for type " + type;
 					}
 					else if (!parameterType.isAssignableFrom(type))
 					{
-						String message =
-								"Setter method '" + methodName + "' in class " + object.getClass() + " parameter type "
+						typeError =
+								"Setter method '" + methodName + "' in class " + objectClass + " parameter type "
 										+ parameterType + " not assignable from type " + type;
-						Logging.logger().severe(message);
-						throw new IllegalArgumentException(message);
 					}
 				}
-
-				//convert the string value to a valid type
-				Object value = convertStringToType(context, paramValueStrings[i], type);
-				if (value == null)
-				{
-					String message = "Error converting '" + paramValueStrings[i] + "' to type " + type;
-					Logging.logger().severe(message);
-					throw new IllegalArgumentException(message);
-				}
-
-				parameterValues[i] = value;
+				types[i] = type;
 			}
 
-			//invoke the setter with the value
 			try
 			{
-				setter.invoke(object, parameterValues);
+				//skip the access checks on each invocation
+				setter.setAccessible(true);
 			}
-			catch (Exception e)
+			catch (SecurityException e)
 			{
-				String message = "Error invoking '" + methodName + "' in class " + object.getClass() + ": " + e;
-				Logging.logger().severe(message);
-				throw new IllegalArgumentException(message, e);
 			}
+
+			bindings.add(new PropertyBinding(setter, objectIndex, types, typeError, entry.getValue()));
 		}
+
+		return bindings.toArray(new PropertyBinding[bindings.size()]);
 	}
 
 	/**
@@ -270,8 +308,7 @@ public class PropertySetter
 		if (attributesValues == null)
 			return string;
 
-		Pattern pattern = Pattern.compile("%[^%]+%");
-		Matcher matcher = pattern.matcher(string);
+		Matcher matcher = VARIABLE_PATTERN.matcher(string);
 		StringBuffer replacement = new StringBuffer();
 		int start = 0;
 		while (matcher.find(start))
@@ -488,4 +525,201 @@ public class PropertySetter
 		}
 		return is;
 	}
+
+	/**
+	 * @return Is the given type immutable? Converted values of immutable types
+	 *         can be shared between objects.
+	 */
+	protected static boolean isImmutableType(Class<?> type)
+	{
+		return type.isPrimitive() || type == String.class || Number.class.isAssignableFrom(type)
+				|| type == Boolean.class || type == Character.class || type == Color.class
+				|| type == Material.class || type == Font.class || type == URL.class || type == File.class;
+	}
+
+	/**
+	 * A property value string, parsed into literal text and attribute
+	 * placeholders.
+	 */
+	protected static class ValueTemplate
+	{
+		public final String string;
+		private final String[] parts;
+
+		public ValueTemplate(String string)
+		{
+			this.string = string;
+
+			List<String> parts = new ArrayList<String>();
+			Matcher matcher = VARIABLE_PATTERN.matcher(string);
+			int start = 0;
+			while (matcher.find(start))
+			{
+				parts.add(string.substring(start, matcher.start()));
+				parts.add(string.substring(matcher.start() + 1, matcher.end() - 1));
+				start = matcher.end();
+			}
+			parts.add(string.substring(start));
+			this.parts = parts.toArray(new String[parts.size()]);
+		}
+
+		/**
+		 * @return Does this template contain attribute placeholders?
+		 */
+		public boolean hasVariables()
+		{
+			return parts.length > 1;
+		}
+
+		/**
+		 * Replace the attribute placeholders in this template with the
+		 * attribute values.
+		 * 
+		 * @see PropertySetter#replaceVariablesWithAttributeValues(String,
+		 *      AVList)
+		 */
+		public String resolve(AVList attributeValues)
+		{
+			if (attributeValues == null || !hasVariables())
+			{
+				return string;
+			}
+
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < parts.length; i++)
+			{
+				if (i % 2 == 0)
+				{
+					sb.append(parts[i]);
+					continue;
+				}
+
+				String attribute = parts[i];
+				if (!attributeValues.hasKey(attribute))
+				{
+					String message = "Could not find attribute '" + attribute + "'";
+					Logging.logger().severe(message);
+					throw new IllegalArgumentException(message);
+				}
+				sb.append(attributeValues.getValue(attribute).toString());
+			}
+			return sb.toString();
+		}
+	}
+
+	/**
+	 * A property compiled against a setter method. Converted parameter values
+	 * of immutable types are cached by value string, so objects that share
+	 * attribute values share the same parameter instances.
+	 */
+	protected static class PropertyBinding
+	{
+		protected final Method setter;
+		protected final int objectIndex;
+		protected final Class<?>[] types;
+		protected final String typeError;
+		protected final ValueTemplate template;
+		protected final Map<String, Object[]> valueCache;
+
+		public PropertyBinding(Method setter, int objectIndex, Class<?>[] types, String typeError, String value)
+		{
+			this.setter = setter;
+			this.objectIndex = objectIndex;
+			this.types = types;
+			this.typeError = typeError;
+			this.template = new ValueTemplate(value);
+
+			boolean immutable = true;
+			for (Class<?> type : types)
+			{
+				immutable &= isImmutableType(type);
+			}
+			this.valueCache = immutable ? new ConcurrentHashMap<String, Object[]>() : null;
+		}
+
+		/**
+		 * Set this property on the given objects.
+		 * 
+		 * @param context
+		 *            Layer's context url
+		 * @param attributeValues
+		 *            Attribute values
+		 * @param objects
+		 *            Objects that this binding was compiled for
+		 */
+		public void apply(URL context, AVList attributeValues, Object[] objects)
+		{
+			Object object = objects[objectIndex];
+			String stringValue = template.resolve(attributeValues);
+
+			Object[] parameterValues = valueCache != null ? valueCache.get(stringValue) : null;
+			if (parameterValues == null)
+			{
+				parameterValues = convert(context, stringValue, object);
+				if (parameterValues == null)
+				{
+					return;
+				}
+				if (valueCache != null && valueCache.size() < MAX_CACHED_VALUES)
+				{
+					valueCache.put(stringValue, parameterValues);
+				}
+			}
+
+			//invoke the setter with the value
+			try
+			{
+				setter.invoke(object, parameterValues);
+			}
+			catch (Exception e)
+			{
+				String message =
+						"Error invoking '" + setter.getName() + "' in class " + object.getClass() + ": " + e;
+				Logging.logger().severe(message);
+				throw new IllegalArgumentException(message, e);
+			}
+		}
+
+		/**
+		 * Convert the value string into the setter's parameter values.
+		 * 
+		 * @return Parameter values, or null if the number of values doesn't
+		 *         match the setter's parameters
+		 */
+		protected Object[] convert(URL context, String stringValue, Object object)
+		{
+			String[] paramValueStrings = splitPipeSeparatedString(stringValue);
+
+			if (types.length != paramValueStrings.length)
+			{
+				String message =
+						"Setter method '" + setter.getName() + "' in class " + object.getClass() + " doesn't take "
+								+ paramValueStrings.length + " parameter(s)";
+				Logging.logger().severe(message);
+				return null;
+			}
+
+			if (typeError != null)
+			{
+				Logging.logger().severe(typeError);
+				throw new IllegalArgumentException(typeError);
+			}
+
+			// Convert each parameter value string into a parameter
+			Object[] parameterValues = new Object[paramValueStrings.length];
+			for (int i = 0; i < paramValueStrings.length; i++)
+			{
+				//convert the string value to a valid type
+				Object value = convertStringToType(context, paramValueStrings[i], types[i]);
+				if (value == null)
+				{
+					String message = "Error converting '" + paramValueStrings[i] + "' to type " + types[i];
+					Logging.logger().severe(message);
+					throw new IllegalArgumentException(message);
+				}
+				parameterValues[i] = value;
+			}
+			return parameterValues;
+		}
+	}
 }
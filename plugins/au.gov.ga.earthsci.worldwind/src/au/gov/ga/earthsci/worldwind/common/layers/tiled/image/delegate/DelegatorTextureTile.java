@@ -18,15 +18,19 @@ package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate;
 import gov.nasa.worldwind.cache.GpuResourceCache;
 import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.layers.TextureTile;
+import gov.nasa.worldwind.render.DrawContext;
 import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.TileKey;
 
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileFactoryDelegate;
+import au.gov.ga.earthsci.worldwind.common.render.TextureUploader;
 
 import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
 
 /**
  * Extension of the {@link TextureTile} class which uses a
@@ -176,6 +180,22 @@ public class DelegatorTextureTile extends TextureTile implements IDelegatorTile
 
 	@Override
 	public void setTexture(GpuResourceCache tc, Texture texture)
+	{
+		setTexture(tc, texture, -1);
+	}
+
+	/**
+	 * Set this tile's texture, specifying the texture's size in the cache.
+	 * 
+	 * @param tc
+	 *            Texture cache
+	 * @param texture
+	 *            Texture
+	 * @param size
+	 *            Size of the texture in bytes, or -1 to use the texture's
+	 *            estimated size
+	 */
+	public void setTexture(GpuResourceCache tc, Texture texture, long size)
 	{
 		if (tc == null)
 		{
@@ -184,7 +204,14 @@ public class DelegatorTextureTile extends TextureTile implements IDelegatorTile
 			throw new IllegalStateException(message);
 		}
 
-		tc.put(getTransformedTileKey(), texture);
+		if (size < 0)
+		{
+			tc.put(getTransformedTileKey(), texture);
+		}
+		else
+		{
+			tc.put(getTransformedTileKey(), texture, GpuResourceCache.TEXTURE, size);
+		}
 		this.updateTime = System.currentTimeMillis();
 
 		// No more need for texture data; allow garbage collector and memory cache to reclaim it.
@@ -194,6 +221,75 @@ public class DelegatorTextureTile extends TextureTile implements IDelegatorTile
 		this.updateMemoryCache();
 	}
 
+	@Override
+	protected Texture initializeTexture(DrawContext dc)
+	{
+		if (dc == null)
+		{
+			String message = Logging.getMessage("nullValue.DrawContextIsNull");
+			Logging.logger().severe(message);
+			throw new IllegalStateException(message);
+		}
+
+		Texture t = this.getTexture(dc.getTextureCache());
+		TextureData textureData = this.getTextureData();
+		// Return texture if found and there is no new texture data
+		if (t != null && textureData == null)
+		{
+			return t;
+		}
+
+		if (textureData == null) // texture not in cache yet texture data is null, can't initialize
+		{
+			String msg = Logging.getMessage("nullValue.TextureDataIsNull");
+			Logging.logger().severe(msg);
+			throw new IllegalStateException(msg);
+		}
+
+		// Limit the texture bytes uploaded per frame; until it is this tile's turn, the
+		// previous texture (if any) or the fallback tile's texture is used
+		TextureUploader uploader = TextureUploader.getInstance();
+		if (!uploader.requestUpload(dc, this, getUploadPriority(dc), TextureUploader.getSize(textureData)))
+		{
+			if (t != null)
+			{
+				t.bind(dc.getGL());
+			}
+			return t;
+		}
+
+		try
+		{
+			t = uploader.upload(dc, textureData);
+		}
+		catch (Exception e)
+		{
+			String msg = Logging.getMessage("layers.TextureLayer.ExceptionAttemptingToReadTextureFile", "");
+			Logging.logger().log(java.util.logging.Level.SEVERE, msg, e);
+			return null;
+		}
+
+		this.setTexture(dc.getTextureCache(), t, TextureUploader.getTextureMemorySize(textureData));
+		t.bind(dc.getGL());
+
+		this.setTextureParameters(dc, t);
+		TextureUploader.applyMipmapFilter(dc, t, textureData);
+
+		return t;
+	}
+
+	/**
+	 * @return Priority of this tile's texture upload; tiles that are larger on
+	 *         screen have lower values, and are uploaded first
+	 */
+	protected double getUploadPriority(DrawContext dc)
+	{
+		Vec4 centroid = getCentroidPoint(dc.getGlobe());
+		double distance = dc.getView().getEyePoint().distanceTo3(centroid);
+		double size = getSector().getDeltaLatRadians() * dc.getGlobe().getRadius();
+		return TextureUploader.getScreenPriority(distance, size);
+	}
+
 	@Override
 	protected TextureTile getTileFromMemoryCache(TileKey tileKey)
 	{
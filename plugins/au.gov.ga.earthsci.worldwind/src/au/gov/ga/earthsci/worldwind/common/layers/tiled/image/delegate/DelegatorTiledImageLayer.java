@@ -46,6 +46,7 @@ import gov.nasa.worldwind.util.WWXML;
 import gov.nasa.worldwind.wms.WMSTiledImageLayer;
 
 import java.awt.image.BufferedImage;
+import java.io.File;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.MalformedURLException;
@@ -53,6 +54,7 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.concurrent.Callable;
 
 import javax.imageio.ImageIO;
 import javax.xml.xpath.XPath;
@@ -64,13 +66,18 @@ import au.gov.ga.earthsci.worldwind.common.layers.Bounded;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorLayer;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegatorTile;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileRequesterDelegate;
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.TextureDataCache;
+import au.gov.ga.earthsci.worldwind.common.layers.delegate.TileProcessingPipeline;
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.URLTransformerBasicTiledImageLayer;
+import au.gov.ga.earthsci.worldwind.common.retrieve.IPrefetchable;
+import au.gov.ga.earthsci.worldwind.common.retrieve.PrefetchRegion;
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+import au.gov.ga.earthsci.worldwind.common.util.DDSTextureData;
 import au.gov.ga.earthsci.worldwind.common.util.DDSUncompressor;
 import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
 
 import com.jogamp.opengl.util.texture.TextureData;
-import com.jogamp.opengl.util.texture.TextureIO;
 import javax.media.opengl.GLProfile;
 import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
 
@@ -87,7 +94,7 @@ import com.jogamp.opengl.util.texture.awt.AWTTextureIO;
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer implements Bounded,
-		IDelegatorLayer<DelegatorTextureTile>
+		IDelegatorLayer<DelegatorTextureTile>, IPrefetchable
 {
 	protected final Object fileLock;
 	protected final URL context;
@@ -95,6 +102,7 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 	protected boolean extractZipEntry = false;
 
 	protected Globe currentGlobe;
+	protected String processingDefinition;
 
 	public DelegatorTiledImageLayer(AVList params)
 	{
@@ -119,6 +127,8 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		//Share the filelock with other layers with the same cache name. This allows
 		//multiple layers to save and load from the same cache location.
 		fileLock = FileLockSharer.getLock(getLevels().getFirstLevel().getCacheName());
+
+		TilePrefetcher.getInstance().register(this);
 	}
 
 	public DelegatorTiledImageLayer(Element domElement, AVList params)
@@ -279,6 +289,21 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		}
 	}
 
+	@Override
+	protected void addTile(DrawContext dc, TextureTile tile)
+	{
+		super.addTile(dc, tile);
+
+		//a tile whose texture data is waiting to be uploaded (see TextureUploader) has no texture
+		//until its upload is scheduled, so use the current resource tile's texture until then
+		if (tile.getFallbackTile() == null && tile.getTextureData() != null && this.currentResourceTile != null
+				&& this.currentResourceTile != tile && tile.getTexture(dc.getTextureCache()) == null
+				&& this.currentResourceTile.getTexture(dc.getTextureCache()) != null)
+		{
+			tile.setFallbackTile(this.currentResourceTile);
+		}
+	}
+
 	protected void validateTileClass(Object tile)
 	{
 		if (!(tile instanceof DelegatorTextureTile))
@@ -290,7 +315,8 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 	/**
 	 * Load a texture from a URL (must be file protocol) and set the tile's
 	 * texture data to the loaded texture. Should be called by the
-	 * {@link ITileRequesterDelegate}.
+	 * {@link ITileRequesterDelegate}. Texture data is shared with other layers
+	 * via the {@link TextureDataCache}.
 	 * 
 	 * @param tile
 	 *            Tile to set texture data
@@ -303,15 +329,22 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 	{
 		//public for delegate access
 
-		TextureData textureData;
+		//check the shared texture data cache before reading and transforming the tile image
+		TextureDataCache cache = TextureDataCache.getInstance();
+		String cacheKey = getTextureDataCacheKey();
+		File file = WWIO.convertURLToFile(textureURL);
+		long version = file != null ? file.lastModified() : 0;
+		TextureData textureData = cache.get(cacheKey, tile.getTransformedTileKey(), version);
 
-		synchronized (fileLock)
+		if (textureData == null)
 		{
+			//the fileLock is only held while reading the file, not while processing the tile
 			textureData = readTexture(tile, textureURL);
-		}
+			if (textureData == null)
+				return false;
 
-		if (textureData == null)
-			return false;
+			cache.put(cacheKey, tile.getTransformedTileKey(), version, textureData);
+		}
 
 		tile.setTextureData(textureData);
 		if (tile.getLevelNumber() != 0 || !isRetainLevelZeroTiles())
@@ -322,45 +355,94 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		return true;
 	}
 
-	@Override
-	public void addTileToCache(IDelegatorTile tile)
+	/**
+	 * @return Key identifying this layer's configuration in the
+	 *         {@link TextureDataCache}; layers with the same key produce the
+	 *         same texture data for a tile
+	 */
+	protected String getTextureDataCacheKey()
 	{
-		TextureTile.getMemoryCache().add(tile.getTransformedTileKey(), tile);
+		if (processingDefinition == null)
+		{
+			processingDefinition = delegateKit.getProcessingDefinition();
+		}
+		String globe = currentGlobe != null ? currentGlobe.getClass().getName() : null;
+		return getLevels().getFirstLevel().getCacheName() + "|" + getTextureFormat() + "|" + isUseMipMaps() + "|"
+				+ globe + "|" + processingDefinition;
 	}
 
 	@Override
-	public TextureData readTexture(DelegatorTextureTile tile, URL url)
+	public boolean isPrefetchEnabled()
 	{
-		try
-		{
-			//if the file is a DDS file, just read it directly (skip all delegate readers/transformers)
-			if (url.toString().toLowerCase().endsWith("dds"))
-				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), url, isUseMipMaps(), null);
+		//the globe is required for the texture data cache key, and is set when first rendered
+		return isEnabled() && currentGlobe != null;
+	}
 
-			BufferedImage image = readImage(tile, url);
+	@Override
+	public void prefetch(PrefetchRegion region, TilePrefetcher prefetcher)
+	{
+		Level level = TilePrefetcher.getPrefetchLevel(getLevels(), region);
+		if (level == null)
+			return;
 
-			if ("image/dds".equalsIgnoreCase(getTextureFormat()))
+		Sector sector = region.getSector().intersection(getSector());
+		for (TextureTile[] row : getTilesInSector(sector, level.getLevelNumber()))
+		{
+			for (TextureTile t : row)
 			{
-				//if required to compress textures, then compress the image to a DDS image
-				DXTCompressionAttributes attributes = DDSCompressor.getDefaultCompressionAttributes();
-				attributes.setBuildMipmaps(isUseMipMaps());
+				final DelegatorTextureTile tile = (DelegatorTextureTile) t;
+				if (TextureTile.getMemoryCache().getObject(tile.getTransformedTileKey()) != null
+						|| getLevels().isResourceAbsent(tile))
+					continue;
 
-				ByteBuffer buffer;
-				if (image != null)
+				final URL url = delegateKit.getLocalTileURL(tile, this, false);
+				if (url != null)
 				{
-					buffer = new DDSCompressor().compressImage(image, attributes);
+					//already downloaded, so just warm the texture data cache
+					prefetcher.submitLocal(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							if (TextureTile.getMemoryCache().getObject(tile.getTransformedTileKey()) == null)
+								loadTexture(tile, url);
+						}
+					});
 				}
-				else
+				else if (isNetworkRetrievalEnabled() && prefetcher.isRetrieverAvailable())
 				{
-					buffer = DDSCompressor.compressImageURL(url, attributes);
+					Retriever retriever = createRetriever(tile, null);
+					if (retriever != null)
+						prefetcher.submitRetriever(retriever, region.getPriority());
 				}
-
-				//return the dds image as TextureData
-				return TextureIO.newTextureData(GLProfile.get(GLProfile.GL2), WWIO.getInputStreamFromByteBuffer(buffer), isUseMipMaps(), null);
 			}
+		}
+	}
+
+	@Override
+	public void addTileToCache(IDelegatorTile tile)
+	{
+		TextureTile.getMemoryCache().add(tile.getTransformedTileKey(), tile);
+	}
 
-			//return the image as TextureData
-			return AWTTextureIO.newTextureData(GLProfile.get(GLProfile.GL2), image, isUseMipMaps());
+	@Override
+	public TextureData readTexture(final DelegatorTextureTile tile, final URL url)
+	{
+		try
+		{
+			//run the readers/transformers on the bounded tile processing pipeline
+			return TileProcessingPipeline.getInstance().process(new Callable<TextureData>()
+			{
+				@Override
+				public TextureData call() throws Exception
+				{
+					return createTextureData(tile, url);
+				}
+			});
+		}
+		catch (InterruptedException e)
+		{
+			//tile request was cancelled
 		}
 		catch (Exception e)
 		{
@@ -370,8 +452,66 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 		return null;
 	}
 
+	/**
+	 * Read the image for the given tile from a URL, and convert it to
+	 * {@link TextureData}. Called on the {@link TileProcessingPipeline} by
+	 * {@link #readTexture(DelegatorTextureTile, URL)}. The fileLock is held
+	 * while the file is read, but not while the image is transformed or
+	 * converted.
+	 * 
+	 * @param tile
+	 *            Tile for which to read texture data
+	 * @param url
+	 *            File URL to read from
+	 * @return Texture data read from the URL
+	 * @throws Exception
+	 *             If the texture data could not be read
+	 */
+	protected TextureData createTextureData(DelegatorTextureTile tile, URL url) throws Exception
+	{
+		//if the file is a DDS file, just read it directly (skip all delegate readers/transformers)
+		if (url.toString().toLowerCase().endsWith("dds"))
+		{
+			ByteBuffer buffer;
+			synchronized (fileLock)
+			{
+				buffer = WWIO.readURLContentToBuffer(url, true);
+			}
+			return DDSTextureData.newTextureData(GLProfile.get(GLProfile.GL2), buffer, isUseMipMaps());
+		}
+
+		BufferedImage image = readImage(tile, url);
+
+		if ("image/dds".equalsIgnoreCase(getTextureFormat()))
+		{
+			//if required to compress textures, then compress the image to a DDS image
+			DXTCompressionAttributes attributes = DDSCompressor.getDefaultCompressionAttributes();
+			attributes.setBuildMipmaps(isUseMipMaps());
+
+			ByteBuffer buffer;
+			if (image != null)
+			{
+				buffer = new DDSCompressor().compressImage(image, attributes);
+			}
+			else
+			{
+				synchronized (fileLock)
+				{
+					buffer = DDSCompressor.compressImageURL(url, attributes);
+				}
+			}
+
+			//return the dds image as TextureData
+			return DDSTextureData.newTextureData(GLProfile.get(GLProfile.GL2), buffer, isUseMipMaps());
+		}
+
+		//return the image as TextureData
+		return AWTTextureIO.newTextureData(GLProfile.get(GLProfile.GL2), image, isUseMipMaps());
+	}
+
 	/**
 	 * Read image from a File URL and return it as a {@link BufferedImage}.
+	 * Holds the fileLock while reading the file.
 	 * 
 	 * @param tile
 	 *            Tile for which to read an image
@@ -384,18 +524,27 @@ public class DelegatorTiledImageLayer extends URLTransformerBasicTiledImageLayer
 	protected BufferedImage readImage(DelegatorTextureTile tile, URL url) throws IOException
 	{
 		//first try to read the image via the ImageReaderDelegates
-		BufferedImage image = delegateKit.readImage(tile, url, currentGlobe);
+		BufferedImage image;
+		ByteBuffer buffer = null;
+		synchronized (fileLock)
+		{
+			image = delegateKit.readImage(tile, url, currentGlobe);
+			if (image == null)
+			{
+				buffer = WWIO.readURLContentToBuffer(url, false);
+			}
+		}
 		if (image == null)
 		{
+			//decode the file contents outside of the fileLock
 			if (url.toString().toLowerCase().endsWith(".dds"))
 			{
-				ByteBuffer buffer = WWIO.readURLContentToBuffer(url, false);
-				image = DDSUncompressor.readDxt3(buffer);
+				image = DDSUncompressor.readDDS(buffer);
 			}
 			else
 			{
 				//if that doesn't work, just read it with ImageIO class
-				image = ImageIO.read(url);
+				image = ImageIO.read(WWIO.getInputStreamFromByteBuffer(buffer));
 			}
 
 			if (image == null)
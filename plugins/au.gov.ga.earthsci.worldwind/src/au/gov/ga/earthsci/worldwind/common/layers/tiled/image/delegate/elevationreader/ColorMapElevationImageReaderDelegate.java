@@ -23,6 +23,7 @@ import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,6 +31,8 @@ import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegate;
 import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
+import au.gov.ga.earthsci.worldwind.common.util.CompiledColorMap;
+import au.gov.ga.earthsci.worldwind.common.util.ParallelUtil;
 import au.gov.ga.earthsci.worldwind.common.util.XMLUtil;
 
 /**
@@ -78,6 +81,7 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	private final static String DEFINITION_STRING = "ColorMapReader";
 
 	private final ColorMap colorMap;
+	private CompiledColorMap compiledColorMap;
 
 	@SuppressWarnings("unused")
 	private ColorMapElevationImageReaderDelegate()
@@ -125,27 +129,39 @@ public class ColorMapElevationImageReaderDelegate extends ElevationImageReaderDe
 	}
 
 	@Override
-	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
+	protected BufferedImage generateImage(final BufferWrapper elevations, final int width, int height, Globe globe,
+			Sector sector)
 	{
 		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		final CompiledColorMap compiledColorMap = getCompiledColorMap();
 
-		for (int y = 0, i = 0; y < height; y++)
+		processRows(height, new ParallelUtil.RangeTask()
 		{
-			for (int x = 0; x < width; x++, i++)
+			@Override
+			public void run(int start, int end)
 			{
-				double elevation = elevations.getDouble(i);
-				if (elevation == missingDataSignal)
+				for (int i = start * width; i < end * width; i++)
 				{
-					image.setRGB(x, y, 0);
-				}
-				else
-				{
-					int rgba = colorMap.calculateColor(elevation).getRGB();
-					image.setRGB(x, y, rgba);
+					double elevation = elevations.getDouble(i);
+					pixels[i] = elevation == missingDataSignal ? 0 : compiledColorMap.lookupRGB(elevation);
 				}
 			}
-		}
+		});
 
 		return image;
 	}
+
+	/**
+	 * @return The compiled form of the colour map, used to colour the
+	 *         elevations without allocating a {@link java.awt.Color} per pixel
+	 */
+	protected CompiledColorMap getCompiledColorMap()
+	{
+		if (compiledColorMap == null)
+		{
+			compiledColorMap = colorMap.compile();
+		}
+		return compiledColorMap;
+	}
 }
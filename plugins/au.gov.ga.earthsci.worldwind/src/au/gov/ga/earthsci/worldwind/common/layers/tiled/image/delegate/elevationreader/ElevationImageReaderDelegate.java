@@ -33,6 +33,7 @@ import au.gov.ga.earthsci.worldwind.common.layers.delegate.ITileReaderDelegate;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.reader.MaskHelper;
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.reader.MaskHelper.MaskInsideZipDelegate;
 import au.gov.ga.earthsci.worldwind.common.util.IOUtil;
+import au.gov.ga.earthsci.worldwind.common.util.ParallelUtil;
 
 /**
  * Abstract class that acts as a super class of all {@link ITileReaderDelegate}s
@@ -50,6 +51,12 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 
 	protected final boolean checkForMask = true;
 
+	/**
+	 * Minimum number of image rows generated by each task when generating
+	 * images on the shared tile-processing pool
+	 */
+	protected static final int ROWS_PER_TASK = 16;
+
 	public ElevationImageReaderDelegate(String pixelType, String byteOrder, double missingDataSignal)
 	{
 		this.pixelType = pixelType;
@@ -123,6 +130,22 @@ public abstract class ElevationImageReaderDelegate implements ITileReaderDelegat
 		}
 	}
 
+	/**
+	 * Run the given task for the rows [0, rows) of an image being generated,
+	 * in parallel on the shared tile-processing pool (see
+	 * {@link ParallelUtil}). Images with fewer than twice
+	 * {@link #ROWS_PER_TASK} rows are generated on the calling thread.
+	 * 
+	 * @param rows
+	 *            Number of rows to process
+	 * @param task
+	 *            Task that generates a range of rows
+	 */
+	protected void processRows(int rows, ParallelUtil.RangeTask task)
+	{
+		ParallelUtil.forRange(rows, ROWS_PER_TASK, task);
+	}
+
 	/**
 	 * Generate an image from elevation data.
 	 * 
@@ -17,7 +17,6 @@ package au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.elevatio
 
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
-import gov.nasa.worldwind.geom.Angle;
 import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
@@ -25,12 +24,14 @@ import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.delegate.IDelegate;
+import au.gov.ga.earthsci.worldwind.common.util.ParallelUtil;
 
 /**
  * Treats retrieved image tiles as elevation data, and generates a shading based
@@ -137,87 +138,98 @@ public class ShadedElevationImageReaderDelegate extends ElevationImageReaderDele
 	}
 
 	@Override
-	protected BufferedImage generateImage(BufferWrapper elevations, int width, int height, Globe globe, Sector sector)
+	protected BufferedImage generateImage(final BufferWrapper elevations, final int width, final int height,
+			Globe globe, final Sector sector)
 	{
 		//image has one less in width and height than verts array, because normals are calculated using neighbors
 		//it would be optimal to read the neighboring tiles for normals on tile edges; this would fix visible tile edges
 
-		BufferedImage image = new BufferedImage(width - 1, height - 1, BufferedImage.TYPE_INT_ARGB);
+		final int imageWidth = width - 1;
+		BufferedImage image = new BufferedImage(imageWidth, height - 1, BufferedImage.TYPE_INT_ARGB);
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
 
-		Vec4[] verts =
-				calculateTileVerts(width, height, sector, elevations, missingDataSignal, exaggeration * 0.000005);
-		Vec4[] normals = calculateNormals(width, height, verts);
-
-		for (int y = 0, i = 0; y < height - 1; y++)
+		final double dlon = sector.getDeltaLonDegrees() / width;
+		final double dlat = sector.getDeltaLatDegrees() / height;
+		final double minLon = sector.getMinLongitude().degrees;
+		final double maxLat = sector.getMaxLatitude().degrees;
+		final double[] lons = new double[width];
+		for (int x = 0; x < width; x++)
 		{
-			for (int x = 0; x < width - 1; x++, i++)
-			{
-				int argb = 0;
-				Vec4 normal = normals[i];
-				if (normal != null)
-				{
-					double light = Math.max(0d, normal.dot3(sunPosition));
-
-					int r = (int) (255.0 * light);
-					int g = (int) (255.0 * light);
-					int b = (int) (255.0 * light);
-
-					argb = (0xff) << 24 | (r & 0xff) << 16 | (g & 0xff) << 8 | (b & 0xff);
-				}
-				image.setRGB(x, y, argb);
-			}
+			lons[x] = minLon + dlon * x;
 		}
 
-		return image;
-	}
-
-	protected Vec4[] calculateTileVerts(int width, int height, Sector sector, BufferWrapper elevations,
-			double missingDataSignal, double exaggeration)
-	{
-		Vec4[] verts = new Vec4[width * height];
-		double dlon = sector.getDeltaLonDegrees() / width;
-		double dlat = sector.getDeltaLatDegrees() / height;
-
-		for (int y = 0, i = 0; y < height; y++)
+		processRows(height - 1, new ParallelUtil.RangeTask()
 		{
-			Angle lat = sector.getMaxLatitude().subtractDegrees(dlat * y);
-			for (int x = 0; x < width; x++, i++)
+			@Override
+			public void run(int start, int end)
 			{
-				Angle lon = sector.getMinLongitude().addDegrees(dlon * x);
-				double elevation = elevations.getDouble(i);
-				if (elevation != missingDataSignal && minElevation <= elevation && elevation <= maxElevation)
+				//rows of scaled vertex heights; NaN marks vertices without a valid elevation
+				double[] row0 = new double[width];
+				double[] row1 = new double[width];
+				readRow(elevations, start, width, row1);
+
+				double sx = sunPosition.x, sy = sunPosition.y, sz = sunPosition.z;
+				for (int y = start; y < end; y++)
 				{
-					verts[i] = new Vec4(lat.degrees, lon.degrees, elevation * exaggeration);
+					double[] temp = row0;
+					row0 = row1;
+					row1 = temp;
+					readRow(elevations, y + 1, width, row1);
+
+					//v0-v1
+					//|
+					//v2
+					double lat0 = maxLat - dlat * y;
+					double lat2 = maxLat - dlat * (y + 1);
+					for (int x = 0, i = y * imageWidth; x < imageWidth; x++, i++)
+					{
+						double z0 = row0[x], z1 = row0[x + 1], z2 = row1[x];
+						if (Double.isNaN(z0) || Double.isNaN(z1) || Double.isNaN(z2))
+						{
+							pixels[i] = 0;
+							continue;
+						}
+
+						//a = v1 - v0, b = v0 - v2, normal = normalize(a x b)
+						double ax = lat0 - lat0, ay = lons[x + 1] - lons[x], az = z1 - z0;
+						double bx = lat0 - lat2, by = lons[x] - lons[x], bz = z0 - z2;
+						double nx = ay * bz - az * by;
+						double ny = az * bx - ax * bz;
+						double nz = ax * by - ay * bx;
+						double length = Math.sqrt(nx * nx + ny * ny + nz * nz);
+						if (length != 0)
+						{
+							nx /= length;
+							ny /= length;
+							nz /= length;
+						}
+
+						double light = Math.max(0d, nx * sx + ny * sy + nz * sz);
+						int c = ((int) (255.0 * light)) & 0xff;
+						pixels[i] = 0xff000000 | c << 16 | c << 8 | c;
+					}
 				}
 			}
-		}
+		});
 
-		return verts;
+		return image;
 	}
 
-	protected Vec4[] calculateNormals(int width, int height, Vec4[] verts)
+	/**
+	 * Read a row of elevations into the given array, scaled by the
+	 * exaggeration. Elevations that are missing or outside the min/max
+	 * elevation range are stored as NaN.
+	 */
+	protected void readRow(BufferWrapper elevations, int y, int width, double[] row)
 	{
-		Vec4[] norms = new Vec4[(width - 1) * (height - 1)];
-		for (int y = 0, i = 0; y < height - 1; y++)
+		double scale = exaggeration * 0.000005;
+		for (int x = 0, i = y * width; x < width; x++, i++)
 		{
-			for (int x = 0; x < width - 1; x++, i++)
-			{
-				//v0-v1
-				//|
-				//v2
-
-				int vertIndex = width * y + x;
-				Vec4 v0 = verts[vertIndex];
-				if (v0 != null)
-				{
-					Vec4 v1 = verts[vertIndex + 1];
-					Vec4 v2 = verts[vertIndex + width];
-
-					norms[i] = v1 != null && v2 != null ? v1.subtract3(v0).cross3(v0.subtract3(v2)).normalize3() : null;
-				}
-			}
+			double elevation = elevations.getDouble(i);
+			row[x] =
+					elevation != missingDataSignal && minElevation <= elevation && elevation <= maxElevation ? elevation
+							* scale : Double.NaN;
 		}
-		return norms;
 	}
 
 	protected double[] getMinMax(BufferWrapper elevations, double missingDataSignal)
@@ -17,11 +17,22 @@ package au.gov.ga.earthsci.worldwind.common.layers.volume;
 
 import gov.nasa.worldwind.geom.Position;
 import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.WWIO;
 
 import java.awt.Rectangle;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 
 import javax.media.opengl.GL2;
 
@@ -38,6 +49,11 @@ import au.gov.ga.earthsci.worldwind.common.render.fastshape.FastShape;
  */
 public abstract class AbstractVolumeDataProvider extends AbstractDataProvider<VolumeLayer> implements VolumeDataProvider
 {
+	/**
+	 * Suffix appended to the layer's data cache name to create the filename
+	 * of the surface mesh variance cache.
+	 */
+	protected static final String VARIANCE_CACHE_SUFFIX = ".btt";
 	
 	/**
 	 * Number of samples in the volume data along the x-axis.
@@ -116,6 +132,15 @@ public abstract class AbstractVolumeDataProvider extends AbstractDataProvider<Vo
 	 * Whether the volume data is cell-centred
 	 */
 	protected boolean cellCentred;
+
+	/**
+	 * Binary triangle tree used to generate horizontal surfaces; shared
+	 * between surface generations so that triangle variances and meshes can be
+	 * reused.
+	 */
+	private BinaryTriangleTree binaryTriangleTree;
+	private final Object binaryTriangleTreeLock = new Object();
+	private String varianceCacheName;
 	
 	protected FloatBuffer getData()
 	{
@@ -183,6 +208,71 @@ public abstract class AbstractVolumeDataProvider extends AbstractDataProvider<Vo
 		}
 	}
 	
+	@Override
+	public float[] getSlice(int axis, int position, Rectangle rectangle, float[] buffer)
+	{
+		int width = rectangle.width;
+		int height = rectangle.height;
+		if (buffer == null || buffer.length < width * height)
+		{
+			buffer = new float[width * height];
+		}
+
+		//precalculate each axis' contribution to the data index, taking into account
+		//axis reversal and the clamping of cell-centred data to vertex coordinates
+		int xStride = 1;
+		int yStride = cellCentred ? xSize - 1 : xSize;
+		int zStride = yStride * (cellCentred ? ySize - 1 : ySize);
+		int[] xOffsets = calculateIndexOffsets(xSize, xStride, reverseX);
+		int[] yOffsets = calculateIndexOffsets(ySize, yStride, reverseY);
+		int[] zOffsets = calculateIndexOffsets(zSize, zStride, reverseZ);
+
+		//the slice's columns and rows, and the fixed offset of the slicing axis
+		int[] columnOffsets = axis == 0 ? yOffsets : xOffsets;
+		int[] rowOffsets = axis == 2 ? yOffsets : zOffsets;
+		int sliceOffset = (axis == 0 ? xOffsets : axis == 1 ? yOffsets : zOffsets)[position];
+
+		FloatBuffer data = getData();
+		int i = 0;
+		for (int y = rectangle.y; y < rectangle.y + height; y++)
+		{
+			int rowOffset = sliceOffset + rowOffsets[y];
+			for (int x = rectangle.x; x < rectangle.x + width; x++)
+			{
+				buffer[i++] = data.get(rowOffset + columnOffsets[x]);
+			}
+		}
+		return buffer;
+	}
+
+	/**
+	 * Calculate the contribution of each coordinate along an axis to the index
+	 * into the data buffer.
+	 * 
+	 * @param size
+	 *            Number of samples along the axis
+	 * @param stride
+	 *            Distance in the data buffer between consecutive values along
+	 *            the axis
+	 * @param reverse
+	 *            Is the data reversed along the axis?
+	 * @return Array of index offsets for each coordinate along the axis
+	 */
+	protected int[] calculateIndexOffsets(int size, int stride, boolean reverse)
+	{
+		int[] offsets = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			int j = reverse ? size - i - 1 : i;
+			if (cellCentred)
+			{
+				j = Math.max(0, Math.min(j, size - 2));
+			}
+			offsets[i] = j * stride;
+		}
+		return offsets;
+	}
+
 	@Override
 	public boolean isCellCentred()
 	{
@@ -219,13 +309,118 @@ public abstract class AbstractVolumeDataProvider extends AbstractDataProvider<Vo
 		return sector;
 	}
 
+	@Override
+	protected boolean loadData(URL url, VolumeLayer layer)
+	{
+		synchronized (binaryTriangleTreeLock)
+		{
+			varianceCacheName = layer.getDataCacheName() + VARIANCE_CACHE_SUFFIX;
+			binaryTriangleTree = null;
+		}
+		return super.loadData(url, layer);
+	}
+
 	@Override
 	public FastShape createHorizontalSurface(float maxVariance, Rectangle rectangle)
 	{
-		BinaryTriangleTree btt = new BinaryTriangleTree(positions, xSize, ySize);
-		btt.setForceGLTriangles(true);
-		btt.setGenerateTextureCoordinates(true);
-		return btt.buildMeshFromCenter(maxVariance, rectangle);
+		BinaryTriangleTree btt = getBinaryTriangleTree();
+		FastShape shape = btt.buildMeshFromCenter(maxVariance, rectangle);
+		if (btt.getVarianceCache().isModified())
+		{
+			writeVarianceCache(btt);
+		}
+		return shape;
+	}
+
+	/**
+	 * @return The {@link BinaryTriangleTree} used to generate horizontal
+	 *         surfaces, created (and its variance cache read from the data
+	 *         cache, if available) on first use
+	 */
+	protected BinaryTriangleTree getBinaryTriangleTree()
+	{
+		synchronized (binaryTriangleTreeLock)
+		{
+			if (binaryTriangleTree == null)
+			{
+				binaryTriangleTree = new BinaryTriangleTree(positions, xSize, ySize);
+				binaryTriangleTree.setForceGLTriangles(true);
+				binaryTriangleTree.setGenerateTextureCoordinates(true);
+				readVarianceCache(binaryTriangleTree);
+			}
+			return binaryTriangleTree;
+		}
+	}
+
+	/**
+	 * Read the variance cache for the given tree from the data file store, if
+	 * it exists and is valid for the tree.
+	 * 
+	 * @param btt
+	 */
+	protected void readVarianceCache(BinaryTriangleTree btt)
+	{
+		if (varianceCacheName == null)
+		{
+			return;
+		}
+		URL url = getDataFileStore().findFile(varianceCacheName, false);
+		if (url == null)
+		{
+			return;
+		}
+		DataInputStream dis = null;
+		try
+		{
+			dis = new DataInputStream(new BufferedInputStream(url.openStream()));
+			if (!btt.readVarianceCache(dis))
+			{
+				Logging.logger().warning("Ignoring out of date variance cache: " + url);
+			}
+		}
+		catch (IOException e)
+		{
+			Logging.logger().log(Level.WARNING, "Error reading variance cache: " + url, e);
+		}
+		finally
+		{
+			WWIO.closeStream(dis, varianceCacheName);
+		}
+	}
+
+	/**
+	 * Write the given tree's variance cache to the data file store.
+	 * 
+	 * @param btt
+	 */
+	protected void writeVarianceCache(BinaryTriangleTree btt)
+	{
+		if (varianceCacheName == null)
+		{
+			return;
+		}
+		DataOutputStream dos = null;
+		try
+		{
+			synchronized (getFileLock())
+			{
+				File file = getDataFileStore().newFile(varianceCacheName);
+				if (file == null)
+				{
+					return;
+				}
+				dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+				btt.writeVarianceCache(dos);
+			}
+		}
+		catch (IOException e)
+		{
+			Logging.logger().log(Level.WARNING, "Error writing variance cache: " + varianceCacheName, e);
+		}
+		finally
+		{
+			WWIO.closeStream(dos, varianceCacheName);
+		}
 	}
 
 	@Override
@@ -19,6 +19,7 @@ import gov.nasa.worldwind.View;
 import gov.nasa.worldwind.WorldWindow;
 import gov.nasa.worldwind.avlist.AVKey;
 import gov.nasa.worldwind.avlist.AVList;
+import gov.nasa.worldwind.cache.GpuResourceCache;
 import gov.nasa.worldwind.event.SelectEvent;
 import gov.nasa.worldwind.event.SelectListener;
 import gov.nasa.worldwind.geom.Extent;
@@ -33,6 +34,8 @@ import gov.nasa.worldwind.geom.Vec4;
 import gov.nasa.worldwind.globes.Globe;
 import gov.nasa.worldwind.layers.AbstractLayer;
 import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.OGLStackHandler;
 
 import java.awt.AlphaComposite;
 import java.awt.Color;
@@ -41,12 +44,17 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.logging.Level;
 
 import javax.media.opengl.GL2;
+import javax.media.opengl.GLContext;
 
 import org.gdal.osr.CoordinateTransformation;
 
@@ -58,10 +66,13 @@ import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.ColorMap;
 import au.gov.ga.earthsci.worldwind.common.util.CoordinateTransformationUtil;
 import au.gov.ga.earthsci.worldwind.common.util.GeometryUtil;
+import au.gov.ga.earthsci.worldwind.common.util.ParallelUtil;
 import au.gov.ga.earthsci.worldwind.common.util.Util;
 import au.gov.ga.earthsci.worldwind.common.util.Validate;
 
+import com.jogamp.common.nio.Buffers;
 import com.jogamp.opengl.util.awt.TextureRenderer;
+import com.jogamp.opengl.util.texture.Texture;
 
 /**
  * Basic implementation of the {@link VolumeLayer} interface.
@@ -71,6 +82,9 @@ import com.jogamp.opengl.util.awt.TextureRenderer;
 public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wireframeable, SelectListener,
 		FastShapeRenderListener
 {
+	protected static final int COLOR_LOOKUP_TABLE_SIZE = 4096;
+	protected static final int SLICE_ROWS_PER_TASK = 32;
+
 	protected URL context;
 	protected String url;
 	protected String dataCacheName;
@@ -83,6 +97,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	protected Color noDataColor;
 	protected boolean reverseNormals = false;
 	protected boolean useOrderedRendering = false;
+	protected boolean use3DTexture = false;
 
 	protected final Object dataLock = new Object();
 	protected boolean dataAvailable = false;
@@ -104,6 +119,17 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	protected final double[] bottomClippingPlanes = new double[4 * 4];
 	protected final double[] curtainClippingPlanes = new double[4 * 4];
 
+	protected final BufferedImage[] sliceImages = new BufferedImage[3];
+	protected final float[][] sliceValues = new float[3][];
+	protected int[] colorLookupTable;
+
+	protected final VolumeSliceShader sliceShader = new VolumeSliceShader();
+	protected int volumeTextureId = 0, colorMapTextureId = 0;
+	protected Object volumeTextureKey = new Object(), colorMapTextureKey = new Object();
+	protected GpuResourceCache textureCache;
+	protected boolean sliceShaderInUse = false;
+	protected final float[] sliceTextureVectors = new float[9];
+
 	protected boolean wireframe = false;
 
 	protected boolean dragging = false;
@@ -186,6 +212,11 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 		{
 			useOrderedRendering = b;
 		}
+		b = (Boolean) params.getValue(AVKeyMore.USE_3D_TEXTURE);
+		if (b != null)
+		{
+			use3DTexture = b;
+		}
 
 		Validate.notBlank(url, "Model data url not set");
 		Validate.notBlank(dataCacheName, "Model data cache name not set");
@@ -234,6 +265,12 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	public void dataAvailable(VolumeDataProvider provider)
 	{
 		calculateSurfaces();
+		synchronized (dataLock)
+		{
+			//the 3D textures and color lookup table are for the previous data, so recreate them
+			release3DTextures();
+			colorLookupTable = null;
+		}
 		dataAvailable = true;
 	}
 
@@ -357,7 +394,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMinLonCurtain = dataProvider.createLongitudeCurtain(minLonOffset);
 			minLonCurtain.setPositions(newMinLonCurtain.getPositions());
 
-			updateTexture(generateTexture(0, minLonOffset, lonRectangle), minLonTexture, minLonCurtain);
+			updateSliceTexture(0, minLonOffset, lonRectangle, minLonTexture, minLonCurtain);
 			lastMinLonOffset = minLonOffset;
 		}
 		if (recalculateMaxLon)
@@ -367,7 +404,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMaxLonCurtain = dataProvider.createLongitudeCurtain(xSize - 1 - maxLonOffset);
 			maxLonCurtain.setPositions(newMaxLonCurtain.getPositions());
 
-			updateTexture(generateTexture(0, maxLonSlice, lonRectangle), maxLonTexture, maxLonCurtain);
+			updateSliceTexture(0, maxLonSlice, lonRectangle, maxLonTexture, maxLonCurtain);
 			lastMaxLonOffset = maxLonOffset;
 		}
 		if (recalculateMinLat)
@@ -377,7 +414,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMinLatCurtain = dataProvider.createLatitudeCurtain(minLatOffset);
 			minLatCurtain.setPositions(newMinLatCurtain.getPositions());
 
-			updateTexture(generateTexture(1, minLatOffset, latRectangle), minLatTexture, minLatCurtain);
+			updateSliceTexture(1, minLatOffset, latRectangle, minLatTexture, minLatCurtain);
 			lastMinLatOffset = minLatOffset;
 		}
 		if (recalculateMaxLat)
@@ -387,7 +424,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			TopBottomFastShape newMaxLatCurtain = dataProvider.createLatitudeCurtain(ySize - 1 - maxLatOffset);
 			maxLatCurtain.setPositions(newMaxLatCurtain.getPositions());
 
-			updateTexture(generateTexture(1, maxLatSlice, latRectangle), maxLatTexture, maxLatCurtain);
+			updateSliceTexture(1, maxLatSlice, latRectangle, maxLatTexture, maxLatCurtain);
 			lastMaxLatOffset = maxLatOffset;
 		}
 		if (recalculateTop)
@@ -395,7 +432,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			topClipDirty = true;
 			double elevation = -dataProvider.getDepth() * topPercent;
 
-			updateTexture(generateTexture(2, topOffset, elevationRectangle), topTexture, topSurface);
+			updateSliceTexture(2, topOffset, elevationRectangle, topTexture, topSurface);
 			lastTopOffset = topOffset;
 
 			topSurface.setElevation(elevation);
@@ -411,7 +448,7 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 			bottomClipDirty = true;
 			double elevation = -dataProvider.getDepth() * bottomPercent;
 
-			updateTexture(generateTexture(2, bottomSlice, elevationRectangle), bottomTexture, bottomSurface);
+			updateSliceTexture(2, bottomSlice, elevationRectangle, bottomTexture, bottomSurface);
 			lastBottomOffset = bottomOffset;
 
 			bottomSurface.setElevation(elevation);
@@ -668,6 +705,11 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	 * Generate a texture slice through the volume at the given position. Uses a
 	 * {@link ColorMap} to map values to colors (or simply interpolates the hue
 	 * if no colormap is provided - assumes values between 0 and 1).
+	 * <p/>
+	 * The slice values are extracted in bulk from the {@link VolumeDataProvider}
+	 * and colored using a precalculated lookup table (see
+	 * {@link #getColorLookupTable()}), in parallel by row. The returned image
+	 * is reused by subsequent calls for the same axis.
 	 * 
 	 * @param axis
 	 *            Slicing axis (0 for a longitude slice, 1 for a latitude slice,
@@ -681,35 +723,113 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	 */
 	protected BufferedImage generateTexture(int axis, int position, Rectangle rectangle)
 	{
-		BufferedImage image = new BufferedImage(rectangle.width, rectangle.height, BufferedImage.TYPE_INT_ARGB);
-		float minimum = dataProvider.getMinValue();
-		float maximum = dataProvider.getMaxValue();
-		for (int y = rectangle.y; y < rectangle.y + rectangle.height; y++)
+		final int width = rectangle.width;
+		final int height = rectangle.height;
+
+		//reuse the slice image and value buffer from the last time this axis was sliced
+		BufferedImage image = sliceImages[axis];
+		if (image == null || image.getWidth() != width || image.getHeight() != height)
+		{
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+			sliceImages[axis] = image;
+		}
+		sliceValues[axis] = dataProvider.getSlice(axis, position, rectangle, sliceValues[axis]);
+
+		final float[] values = sliceValues[axis];
+		final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		final int[] lookupTable = getColorLookupTable();
+		final float minimum = dataProvider.getMinValue();
+		final float scale = (lookupTable.length - 1) / Math.max(Float.MIN_VALUE, dataProvider.getMaxValue() - minimum);
+		final float noDataValue = dataProvider.getNoDataValue();
+		final int noDataRGB = noDataColor != null ? noDataColor.getRGB() : 0;
+
+		ParallelUtil.forRange(height, SLICE_ROWS_PER_TASK, new ParallelUtil.RangeTask()
 		{
-			for (int x = rectangle.x; x < rectangle.x + rectangle.width; x++)
+			@Override
+			public void run(int start, int end)
 			{
-				int vx = axis == 2 ? x : axis == 1 ? x : position;
-				int vy = axis == 2 ? y : axis == 1 ? position : x;
-				int vz = axis == 2 ? position : y;
-				float value = dataProvider.getValue(vx, vy, vz);
-				int rgb = noDataColor != null ? noDataColor.getRGB() : 0;
-				if (value != dataProvider.getNoDataValue())
+				int maxIndex = lookupTable.length - 1;
+				for (int i = start * width; i < end * width; i++)
 				{
-					if (colorMap != null)
+					float value = values[i];
+					if (value == noDataValue)
 					{
-						rgb = colorMap.calculateColorNotingIsValuesPercentages(value, minimum, maximum).getRGB();
+						pixels[i] = noDataRGB;
 					}
 					else
 					{
-						rgb = Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f);
+						int index = (int) ((value - minimum) * scale + 0.5f);
+						pixels[i] = lookupTable[index < 0 ? 0 : index > maxIndex ? maxIndex : index];
 					}
 				}
-				image.setRGB(x - rectangle.x, y - rectangle.y, rgb);
 			}
-		}
+		});
 		return image;
 	}
 
+	/**
+	 * Get the lookup table used to colour the volume slices. The table
+	 * contains {@value #COLOR_LOOKUP_TABLE_SIZE} ARGB colours, evenly spaced
+	 * between the minimum and maximum values of the volume data, calculated
+	 * using the compiled {@link ColorMap} (or a hue interpolation if no
+	 * colormap is provided). The table is rebuilt when new data is available,
+	 * as the data's value range may have changed.
+	 * 
+	 * @return Lookup table of ARGB colours
+	 */
+	protected int[] getColorLookupTable()
+	{
+		if (colorLookupTable == null)
+		{
+			float minimum = dataProvider.getMinValue();
+			float maximum = dataProvider.getMaxValue();
+			if (colorMap != null)
+			{
+				colorLookupTable =
+						colorMap.compile(minimum, maximum).createTable(minimum, maximum, COLOR_LOOKUP_TABLE_SIZE);
+			}
+			else
+			{
+				int[] lookupTable = new int[COLOR_LOOKUP_TABLE_SIZE];
+				for (int i = 0; i < lookupTable.length; i++)
+				{
+					float value = minimum + (maximum - minimum) * i / (lookupTable.length - 1);
+					lookupTable[i] = Color.HSBtoRGB(-0.3f - value * 0.7f, 1.0f, 1.0f);
+				}
+				colorLookupTable = lookupTable;
+			}
+		}
+		return colorLookupTable;
+	}
+
+	/**
+	 * Generate the texture for a volume slice, and update the given
+	 * {@link TextureRenderer} and {@link FastShape} with it. Does nothing if
+	 * the slices are being colored on the GPU from a 3D texture, as the shader
+	 * samples the slice directly from the volume texture.
+	 * 
+	 * @param axis
+	 *            Slicing axis
+	 * @param position
+	 *            Longitude, latitude, or elevation at which to slice
+	 * @param rectangle
+	 *            Sub-rectangle within the volume slice to get texture data for
+	 * @param texture
+	 *            Texture to update
+	 * @param shape
+	 *            Shape to set texture in
+	 * @see #generateTexture(int, int, Rectangle)
+	 */
+	protected void updateSliceTexture(int axis, int position, Rectangle rectangle, TextureRenderer texture,
+			FastShape shape)
+	{
+		if (isUsing3DTexture())
+		{
+			return;
+		}
+		updateTexture(generateTexture(axis, position, rectangle), texture, shape);
+	}
+
 	/**
 	 * Update the given {@link TextureRenderer} with the provided image, and
 	 * sets the {@link FastShape}'s texture it.
@@ -779,7 +899,18 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 				return;
 			}
 
-			if (topTexture == null)
+			if (isUsing3DTexture() && dc.getGpuResourceCache().get(volumeTextureKey) == null)
+			{
+				//the textures have been evicted from (and deleted by) the GPU resource cache
+				release3DTextures();
+			}
+			if (use3DTexture && !isUsing3DTexture())
+			{
+				//fall back to CPU generated textures if the 3D textures can't be created
+				use3DTexture = create3DTextures(dc);
+			}
+
+			if (topTexture == null && !isUsing3DTexture())
 			{
 				topTexture = new TextureRenderer(dataProvider.getXSize(), dataProvider.getYSize(), true, true);
 				bottomTexture = new TextureRenderer(dataProvider.getXSize(), dataProvider.getYSize(), true, true);
@@ -855,15 +986,241 @@ public class BasicVolumeLayer extends AbstractLayer implements VolumeLayer, Wire
 	@Override
 	public void shapePreRender(DrawContext dc, FastShape shape)
 	{
-		//push the OpenGL clipping plane state on the attribute stack
-		dc.getGL().getGL2().glPushAttrib(GL2.GL_TRANSFORM_BIT);
+		GL2 gl = dc.getGL().getGL2();
+		sliceShaderInUse = isUsing3DTexture() && !dc.isPickingMode();
+
+		//push the OpenGL clipping plane (and texture binding) state on the attribute stack
+		gl.glPushAttrib(GL2.GL_TRANSFORM_BIT | (sliceShaderInUse ? GL2.GL_TEXTURE_BIT : 0));
 		setupClippingPlanes(dc, shape == topSurface, shape == bottomSurface);
+
+		if (sliceShaderInUse)
+		{
+			gl.glActiveTexture(GL2.GL_TEXTURE1);
+			gl.glBindTexture(GL2.GL_TEXTURE_1D, colorMapTextureId);
+			gl.glActiveTexture(GL2.GL_TEXTURE0);
+			gl.glBindTexture(GL2.GL_TEXTURE_3D, volumeTextureId);
+
+			calculateSliceTextureVectors(shape, sliceTextureVectors);
+			sliceShader.use(gl, sliceTextureVectors, shape.isLighted(), getColorLookupTable().length, noDataColor,
+					(float) getOpacity());
+		}
 	}
 
 	@Override
 	public void shapePostRender(DrawContext dc, FastShape shape)
 	{
-		dc.getGL().getGL2().glPopAttrib();
+		GL2 gl = dc.getGL().getGL2();
+		if (sliceShaderInUse)
+		{
+			sliceShader.unuse(gl);
+			sliceShaderInUse = false;
+		}
+		gl.glPopAttrib();
+	}
+
+	/**
+	 * @return Are the volume slices being colored on the GPU from a 3D
+	 *         texture?
+	 */
+	protected boolean isUsing3DTexture()
+	{
+		return volumeTextureId > 0;
+	}
+
+	/**
+	 * Create the 3D volume texture, the 1D color map texture, and the shader
+	 * used to color slices on the GPU. Moving a slice then simply changes the
+	 * shader's texture coordinate transform, and requires no texture
+	 * regeneration or upload.
+	 * 
+	 * @param dc
+	 * @return True if the textures and shader were created successfully
+	 */
+	protected boolean create3DTextures(DrawContext dc)
+	{
+		GL2 gl = dc.getGL().getGL2();
+		int xSize = dataProvider.getXSize();
+		int ySize = dataProvider.getYSize();
+		int zSize = dataProvider.getZSize();
+		int[] lookupTable = getColorLookupTable();
+
+		int[] maxSize = new int[2];
+		gl.glGetIntegerv(GL2.GL_MAX_3D_TEXTURE_SIZE, maxSize, 0);
+		gl.glGetIntegerv(GL2.GL_MAX_TEXTURE_SIZE, maxSize, 1);
+		if (xSize > maxSize[0] || ySize > maxSize[0] || zSize > maxSize[0] || lookupTable.length > maxSize[1])
+		{
+			String message =
+					"Volume dimensions " + xSize + "x" + ySize + "x" + zSize
+							+ " exceed the maximum 3D texture size; falling back to 2D slice textures";
+			Logging.logger().warning(message);
+			return false;
+		}
+
+		try
+		{
+			sliceShader.createIfRequired(gl);
+		}
+		catch (Exception e)
+		{
+			String message = "Error creating volume slice shader; falling back to 2D slice textures";
+			Logging.logger().log(Level.WARNING, message, e);
+			return false;
+		}
+
+		int[] textures = new int[2];
+		gl.glGenTextures(2, textures, 0);
+
+		OGLStackHandler stack = new OGLStackHandler();
+		try
+		{
+			stack.pushAttrib(gl, GL2.GL_TEXTURE_BIT);
+			stack.pushClientAttrib(gl, GL2.GL_CLIENT_PIXEL_STORE_BIT);
+			gl.glPixelStorei(GL2.GL_UNPACK_ALIGNMENT, 1);
+
+			gl.glBindTexture(GL2.GL_TEXTURE_3D, textures[0]);
+			gl.glTexParameteri(GL2.GL_TEXTURE_3D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_NEAREST);
+			gl.glTexParameteri(GL2.GL_TEXTURE_3D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_NEAREST);
+			gl.glTexParameteri(GL2.GL_TEXTURE_3D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP_TO_EDGE);
+			gl.glTexParameteri(GL2.GL_TEXTURE_3D, GL2.GL_TEXTURE_WRAP_T, GL2.GL_CLAMP_TO_EDGE);
+			gl.glTexParameteri(GL2.GL_TEXTURE_3D, GL2.GL_TEXTURE_WRAP_R, GL2.GL_CLAMP_TO_EDGE);
+			gl.glTexImage3D(GL2.GL_TEXTURE_3D, 0, GL2.GL_LUMINANCE16, xSize, ySize, zSize, 0, GL2.GL_LUMINANCE,
+					GL2.GL_UNSIGNED_SHORT, createVolumeTextureData());
+
+			gl.glBindTexture(GL2.GL_TEXTURE_1D, textures[1]);
+			gl.glTexParameteri(GL2.GL_TEXTURE_1D, GL2.GL_TEXTURE_MIN_FILTER, GL2.GL_NEAREST);
+			gl.glTexParameteri(GL2.GL_TEXTURE_1D, GL2.GL_TEXTURE_MAG_FILTER, GL2.GL_NEAREST);
+			gl.glTexParameteri(GL2.GL_TEXTURE_1D, GL2.GL_TEXTURE_WRAP_S, GL2.GL_CLAMP_TO_EDGE);
+			gl.glTexImage1D(GL2.GL_TEXTURE_1D, 0, GL2.GL_RGBA8, lookupTable.length, 0, GL2.GL_BGRA,
+					GL2.GL_UNSIGNED_INT_8_8_8_8_REV, IntBuffer.wrap(lookupTable));
+		}
+		finally
+		{
+			stack.pop(gl);
+		}
+
+		volumeTextureId = textures[0];
+		colorMapTextureId = textures[1];
+
+		//register the textures with the GPU resource cache, which deletes them when they are removed
+		textureCache = dc.getGpuResourceCache();
+		textureCache.put(volumeTextureKey, new Texture(volumeTextureId, GL2.GL_TEXTURE_3D, xSize, ySize, xSize,
+				ySize, false), GpuResourceCache.TEXTURE, 2L * xSize * ySize * zSize);
+		textureCache.put(colorMapTextureKey, new Texture(colorMapTextureId, GL2.GL_TEXTURE_1D, lookupTable.length,
+				1, lookupTable.length, 1, false), GpuResourceCache.TEXTURE, 4L * lookupTable.length);
+		return true;
+	}
+
+	/**
+	 * Release the 3D volume and color map textures, so that they are
+	 * recreated the next time they are required.
+	 * <p/>
+	 * The textures are removed from the GPU resource cache, which deletes
+	 * them, if a GL context is current. Otherwise they are left in the cache
+	 * under keys that are no longer used, and are deleted when the cache
+	 * evicts them.
+	 */
+	protected void release3DTextures()
+	{
+		if (textureCache != null && GLContext.getCurrent() != null)
+		{
+			textureCache.remove(volumeTextureKey);
+			textureCache.remove(colorMapTextureKey);
+		}
+		textureCache = null;
+		volumeTextureId = 0;
+		colorMapTextureId = 0;
+		volumeTextureKey = new Object();
+		colorMapTextureKey = new Object();
+	}
+
+	@Override
+	public void dispose()
+	{
+		super.dispose();
+		synchronized (dataLock)
+		{
+			release3DTextures();
+		}
+	}
+
+	/**
+	 * Create the data for the 3D volume texture. Values are normalized between
+	 * the volume's minimum and maximum values to 16-bit unsigned values in the
+	 * range 1..65535; no-data values are stored as 0.
+	 * 
+	 * @return Buffer containing the volume texture data
+	 */
+	protected ShortBuffer createVolumeTextureData()
+	{
+		int xSize = dataProvider.getXSize();
+		int ySize = dataProvider.getYSize();
+		int zSize = dataProvider.getZSize();
+		float minimum = dataProvider.getMinValue();
+		float scale = 65534f / Math.max(Float.MIN_VALUE, dataProvider.getMaxValue() - minimum);
+		float noDataValue = dataProvider.getNoDataValue();
+
+		ShortBuffer buffer = Buffers.newDirectShortBuffer(xSize * ySize * zSize);
+		Rectangle rectangle = new Rectangle(0, 0, xSize, ySize);
+		float[] values = null;
+		for (int z = 0; z < zSize; z++)
+		{
+			values = dataProvider.getSlice(2, z, rectangle, values);
+			for (int i = 0; i < xSize * ySize; i++)
+			{
+				float value = values[i];
+				int normalized = 0;
+				if (value != noDataValue)
+				{
+					normalized = 1 + Util.clamp((int) ((value - minimum) * scale + 0.5f), 0, 65534);
+				}
+				buffer.put((short) normalized);
+			}
+		}
+		buffer.rewind();
+		return buffer;
+	}
+
+	/**
+	 * Calculate the transform from the given shape's 2D texture coordinates
+	 * to the 3D volume texture coordinates of the slice it displays.
+	 * 
+	 * @param shape
+	 *            Volume slice shape
+	 * @param vectors
+	 *            Array of 9 floats in which to store the slice's origin, u-axis
+	 *            and v-axis
+	 * @see VolumeSliceShader#use(GL2, float[], boolean, int, Color, float)
+	 */
+	protected void calculateSliceTextureVectors(FastShape shape, float[] vectors)
+	{
+		int xSize = dataProvider.getXSize();
+		int ySize = dataProvider.getYSize();
+		int zSize = dataProvider.getZSize();
+
+		int axis, position;
+		if (shape == minLonCurtain || shape == maxLonCurtain)
+		{
+			axis = 0;
+			position = shape == minLonCurtain ? minLonOffset : xSize - 1 - maxLonOffset;
+		}
+		else if (shape == minLatCurtain || shape == maxLatCurtain)
+		{
+			axis = 1;
+			position = shape == minLatCurtain ? minLatOffset : ySize - 1 - maxLatOffset;
+		}
+		else
+		{
+			axis = 2;
+			position = shape == topSurface ? topOffset : zSize - 1 - bottomOffset;
+		}
+
+		Arrays.fill(vectors, 0);
+		int[] sizes = new int[] { xSize, ySize, zSize };
+		//origin is the center of the slice's texels along the slicing axis
+		vectors[axis] = (position + 0.5f) / sizes[axis];
+		//u-axis is the first of the remaining axes, v-axis the second
+		vectors[3 + (axis == 0 ? 1 : 0)] = 1;
+		vectors[6 + (axis == 2 ? 1 : 2)] = 1;
 	}
 
 	protected void setupClippingPlanes(DrawContext dc, boolean top, boolean bottom)
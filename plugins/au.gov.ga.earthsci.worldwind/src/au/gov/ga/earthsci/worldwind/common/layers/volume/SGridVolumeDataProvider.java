@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.util.ArrayList;
 import java.util.Enumeration;
@@ -38,6 +39,7 @@ import java.util.zip.ZipFile;
 import org.gdal.osr.CoordinateTransformation;
 
 import au.gov.ga.earthsci.worldwind.common.util.URLUtil;
+import au.gov.ga.earthsci.worldwind.common.util.io.AsciiColumnScanner;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader;
 import au.gov.ga.earthsci.worldwind.common.util.io.FloatReader.FloatFormat;
 
@@ -145,89 +147,26 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 	 */
 	private void readAsciiDataFile(Object source) throws IOException
 	{
+		//the coordinates are in the first 3 columns, followed by the properties
+		AsciiColumnScanner scanner = new AsciiColumnScanner(getPaintedProperty().getId() + 2);
+		AsciiLineHandler handler = new AsciiLineHandler();
+
+		if (source instanceof File)
+		{
+			File data = new File(((File) source).getParent(), asciiDataFile);
+			if (!data.exists())
+			{
+				throw new IOException("Data file '" + asciiDataFile + "' not found");
+			}
+			scanner.scan(data, handler);
+			return;
+		}
+
 		InputStream dataInputStream = null;
 		try
 		{
 			dataInputStream = openSGridDataStream(source, asciiDataFile);
-		
-			Pattern linePattern = createAsciiLineMatchingPattern(getPaintedProperty());
-	
-			CoordinateTransformation transformation = layer.getCoordinateTransformation();
-			double firstXValue = 0, firstYValue = 0, firstZValue = 0;
-			double[] transformed = new double[3];
-			int positionIndex = 0;
-			String line;
-			BufferedReader reader = new BufferedReader(new InputStreamReader(dataInputStream));
-			while ((line = reader.readLine()) != null)
-			{
-				Matcher matcher = linePattern.matcher(line);
-				if (!matcher.matches())
-				{
-					continue;
-				}
-				
-				// Only need to look at positions in the first slice of the volume or in the first position of the top slice
-				if ((positionIndex < xSize * ySize) || (positionIndex == xSize * ySize * (zSize - 1)))
-				{
-					double x = Double.parseDouble(matcher.group(1));
-					double y = Double.parseDouble(matcher.group(2));
-					double z = Double.parseDouble(matcher.group(3));
-					
-					//transform the point;
-					if (transformation != null)
-					{
-						transformation.TransformPoint(transformed, x, y, z);
-						x = transformed[0];
-						y = transformed[1];
-						z = transformed[2];
-					}
-	
-					//only store the first width*height positions (the rest are evenly spaced at different depths)
-					if (positionIndex < xSize * ySize)
-					{
-						Position position = Position.fromDegrees(y, x, z);
-						positions.add(position);
-						top += z / (xSize * ySize);
-	
-						//update the sector to include this latitude/longitude
-						updateSectorToIncludePosition(position);
-					}
-	
-					if (positionIndex == 0)
-					{
-						firstXValue = x;
-						firstYValue = y;
-						firstZValue = z;
-					}
-					else if (positionIndex == 1)
-					{
-						//second x value
-						reverseX = x < firstXValue;
-					}
-					else if (positionIndex == xSize)
-					{
-						//second y value
-						reverseY = y < firstYValue;
-					}
-					else if (positionIndex == xSize * ySize * (zSize - 1))
-					{
-						//positionIndex is the same x/y as 0, but at the bottom elevation instead of top,
-						//so we can calculate the depth as the difference between the two elevations
-						reverseZ = z > firstZValue;
-						depth = reverseZ ? z - firstZValue : firstZValue - z;
-						top += reverseZ ? depth : 0;
-					}
-				}
-				
-				float value = Float.parseFloat(matcher.group(4));
-				if (putDataValue(positionIndex, value))
-				{
-					minValue = Math.min(minValue, value);
-					maxValue = Math.max(maxValue, value);
-				}
-				
-				positionIndex++;
-			}
+			scanner.scan(dataInputStream, handler);
 		}
 		finally
 		{
@@ -245,6 +184,83 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 		}
 	}
 
+	/**
+	 * {@link AsciiColumnScanner.LineHandler} that stores the values and
+	 * positions read from the lines of an ASCII data file.
+	 */
+	private class AsciiLineHandler implements AsciiColumnScanner.LineHandler
+	{
+		private final CoordinateTransformation transformation = layer.getCoordinateTransformation();
+		private final double[] transformed = new double[3];
+		private double firstXValue = 0, firstYValue = 0, firstZValue = 0;
+		private int positionIndex = 0;
+
+		@Override
+		public void line(ByteBuffer block, int lineStart, float value)
+		{
+			// Only need to look at positions in the first slice of the volume or in the first position of the top slice
+			if ((positionIndex < xSize * ySize) || (positionIndex == xSize * ySize * (zSize - 1)))
+			{
+				double x = AsciiColumnScanner.readDouble(block, lineStart, 0);
+				double y = AsciiColumnScanner.readDouble(block, lineStart, 1);
+				double z = AsciiColumnScanner.readDouble(block, lineStart, 2);
+
+				//transform the point;
+				if (transformation != null)
+				{
+					transformation.TransformPoint(transformed, x, y, z);
+					x = transformed[0];
+					y = transformed[1];
+					z = transformed[2];
+				}
+
+				//only store the first width*height positions (the rest are evenly spaced at different depths)
+				if (positionIndex < xSize * ySize)
+				{
+					Position position = Position.fromDegrees(y, x, z);
+					positions.add(position);
+					top += z / (xSize * ySize);
+
+					//update the sector to include this latitude/longitude
+					updateSectorToIncludePosition(position);
+				}
+
+				if (positionIndex == 0)
+				{
+					firstXValue = x;
+					firstYValue = y;
+					firstZValue = z;
+				}
+				else if (positionIndex == 1)
+				{
+					//second x value
+					reverseX = x < firstXValue;
+				}
+				else if (positionIndex == xSize)
+				{
+					//second y value
+					reverseY = y < firstYValue;
+				}
+				else if (positionIndex == xSize * ySize * (zSize - 1))
+				{
+					//positionIndex is the same x/y as 0, but at the bottom elevation instead of top,
+					//so we can calculate the depth as the difference between the two elevations
+					reverseZ = z > firstZValue;
+					depth = reverseZ ? z - firstZValue : firstZValue - z;
+					top += reverseZ ? depth : 0;
+				}
+			}
+
+			if (putDataValue(positionIndex, value))
+			{
+				minValue = Math.min(minValue, value);
+				maxValue = Math.max(maxValue, value);
+			}
+
+			positionIndex++;
+		}
+	}
+
 
 	private boolean putDataValue(int positionIndex, float value)
 	{
@@ -382,29 +398,6 @@ public class SGridVolumeDataProvider extends AbstractVolumeDataProvider
 		}
 	}
 	
-	/**
-	 * Create a regex pattern that matches ASCII data file lines, with a capturing group matching the painted variable.
-	 */
-	private Pattern createAsciiLineMatchingPattern(GocadPropertyDefinition paintedProperty)
-	{
-		final String doublePattern = "([\\d.\\-]+)";
-		final String nonCapturingDoublePattern = "(?:[\\d.\\-]+)";
-		final String spacerPattern = "\\s+";
-		
-		//regex for coordinates
-		String lineRegex = "\\s*" + doublePattern + spacerPattern + doublePattern + spacerPattern + doublePattern;
-		for (int property = 1; property < paintedProperty.getId(); property++)
-		{
-			//ignore all properties in between coordinates and painted property
-			lineRegex += spacerPattern + nonCapturingDoublePattern;
-		}
-		//only capture the painted property
-		lineRegex += spacerPattern + doublePattern + ".*";
-		
-		return Pattern.compile(lineRegex);
-	}
-
-
 	private void initialiseDataVariables()
 	{
 		sector = null;
@@ -75,6 +75,31 @@ public interface VolumeDataProvider extends DataProvider<VolumeLayer>
 	 */
 	float getValue(int x, int y, int z);
 
+	/**
+	 * Extract a 2D slice of values from the volume data in a single bulk
+	 * operation. This is considerably faster than calling
+	 * {@link #getValue(int, int, int)} for each value in the slice.
+	 * <p/>
+	 * The returned values are stored row by row, with
+	 * <code>rectangle.width</code> values per row. The rectangle's x and y
+	 * axes are the slice's (y,z), (x,z) and (x,y) volume axes for the 0, 1 and
+	 * 2 slicing axes respectively.
+	 * 
+	 * @param axis
+	 *            Slicing axis (0 for a longitude (x) slice, 1 for a latitude
+	 *            (y) slice, 2 for an elevation (z) slice)
+	 * @param position
+	 *            Index along the slicing axis at which to slice
+	 * @param rectangle
+	 *            Sub-rectangle within the slice to extract
+	 * @param buffer
+	 *            Array to store the values in; if <code>null</code> or smaller
+	 *            than <code>rectangle.width * rectangle.height</code>, a new
+	 *            array is allocated
+	 * @return Array containing the slice values
+	 */
+	float[] getSlice(int axis, int position, Rectangle rectangle, float[] buffer);
+
 	/**
 	 * Returns whether the data in the volume is cell-centred (i.e. data stored per-cell) or 
 	 * vertex-centred (i.e. data stored per-vertex).
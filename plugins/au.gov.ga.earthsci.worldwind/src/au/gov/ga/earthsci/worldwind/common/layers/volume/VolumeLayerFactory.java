@@ -85,6 +85,7 @@ public class VolumeLayerFactory
 
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.REVERSE_NORMALS, "ReverseNormals", xpath);
 		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.ORDERED_RENDERING, "OrderedRendering", xpath);
+		WWXML.checkAndSetBooleanParam(domElement, params, AVKeyMore.USE_3D_TEXTURE, "Use3DTexture", xpath);
 		
 		WWXML.checkAndSetStringParam(domElement, params, AVKeyMore.PAINTED_VARIABLE, "PaintedVariable", xpath);
 
@@ -0,0 +1,21 @@
+uniform sampler3D volume;
+uniform sampler1D colorMap;
+uniform float colorMapSize;
+uniform vec4 noDataColor;
+uniform float opacity;
+
+varying vec3 volumeCoordinate;
+varying float lighting;
+
+void main()
+{
+	//volume values are normalized to 1..65535, with 0 representing no-data
+	float value = texture3D(volume, volumeCoordinate).r * 65535.0;
+	vec4 color = noDataColor;
+	if (value >= 0.5)
+	{
+		float percent = (value - 1.0) / 65534.0;
+		color = texture1D(colorMap, (percent * (colorMapSize - 1.0) + 0.5) / colorMapSize);
+	}
+	gl_FragColor = vec4(color.rgb * lighting, color.a * opacity);
+}
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume;
+
+import java.awt.Color;
+import java.io.InputStream;
+
+import javax.media.opengl.GL2;
+
+import au.gov.ga.earthsci.worldwind.common.render.Shader;
+
+/**
+ * {@link Shader} used by the {@link BasicVolumeLayer} to color volume slices
+ * on the GPU. Samples the volume data from a 3D texture, and colors it using a
+ * 1D color map texture.
+ * <p/>
+ * The volume texture must contain values normalized to a 16-bit luminance
+ * texture, where 0 represents no-data, and 1..65535 represent the minimum to
+ * maximum values.
+ */
+public class VolumeSliceShader extends Shader
+{
+	private int sliceOriginUniform;
+	private int sliceUUniform;
+	private int sliceVUniform;
+	private int lightedUniform;
+	private int colorMapSizeUniform;
+	private int noDataColorUniform;
+	private int opacityUniform;
+
+	@Override
+	protected InputStream getVertexSource()
+	{
+		return this.getClass().getResourceAsStream("VolumeSliceShader.vert");
+	}
+
+	@Override
+	protected InputStream getFragmentSource()
+	{
+		return this.getClass().getResourceAsStream("VolumeSliceShader.frag");
+	}
+
+	@Override
+	protected void getUniformLocations(GL2 gl)
+	{
+		gl.glUniform1i(gl.glGetUniformLocation(shaderProgram, "volume"), 0);
+		gl.glUniform1i(gl.glGetUniformLocation(shaderProgram, "colorMap"), 1);
+		sliceOriginUniform = gl.glGetUniformLocation(shaderProgram, "sliceOrigin");
+		sliceUUniform = gl.glGetUniformLocation(shaderProgram, "sliceU");
+		sliceVUniform = gl.glGetUniformLocation(shaderProgram, "sliceV");
+		lightedUniform = gl.glGetUniformLocation(shaderProgram, "lighted");
+		colorMapSizeUniform = gl.glGetUniformLocation(shaderProgram, "colorMapSize");
+		noDataColorUniform = gl.glGetUniformLocation(shaderProgram, "noDataColor");
+		opacityUniform = gl.glGetUniformLocation(shaderProgram, "opacity");
+	}
+
+	/**
+	 * Use this shader. The volume texture should be bound to texture unit 0,
+	 * and the color map texture to texture unit 1.
+	 * 
+	 * @param gl
+	 * @param slice
+	 *            Array of 9 floats containing the slice's origin, u-axis and
+	 *            v-axis vectors in volume texture coordinates; the slice's 2D
+	 *            texture coordinates (s,t) are transformed to
+	 *            <code>origin + s * u + t * v</code>
+	 * @param lighted
+	 *            Should the slice be lit?
+	 * @param colorMapSize
+	 *            Number of texels in the color map texture
+	 * @param noDataColor
+	 *            Color to use for no-data values (null for transparent)
+	 * @param opacity
+	 *            Opacity of the slice
+	 */
+	public void use(GL2 gl, float[] slice, boolean lighted, int colorMapSize, Color noDataColor, float opacity)
+	{
+		super.use(gl);
+		gl.glUniform3f(sliceOriginUniform, slice[0], slice[1], slice[2]);
+		gl.glUniform3f(sliceUUniform, slice[3], slice[4], slice[5]);
+		gl.glUniform3f(sliceVUniform, slice[6], slice[7], slice[8]);
+		gl.glUniform1i(lightedUniform, lighted ? 1 : 0);
+		gl.glUniform1f(colorMapSizeUniform, colorMapSize);
+		if (noDataColor != null)
+		{
+			gl.glUniform4f(noDataColorUniform, noDataColor.getRed() / 255f, noDataColor.getGreen() / 255f,
+					noDataColor.getBlue() / 255f, noDataColor.getAlpha() / 255f);
+		}
+		else
+		{
+			gl.glUniform4f(noDataColorUniform, 0, 0, 0, 0);
+		}
+		gl.glUniform1f(opacityUniform, opacity);
+	}
+}
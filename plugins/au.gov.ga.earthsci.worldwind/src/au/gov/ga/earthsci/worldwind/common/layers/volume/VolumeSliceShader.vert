@@ -0,0 +1,26 @@
+uniform vec3 sliceOrigin;
+uniform vec3 sliceU;
+uniform vec3 sliceV;
+uniform bool lighted;
+
+varying vec3 volumeCoordinate;
+varying float lighting;
+
+void main()
+{
+	vec4 eyePosition = gl_ModelViewMatrix * gl_Vertex;
+	gl_Position = ftransform();
+	gl_ClipVertex = eyePosition;
+
+	//transform the slice's 2D texture coordinates into the volume's 3D texture space
+	vec4 textureCoordinate = gl_TextureMatrix[0] * gl_MultiTexCoord0;
+	volumeCoordinate = sliceOrigin + textureCoordinate.s * sliceU + textureCoordinate.t * sliceV;
+
+	lighting = 1.0;
+	if (lighted)
+	{
+		vec3 normal = normalize(gl_NormalMatrix * gl_Normal);
+		vec3 lightDirection = normalize(gl_LightSource[1].position.xyz - eyePosition.xyz);
+		lighting = min(1.0, 0.3 + abs(dot(normal, lightDirection)));
+	}
+}
@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.layers.volume.btt;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Primitive open-addressing hash map from binary triangle tree triangle keys
+ * to triangle variances. Used by the {@link BinaryTriangleTree} to memoize
+ * variance calculations between mesh builds, and to persist them to disk.
+ */
+public class BTTVarianceCache
+{
+	private static final long EMPTY = -1;
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private long[] keys;
+	private float[] values;
+	private int size;
+	private boolean modified;
+
+	public BTTVarianceCache()
+	{
+		this(INITIAL_CAPACITY);
+	}
+
+	protected BTTVarianceCache(int capacity)
+	{
+		int c = INITIAL_CAPACITY;
+		while (c < capacity * 2)
+		{
+			c <<= 1;
+		}
+		keys = new long[c];
+		values = new float[c];
+		Arrays.fill(keys, EMPTY);
+	}
+
+	/**
+	 * @return The number of variances stored in this cache
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return Has this cache been modified since it was last read or written?
+	 */
+	public boolean isModified()
+	{
+		return modified;
+	}
+
+	/**
+	 * Get the variance stored for the given key.
+	 * 
+	 * @param key
+	 *            Non-negative triangle key
+	 * @return Variance for the key, or -1 if there is no variance stored
+	 */
+	public float get(long key)
+	{
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		long k;
+		while ((k = keys[i]) != EMPTY)
+		{
+			if (k == key)
+			{
+				return values[i];
+			}
+			i = (i + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * Store the variance for the given key.
+	 * 
+	 * @param key
+	 *            Non-negative triangle key
+	 * @param value
+	 *            Variance to store
+	 */
+	public void put(long key, float value)
+	{
+		if ((size + 1) * 2 > keys.length)
+		{
+			rehash(keys.length * 2);
+		}
+		if (insert(keys, values, key, value))
+		{
+			size++;
+		}
+		modified = true;
+	}
+
+	private boolean insert(long[] keys, float[] values, long key, float value)
+	{
+		int mask = keys.length - 1;
+		int i = hash(key) & mask;
+		long k;
+		while ((k = keys[i]) != EMPTY)
+		{
+			if (k == key)
+			{
+				values[i] = value;
+				return false;
+			}
+			i = (i + 1) & mask;
+		}
+		keys[i] = key;
+		values[i] = value;
+		return true;
+	}
+
+	private void rehash(int capacity)
+	{
+		long[] newKeys = new long[capacity];
+		float[] newValues = new float[capacity];
+		Arrays.fill(newKeys, EMPTY);
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] != EMPTY)
+			{
+				insert(newKeys, newValues, keys[i], values[i]);
+			}
+		}
+		keys = newKeys;
+		values = newValues;
+	}
+
+	private static int hash(long key)
+	{
+		int h = (int) (key ^ (key >>> 32));
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Write the contents of this cache to the given stream.
+	 * 
+	 * @param out
+	 * @throws IOException
+	 */
+	public void write(DataOutputStream out) throws IOException
+	{
+		out.writeInt(size);
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (keys[i] != EMPTY)
+			{
+				out.writeLong(keys[i]);
+				out.writeFloat(values[i]);
+			}
+		}
+		modified = false;
+	}
+
+	/**
+	 * Read a cache previously written using {@link #write(DataOutputStream)}.
+	 * 
+	 * @param in
+	 * @return Cache read from the stream
+	 * @throws IOException
+	 */
+	public static BTTVarianceCache read(DataInputStream in) throws IOException
+	{
+		int size = in.readInt();
+		if (size < 0)
+		{
+			throw new IOException("Invalid variance cache size: " + size);
+		}
+		BTTVarianceCache cache = new BTTVarianceCache(size);
+		for (int i = 0; i < size; i++)
+		{
+			long key = in.readLong();
+			float value = in.readFloat();
+			if (cache.insert(cache.keys, cache.values, key, value))
+			{
+				cache.size++;
+			}
+		}
+		return cache;
+	}
+}
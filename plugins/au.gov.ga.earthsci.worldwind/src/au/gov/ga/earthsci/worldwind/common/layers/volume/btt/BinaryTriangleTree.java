@@ -18,8 +18,12 @@ package au.gov.ga.earthsci.worldwind.common.layers.volume.btt;
 import gov.nasa.worldwind.geom.Position;
 
 import java.awt.Rectangle;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,17 +36,38 @@ import au.gov.ga.earthsci.worldwind.common.util.Validate;
 /**
  * A mesh generation helper which uses a grid of positions to generate a mesh.
  * Uses the Binary Triangle Tree mesh simplification algorithm.
- * 
+ * <p/>
+ * Triangle variances are memoized between builds (and can be persisted using
+ * {@link #writeVarianceCache(DataOutputStream)}), and the triangles of recently
+ * built meshes are cached, so repeated builds of the same grid only cost time
+ * proportional to the size of the output mesh.
+ *
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
 public class BinaryTriangleTree
 {
+	private static final int VARIANCE_CACHE_MAGIC = 0x42545456; //'BTTV'
+	private static final int MESH_CACHE_SIZE = 8;
+
 	private final List<Position> positions;
+	private final double[] elevations;
 	private final int width;
 	private final int height;
 	private boolean generateTextureCoordinates = false;
 	private boolean forceGLTriangles = false;
 
+	private BTTVarianceCache varianceCache = new BTTVarianceCache();
+	private final TrianglePool trianglePool = new TrianglePool();
+	private int[] indexMap;
+	private final Map<String, int[]> meshCache = new LinkedHashMap<String, int[]>(16, 0.75f, true)
+	{
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest)
+		{
+			return size() > MESH_CACHE_SIZE;
+		}
+	};
+
 	/**
 	 * Create a new {@link BinaryTriangleTree} object.
 	 * 
@@ -61,6 +86,69 @@ public class BinaryTriangleTree
 		this.positions = positions;
 		this.width = width;
 		this.height = height;
+
+		elevations = new double[positions.size()];
+		for (int i = 0; i < elevations.length; i++)
+		{
+			elevations[i] = positions.get(i).elevation;
+		}
+	}
+
+	/**
+	 * @return The cache of triangle variances calculated by this tree
+	 */
+	public synchronized BTTVarianceCache getVarianceCache()
+	{
+		return varianceCache;
+	}
+
+	/**
+	 * Read a variance cache previously written by
+	 * {@link #writeVarianceCache(DataOutputStream)}. The cache is only used if
+	 * it was written for a grid with the same dimensions and elevations.
+	 *
+	 * @param in
+	 *            Stream to read from
+	 * @return True if the variance cache was read and is valid for this tree
+	 * @throws IOException
+	 */
+	public synchronized boolean readVarianceCache(DataInputStream in) throws IOException
+	{
+		if (in.readInt() != VARIANCE_CACHE_MAGIC || in.readInt() != width || in.readInt() != height
+				|| in.readLong() != calculateElevationHash())
+		{
+			return false;
+		}
+		varianceCache = BTTVarianceCache.read(in);
+		return true;
+	}
+
+	/**
+	 * Write this tree's variance cache to the given stream, along with a header
+	 * used to validate the cache when read back in.
+	 *
+	 * @param out
+	 *            Stream to write to
+	 * @throws IOException
+	 */
+	public synchronized void writeVarianceCache(DataOutputStream out) throws IOException
+	{
+		out.writeInt(VARIANCE_CACHE_MAGIC);
+		out.writeInt(width);
+		out.writeInt(height);
+		out.writeLong(calculateElevationHash());
+		varianceCache.write(out);
+	}
+
+	protected long calculateElevationHash()
+	{
+		long hash = 1;
+		for (double elevation : elevations)
+		{
+			long bits = Double.doubleToLongBits(elevation);
+			hash = 31 * hash + (bits ^ (bits >>> 32));
+		}
+		return hash;
 	}
 
 	/**
@@ -140,16 +228,24 @@ public class BinaryTriangleTree
 	 *            Sub-rectangle of positions to use in the mesh.
 	 * @return A {@link FastShape} containing the mesh.
 	 */
-	public FastShape buildMesh(float maxVariance, Rectangle rectangle)
+	public synchronized FastShape buildMesh(float maxVariance, Rectangle rectangle)
 	{
 		if (maxVariance <= 0)
 		{
 			return buildFullMesh(rectangle);
 		}
 
-		List<BTTTriangle> triangles = new ArrayList<BTTTriangle>();
-		buildMesh(maxVariance, rectangle.x, rectangle.y, rectangle.width, rectangle.height, false, false, triangles);
-		return buildFastShape(triangles);
+		String key = "corner," + maxVariance + "," + rectangle;
+		int[] cached = meshCache.get(key);
+		if (cached == null)
+		{
+			TriangleList triangles = new TriangleList();
+			buildMesh(maxVariance, rectangle.x, rectangle.y, rectangle.width, rectangle.height, false, false,
+					trianglePool, triangles);
+			cached = triangles.toArray();
+			meshCache.put(key, cached);
+		}
+		return buildFastShape(cached);
 	}
 
 	/**
@@ -164,14 +260,22 @@ public class BinaryTriangleTree
 	 *            Sub-rectangle of positions to use in the mesh.
 	 * @return A {@link FastShape} containing the mesh.
 	 */
-	public FastShape buildMeshFromCenter(float maxVariance, Rectangle rectangle)
+	public synchronized FastShape buildMeshFromCenter(float maxVariance, Rectangle rectangle)
 	{
 		if (maxVariance <= 0)
 		{
 			return buildFullMesh(rectangle);
 		}
 
-		List<BTTTriangle> triangles = new ArrayList<BTTTriangle>();
+		String key = "center," + maxVariance + "," + rectangle;
+		int[] cached = meshCache.get(key);
+		if (cached != null)
+		{
+			return buildFastShape(cached);
+		}
+
+		TriangleList triangles = new TriangleList();
+		TrianglePool pool = trianglePool;
 
 		int centerWidth = Util.nextLowestPowerOf2Plus1(rectangle.width);
 		int centerHeight = Util.nextLowestPowerOf2Plus1(rectangle.height);
@@ -181,17 +285,19 @@ public class BinaryTriangleTree
 		int remainingHeight = rectangle.height - centerHeight - centerYOffset;
 
 		buildMesh(maxVariance, rectangle.x + centerXOffset, rectangle.y + centerYOffset, centerWidth, centerHeight,
-				false, false, triangles);
+				false, false, pool, triangles);
 		buildMesh(maxVariance, rectangle.x, rectangle.y, centerWidth + centerXOffset, centerYOffset + 1, true, true,
-				triangles);
+				pool, triangles);
 		buildMesh(maxVariance, rectangle.x, rectangle.y + centerYOffset, centerXOffset + 1, rectangle.height
-				- centerYOffset, true, false, triangles);
+				- centerYOffset, true, false, pool, triangles);
 		buildMesh(maxVariance, rectangle.x + centerWidth + centerXOffset - 1, rectangle.y, remainingWidth + 1,
-				centerHeight + centerYOffset, false, true, triangles);
+				centerHeight + centerYOffset, false, true, pool, triangles);
 		buildMesh(maxVariance, rectangle.x + centerXOffset, rectangle.y + centerHeight + centerYOffset - 1,
-				rectangle.width - centerXOffset, remainingHeight + 1, false, false, triangles);
+				rectangle.width - centerXOffset, remainingHeight + 1, false, false, pool, triangles);
 
-		return buildFastShape(triangles);
+		cached = triangles.toArray();
+		meshCache.put(key, cached);
+		return buildFastShape(cached);
 	}
 
 	/**
@@ -313,11 +419,13 @@ public class BinaryTriangleTree
 	 *            Begin the mesh building from the right instead of left?
 	 * @param reverseY
 	 *            Begin the mesh building from the bottom instead of top?
+	 * @param pool
+	 *            Triangle pool to use while building the trees
 	 * @param triangles
 	 *            Triangle list to add generated triangles to
 	 */
 	protected void buildMesh(float maxVariance, int x, int y, int width, int height, boolean reverseX,
-			boolean reverseY, List<BTTTriangle> triangles)
+			boolean reverseY, TrianglePool pool, TriangleList triangles)
 	{
 		//cannot build a mesh between less that 2 rows/columns
 		if (width < 2 || height < 2)
@@ -337,7 +445,7 @@ public class BinaryTriangleTree
 				{
 					int tx = reverseX ? width - xStart - currentWidth + x * 2 : xStart;
 					int ty = reverseY ? height - yStart - yOffset - currentWidth + y * 2 : yStart + yOffset;
-					buildTree(maxVariance, tx, ty, currentWidth, triangles);
+					buildTree(maxVariance, tx, ty, currentWidth, pool, triangles);
 				}
 				remainingWidth -= currentWidth - 1;
 				xStart += currentWidth - 1;
@@ -358,10 +466,12 @@ public class BinaryTriangleTree
 	 *            y coordinate from which to start
 	 * @param size
 	 *            Size of the square (must be a power of 2 plus 1)
+	 * @param pool
+	 *            Triangle pool to use while building the tree
 	 * @param triangles
 	 *            Triangle list to add generated triangles to
 	 */
-	protected void buildTree(float maxVariance, int x, int y, int size, List<BTTTriangle> triangles)
+	protected void buildTree(float maxVariance, int x, int y, int size, TrianglePool pool, TriangleList triangles)
 	{
 		/*
 		 *  left
@@ -373,21 +483,24 @@ public class BinaryTriangleTree
 		 *  apex   right
 		 */
 
+		//triangles never reference triangles in other trees, so the pool can be reused
+		pool.clear();
+
 		int apex1 = x + y * width, left1 = x + (y + size - 1) * width, right1 = (x + size - 1) + y * width;
-		BTTTriangle t1 = new BTTTriangle(apex1, left1, right1);
+		int t1 = pool.add(apex1, left1, right1);
 
 		int apex2 = (x + size - 1) + (y + size - 1) * width, left2 = (x + size - 1) + y * width, right2 =
 				x + (y + size - 1) * width;
-		BTTTriangle t2 = new BTTTriangle(apex2, left2, right2);
+		int t2 = pool.add(apex2, left2, right2);
 
-		t1.bottomNeighbour = t2;
-		t2.bottomNeighbour = t1;
+		pool.set(t1, TrianglePool.BOTTOM_NEIGHBOUR, t2);
+		pool.set(t2, TrianglePool.BOTTOM_NEIGHBOUR, t1);
 
-		buildFace(maxVariance, t1, x, y, size);
-		buildFace(maxVariance, t2, x, y, size);
+		buildFace(maxVariance, pool, t1, x, y, size);
+		buildFace(maxVariance, pool, t2, x, y, size);
 
-		addLeavesToTriangleList(t1, triangles);
-		addLeavesToTriangleList(t2, triangles);
+		addLeavesToTriangleList(pool, t1, triangles);
+		addLeavesToTriangleList(pool, t2, triangles);
 	}
 
 	/**
@@ -396,6 +509,8 @@ public class BinaryTriangleTree
 	 * 
 	 * @param maxVariance
 	 *            BTT algorithm variance
+	 * @param pool
+	 *            Triangle pool containing the triangle
 	 * @param t
 	 *            Triangle to sub-divide
 	 * @param x
@@ -405,25 +520,27 @@ public class BinaryTriangleTree
 	 * @param size
 	 *            Size of the square (must be a power of 2 plus 1)
 	 */
-	protected void buildFace(float maxVariance, BTTTriangle t, int x, int y, int size)
+	protected void buildFace(float maxVariance, TrianglePool pool, int t, int x, int y, int size)
 	{
-		if (t.leftChild != null)
+		if (pool.get(t, TrianglePool.LEFT_CHILD) >= 0)
 		{
-			buildFace(maxVariance, t.leftChild, x, y, size);
-			buildFace(maxVariance, t.rightChild, x, y, size);
+			buildFace(maxVariance, pool, pool.get(t, TrianglePool.LEFT_CHILD), x, y, size);
+			buildFace(maxVariance, pool, pool.get(t, TrianglePool.RIGHT_CHILD), x, y, size);
 		}
 		else
 		{
-			boolean atLowestLevel =
-					Math.abs(t.apexIndex - t.leftIndex) == 1 || Math.abs(t.apexIndex - t.rightIndex) == 1;
+			int apexIndex = pool.get(t, TrianglePool.APEX);
+			int leftIndex = pool.get(t, TrianglePool.LEFT);
+			int rightIndex = pool.get(t, TrianglePool.RIGHT);
+			boolean atLowestLevel = Math.abs(apexIndex - leftIndex) == 1 || Math.abs(apexIndex - rightIndex) == 1;
 			if (!atLowestLevel)
 			{
-				if (isAnyIndexOnEdge(t.apexIndex, t.leftIndex, t.rightIndex, x, y, size)
-						|| calculateVariance(t.apexIndex, t.leftIndex, t.rightIndex) >= maxVariance)
+				if (isAnyIndexOnEdge(apexIndex, leftIndex, rightIndex, x, y, size)
+						|| calculateVariance(apexIndex, leftIndex, rightIndex) >= maxVariance)
 				{
-					trySplitFace(t);
-					buildFace(maxVariance, t.leftChild, x, y, size);
-					buildFace(maxVariance, t.rightChild, x, y, size);
+					trySplitFace(pool, t);
+					buildFace(maxVariance, pool, pool.get(t, TrianglePool.LEFT_CHILD), x, y, size);
+					buildFace(maxVariance, pool, pool.get(t, TrianglePool.RIGHT_CHILD), x, y, size);
 				}
 			}
 		}
@@ -477,81 +594,101 @@ public class BinaryTriangleTree
 	 * Try splitting the given triangle. If the triangle's bottom neighbour
 	 * isn't split, it also gets split to ensure there's no gaps in the mesh.
 	 * 
+	 * @param pool
+	 *            Triangle pool containing the triangle
 	 * @param t
 	 *            Triangle to split.
 	 */
-	protected void trySplitFace(BTTTriangle t)
+	protected void trySplitFace(TrianglePool pool, int t)
 	{
-		if (t.bottomNeighbour != null)
+		if (pool.get(t, TrianglePool.BOTTOM_NEIGHBOUR) >= 0)
 		{
-			if (t.bottomNeighbour.bottomNeighbour != t)
+			if (pool.get(pool.get(t, TrianglePool.BOTTOM_NEIGHBOUR), TrianglePool.BOTTOM_NEIGHBOUR) != t)
 			{
-				trySplitFace(t.bottomNeighbour);
+				trySplitFace(pool, pool.get(t, TrianglePool.BOTTOM_NEIGHBOUR));
 			}
-			splitFace(t);
-			splitFace(t.bottomNeighbour);
-			t.leftChild.rightNeighbour = t.bottomNeighbour.rightChild;
-			t.rightChild.leftNeighbour = t.bottomNeighbour.leftChild;
-			t.bottomNeighbour.leftChild.rightNeighbour = t.rightChild;
-			t.bottomNeighbour.rightChild.leftNeighbour = t.leftChild;
+			//the bottom neighbour may have changed during the recursive split above
+			int bottom = pool.get(t, TrianglePool.BOTTOM_NEIGHBOUR);
+			splitFace(pool, t);
+			splitFace(pool, bottom);
+			pool.set(pool.get(t, TrianglePool.LEFT_CHILD), TrianglePool.RIGHT_NEIGHBOUR,
+					pool.get(bottom, TrianglePool.RIGHT_CHILD));
+			pool.set(pool.get(t, TrianglePool.RIGHT_CHILD), TrianglePool.LEFT_NEIGHBOUR,
+					pool.get(bottom, TrianglePool.LEFT_CHILD));
+			pool.set(pool.get(bottom, TrianglePool.LEFT_CHILD), TrianglePool.RIGHT_NEIGHBOUR,
+					pool.get(t, TrianglePool.RIGHT_CHILD));
+			pool.set(pool.get(bottom, TrianglePool.RIGHT_CHILD), TrianglePool.LEFT_NEIGHBOUR,
+					pool.get(t, TrianglePool.LEFT_CHILD));
 		}
 		else
 		{
-			splitFace(t);
+			splitFace(pool, t);
 		}
 	}
 
 	/**
 	 * Actually split the given triangle.
 	 * 
+	 * @param pool
+	 *            Triangle pool containing the triangle
 	 * @param t
 	 *            Triangle to split.
 	 */
-	protected void splitFace(BTTTriangle t)
+	protected void splitFace(TrianglePool pool, int t)
 	{
-		int midpointIndex = hypotenuseMidpointIndex(t.leftIndex, t.rightIndex);
-		t.rightChild = new BTTTriangle(midpointIndex, t.rightIndex, t.apexIndex);
-		t.leftChild = new BTTTriangle(midpointIndex, t.apexIndex, t.leftIndex);
-		t.leftChild.leftNeighbour = t.rightChild;
-		t.rightChild.rightNeighbour = t.leftChild;
-
-		t.leftChild.bottomNeighbour = t.leftNeighbour;
-		if (t.leftNeighbour != null)
+		int apexIndex = pool.get(t, TrianglePool.APEX);
+		int leftIndex = pool.get(t, TrianglePool.LEFT);
+		int rightIndex = pool.get(t, TrianglePool.RIGHT);
+		int midpointIndex = hypotenuseMidpointIndex(leftIndex, rightIndex);
+		int rightChild = pool.add(midpointIndex, rightIndex, apexIndex);
+		int leftChild = pool.add(midpointIndex, apexIndex, leftIndex);
+		pool.set(t, TrianglePool.RIGHT_CHILD, rightChild);
+		pool.set(t, TrianglePool.LEFT_CHILD, leftChild);
+		pool.set(leftChild, TrianglePool.LEFT_NEIGHBOUR, rightChild);
+		pool.set(rightChild, TrianglePool.RIGHT_NEIGHBOUR, leftChild);
+
+		int leftNeighbour = pool.get(t, TrianglePool.LEFT_NEIGHBOUR);
+		pool.set(leftChild, TrianglePool.BOTTOM_NEIGHBOUR, leftNeighbour);
+		if (leftNeighbour >= 0)
 		{
-			if (t.leftNeighbour.bottomNeighbour == t)
+			if (pool.get(leftNeighbour, TrianglePool.BOTTOM_NEIGHBOUR) == t)
 			{
-				t.leftNeighbour.bottomNeighbour = t.leftChild;
+				pool.set(leftNeighbour, TrianglePool.BOTTOM_NEIGHBOUR, leftChild);
 			}
-			else if (t.leftNeighbour.leftNeighbour == t)
+			else if (pool.get(leftNeighbour, TrianglePool.LEFT_NEIGHBOUR) == t)
 			{
-				t.leftNeighbour.leftNeighbour = t.leftChild;
+				pool.set(leftNeighbour, TrianglePool.LEFT_NEIGHBOUR, leftChild);
 			}
 			else
 			{
-				t.leftNeighbour.rightNeighbour = t.leftChild;
+				pool.set(leftNeighbour, TrianglePool.RIGHT_NEIGHBOUR, leftChild);
 			}
 		}
 
-		t.rightChild.bottomNeighbour = t.rightNeighbour;
-		if (t.rightNeighbour != null)
+		int rightNeighbour = pool.get(t, TrianglePool.RIGHT_NEIGHBOUR);
+		pool.set(rightChild, TrianglePool.BOTTOM_NEIGHBOUR, rightNeighbour);
+		if (rightNeighbour >= 0)
 		{
-			if (t.rightNeighbour.bottomNeighbour == t)
+			if (pool.get(rightNeighbour, TrianglePool.BOTTOM_NEIGHBOUR) == t)
 			{
-				t.rightNeighbour.bottomNeighbour = t.rightChild;
+				pool.set(rightNeighbour, TrianglePool.BOTTOM_NEIGHBOUR, rightChild);
 			}
-			else if (t.rightNeighbour.rightNeighbour == t)
+			else if (pool.get(rightNeighbour, TrianglePool.RIGHT_NEIGHBOUR) == t)
 			{
-				t.rightNeighbour.rightNeighbour = t.rightChild;
+				pool.set(rightNeighbour, TrianglePool.RIGHT_NEIGHBOUR, rightChild);
 			}
 			else
 			{
-				t.rightNeighbour.leftNeighbour = t.rightChild;
+				pool.set(rightNeighbour, TrianglePool.LEFT_NEIGHBOUR, rightChild);
 			}
 		}
 	}
 
 	/**
-	 * Calculate the variance of the provided triangle.
+	 * Calculate the variance of the provided triangle. Variances are memoized
+	 * in the {@link #getVarianceCache() variance cache}, keyed by the apex and
+	 * left indices (which uniquely identify a triangle, as all triangles in the
+	 * tree have the same winding).
 	 * 
 	 * @param apexIndex
 	 *            Index of the triangle apex position.
@@ -566,12 +703,20 @@ public class BinaryTriangleTree
 		if (Math.abs(apexIndex - leftIndex) == 1 || Math.abs(apexIndex - rightIndex) == 1)
 			return 0;
 
+		long key = (long) apexIndex * elevations.length + leftIndex;
+		float delta = varianceCache.get(key);
+		if (delta >= 0)
+		{
+			return delta;
+		}
+
 		int midpointIndex = hypotenuseMidpointIndex(leftIndex, rightIndex);
-		double midpointElevation = positions.get(midpointIndex).elevation;
-		double interpolatedElevation = (positions.get(leftIndex).elevation + positions.get(rightIndex).elevation) / 2;
-		float delta = (float) Math.abs(midpointElevation - interpolatedElevation);
+		double midpointElevation = elevations[midpointIndex];
+		double interpolatedElevation = (elevations[leftIndex] + elevations[rightIndex]) / 2;
+		delta = (float) Math.abs(midpointElevation - interpolatedElevation);
 		delta = Math.max(delta, calculateVariance(midpointIndex, rightIndex, apexIndex));
 		delta = Math.max(delta, calculateVariance(midpointIndex, apexIndex, leftIndex));
+		varianceCache.put(key, delta);
 		return delta;
 	}
 
@@ -597,73 +742,65 @@ public class BinaryTriangleTree
 	 * Recursively add all the leaves of the binary triangle tree to the
 	 * provided triangle list, beginning at the provided triangle.
 	 * 
+	 * @param pool
+	 *            Triangle pool containing the triangle
 	 * @param t
 	 *            Parent triangle to add leaves from
 	 * @param triangles
 	 *            Triangle list to add leaves to
 	 */
-	protected void addLeavesToTriangleList(BTTTriangle t, List<BTTTriangle> triangles)
+	protected void addLeavesToTriangleList(TrianglePool pool, int t, TriangleList triangles)
 	{
-		if (t.leftChild == null || t.rightChild == null)
+		int leftChild = pool.get(t, TrianglePool.LEFT_CHILD);
+		int rightChild = pool.get(t, TrianglePool.RIGHT_CHILD);
+		if (leftChild < 0 || rightChild < 0)
 		{
-			triangles.add(t);
+			triangles.add(pool.get(t, TrianglePool.APEX), pool.get(t, TrianglePool.LEFT),
+					pool.get(t, TrianglePool.RIGHT));
 		}
 		else
 		{
 			//recurse through children
-			addLeavesToTriangleList(t.leftChild, triangles);
-			addLeavesToTriangleList(t.rightChild, triangles);
+			addLeavesToTriangleList(pool, leftChild, triangles);
+			addLeavesToTriangleList(pool, rightChild, triangles);
 		}
 	}
 
 	/**
-	 * Build a {@link FastShape} object from the list of binary triangle tree
-	 * leaves.
+	 * Build a {@link FastShape} object from the binary triangle tree leaves.
 	 * 
 	 * @param triangles
-	 *            Triangle list.
-	 * @return FastShape containing triangles from the provided triangle list.
+	 *            Array of triangle position indices, containing the apex, left
+	 *            and right index of each triangle.
+	 * @return FastShape containing triangles from the provided triangle array.
 	 */
-	protected FastShape buildFastShape(List<BTTTriangle> triangles)
+	protected FastShape buildFastShape(int[] triangles)
 	{
+		if (indexMap == null)
+		{
+			indexMap = new int[elevations.length];
+			Arrays.fill(indexMap, -1);
+		}
+
 		List<Position> positions = new ArrayList<Position>();
-		List<Integer> originalIndices = new ArrayList<Integer>();
-		Map<Position, Integer> positionIndexMap = new HashMap<Position, Integer>();
-		int[] indices = new int[triangles.size() * 3];
-		int i = 0;
+		int[] originalIndices = new int[triangles.length];
+		int[] indices = new int[triangles.length];
+		int count = 0;
 
-		for (BTTTriangle triangle : triangles)
+		for (int i = 0; i < triangles.length; i += 3)
 		{
-			Position apexPosition = this.positions.get(triangle.apexIndex);
-			Position leftPosition = this.positions.get(triangle.leftIndex);
-			Position rightPosition = this.positions.get(triangle.rightIndex);
-			Integer apexIndex = positionIndexMap.get(apexPosition);
-			Integer leftIndex = positionIndexMap.get(leftPosition);
-			Integer rightIndex = positionIndexMap.get(rightPosition);
-			if (apexIndex == null)
-			{
-				apexIndex = positions.size();
-				positionIndexMap.put(apexPosition, apexIndex);
-				positions.add(apexPosition);
-				originalIndices.add(triangle.apexIndex);
-			}
-			if (leftIndex == null)
-			{
-				leftIndex = positions.size();
-				positionIndexMap.put(leftPosition, leftIndex);
-				positions.add(leftPosition);
-				originalIndices.add(triangle.leftIndex);
-			}
-			if (rightIndex == null)
-			{
-				rightIndex = positions.size();
-				positionIndexMap.put(rightPosition, rightIndex);
-				positions.add(rightPosition);
-				originalIndices.add(triangle.rightIndex);
-			}
-			indices[i++] = leftIndex;
-			indices[i++] = apexIndex;
-			indices[i++] = rightIndex;
+			int apexIndex = mapIndex(triangles[i], positions, originalIndices);
+			int leftIndex = mapIndex(triangles[i + 1], positions, originalIndices);
+			int rightIndex = mapIndex(triangles[i + 2], positions, originalIndices);
+			indices[count++] = leftIndex;
+			indices[count++] = apexIndex;
+			indices[count++] = rightIndex;
+		}
+
+		//reset the touched entries of the index map for the next build
+		for (int i = 0; i < positions.size(); i++)
+		{
+			indexMap[originalIndices[i]] = -1;
 		}
 
 		FastShape shape = new FastShape(positions, indices, GL2.GL_TRIANGLES);
@@ -671,13 +808,13 @@ public class BinaryTriangleTree
 		if (generateTextureCoordinates)
 		{
 			float[] textureCoordinateBuffer = new float[positions.size() * 2];
-			i = 0;
-			for (Integer index : originalIndices)
+			count = 0;
+			for (int i = 0; i < positions.size(); i++)
 			{
-				int x = index % width;
-				int y = index / width;
-				textureCoordinateBuffer[i++] = x / (float) (width - 1);
-				textureCoordinateBuffer[i++] = y / (float) (height - 1);
+				int x = originalIndices[i] % width;
+				int y = originalIndices[i] / width;
+				textureCoordinateBuffer[count++] = x / (float) (width - 1);
+				textureCoordinateBuffer[count++] = y / (float) (height - 1);
 			}
 			shape.setTextureCoordinateBuffer(textureCoordinateBuffer);
 		}
@@ -685,35 +822,98 @@ public class BinaryTriangleTree
 		return shape;
 	}
 
+	private int mapIndex(int originalIndex, List<Position> positions, int[] originalIndices)
+	{
+		int index = indexMap[originalIndex];
+		if (index < 0)
+		{
+			index = positions.size();
+			indexMap[originalIndex] = index;
+			originalIndices[index] = originalIndex;
+			positions.add(this.positions.get(originalIndex));
+		}
+		return index;
+	}
+
 	/**
-	 * Helper class that stores binary triangle tree information.
+	 * Helper class that stores binary triangle tree triangles in a flat int
+	 * array. Each triangle is identified by its offset in the pool, and stores
+	 * its position indices, and the pool offsets of its children and
+	 * neighbours (-1 if none).
 	 */
-	protected class BTTTriangle
+	protected static class TrianglePool
 	{
-		public final int apexIndex;
-		public final int leftIndex;
-		public final int rightIndex;
-		public BTTTriangle leftChild;
-		public BTTTriangle rightChild;
-		public BTTTriangle leftNeighbour;
-		public BTTTriangle rightNeighbour;
-		public BTTTriangle bottomNeighbour;
+		public static final int APEX = 0;
+		public static final int LEFT = 1;
+		public static final int RIGHT = 2;
+		public static final int LEFT_CHILD = 3;
+		public static final int RIGHT_CHILD = 4;
+		public static final int LEFT_NEIGHBOUR = 5;
+		public static final int RIGHT_NEIGHBOUR = 6;
+		public static final int BOTTOM_NEIGHBOUR = 7;
+		private static final int STRIDE = 8;
+
+		private int[] data = new int[STRIDE * 256];
+		private int size = 0;
+
+		public void clear()
+		{
+			size = 0;
+		}
 
-		public BTTTriangle(int apexIndex, int leftIndex, int rightIndex)
+		public int add(int apexIndex, int leftIndex, int rightIndex)
 		{
-			this.apexIndex = apexIndex;
-			this.leftIndex = leftIndex;
-			this.rightIndex = rightIndex;
+			if (size + STRIDE > data.length)
+			{
+				data = Arrays.copyOf(data, data.length * 2);
+			}
+			int t = size;
+			data[t + APEX] = apexIndex;
+			data[t + LEFT] = leftIndex;
+			data[t + RIGHT] = rightIndex;
+			data[t + LEFT_CHILD] = -1;
+			data[t + RIGHT_CHILD] = -1;
+			data[t + LEFT_NEIGHBOUR] = -1;
+			data[t + RIGHT_NEIGHBOUR] = -1;
+			data[t + BOTTOM_NEIGHBOUR] = -1;
+			size += STRIDE;
+			return t;
 		}
 
-		@Override
-		public String toString()
+		public int get(int t, int field)
+		{
+			return data[t + field];
+		}
+
+		public void set(int t, int field, int value)
+		{
+			data[t + field] = value;
+		}
+	}
+
+	/**
+	 * Helper class that stores a list of triangles' position indices in a
+	 * flat int array.
+	 */
+	protected static class TriangleList
+	{
+		private int[] indices = new int[3 * 256];
+		private int size = 0;
+
+		public void add(int apexIndex, int leftIndex, int rightIndex)
+		{
+			if (size + 3 > indices.length)
+			{
+				indices = Arrays.copyOf(indices, indices.length * 2);
+			}
+			indices[size++] = apexIndex;
+			indices[size++] = leftIndex;
+			indices[size++] = rightIndex;
+		}
+
+		public int[] toArray()
 		{
-			return "Left: " + (leftIndex % BinaryTriangleTree.this.width) + ","
-					+ (leftIndex / BinaryTriangleTree.this.width) + ", Apex: "
-					+ (apexIndex % BinaryTriangleTree.this.width) + "," + (apexIndex / BinaryTriangleTree.this.width)
-					+ ", Right: " + (rightIndex % BinaryTriangleTree.this.width) + ","
-					+ (rightIndex / BinaryTriangleTree.this.width);
+			return Arrays.copyOf(indices, size);
 		}
 	}
 }
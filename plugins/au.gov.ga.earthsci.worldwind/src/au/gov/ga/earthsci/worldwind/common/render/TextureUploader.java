@@ -0,0 +1,600 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.render.DrawContext;
+import gov.nasa.worldwind.util.Logging;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GL2;
+import javax.media.opengl.GLContext;
+
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+
+import com.jogamp.opengl.util.texture.Texture;
+import com.jogamp.opengl.util.texture.TextureData;
+import com.jogamp.opengl.util.texture.TextureIO;
+
+/**
+ * Schedules and performs the upload of tile texture data to the GPU, so that
+ * the render loop doesn't stall when many tiles become available at once (for
+ * example when panning quickly).
+ * <p/>
+ * The number of bytes uploaded each frame is limited by a budget (configured
+ * using {@link AVKeyMore#TEXTURE_UPLOAD_BUDGET}, in bytes per frame). While
+ * the budget is not exceeded, uploads are performed immediately. Once uploads
+ * are being deferred, requests are queued and granted at the start of the next
+ * frame in order of their screen priority, so the tiles that cover the most of
+ * the screen are uploaded first. Tiles waiting for their upload should render
+ * using a fallback (ancestor) texture.
+ * <p/>
+ * Where supported, texture data is uploaded through a pixel buffer object:
+ * the data is copied into driver-owned memory, and the transfer to the texture
+ * happens asynchronously to the render thread.
+ * <p/>
+ * The budget, the queued requests and the pixel buffer objects are kept
+ * separately for each {@link DrawContext}, so each window has its own budget.
+ * <p/>
+ * All methods other than the statistics getters must be called on the
+ * rendering thread.
+ */
+public class TextureUploader
+{
+	/**
+	 * Per-frame statistic key for the number of texture bytes uploaded
+	 */
+	public static final String UPLOAD_BYTES_STATISTIC = "au.gov.ga.earthsci.worldwind.common.render.TextureUploadBytes";
+	/**
+	 * Per-frame statistic key for the number of texture uploads deferred
+	 */
+	public static final String DEFERRED_STATISTIC = "au.gov.ga.earthsci.worldwind.common.render.TextureUploadDeferred";
+
+	/**
+	 * Default upload budget, in bytes per frame (sixteen 512x512 RGBA tiles)
+	 */
+	public static final long DEFAULT_FRAME_BUDGET = 16 * 512 * 512 * 4;
+	/**
+	 * Number of pixel buffer objects used in rotation
+	 */
+	protected static final int PIXEL_BUFFER_COUNT = 4;
+
+	private static TextureUploader instance;
+
+	/**
+	 * @return The shared texture uploader
+	 */
+	public static synchronized TextureUploader getInstance()
+	{
+		if (instance == null)
+		{
+			long budget = Configuration.getLongValue(AVKeyMore.TEXTURE_UPLOAD_BUDGET, DEFAULT_FRAME_BUDGET);
+			instance = new TextureUploader(budget);
+		}
+		return instance;
+	}
+
+	private final long frameBudget;
+	private final Map<DrawContext, FrameState> frameStates = new WeakHashMap<DrawContext, FrameState>();
+
+	private volatile long bytesLastFrame;
+	private volatile long totalBytes;
+	private volatile long totalUploads;
+	private volatile long totalDeferred;
+
+	/**
+	 * Create a new uploader.
+	 * 
+	 * @param frameBudget
+	 *            Maximum number of bytes to upload per frame; at least one
+	 *            texture is always uploaded per frame
+	 */
+	public TextureUploader(long frameBudget)
+	{
+		this.frameBudget = frameBudget;
+	}
+
+	/**
+	 * @return Maximum number of bytes uploaded per frame
+	 */
+	public long getFrameBudget()
+	{
+		return frameBudget;
+	}
+
+	/**
+	 * Request permission to upload a texture in the current frame. If this
+	 * returns false, the request has been queued, and the caller should try
+	 * again in the next frame (and use a fallback texture until then).
+	 * Requests for the same key within a frame are merged.
+	 * 
+	 * @param dc
+	 *            Current draw context
+	 * @param key
+	 *            Key identifying the texture (usually the tile)
+	 * @param priority
+	 *            Screen priority of the texture; textures with lower values
+	 *            are uploaded first
+	 * @param size
+	 *            Size of the texture data in bytes
+	 * @return True if the texture can be uploaded now
+	 */
+	public boolean requestUpload(DrawContext dc, Object key, double priority, long size)
+	{
+		FrameState state = beginFrame(dc);
+
+		if (state.granted.remove(key))
+		{
+			return true;
+		}
+		if (!state.backlog && state.bytesThisFrame + size <= frameBudget)
+		{
+			return true;
+		}
+
+		//once uploads are deferred, the remaining uploads are performed in priority order
+		state.backlog = true;
+		Request request = state.pending.get(key);
+		if (request == null)
+		{
+			state.pending.put(key, new Request(key, priority, size));
+			state.deferredThisFrame++;
+			totalDeferred++;
+			dc.setPerFrameStatistic(DEFERRED_STATISTIC, "Texture uploads deferred", state.deferredThisFrame);
+		}
+		else
+		{
+			request.priority = Math.min(request.priority, priority);
+		}
+		return false;
+	}
+
+	/**
+	 * Create a texture from the given texture data, uploading it through a
+	 * pixel buffer object if possible, and count the uploaded bytes against
+	 * the current frame's budget.
+	 * 
+	 * @param dc
+	 *            Current draw context
+	 * @param data
+	 *            Texture data to upload
+	 * @return New texture
+	 */
+	public Texture upload(DrawContext dc, TextureData data)
+	{
+		FrameState state = beginFrame(dc);
+
+		long size = getSize(data);
+		Texture texture = null;
+		GL gl = dc.getGL();
+		if (canUsePixelBuffer(gl, data))
+		{
+			texture = uploadPixelBuffer(gl.getGL2(), state, data, (int) size);
+		}
+		if (texture == null)
+		{
+			texture = TextureIO.newTexture(data);
+		}
+
+		state.bytesThisFrame += size;
+		totalBytes += size;
+		totalUploads++;
+		dc.setPerFrameStatistic(UPLOAD_BYTES_STATISTIC, "Texture upload bytes", state.bytesThisFrame);
+		return texture;
+	}
+
+	/**
+	 * @return Number of bytes uploaded in the last complete frame
+	 */
+	public long getBytesUploadedLastFrame()
+	{
+		return bytesLastFrame;
+	}
+
+	/**
+	 * @return Total number of bytes uploaded
+	 */
+	public long getTotalBytesUploaded()
+	{
+		return totalBytes;
+	}
+
+	/**
+	 * @return Total number of textures uploaded
+	 */
+	public long getTotalUploads()
+	{
+		return totalUploads;
+	}
+
+	/**
+	 * @return Total number of upload requests deferred to a later frame
+	 */
+	public long getTotalDeferred()
+	{
+		return totalDeferred;
+	}
+
+	/**
+	 * Calculate the screen priority of a tile for
+	 * {@link #requestUpload(DrawContext, Object, double, long)}: the distance
+	 * from the eye to the tile in units of the tile's size, which is inversely
+	 * proportional to the tile's size on screen.
+	 * 
+	 * @param eyeDistance
+	 *            Distance from the eye to the tile's center
+	 * @param tileSize
+	 *            Size of the tile, in the same units
+	 * @return Upload priority; lower values are uploaded first
+	 */
+	public static double getScreenPriority(double eyeDistance, double tileSize)
+	{
+		return tileSize > 0 ? eyeDistance / tileSize : Double.MAX_VALUE;
+	}
+
+	/**
+	 * @return Estimated size of the given texture data in bytes
+	 */
+	public static long getSize(TextureData data)
+	{
+		long size = data.getEstimatedMemorySize();
+		if (size <= 0)
+		{
+			//texture data that is converted lazily (such as AWT images of custom types) has no buffer yet
+			size =
+					(long) data.getWidth() * data.getHeight()
+							* getBytesPerPixel(data.getPixelFormat(), data.getPixelType());
+		}
+		return size;
+	}
+
+	/**
+	 * @return Number of bytes used by each pixel with the given pixel format
+	 *         and type (4 if the format or type is not recognised)
+	 */
+	public static int getBytesPerPixel(int pixelFormat, int pixelType)
+	{
+		switch (pixelType)
+		{
+		case GL2.GL_UNSIGNED_SHORT_5_6_5:
+		case GL2.GL_UNSIGNED_SHORT_4_4_4_4:
+		case GL2.GL_UNSIGNED_SHORT_5_5_5_1:
+			return 2;
+		case GL2.GL_UNSIGNED_INT_8_8_8_8:
+		case GL2.GL_UNSIGNED_INT_8_8_8_8_REV:
+			return 4;
+		}
+
+		int componentSize;
+		switch (pixelType)
+		{
+		case GL2.GL_BYTE:
+		case GL2.GL_UNSIGNED_BYTE:
+			componentSize = 1;
+			break;
+		case GL2.GL_SHORT:
+		case GL2.GL_UNSIGNED_SHORT:
+		case GL2.GL_HALF_FLOAT:
+			componentSize = 2;
+			break;
+		case GL2.GL_INT:
+		case GL2.GL_UNSIGNED_INT:
+		case GL2.GL_FLOAT:
+			componentSize = 4;
+			break;
+		default:
+			return 4;
+		}
+
+		switch (pixelFormat)
+		{
+		case GL2.GL_RGBA:
+		case GL2.GL_BGRA:
+			return 4 * componentSize;
+		case GL2.GL_RGB:
+		case GL2.GL_BGR:
+			return 3 * componentSize;
+		case GL2.GL_LUMINANCE_ALPHA:
+			return 2 * componentSize;
+		case GL2.GL_LUMINANCE:
+		case GL2.GL_ALPHA:
+		case GL2.GL_RED:
+			return componentSize;
+		default:
+			return 4;
+		}
+	}
+
+	/**
+	 * @return Estimated GPU memory used by a texture created from the given
+	 *         texture data, including generated mipmaps
+	 */
+	public static long getTextureMemorySize(TextureData data)
+	{
+		long size = getSize(data);
+		if (data.getMipmap() && data.getMipmapData() == null)
+		{
+			size += size / 3;
+		}
+		return size;
+	}
+
+	/**
+	 * Use the mipmap minification filter for textures whose mipmaps were
+	 * generated by {@link #upload(DrawContext, TextureData)} (JOGL only
+	 * reports mipmaps it generated itself). Call this after setting the
+	 * texture's parameters, with the texture bound.
+	 */
+	public static void applyMipmapFilter(DrawContext dc, Texture texture, TextureData data)
+	{
+		if (data.getMipmap() && data.getMipmapData() == null && !texture.isUsingAutoMipmapGeneration())
+		{
+			dc.getGL().glTexParameteri(GL.GL_TEXTURE_2D, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR_MIPMAP_LINEAR);
+		}
+	}
+
+	/**
+	 * Get the upload state of the given draw context, starting a new frame if
+	 * the draw context's frame has changed: queued requests are granted in
+	 * priority order until the budget is filled.
+	 */
+	protected FrameState beginFrame(DrawContext dc)
+	{
+		FrameState state = frameStates.get(dc);
+		if (state == null)
+		{
+			state = new FrameState();
+			frameStates.put(dc, state);
+		}
+
+		long timeStamp = dc.getFrameTimeStamp();
+		if (timeStamp == state.frameTimeStamp)
+		{
+			return state;
+		}
+		state.frameTimeStamp = timeStamp;
+		bytesLastFrame = state.bytesThisFrame;
+		state.bytesThisFrame = 0;
+		state.deferredThisFrame = 0;
+
+		//grants not used in the previous frame are for tiles that are no longer visible
+		state.granted.clear();
+		state.backlog = !state.pending.isEmpty();
+		if (!state.backlog)
+		{
+			return state;
+		}
+
+		List<Request> requests = new ArrayList<Request>(state.pending.values());
+		state.pending.clear();
+		Collections.sort(requests);
+		long bytes = 0;
+		for (Request request : requests)
+		{
+			if (!state.granted.isEmpty() && bytes + request.size > frameBudget)
+			{
+				break;
+			}
+			state.granted.add(request.key);
+			bytes += request.size;
+		}
+		return state;
+	}
+
+	protected boolean canUsePixelBuffer(GL gl, TextureData data)
+	{
+		if (data.isDataCompressed() || data.getMipmapData() != null || data.getBuffer() == null
+				|| data.getBorder() != 0 || !gl.isGL2())
+		{
+			return false;
+		}
+		if (data.getMipmap() && !gl.isFunctionAvailable("glGenerateMipmap"))
+		{
+			return false;
+		}
+		if (!gl.isNPOTTextureAvailable() && (!isPowerOfTwo(data.getWidth()) || !isPowerOfTwo(data.getHeight())))
+		{
+			return false;
+		}
+		return gl.isExtensionAvailable("GL_ARB_pixel_buffer_object") || gl.isExtensionAvailable("GL_VERSION_2_1");
+	}
+
+	/**
+	 * Upload texture data through a pixel buffer object.
+	 * 
+	 * @return New texture, or null if the pixel buffer could not be mapped
+	 */
+	protected Texture uploadPixelBuffer(GL2 gl, FrameState state, TextureData data, int size)
+	{
+		int pixelBuffer = getPixelBuffer(gl, state);
+		gl.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, pixelBuffer);
+		try
+		{
+			//orphan the buffer's previous storage, so mapping doesn't wait for a previous transfer
+			gl.glBufferData(GL2.GL_PIXEL_UNPACK_BUFFER, size, null, GL2.GL_STREAM_DRAW);
+			ByteBuffer mapped = gl.glMapBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, GL2.GL_WRITE_ONLY);
+			if (mapped == null)
+			{
+				return null;
+			}
+			boolean unmapped = false;
+			try
+			{
+				copy(data.getBuffer(), mapped);
+			}
+			finally
+			{
+				//the buffer must be unmapped even if the copy fails
+				unmapped = gl.glUnmapBuffer(GL2.GL_PIXEL_UNPACK_BUFFER);
+			}
+			if (!unmapped)
+			{
+				return null;
+			}
+
+			int target = GL.GL_TEXTURE_2D;
+			int[] ids = new int[1];
+			gl.glGenTextures(1, ids, 0);
+			gl.glBindTexture(target, ids[0]);
+			gl.glTexParameteri(target, GL.GL_TEXTURE_MIN_FILTER, GL.GL_LINEAR);
+			gl.glTexParameteri(target, GL.GL_TEXTURE_MAG_FILTER, GL.GL_LINEAR);
+
+			gl.glPushClientAttrib(GL2.GL_CLIENT_PIXEL_STORE_BIT);
+			try
+			{
+				gl.glPixelStorei(GL.GL_UNPACK_ALIGNMENT, data.getAlignment());
+				gl.glPixelStorei(GL2.GL_UNPACK_ROW_LENGTH, Math.max(0, data.getRowLength()));
+				gl.glTexImage2D(target, 0, data.getInternalFormat(), data.getWidth(), data.getHeight(), 0,
+						data.getPixelFormat(), data.getPixelType(), 0L);
+			}
+			finally
+			{
+				gl.glPopClientAttrib();
+			}
+			if (data.getMipmap())
+			{
+				gl.glGenerateMipmap(target);
+			}
+
+			return new Texture(ids[0], target, data.getWidth(), data.getHeight(), data.getWidth(), data.getHeight(),
+					data.getMustFlipVertically());
+		}
+		catch (RuntimeException e)
+		{
+			String msg = "Error uploading texture through pixel buffer object";
+			Logging.logger().log(java.util.logging.Level.WARNING, msg, e);
+			return null;
+		}
+		finally
+		{
+			gl.glBindBuffer(GL2.GL_PIXEL_UNPACK_BUFFER, 0);
+		}
+	}
+
+	/**
+	 * Get the next pixel buffer object in the rotation, creating the buffers
+	 * if required for the current context. If the draw context's GL context
+	 * has changed, the previous context's buffers are deleted; if that
+	 * context has been destroyed, its buffers were destroyed with it.
+	 */
+	protected int getPixelBuffer(GL2 gl, FrameState state)
+	{
+		GLContext context = gl.getContext();
+		if (state.pixelBuffers == null || state.pixelBufferContext != context)
+		{
+			if (state.pixelBuffers != null && state.pixelBufferContext.isCreated())
+			{
+				gl.glDeleteBuffers(PIXEL_BUFFER_COUNT, state.pixelBuffers, 0);
+			}
+			state.pixelBuffers = new int[PIXEL_BUFFER_COUNT];
+			gl.glGenBuffers(PIXEL_BUFFER_COUNT, state.pixelBuffers, 0);
+			state.pixelBufferContext = context;
+			state.nextPixelBuffer = 0;
+		}
+		int pixelBuffer = state.pixelBuffers[state.nextPixelBuffer];
+		state.nextPixelBuffer = (state.nextPixelBuffer + 1) % PIXEL_BUFFER_COUNT;
+		return pixelBuffer;
+	}
+
+	/**
+	 * Copy the contents of a texture data buffer into a mapped pixel buffer.
+	 */
+	protected static void copy(Buffer source, ByteBuffer destination)
+	{
+		destination.order(ByteOrder.nativeOrder());
+		if (source instanceof ByteBuffer)
+		{
+			destination.put((ByteBuffer) ((ByteBuffer) source).duplicate().rewind());
+		}
+		else if (source instanceof IntBuffer)
+		{
+			destination.asIntBuffer().put((IntBuffer) ((IntBuffer) source).duplicate().rewind());
+		}
+		else if (source instanceof ShortBuffer)
+		{
+			destination.asShortBuffer().put((ShortBuffer) ((ShortBuffer) source).duplicate().rewind());
+		}
+		else if (source instanceof FloatBuffer)
+		{
+			destination.asFloatBuffer().put((FloatBuffer) ((FloatBuffer) source).duplicate().rewind());
+		}
+		else
+		{
+			throw new IllegalArgumentException("Unsupported texture data buffer: " + source);
+		}
+	}
+
+	private static boolean isPowerOfTwo(int value)
+	{
+		return value > 0 && (value & (value - 1)) == 0;
+	}
+
+	/**
+	 * The upload budget, queued requests and pixel buffer objects of a single
+	 * {@link DrawContext}.
+	 */
+	protected static class FrameState
+	{
+		public long frameTimeStamp = -1;
+		public long bytesThisFrame;
+		public int deferredThisFrame;
+		public final Map<Object, Request> pending = new HashMap<Object, Request>();
+		public final Set<Object> granted = new HashSet<Object>();
+		public boolean backlog = false;
+
+		public GLContext pixelBufferContext;
+		public int[] pixelBuffers;
+		public int nextPixelBuffer;
+	}
+
+	/**
+	 * A deferred upload request.
+	 */
+	protected static class Request implements Comparable<Request>
+	{
+		public final Object key;
+		public final long size;
+		public double priority;
+
+		public Request(Object key, double priority, long size)
+		{
+			this.key = key;
+			this.priority = priority;
+			this.size = size;
+		}
+
+		@Override
+		public int compareTo(Request o)
+		{
+			return Double.compare(priority, o.priority);
+		}
+	}
+}
@@ -132,6 +132,24 @@ public abstract class AbstractVBO<ARRAY>
 		}
 	}
 
+	/**
+	 * Delete this VBO's buffer from the video card, if it has been created.
+	 * The buffer is recreated and uploaded if this VBO is bound again.
+	 * 
+	 * @param gl
+	 *            OpenGL context
+	 */
+	public void delete(GL2 gl)
+	{
+		if (vboId >= 0)
+		{
+			gl.glDeleteBuffers(1, new int[] { vboId }, 0);
+			vboId = -1;
+			uploadRequired = true;
+			markDirty();
+		}
+	}
+
 	/**
 	 * Unbind this VBO.
 	 * 
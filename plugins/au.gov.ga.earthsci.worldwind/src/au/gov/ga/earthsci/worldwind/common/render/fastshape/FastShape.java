@@ -45,6 +45,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
 
 import javax.imageio.ImageIO;
 import javax.media.opengl.GL2;
@@ -60,6 +61,12 @@ import com.jogamp.opengl.util.texture.Texture;
  * for meshes or points or lines with a large number of vertices, as the vertex
  * positions aren't updated every frame (instead they are updated in a vertex
  * updater thread).
+ * <p/>
+ * Shapes can alternatively be colored by a per-vertex scalar attribute (see
+ * {@link #setScalarBuffer(float[])}). The scalars are uploaded once, and are
+ * colored on the GPU by the {@link ScalarColorShader} using a color table and
+ * a scalar range, so changing the color table or range requires no
+ * recalculation or upload of vertex colors.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -72,6 +79,8 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 
 	protected final ReadWriteLock positionLock = new ReentrantReadWriteLock();
 	protected final PickSupport pickSupport = new PickSupport();
+	protected final ScalarColorShader scalarShader = new ScalarColorShader();
+	protected boolean scalarColorShaderFailed = false;
 	protected Layer pickLayer = null;
 
 	protected List<Position> positions;
@@ -89,6 +98,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	protected final FloatVBO colorVBO = new FloatVBO(3);
 	protected final FloatVBO pickingColorVBO = new FloatVBO(3);
 	protected final FloatVBO textureCoordinateVBO = new FloatVBO(2);
+	protected final FloatVBO scalarVBO = new FloatVBO(1);
 
 	protected boolean useOrderedRendering = false;
 	protected double distanceFromEye = 0;
@@ -138,6 +148,13 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 	protected Texture texture;
 	protected double[] textureMatrix;
 
+	protected int[] scalarColorTable;
+	protected WWTexture scalarColorTexture;
+	protected double scalarMinimum = 0;
+	protected double scalarMaximum = 1;
+	protected Float scalarNoDataValue;
+	protected boolean scalarColorBufferDirty = true;
+
 	protected Layer lastLayer;
 	protected long lastFollowTerrainUpdateTime;
 
@@ -254,6 +271,10 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		boolean wireframe = isWireframe();
 		boolean willCalculateNormals = willCalculateNormals();
 		boolean useOrderedRenderingMode = isUseOrderedRendering();
+		int[] scalarColorTable = getScalarColorTable();
+		float scalarMinimum = (float) getScalarMinimum();
+		float scalarMaximum = (float) getScalarMaximum();
+		Float scalarNoDataValue = getScalarNoDataValue();
 
 		double alpha = getOpacity();
 		if (dc.getCurrentLayer() != null)
@@ -297,12 +318,16 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		{
 			notifyRenderListenersOfPreRender(dc);
 
-			boolean colorBufferContainsAlpha = colorVBO.getBuffer() != null && colorVBO.getElementStride() > 3;
+			boolean willUseScalarShader =
+					prepareScalarColors(gl) && scalarColorTable != null && colorBufferEnabled && !dc.isPickingMode();
+			boolean colorBufferContainsAlpha =
+					willUseScalarShader || (colorVBO.getBuffer() != null && colorVBO.getElementStride() > 3);
 			boolean willUseSortedIndices =
 					(forceSortedPrimitives || (sortTransparentPrimitives && alpha < 1.0))
 							&& sortedIndexVBO.getBuffer() != null;
 			boolean willUsePointSprite = mode == GL2.GL_POINTS && pointSprite && pointTextureUrl != null;
-			boolean willUseTextureBlending = (alpha < 1.0 || color != null) && colorBufferContainsAlpha;
+			boolean willUseTextureBlending =
+					!willUseScalarShader && (alpha < 1.0 || color != null) && colorBufferContainsAlpha;
 
 			if (willUsePointSprite && pointTexture == null)
 			{
@@ -344,7 +369,7 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 			{
 				attributesToPush |= GL2.GL_LINE_BIT;
 			}
-			if (willUsePointSprite || willUseTextureBlending || (textured && texture != null))
+			if (willUsePointSprite || willUseTextureBlending || willUseScalarShader || (textured && texture != null))
 			{
 				attributesToPush |= GL2.GL_TEXTURE_BIT;
 			}
@@ -479,7 +504,27 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 				gl.glLoadMatrixd(textureMatrix, 0);
 			}
 
-			if (colorBufferEnabled)
+			if (willUseScalarShader)
+			{
+				WWTexture scalarColorTexture = this.scalarColorTexture;
+				if (scalarColorTexture == null)
+				{
+					scalarColorTexture = createScalarColorTexture(scalarColorTable);
+					this.scalarColorTexture = scalarColorTexture;
+				}
+				gl.glActiveTexture(GL2.GL_TEXTURE0 + ScalarColorShader.COLOR_MAP_TEXTURE_UNIT);
+				scalarColorTexture.bind(dc);
+				gl.glActiveTexture(GL2.GL_TEXTURE0);
+
+				int valueAttribute = scalarShader.getValueAttributeLocation();
+				gl.glEnableVertexAttribArray(valueAttribute);
+				scalarVBO.bind(gl);
+				gl.glVertexAttribPointer(valueAttribute, 1, GL2.GL_FLOAT, false, 0, 0);
+
+				scalarShader.use(gl, scalarMinimum, scalarMaximum, scalarNoDataValue, scalarColorTable.length,
+						willUsePointSprite, (float) alpha);
+			}
+			else if (colorBufferEnabled)
 			{
 				FloatVBO vbo = dc.isPickingMode() && pickingColorVBO.getBuffer() != null ? pickingColorVBO : colorVBO;
 				if (vbo.getBuffer() != null)
@@ -536,6 +581,12 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 				gl.glDrawArrays(mode, 0, vertexVBO.getBuffer().length / vertexVBO.getElementStride());
 			}
 
+			if (willUseScalarShader)
+			{
+				scalarShader.unuse(gl);
+				gl.glDisableVertexAttribArray(scalarShader.getValueAttributeLocation());
+			}
+
 			//unbind the buffers
 			gl.glBindBuffer(GL2.GL_ARRAY_BUFFER, 0);
 			gl.glBindBuffer(GL2.GL_ELEMENT_ARRAY_BUFFER, 0);
@@ -549,6 +600,65 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		}
 	}
 
+	/**
+	 * Prepare this shape for scalar coloring, if it has a scalar buffer and
+	 * color table. Creates this shape's {@link ScalarColorShader} if required;
+	 * if the shader cannot be created, the scalars are instead colored on the
+	 * CPU into this shape's color buffer.
+	 * 
+	 * @param gl
+	 * @return True if the scalars should be colored by the shader
+	 */
+	protected boolean prepareScalarColors(GL2 gl)
+	{
+		if (!isScalarColored())
+		{
+			return false;
+		}
+
+		if (!scalarColorShaderFailed)
+		{
+			try
+			{
+				scalarShader.createIfRequired(gl);
+				return true;
+			}
+			catch (Exception e)
+			{
+				String message = "Error creating scalar color shader; falling back to CPU coloring";
+				Logging.logger().log(Level.WARNING, message, e);
+				scalarColorShaderFailed = true;
+			}
+		}
+
+		if (scalarColorBufferDirty)
+		{
+			scalarColorBufferDirty = false;
+			float[] colors =
+					scalarsToColors(scalarVBO.getBuffer(), getScalarColorTable(), getScalarMinimum(),
+							getScalarMaximum(), getScalarNoDataValue(), null);
+			colorVBO.setElementStride(4);
+			colorVBO.setBuffer(colors);
+		}
+		return false;
+	}
+
+	/**
+	 * Create a texture containing the given color table, to be used by the
+	 * {@link ScalarColorShader}.
+	 * 
+	 * @param colorTable
+	 *            Packed ARGB colors
+	 * @return Texture with a width equal to the length of the table, and a
+	 *         height of 1
+	 */
+	protected static WWTexture createScalarColorTexture(int[] colorTable)
+	{
+		BufferedImage image = new BufferedImage(colorTable.length, 1, BufferedImage.TYPE_INT_ARGB);
+		image.setRGB(0, 0, colorTable.length, 1, colorTable, 0, colorTable.length);
+		return new BasicWWTexture(image, false);
+	}
+
 	protected void recalculateIfRequired(DrawContext dc, double alpha)
 	{
 		boolean followTerrainRecalculationRequired = false;
@@ -988,6 +1098,99 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		textureCoordinateVBO.setBuffer(textureCoordinateBuffer);
 	}
 
+	public float[] getScalarBuffer()
+	{
+		return scalarVBO.getBuffer();
+	}
+
+	/**
+	 * Set the per-vertex scalar values used to color this shape. If a color
+	 * table has also been set, this shape is colored using the scalars
+	 * instead of the color buffer.
+	 * 
+	 * @param scalarBuffer
+	 *            One scalar value per vertex (null to disable scalar coloring)
+	 * @see #setScalarColorTable(int[])
+	 * @see #setScalarRange(double, double)
+	 */
+	public void setScalarBuffer(float[] scalarBuffer)
+	{
+		scalarVBO.setBuffer(scalarBuffer);
+		scalarColorBufferDirty = true;
+	}
+
+	public int[] getScalarColorTable()
+	{
+		return scalarColorTable;
+	}
+
+	/**
+	 * Set the color table used to color the scalar values. The first color is
+	 * used for the scalar range's minimum, and the last color for the maximum.
+	 * Values outside the range are clamped.
+	 * 
+	 * @param scalarColorTable
+	 *            Packed ARGB colors (null to disable scalar coloring)
+	 */
+	public void setScalarColorTable(int[] scalarColorTable)
+	{
+		this.scalarColorTable = scalarColorTable;
+		scalarColorTexture = null;
+		scalarColorBufferDirty = true;
+	}
+
+	public double getScalarMinimum()
+	{
+		return scalarMinimum;
+	}
+
+	public double getScalarMaximum()
+	{
+		return scalarMaximum;
+	}
+
+	/**
+	 * Set the range of scalar values mapped to the color table. This only
+	 * changes the shader's uniforms, and doesn't recalculate any colors.
+	 * 
+	 * @param minimum
+	 *            Scalar value mapped to the first color in the table
+	 * @param maximum
+	 *            Scalar value mapped to the last color in the table
+	 */
+	public void setScalarRange(double minimum, double maximum)
+	{
+		this.scalarMinimum = minimum;
+		this.scalarMaximum = maximum;
+		scalarColorBufferDirty = true;
+	}
+
+	public Float getScalarNoDataValue()
+	{
+		return scalarNoDataValue;
+	}
+
+	/**
+	 * Set the scalar value of vertices that shouldn't be drawn.
+	 * 
+	 * @param scalarNoDataValue
+	 *            No-data value (null if there is no such value)
+	 */
+	public void setScalarNoDataValue(Float scalarNoDataValue)
+	{
+		this.scalarNoDataValue = scalarNoDataValue;
+		scalarColorBufferDirty = true;
+	}
+
+	/**
+	 * @return True if this shape has a scalar buffer and a color table, and is
+	 *         therefore colored by the scalars
+	 */
+	public boolean isScalarColored()
+	{
+		return scalarVBO.getBuffer() != null && scalarColorTable != null && scalarColorTable.length > 0;
+	}
+
 	public double getOpacity()
 	{
 		return opacity;
@@ -1301,6 +1504,39 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		this.useOrderedRendering = useOrderedRendering;
 	}
 
+	/**
+	 * Delete this shape's vertex buffer objects from the video card. They are
+	 * recreated if the shape is rendered again.
+	 * 
+	 * @param gl
+	 *            OpenGL context
+	 */
+	public void deleteVBOs(GL2 gl)
+	{
+		vertexVBO.delete(gl);
+		normalVBO.delete(gl);
+		sortedIndexVBO.delete(gl);
+		indexVBO.delete(gl);
+		colorVBO.delete(gl);
+		pickingColorVBO.delete(gl);
+		textureCoordinateVBO.delete(gl);
+		scalarVBO.delete(gl);
+	}
+
+	/**
+	 * Delete this shape's vertex buffer objects and scalar color shader from
+	 * the video card. Should be called on the rendering thread once the shape
+	 * is no longer rendered.
+	 * 
+	 * @param gl
+	 *            OpenGL context
+	 */
+	public void dispose(GL2 gl)
+	{
+		deleteVBOs(gl);
+		scalarShader.deleteIfCreated(gl);
+	}
+
 	@Override
 	public long getSizeInBytes()
 	{
@@ -1376,6 +1612,54 @@ public class FastShape implements OrderedRenderable, Cacheable, Bounded, Wirefra
 		return floats;
 	}
 
+	/**
+	 * Color the given scalar values using a color table, writing consecutive
+	 * RGBA color components (in the range [0,1]) to the output array. This is
+	 * the CPU equivalent of the {@link ScalarColorShader}.
+	 * 
+	 * @param scalars
+	 *            Scalar values to color
+	 * @param colorTable
+	 *            Packed ARGB colors, evenly spaced between the minimum and
+	 *            maximum
+	 * @param minimum
+	 *            Scalar value mapped to the first color in the table
+	 * @param maximum
+	 *            Scalar value mapped to the last color in the table
+	 * @param noDataValue
+	 *            Scalar value colored transparent (null if there is no such
+	 *            value)
+	 * @param out
+	 *            Array to write the color components to, or <code>null</code>
+	 *            to allocate a new one
+	 * @return Array containing the color components
+	 */
+	public static float[] scalarsToColors(float[] scalars, int[] colorTable, double minimum, double maximum,
+			Float noDataValue, float[] out)
+	{
+		float[] floats = out != null && out.length == scalars.length * 4 ? out : new float[scalars.length * 4];
+		double scale = maximum > minimum ? (colorTable.length - 1) / (maximum - minimum) : 0;
+		int i = 0;
+		for (float scalar : scalars)
+		{
+			if (noDataValue != null && scalar == noDataValue)
+			{
+				floats[i++] = 0;
+				floats[i++] = 0;
+				floats[i++] = 0;
+				floats[i++] = 0;
+				continue;
+			}
+			int index = (int) ((scalar - minimum) * scale + 0.5);
+			int rgb = colorTable[Math.max(0, Math.min(colorTable.length - 1, index))];
+			floats[i++] = ((rgb >> 16) & 0xff) / 255f;
+			floats[i++] = ((rgb >> 8) & 0xff) / 255f;
+			floats[i++] = (rgb & 0xff) / 255f;
+			floats[i++] = ((rgb >> 24) & 0xff) / 255f;
+		}
+		return floats;
+	}
+
 	public static float[] color3ToFloats(List<Color> colors)
 	{
 		return color3ToFloats(colors, new float[colors.size() * 3]);
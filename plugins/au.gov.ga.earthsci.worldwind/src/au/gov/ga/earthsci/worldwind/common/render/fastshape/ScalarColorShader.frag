@@ -0,0 +1,24 @@
+uniform sampler2D colorMap;
+uniform sampler2D pointTexture;
+uniform float colorMapSize;
+uniform bool pointSprite;
+uniform float opacity;
+
+varying float percent;
+varying float noDataWeight;
+
+void main()
+{
+	if (noDataWeight > 0.5)
+	{
+		discard;
+	}
+
+	float s = (clamp(percent, 0.0, 1.0) * (colorMapSize - 1.0) + 0.5) / colorMapSize;
+	vec4 color = texture2D(colorMap, vec2(s, 0.5));
+	if (pointSprite)
+	{
+		color.a *= texture2D(pointTexture, gl_TexCoord[0].st).a;
+	}
+	gl_FragColor = vec4(color.rgb, color.a * opacity);
+}
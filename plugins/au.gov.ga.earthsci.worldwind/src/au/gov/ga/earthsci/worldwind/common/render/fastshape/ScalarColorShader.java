@@ -0,0 +1,120 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.render.fastshape;
+
+import java.io.InputStream;
+
+import javax.media.opengl.GL2;
+
+import au.gov.ga.earthsci.worldwind.common.render.Shader;
+
+/**
+ * {@link Shader} used by the {@link FastShape} to color vertices on the GPU
+ * from a per-vertex scalar attribute. The scalar is normalized between a
+ * minimum and maximum, and used to look up the color in a color map texture.
+ * Changing the minimum and maximum simply changes the shader's uniforms, and
+ * requires no recalculation or upload of vertex colors.
+ * <p/>
+ * The color map texture is a 2D texture with a height of 1 texel, and must be
+ * bound to texture unit {@value #COLOR_MAP_TEXTURE_UNIT}. If point sprites are
+ * enabled, the point texture must be bound to texture unit 0, and its alpha is
+ * applied to the colors.
+ */
+public class ScalarColorShader extends Shader
+{
+	/**
+	 * Texture unit to which the color map texture must be bound
+	 */
+	public static final int COLOR_MAP_TEXTURE_UNIT = 2;
+
+	private int valueAttribute;
+	private int minimumUniform;
+	private int scaleUniform;
+	private int noDataUniform;
+	private int noDataValueUniform;
+	private int colorMapSizeUniform;
+	private int pointSpriteUniform;
+	private int opacityUniform;
+
+	@Override
+	protected InputStream getVertexSource()
+	{
+		return this.getClass().getResourceAsStream("ScalarColorShader.vert");
+	}
+
+	@Override
+	protected InputStream getFragmentSource()
+	{
+		return this.getClass().getResourceAsStream("ScalarColorShader.frag");
+	}
+
+	@Override
+	protected void getUniformLocations(GL2 gl)
+	{
+		gl.glUniform1i(gl.glGetUniformLocation(shaderProgram, "pointTexture"), 0);
+		gl.glUniform1i(gl.glGetUniformLocation(shaderProgram, "colorMap"), COLOR_MAP_TEXTURE_UNIT);
+		valueAttribute = gl.glGetAttribLocation(shaderProgram, "value");
+		minimumUniform = gl.glGetUniformLocation(shaderProgram, "minimum");
+		scaleUniform = gl.glGetUniformLocation(shaderProgram, "scale");
+		noDataUniform = gl.glGetUniformLocation(shaderProgram, "noData");
+		noDataValueUniform = gl.glGetUniformLocation(shaderProgram, "noDataValue");
+		colorMapSizeUniform = gl.glGetUniformLocation(shaderProgram, "colorMapSize");
+		pointSpriteUniform = gl.glGetUniformLocation(shaderProgram, "pointSprite");
+		opacityUniform = gl.glGetUniformLocation(shaderProgram, "opacity");
+	}
+
+	/**
+	 * @return Location of the per-vertex scalar attribute, to be passed to
+	 *         <code>glVertexAttribPointer</code>
+	 */
+	public int getValueAttributeLocation()
+	{
+		return valueAttribute;
+	}
+
+	/**
+	 * Use this shader. The color map texture should be bound to texture unit
+	 * {@value #COLOR_MAP_TEXTURE_UNIT}.
+	 * 
+	 * @param gl
+	 * @param minimum
+	 *            Scalar value mapped to the first color in the color map
+	 * @param maximum
+	 *            Scalar value mapped to the last color in the color map
+	 * @param noDataValue
+	 *            Scalar value of vertices that shouldn't be drawn (null if
+	 *            there is no such value)
+	 * @param colorMapSize
+	 *            Number of texels in the color map texture
+	 * @param pointSprite
+	 *            Should the alpha of the point texture bound to texture unit 0
+	 *            be applied?
+	 * @param opacity
+	 *            Opacity of the shape
+	 */
+	public void use(GL2 gl, float minimum, float maximum, Float noDataValue, int colorMapSize, boolean pointSprite,
+			float opacity)
+	{
+		super.use(gl);
+		gl.glUniform1f(minimumUniform, minimum);
+		gl.glUniform1f(scaleUniform, maximum > minimum ? 1f / (maximum - minimum) : 0f);
+		gl.glUniform1i(noDataUniform, noDataValue != null ? 1 : 0);
+		gl.glUniform1f(noDataValueUniform, noDataValue != null ? noDataValue : 0f);
+		gl.glUniform1f(colorMapSizeUniform, colorMapSize);
+		gl.glUniform1i(pointSpriteUniform, pointSprite ? 1 : 0);
+		gl.glUniform1f(opacityUniform, opacity);
+	}
+}
@@ -0,0 +1,19 @@
+attribute float value;
+
+uniform float minimum;
+uniform float scale;
+uniform bool noData;
+uniform float noDataValue;
+
+varying float percent;
+varying float noDataWeight;
+
+void main()
+{
+	gl_Position = ftransform();
+	gl_ClipVertex = gl_ModelViewMatrix * gl_Vertex;
+	gl_TexCoord[0] = gl_MultiTexCoord0;
+
+	percent = (value - minimum) * scale;
+	noDataWeight = noData && value == noDataValue ? 1.0 : 0.0;
+}
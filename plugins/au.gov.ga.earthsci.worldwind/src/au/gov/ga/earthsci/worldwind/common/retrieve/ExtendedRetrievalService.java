@@ -57,12 +57,19 @@ public class ExtendedRetrievalService extends WWObjectImpl
     {
         private Retriever retriever;
         private double priority; // retrieval secondary priority (primary priority is submit time)
+        private boolean background; // background tasks are only run when no other tasks are queued
 
         private RetrievalTask(Retriever retriever, double priority)
+        {
+            this(retriever, priority, false);
+        }
+
+        private RetrievalTask(Retriever retriever, double priority, boolean background)
         {
             super(retriever);
             this.retriever = retriever;
             this.priority = priority;
+            this.background = background;
         }
 
         public double getPriority()
@@ -100,6 +107,11 @@ public class ExtendedRetrievalService extends WWObjectImpl
                 throw new IllegalArgumentException(msg);
             }
 
+            // ADDED
+            if (this.background != that.background)
+                return this.background ? 1 : -1;
+            // ADDED
+
             if (this.priority > 0 && that.priority > 0) // only secondary priority used if either is negative
             {
                 // Requests submitted within different time-granularity periods are ordered exclusive of their
@@ -376,6 +388,49 @@ public class ExtendedRetrievalService extends WWObjectImpl
      * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
      */
     public synchronized RetrievalFuture runRetriever(Retriever retriever, double priority)
+    {
+        return this.runRetriever(retriever, priority, false);
+    }
+
+    // ADDED
+    /**
+     * Run a low priority background retriever, such as a tile prefetch. Background retrievers are only run when
+     * there are no other retrievers queued. If a retriever for the same resource is later requested with
+     * {@link #runRetriever(Retriever, double)}, the queued background retriever is promoted.
+     *
+     * @param retriever the retriever to run
+     * @param priority  the secondary priority of the retriever, relative to other background retrievers
+     *
+     * @return a future object that can be used to query the request status of cancel the request, or null if the
+     *         retriever was not queued
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
+     */
+    public synchronized RetrievalFuture runBackgroundRetriever(Retriever retriever, double priority)
+    {
+        return this.runRetriever(retriever, priority, true);
+    }
+
+    /**
+     * @return true if the queue has room for background retrievers; background retrievers are limited to half of
+     *         the queue, so that they never prevent other retrievers from being queued
+     */
+    public boolean isBackgroundAvailable()
+    {
+        return this.executor.getQueue().size() < this.queueSize / 2;
+    }
+    // ADDED
+
+    /**
+     * @param retriever  the retriever to run
+     * @param priority   the secondary priority of the retriever, or negative if it is to be the primary priority
+     * @param background is this a low priority background retriever?
+     *
+     * @return a future object that can be used to query the request status of cancel the request.
+     *
+     * @throws IllegalArgumentException if <code>retriever</code> is null or has no name
+     */
+    protected synchronized RetrievalFuture runRetriever(Retriever retriever, double priority, boolean background)
     {
         if (retriever == null)
         {
@@ -396,13 +451,29 @@ public class ExtendedRetrievalService extends WWObjectImpl
             Logging.logger().finer(Logging.getMessage("BasicRetrievalService.ResourceRejected", retriever.getName()));
         }
 
-        RetrievalTask task = new RetrievalTask(retriever, priority);
+        RetrievalTask task = new RetrievalTask(retriever, priority, background);
         retriever.setSubmitTime(System.currentTimeMillis());
 
         // Do not queue duplicates.
-        if (this.activeTasks.contains(task) || this.executor.getQueue().contains(task))
+        if (this.activeTasks.contains(task))
             return null;
 
+        // MODIFIED
+        for (Runnable runnable : this.executor.getQueue())
+        {
+            RetrievalTask queued = (RetrievalTask) runnable;
+            if (!queued.equals(task))
+                continue;
+            if (background || !queued.background || !this.executor.getQueue().remove(queued))
+                return null;
+
+            // Promote the queued background retriever, rather than downloading the same resource twice.
+            task = new RetrievalTask(queued.retriever, priority, false);
+            queued.retriever.setSubmitTime(System.currentTimeMillis());
+            break;
+        }
+        // MODIFIED
+
         this.executor.execute(task);
 
         return task;
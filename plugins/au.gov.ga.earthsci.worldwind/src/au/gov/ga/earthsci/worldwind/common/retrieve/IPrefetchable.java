@@ -0,0 +1,50 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+/**
+ * Represents an object (such as a tiled layer or elevation model) that can
+ * prefetch the tiles it will require for an area of the globe before the
+ * camera reaches that area.
+ * <p/>
+ * Prefetchables register themselves with the {@link TilePrefetcher}, which
+ * calls {@link #prefetch(PrefetchRegion, TilePrefetcher)} for each region
+ * along a predicted camera path.
+ */
+public interface IPrefetchable
+{
+	/**
+	 * @return Should this object prefetch tiles? Generally false if the
+	 *         object is disabled or not displayed.
+	 */
+	boolean isPrefetchEnabled();
+
+	/**
+	 * Prefetch the tiles required to display the given region. Tiles that
+	 * require downloading should be submitted to the prefetcher using
+	 * {@link TilePrefetcher#submitRetriever(gov.nasa.worldwind.retrieve.Retriever, double)}
+	 * , and tiles that only require loading from the local cache using
+	 * {@link TilePrefetcher#submitLocal(Runnable)}.
+	 * <p/>
+	 * Called from the prefetcher's thread.
+	 * 
+	 * @param region
+	 *            Region to prefetch
+	 * @param prefetcher
+	 *            Prefetcher to submit tile requests to
+	 */
+	void prefetch(PrefetchRegion region, TilePrefetcher prefetcher);
+}
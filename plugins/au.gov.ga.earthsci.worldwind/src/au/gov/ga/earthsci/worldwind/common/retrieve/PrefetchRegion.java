@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+
+/**
+ * An area of the globe that the camera is predicted to view, and the texel
+ * size (resolution) that the area will be viewed at. Used by
+ * {@link IPrefetchable}s to determine which tiles to prefetch.
+ */
+public class PrefetchRegion
+{
+	/**
+	 * The size of the prefetched area, as a multiple of the ground area
+	 * visible at the center of the view.
+	 */
+	public static final double VISIBLE_AREA_SCALE = 1.5;
+
+	private final Sector sector;
+	private final double texelSize;
+	private final double priority;
+
+	/**
+	 * Create a new prefetch region.
+	 * 
+	 * @param sector
+	 *            Area to prefetch
+	 * @param texelSize
+	 *            Size of a screen pixel on the globe's surface, in radians
+	 * @param priority
+	 *            Retrieval priority of this region; regions with a smaller
+	 *            value are retrieved first
+	 */
+	public PrefetchRegion(Sector sector, double texelSize, double priority)
+	{
+		this.sector = sector;
+		this.texelSize = texelSize;
+		this.priority = priority;
+	}
+
+	/**
+	 * Create a prefetch region for the area viewed by a camera looking
+	 * straight down at a point on the globe.
+	 * 
+	 * @param center
+	 *            Point on the globe at the center of the view
+	 * @param zoom
+	 *            Distance from the eye to the center point, in meters
+	 * @param fieldOfView
+	 *            Horizontal field of view
+	 * @param viewportWidth
+	 *            Width of the viewport in pixels
+	 * @param globeRadius
+	 *            Radius of the globe in meters
+	 * @param priority
+	 *            Retrieval priority of the region
+	 * @return Prefetch region for the view
+	 */
+	public static PrefetchRegion fromView(LatLon center, double zoom, Angle fieldOfView, double viewportWidth,
+			double globeRadius, double priority)
+	{
+		double pixelSizeScale = 2 * fieldOfView.tanHalfAngle() / (viewportWidth <= 0 ? 1d : viewportWidth);
+		double texelSize = zoom * pixelSizeScale / globeRadius;
+
+		//half the width of the visible ground, in radians, enlarged slightly to include the view's edges
+		double halfExtent = VISIBLE_AREA_SCALE * texelSize * Math.max(1d, viewportWidth) / 2d;
+		double halfLat = Math.min(halfExtent, Math.PI / 2d);
+		double cosLat = Math.max(Math.cos(center.getLatitude().radians), 1e-3);
+		double halfLon = Math.min(halfExtent / cosLat, Math.PI);
+
+		double lat = center.getLatitude().radians;
+		double lon = center.getLongitude().radians;
+		Sector sector =
+				Sector.fromRadians(Math.max(lat - halfLat, -Math.PI / 2d), Math.min(lat + halfLat, Math.PI / 2d),
+						Math.max(lon - halfLon, -Math.PI), Math.min(lon + halfLon, Math.PI));
+		return new PrefetchRegion(sector, texelSize, priority);
+	}
+
+	/**
+	 * @return The area to prefetch
+	 */
+	public Sector getSector()
+	{
+		return sector;
+	}
+
+	/**
+	 * @return The size of a screen pixel on the globe's surface, in radians
+	 */
+	public double getTexelSize()
+	{
+		return texelSize;
+	}
+
+	/**
+	 * @return Retrieval priority of this region; regions with a smaller value
+	 *         are retrieved first
+	 */
+	public double getPriority()
+	{
+		return priority;
+	}
+
+	@Override
+	public String toString()
+	{
+		return sector + " @ " + texelSize + " (priority " + priority + ")";
+	}
+}
@@ -0,0 +1,661 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.retrieve;
+
+import gov.nasa.worldwind.Configuration;
+import gov.nasa.worldwind.View;
+import gov.nasa.worldwind.WorldWind;
+import gov.nasa.worldwind.event.RenderingEvent;
+import gov.nasa.worldwind.event.RenderingListener;
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Position;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.retrieve.RetrievalFuture;
+import gov.nasa.worldwind.retrieve.RetrievalService;
+import gov.nasa.worldwind.retrieve.Retriever;
+import gov.nasa.worldwind.util.Level;
+import gov.nasa.worldwind.util.LevelSet;
+import gov.nasa.worldwind.util.Logging;
+import gov.nasa.worldwind.util.Tile;
+import gov.nasa.worldwind.util.TileKey;
+import gov.nasa.worldwind.view.orbit.OrbitView;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import au.gov.ga.earthsci.worldwind.common.WorldWindowRegistry;
+import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
+import au.gov.ga.earthsci.worldwind.common.util.DaemonThreadFactory;
+
+/**
+ * Predicts the areas of the globe the camera will view, and asks the
+ * registered {@link IPrefetchable}s to request the tiles for those areas
+ * before they are required for rendering.
+ * <p/>
+ * Predictions come from two sources:
+ * <ul>
+ * <li>Camera animations (such as those created by
+ * {@link au.gov.ga.earthsci.worldwind.common.util.FlyToSectorAnimator}), which
+ * call {@link #prefetchFlyTo(OrbitView, Position, Position, double, double)}
+ * with the path they will follow</li>
+ * <li>The velocity of the camera in the rendering world window, which is
+ * extrapolated a short time into the future</li>
+ * </ul>
+ * Prefetch requests are run as background retrievals by the
+ * {@link ExtendedRetrievalService}, so they never delay the retrieval of tiles
+ * required by the current view. The bandwidth used by prefetch requests is
+ * limited by a token bucket (configured using
+ * {@link AVKeyMore#PREFETCH_BANDWIDTH}, in bytes per second), and the number
+ * of outstanding prefetch requests is capped.
+ */
+public class TilePrefetcher
+{
+	/**
+	 * Default maximum prefetch bandwidth, in bytes per second
+	 */
+	public static final long DEFAULT_BANDWIDTH = 512 * 1024;
+	/**
+	 * Default maximum number of prefetch retrievals queued or running at once
+	 */
+	public static final int DEFAULT_MAX_PENDING = 8;
+	/**
+	 * Maximum number of tiles prefetched for a single region and level; if a
+	 * region requires more tiles, a coarser level is prefetched
+	 */
+	public static final int MAX_TILES_PER_REGION = 16;
+	/**
+	 * Number of points sampled along a fly-to path (excluding the
+	 * destination)
+	 */
+	public static final int PATH_SAMPLES = 6;
+	/**
+	 * Minimum time between camera velocity samples, in milliseconds
+	 */
+	public static final long VELOCITY_SAMPLE_INTERVAL = 250;
+	/**
+	 * How far into the future the camera velocity is extrapolated, in
+	 * milliseconds
+	 */
+	public static final long VELOCITY_LOOK_AHEAD = 1500;
+
+	private static final double INITIAL_REQUEST_SIZE = 32 * 1024;
+	private static final int MAX_QUEUED_JOBS = 4;
+
+	private static TilePrefetcher instance;
+
+	/**
+	 * @return The shared tile prefetcher
+	 */
+	public static synchronized TilePrefetcher getInstance()
+	{
+		if (instance == null)
+		{
+			long bandwidth = Configuration.getLongValue(AVKeyMore.PREFETCH_BANDWIDTH, DEFAULT_BANDWIDTH);
+			instance = new TilePrefetcher(bandwidth, DEFAULT_MAX_PENDING);
+			WorldWindowRegistry.INSTANCE.addRenderingListener(instance.velocityListener);
+		}
+		return instance;
+	}
+
+	private final List<WeakReference<IPrefetchable>> prefetchables = new ArrayList<WeakReference<IPrefetchable>>();
+	private final BlockingQueue<List<PrefetchRegion>> jobs = new ArrayBlockingQueue<List<PrefetchRegion>>(
+			MAX_QUEUED_JOBS);
+	private final ThreadPoolExecutor localExecutor;
+	private final List<RetrievalFuture> pending = new ArrayList<RetrievalFuture>();
+	private final RenderingListener velocityListener = new VelocityListener();
+	private Thread thread;
+
+	private volatile boolean enabled = true;
+	private final long bandwidth;
+	private final int maxPending;
+	private double tokens;
+	private long lastRefill = System.currentTimeMillis();
+	private double averageRequestSize = INITIAL_REQUEST_SIZE;
+
+	private final AtomicLong regionCount = new AtomicLong();
+	private final AtomicLong retrieverCount = new AtomicLong();
+	private final AtomicLong localCount = new AtomicLong();
+	private final AtomicLong throttledCount = new AtomicLong();
+	private final AtomicLong bytesRetrieved = new AtomicLong();
+
+	/**
+	 * Create a new tile prefetcher.
+	 * 
+	 * @param bandwidth
+	 *            Maximum prefetch bandwidth, in bytes per second
+	 * @param maxPending
+	 *            Maximum number of prefetch retrievals queued or running at
+	 *            once
+	 */
+	public TilePrefetcher(long bandwidth, int maxPending)
+	{
+		this.bandwidth = bandwidth;
+		this.maxPending = maxPending;
+		this.tokens = bandwidth;
+		localExecutor =
+				new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(maxPending * 4),
+						new DaemonThreadFactory("Tile Prefetcher Local"), new ThreadPoolExecutor.DiscardPolicy());
+		localExecutor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * @return Is prefetching enabled?
+	 */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Enable/disable prefetching.
+	 * 
+	 * @param enabled
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+		if (!enabled)
+		{
+			jobs.clear();
+		}
+	}
+
+	/**
+	 * Register an object to prefetch tiles. Objects are weakly referenced, so
+	 * they don't need to be unregistered when they are no longer used.
+	 * 
+	 * @param prefetchable
+	 *            Object to register
+	 */
+	public void register(IPrefetchable prefetchable)
+	{
+		synchronized (prefetchables)
+		{
+			prefetchables.add(new WeakReference<IPrefetchable>(prefetchable));
+		}
+	}
+
+	/**
+	 * Unregister a registered object.
+	 * 
+	 * @param prefetchable
+	 *            Object to unregister
+	 */
+	public void unregister(IPrefetchable prefetchable)
+	{
+		synchronized (prefetchables)
+		{
+			Iterator<WeakReference<IPrefetchable>> iterator = prefetchables.iterator();
+			while (iterator.hasNext())
+			{
+				IPrefetchable p = iterator.next().get();
+				if (p == null || p == prefetchable)
+				{
+					iterator.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Prefetch the given regions, in order. If the prefetcher is busy, the
+	 * oldest unprocessed prefetch job is discarded, as the camera has likely
+	 * moved on since it was submitted.
+	 * 
+	 * @param regions
+	 *            Regions to prefetch
+	 */
+	public void prefetch(List<PrefetchRegion> regions)
+	{
+		if (!enabled || regions.isEmpty())
+		{
+			return;
+		}
+
+		while (!jobs.offer(regions))
+		{
+			jobs.poll();
+		}
+		ensureThreadStarted();
+	}
+
+	/**
+	 * Prefetch the tiles along the path of a fly-to camera animation. The
+	 * destination is prefetched first, followed by points along the path from
+	 * the beginning position.
+	 * 
+	 * @param view
+	 *            View being animated
+	 * @param beginCenter
+	 *            Center position at the start of the animation
+	 * @param endCenter
+	 *            Center position at the end of the animation
+	 * @param beginZoom
+	 *            Zoom at the start of the animation
+	 * @param endZoom
+	 *            Zoom at the end of the animation
+	 */
+	public void prefetchFlyTo(OrbitView view, Position beginCenter, Position endCenter, double beginZoom,
+			double endZoom)
+	{
+		if (!enabled || view == null || view.getGlobe() == null || beginCenter == null || endCenter == null)
+		{
+			return;
+		}
+
+		double radius = view.getGlobe().getRadius();
+		Angle fieldOfView = view.getFieldOfView();
+		double viewportWidth = view.getViewport().getWidth();
+
+		//the fly-to animators zoom out during the flight, proportionally to the distance travelled
+		double distance = LatLon.greatCircleDistance(beginCenter, endCenter).radians * radius;
+		double peakZoom = Math.max(Math.max(beginZoom, endZoom), distance / 2d);
+
+		List<PrefetchRegion> regions = new ArrayList<PrefetchRegion>(PATH_SAMPLES + 1);
+		regions.add(PrefetchRegion.fromView(endCenter, endZoom, fieldOfView, viewportWidth, radius, 0));
+		for (int i = 1; i <= PATH_SAMPLES; i++)
+		{
+			double t = i / (double) (PATH_SAMPLES + 1);
+			LatLon center = LatLon.interpolateGreatCircle(t, beginCenter, endCenter);
+			double linearZoom = beginZoom + (endZoom - beginZoom) * t;
+			double zoom = Math.max(linearZoom, 4d * t * (1d - t) * peakZoom);
+			regions.add(PrefetchRegion.fromView(center, zoom, fieldOfView, viewportWidth, radius, i));
+		}
+		prefetch(regions);
+	}
+
+	/**
+	 * Submit a retriever for a tile that should be prefetched. The retriever
+	 * is run as a background retrieval if the prefetch bandwidth and pending
+	 * request limits allow it.
+	 * 
+	 * @param retriever
+	 *            Retriever to run
+	 * @param priority
+	 *            Retrieval priority (see {@link PrefetchRegion#getPriority()})
+	 * @return True if the retriever was submitted to the retrieval service
+	 */
+	public synchronized boolean submitRetriever(Retriever retriever, double priority)
+	{
+		RetrievalService service = WorldWind.getRetrievalService();
+		if (!(service instanceof ExtendedRetrievalService))
+		{
+			return false;
+		}
+		ExtendedRetrievalService extendedService = (ExtendedRetrievalService) service;
+
+		purgePending();
+		refillTokens();
+		if (pending.size() >= maxPending || tokens < averageRequestSize || !extendedService.isBackgroundAvailable())
+		{
+			throttledCount.incrementAndGet();
+			return false;
+		}
+
+		RetrievalFuture future = extendedService.runBackgroundRetriever(retriever, priority);
+		if (future == null)
+		{
+			return false;
+		}
+		pending.add(future);
+		tokens -= averageRequestSize;
+		retrieverCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Submit a task that loads a tile from the local cache, such as reading a
+	 * texture into the
+	 * {@link au.gov.ga.earthsci.worldwind.common.layers.delegate.TextureDataCache}
+	 * . Local tasks are run on a single low priority thread; if too many are
+	 * waiting, the task is discarded.
+	 * 
+	 * @param task
+	 *            Task to run
+	 * @return True if the task was queued
+	 */
+	public boolean submitLocal(Runnable task)
+	{
+		if (localExecutor.getQueue().remainingCapacity() == 0)
+		{
+			throttledCount.incrementAndGet();
+			return false;
+		}
+		localExecutor.execute(task);
+		localCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * @return Is the prefetcher able to accept more retrievers?
+	 */
+	public synchronized boolean isRetrieverAvailable()
+	{
+		purgePending();
+		refillTokens();
+		return pending.size() < maxPending && tokens >= averageRequestSize;
+	}
+
+	protected void purgePending()
+	{
+		Iterator<RetrievalFuture> iterator = pending.iterator();
+		while (iterator.hasNext())
+		{
+			RetrievalFuture future = iterator.next();
+			if (future.isDone())
+			{
+				iterator.remove();
+				int length = future.getRetriever().getContentLengthRead();
+				if (length > 0)
+				{
+					bytesRetrieved.addAndGet(length);
+					averageRequestSize = averageRequestSize * 0.9 + length * 0.1;
+				}
+			}
+		}
+	}
+
+	protected void refillTokens()
+	{
+		long now = System.currentTimeMillis();
+		//allow bursts of up to 2 seconds of bandwidth, but always enough for a single request, otherwise
+		//requests larger than the burst size could never be dispatched
+		double capacity = Math.max(bandwidth * 2d, averageRequestSize);
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * bandwidth / 1000d);
+		lastRefill = now;
+	}
+
+	protected synchronized void ensureThreadStarted()
+	{
+		if (thread == null)
+		{
+			thread = DaemonThreadFactory.newThread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					while (true)
+					{
+						try
+						{
+							processJob(jobs.take());
+						}
+						catch (InterruptedException e)
+						{
+							return;
+						}
+						catch (Exception e)
+						{
+							Logging.logger().log(java.util.logging.Level.WARNING, "Error prefetching tiles", e);
+						}
+					}
+				}
+			}, "Tile Prefetcher");
+			thread.start();
+		}
+	}
+
+	protected void processJob(List<PrefetchRegion> regions)
+	{
+		List<IPrefetchable> targets = new ArrayList<IPrefetchable>();
+		synchronized (prefetchables)
+		{
+			Iterator<WeakReference<IPrefetchable>> iterator = prefetchables.iterator();
+			while (iterator.hasNext())
+			{
+				IPrefetchable prefetchable = iterator.next().get();
+				if (prefetchable == null)
+				{
+					iterator.remove();
+				}
+				else if (prefetchable.isPrefetchEnabled())
+				{
+					targets.add(prefetchable);
+				}
+			}
+		}
+
+		for (PrefetchRegion region : regions)
+		{
+			if (!jobs.isEmpty())
+			{
+				//a newer prediction is waiting, so this one is out of date
+				return;
+			}
+			regionCount.incrementAndGet();
+			for (IPrefetchable prefetchable : targets)
+			{
+				prefetchable.prefetch(region, this);
+			}
+		}
+	}
+
+	/**
+	 * Find the level in a level set to prefetch for a region. This is the
+	 * first non-empty level with a texel size no larger than the region's
+	 * texel size, or a coarser level if the region would require more than
+	 * {@link #MAX_TILES_PER_REGION} tiles.
+	 * 
+	 * @param levels
+	 *            Level set to search
+	 * @param region
+	 *            Region to prefetch
+	 * @return Level to prefetch, or null if there is no suitable level
+	 */
+	public static Level getPrefetchLevel(LevelSet levels, PrefetchRegion region)
+	{
+		Sector sector = region.getSector().intersection(levels.getSector());
+		if (sector == null)
+		{
+			return null;
+		}
+
+		Level target = null;
+		for (int i = 0; i < levels.getNumLevels(); i++)
+		{
+			Level level = levels.getLevel(i);
+			if (level.isEmpty())
+			{
+				continue;
+			}
+			target = level;
+			if (level.getTexelSize() <= region.getTexelSize())
+			{
+				break;
+			}
+		}
+
+		while (target != null && countTiles(levels, target, sector) > MAX_TILES_PER_REGION)
+		{
+			Level coarser = null;
+			for (int i = target.getLevelNumber() - 1; i >= 0 && coarser == null; i--)
+			{
+				if (!levels.getLevel(i).isEmpty())
+				{
+					coarser = levels.getLevel(i);
+				}
+			}
+			target = coarser;
+		}
+		return target;
+	}
+
+	/**
+	 * Count the number of tiles in a level that intersect a sector.
+	 * 
+	 * @param levels
+	 *            Level set containing the level
+	 * @param level
+	 *            Level to count tiles for
+	 * @param sector
+	 *            Sector to count tiles in
+	 * @return Number of tiles in the sector
+	 */
+	public static long countTiles(LevelSet levels, Level level, Sector sector)
+	{
+		LatLon delta = level.getTileDelta();
+		LatLon origin = levels.getTileOrigin();
+		long rows =
+				Tile.computeRow(delta.getLatitude(), sector.getMaxLatitude(), origin.getLatitude())
+						- Tile.computeRow(delta.getLatitude(), sector.getMinLatitude(), origin.getLatitude()) + 1;
+		long cols =
+				Tile.computeColumn(delta.getLongitude(), sector.getMaxLongitude(), origin.getLongitude())
+						- Tile.computeColumn(delta.getLongitude(), sector.getMinLongitude(), origin.getLongitude()) + 1;
+		return rows * cols;
+	}
+
+	/**
+	 * Create the keys of the tiles in a level that intersect a sector.
+	 * 
+	 * @param levels
+	 *            Level set containing the level
+	 * @param level
+	 *            Level to create tile keys for
+	 * @param sector
+	 *            Sector to create tile keys in
+	 * @return Keys of the tiles in the sector
+	 */
+	public static List<TileKey> getTileKeys(LevelSet levels, Level level, Sector sector)
+	{
+		LatLon delta = level.getTileDelta();
+		LatLon origin = levels.getTileOrigin();
+		int firstRow = Tile.computeRow(delta.getLatitude(), sector.getMinLatitude(), origin.getLatitude());
+		int lastRow = Tile.computeRow(delta.getLatitude(), sector.getMaxLatitude(), origin.getLatitude());
+		int firstCol = Tile.computeColumn(delta.getLongitude(), sector.getMinLongitude(), origin.getLongitude());
+		int lastCol = Tile.computeColumn(delta.getLongitude(), sector.getMaxLongitude(), origin.getLongitude());
+
+		List<TileKey> keys = new ArrayList<TileKey>((lastRow - firstRow + 1) * (lastCol - firstCol + 1));
+		for (int row = firstRow; row <= lastRow; row++)
+		{
+			for (int col = firstCol; col <= lastCol; col++)
+			{
+				keys.add(new TileKey(level.getLevelNumber(), row, col, level.getCacheName()));
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * @return Number of regions that have been prefetched
+	 */
+	public long getRegionCount()
+	{
+		return regionCount.get();
+	}
+
+	/**
+	 * @return Number of prefetch retrievers submitted to the retrieval service
+	 */
+	public long getRetrieverCount()
+	{
+		return retrieverCount.get();
+	}
+
+	/**
+	 * @return Number of local tile loads submitted
+	 */
+	public long getLocalCount()
+	{
+		return localCount.get();
+	}
+
+	/**
+	 * @return Number of prefetch requests rejected because of the bandwidth
+	 *         or pending request limits
+	 */
+	public long getThrottledCount()
+	{
+		return throttledCount.get();
+	}
+
+	/**
+	 * @return Total number of bytes downloaded by completed prefetch
+	 *         retrievers
+	 */
+	public long getBytesRetrieved()
+	{
+		return bytesRetrieved.get();
+	}
+
+	/**
+	 * {@link RenderingListener} that samples the velocity of the rendering
+	 * view, and prefetches the area the view will be looking at shortly if it
+	 * continues at the same velocity.
+	 */
+	protected class VelocityListener implements RenderingListener
+	{
+		private long lastTime;
+		private LatLon lastCenter;
+		private double lastZoom;
+
+		@Override
+		public void stageChanged(RenderingEvent event)
+		{
+			if (!enabled || !RenderingEvent.BEFORE_RENDERING.equals(event.getStage()))
+			{
+				return;
+			}
+
+			long now = System.currentTimeMillis();
+			if (now - lastTime < VELOCITY_SAMPLE_INTERVAL)
+			{
+				return;
+			}
+
+			View view = WorldWindowRegistry.INSTANCE.getRenderingView();
+			if (!(view instanceof OrbitView) || view.getGlobe() == null)
+			{
+				lastCenter = null;
+				return;
+			}
+
+			OrbitView orbitView = (OrbitView) view;
+			LatLon center = orbitView.getCenterPosition();
+			double zoom = orbitView.getZoom();
+			if (lastCenter != null && now - lastTime < VELOCITY_SAMPLE_INTERVAL * 4)
+			{
+				double scale = VELOCITY_LOOK_AHEAD / (double) (now - lastTime);
+				Angle distance = LatLon.greatCircleDistance(lastCenter, center);
+				double radius = view.getGlobe().getRadius();
+				double visibleWidth = zoom * 2 * view.getFieldOfView().tanHalfAngle() / radius;
+
+				//only prefetch if the view is moving more than a small fraction of the visible area
+				if (distance.radians > visibleWidth * 0.05 || Math.abs(zoom - lastZoom) > zoom * 0.05)
+				{
+					Angle azimuth = LatLon.greatCircleAzimuth(lastCenter, center);
+					LatLon predictedCenter =
+							LatLon.greatCircleEndPosition(center, azimuth, distance.multiply(scale));
+					double predictedZoom = Math.max(1d, zoom + (zoom - lastZoom) * scale);
+					prefetch(Collections.singletonList(PrefetchRegion.fromView(predictedCenter,
+							predictedZoom, view.getFieldOfView(), view.getViewport().getWidth(), radius, 0)));
+				}
+			}
+
+			lastTime = now;
+			lastCenter = center;
+			lastZoom = zoom;
+		}
+	}
+}
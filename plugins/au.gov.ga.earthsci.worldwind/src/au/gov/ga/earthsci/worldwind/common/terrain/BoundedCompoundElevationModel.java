@@ -22,11 +22,12 @@ import au.gov.ga.earthsci.worldwind.common.layers.Bounded;
 
 /**
  * Extension to {@link CompoundElevationModel} that implements the
- * {@link Bounded} interface.
+ * {@link Bounded} and {@link IBulkElevationModel} interfaces.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class BoundedCompoundElevationModel extends CompoundElevationModel implements Bounded
+public class BoundedCompoundElevationModel extends CompoundElevationModel implements Bounded,
+		IBulkElevationModel
 {
 	@Override
 	public Sector getSector()
@@ -45,4 +46,10 @@ public class BoundedCompoundElevationModel extends CompoundElevationModel implem
 		}
 		return sector;
 	}
+
+	@Override
+	public double getElevations(double[] lats, double[] lons, double[] out, double targetResolution)
+	{
+		return BulkElevationHelper.getElevations(this, lats, lons, out, targetResolution);
+	}
 }
@@ -0,0 +1,388 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.terrain;
+
+import gov.nasa.worldwind.geom.Angle;
+import gov.nasa.worldwind.geom.LatLon;
+import gov.nasa.worldwind.geom.Sector;
+import gov.nasa.worldwind.globes.ElevationModel;
+import gov.nasa.worldwind.terrain.BasicElevationModel;
+import gov.nasa.worldwind.terrain.CompoundElevationModel;
+import gov.nasa.worldwind.util.Level;
+import gov.nasa.worldwind.util.LevelSet;
+import gov.nasa.worldwind.util.Logging;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Helper class that implements
+ * {@link IBulkElevationModel#getElevations(double[], double[], double[], double)}
+ * for {@link CompoundElevationModel}s.
+ * <p/>
+ * Like {@link CompoundElevationModel#getUnmappedElevation(Angle, Angle)}, the
+ * child models are queried from the highest resolution to the lowest, and each
+ * location takes its elevation from the first model that has data for it. For
+ * {@link BasicElevationModel} children, the locations are grouped by the tile
+ * that contains them at the target resolution, and each group is resolved with
+ * a single call to
+ * {@link ElevationModel#getUnmappedElevations(Sector, List, double, double[])}
+ * covering only that tile.
+ */
+public class BulkElevationHelper
+{
+	/**
+	 * Get the elevations at a list of locations from a compound elevation
+	 * model.
+	 * 
+	 * @param model
+	 *            Compound model to get elevations from
+	 * @param lats
+	 *            Latitudes of the locations, in degrees
+	 * @param lons
+	 *            Longitudes of the locations, in degrees
+	 * @param out
+	 *            Array to store the elevations in
+	 * @param targetResolution
+	 *            Desired horizontal resolution, in radians of latitude
+	 * @return The worst resolution achieved, in radians of latitude
+	 * @see IBulkElevationModel#getElevations(double[], double[], double[],
+	 *      double)
+	 */
+	public static double getElevations(CompoundElevationModel model, double[] lats, double[] lons, double[] out,
+			double targetResolution)
+	{
+		if (lats == null || lons == null || out == null)
+		{
+			String msg = Logging.getMessage("nullValue.ArrayIsNull");
+			Logging.logger().severe(msg);
+			throw new IllegalArgumentException(msg);
+		}
+		if (lons.length < lats.length || out.length < lats.length)
+		{
+			String msg = Logging.getMessage("generic.ArrayInvalidLength", Math.min(lons.length, out.length));
+			Logging.logger().severe(msg);
+			throw new IllegalArgumentException(msg);
+		}
+
+		//NaN marks the locations that haven't been resolved yet
+		int count = lats.length;
+		Arrays.fill(out, 0, count, Double.NaN);
+		double resolution = getUnmappedElevations(model, lats, lons, out, count, targetResolution);
+
+		double replacement = model.getMissingDataReplacement();
+		for (int i = 0; i < count; i++)
+		{
+			if (Double.isNaN(out[i]))
+			{
+				out[i] = replacement;
+			}
+		}
+		return resolution;
+	}
+
+	/**
+	 * Fill the unresolved (NaN) entries of <code>out</code> from the child
+	 * models of a compound model.
+	 */
+	protected static double getUnmappedElevations(CompoundElevationModel model, double[] lats, double[] lons,
+			double[] out, int count, double targetResolution)
+	{
+		double resolution = -1;
+		List<ElevationModel> models = model.getElevationModels();
+		for (int i = models.size() - 1; i >= 0; i--)
+		{
+			ElevationModel child = models.get(i);
+			if (!child.isEnabled())
+			{
+				continue;
+			}
+
+			double r;
+			if (child instanceof CompoundElevationModel)
+			{
+				r = getUnmappedElevations((CompoundElevationModel) child, lats, lons, out, count, targetResolution);
+			}
+			else if (child instanceof BasicElevationModel)
+			{
+				r = getTileGroupedElevations((BasicElevationModel) child, lats, lons, out, count, targetResolution);
+			}
+			else
+			{
+				r = getPointElevations(child, lats, lons, out, count);
+			}
+			if (r >= 0 && r < Double.MAX_VALUE)
+			{
+				resolution = Math.max(resolution, r);
+			}
+
+			if (countUnresolved(out, count) == 0)
+			{
+				break;
+			}
+		}
+		return resolution < 0 ? Double.MAX_VALUE : resolution;
+	}
+
+	/**
+	 * Fill the unresolved entries of <code>out</code> from a tiled elevation
+	 * model, resolving each tile once.
+	 */
+	protected static double getTileGroupedElevations(BasicElevationModel model, double[] lats, double[] lons,
+			double[] out, int count, double targetResolution)
+	{
+		LevelSet levels = model.getLevels();
+		Level level = getTargetLevel(levels, targetResolution);
+		if (level == null)
+		{
+			return -1;
+		}
+
+		Sector sector = levels.getSector();
+		double minLat = sector.getMinLatitude().degrees;
+		double maxLat = sector.getMaxLatitude().degrees;
+		double minLon = sector.getMinLongitude().degrees;
+		double maxLon = sector.getMaxLongitude().degrees;
+		double dLat = level.getTileDelta().getLatitude().degrees;
+		double dLon = level.getTileDelta().getLongitude().degrees;
+		double originLat = levels.getTileOrigin().getLatitude().degrees;
+		double originLon = levels.getTileOrigin().getLongitude().degrees;
+
+		//calculate the tile containing each unresolved location within the model's sector
+		int[] indices = new int[count];
+		int[] rows = new int[count];
+		int[] cols = new int[count];
+		int n = 0;
+		int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+		int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+		for (int i = 0; i < count; i++)
+		{
+			double lat = lats[i];
+			double lon = lons[i];
+			if (!Double.isNaN(out[i]) || lat < minLat || lat > maxLat || lon < minLon || lon > maxLon)
+			{
+				continue;
+			}
+			int row = (int) Math.floor((lat - originLat) / dLat);
+			int col = (int) Math.floor((lon - originLon) / dLon);
+			indices[n] = i;
+			rows[n] = row;
+			cols[n] = col;
+			n++;
+			minRow = Math.min(minRow, row);
+			maxRow = Math.max(maxRow, row);
+			minCol = Math.min(minCol, col);
+			maxCol = Math.max(maxCol, col);
+		}
+		if (n == 0)
+		{
+			return -1;
+		}
+
+		int[] order = sortByTile(rows, cols, n, minRow, maxRow, minCol, maxCol);
+
+		double resolution = -1;
+		double missingDataSignal = model.getMissingDataSignal();
+		List<LatLon> latlons = new ArrayList<LatLon>();
+		double[] buffer = new double[n];
+		int start = 0;
+		while (start < n)
+		{
+			//find the run of locations within the same tile
+			int row = rows[order[start]];
+			int col = cols[order[start]];
+			int end = start + 1;
+			while (end < n && rows[order[end]] == row && cols[order[end]] == col)
+			{
+				end++;
+			}
+
+			//resolve the elevations for the run's bounding sector, which is within a single tile
+			latlons.clear();
+			double groupMinLat = Double.MAX_VALUE, groupMaxLat = -Double.MAX_VALUE;
+			double groupMinLon = Double.MAX_VALUE, groupMaxLon = -Double.MAX_VALUE;
+			for (int k = start; k < end; k++)
+			{
+				int i = indices[order[k]];
+				latlons.add(LatLon.fromDegrees(lats[i], lons[i]));
+				groupMinLat = Math.min(groupMinLat, lats[i]);
+				groupMaxLat = Math.max(groupMaxLat, lats[i]);
+				groupMinLon = Math.min(groupMinLon, lons[i]);
+				groupMaxLon = Math.max(groupMaxLon, lons[i]);
+			}
+			Arrays.fill(buffer, 0, end - start, Double.NaN);
+			Sector groupSector = Sector.fromDegrees(groupMinLat, groupMaxLat, groupMinLon, groupMaxLon);
+			double r = model.getUnmappedElevations(groupSector, latlons, targetResolution, buffer);
+			if (r >= 0 && r < Double.MAX_VALUE)
+			{
+				resolution = Math.max(resolution, r);
+			}
+
+			for (int k = start; k < end; k++)
+			{
+				double elevation = buffer[k - start];
+				if (!Double.isNaN(elevation) && elevation != missingDataSignal)
+				{
+					out[indices[order[k]]] = elevation;
+				}
+			}
+			start = end;
+		}
+		return resolution;
+	}
+
+	/**
+	 * Fill the unresolved entries of <code>out</code> one location at a time,
+	 * for elevation models that aren't tiled.
+	 */
+	protected static double getPointElevations(ElevationModel model, double[] lats, double[] lons, double[] out,
+			int count)
+	{
+		boolean any = false;
+		double missingDataSignal = model.getMissingDataSignal();
+		for (int i = 0; i < count; i++)
+		{
+			if (!Double.isNaN(out[i]))
+			{
+				continue;
+			}
+			Angle lat = Angle.fromDegrees(lats[i]);
+			Angle lon = Angle.fromDegrees(lons[i]);
+			if (!model.contains(lat, lon))
+			{
+				continue;
+			}
+			double elevation = model.getUnmappedElevation(lat, lon);
+			if (elevation != missingDataSignal)
+			{
+				out[i] = elevation;
+				any = true;
+			}
+		}
+		return any ? model.getBestResolution(null) : -1;
+	}
+
+	/**
+	 * Sort the given tile rows/columns, returning the sorted order as an array
+	 * of indices into the rows/columns arrays. Locations in the same tile are
+	 * adjacent in the returned order.
+	 * 
+	 * @param rows
+	 *            Tile row of each location
+	 * @param cols
+	 *            Tile column of each location
+	 * @param n
+	 *            Number of locations
+	 * @param minRow
+	 *            Minimum value in rows
+	 * @param maxRow
+	 *            Maximum value in rows
+	 * @param minCol
+	 *            Minimum value in cols
+	 * @param maxCol
+	 *            Maximum value in cols
+	 * @return Order of the locations, grouped by tile
+	 */
+	public static int[] sortByTile(final int[] rows, final int[] cols, int n, int minRow, int maxRow, int minCol,
+			int maxCol)
+	{
+		int[] order = new int[n];
+		long colSpan = (long) maxCol - minCol + 1;
+		long tileSpan = ((long) maxRow - minRow + 1) * colSpan;
+		if (tileSpan > Integer.MAX_VALUE)
+		{
+			//too many tiles to pack into a sort key; sort the boxed indices by row then column instead (the
+			//object sort is stable, so locations keep their original order within each tile)
+			Integer[] boxed = new Integer[n];
+			for (int i = 0; i < n; i++)
+			{
+				boxed[i] = i;
+			}
+			Arrays.sort(boxed, new Comparator<Integer>()
+			{
+				@Override
+				public int compare(Integer o1, Integer o2)
+				{
+					int r1 = rows[o1], r2 = rows[o2];
+					if (r1 != r2)
+					{
+						return r1 < r2 ? -1 : 1;
+					}
+					int c1 = cols[o1], c2 = cols[o2];
+					return c1 < c2 ? -1 : c1 == c2 ? 0 : 1;
+				}
+			});
+			for (int i = 0; i < n; i++)
+			{
+				order[i] = boxed[i];
+			}
+			return order;
+		}
+
+		//pack the tile index into the high bits and the location index into the low bits, and sort
+		long[] keys = new long[n];
+		for (int i = 0; i < n; i++)
+		{
+			long tile = (rows[i] - minRow) * colSpan + (cols[i] - minCol);
+			keys[i] = (tile << 32) | i;
+		}
+		Arrays.sort(keys);
+		for (int i = 0; i < n; i++)
+		{
+			order[i] = (int) keys[i];
+		}
+		return order;
+	}
+
+	/**
+	 * Find the level to use for the target resolution; the first non-empty
+	 * level with a texel size no larger than the target resolution, or the
+	 * last non-empty level if no level is fine enough.
+	 */
+	protected static Level getTargetLevel(LevelSet levels, double targetResolution)
+	{
+		Level target = null;
+		for (int i = 0; i < levels.getNumLevels(); i++)
+		{
+			Level level = levels.getLevel(i);
+			if (level.isEmpty())
+			{
+				continue;
+			}
+			target = level;
+			if (level.getTexelSize() <= targetResolution)
+			{
+				break;
+			}
+		}
+		return target;
+	}
+
+	private static int countUnresolved(double[] out, int count)
+	{
+		int unresolved = 0;
+		for (int i = 0; i < count; i++)
+		{
+			if (Double.isNaN(out[i]))
+			{
+				unresolved++;
+			}
+		}
+		return unresolved;
+	}
+}
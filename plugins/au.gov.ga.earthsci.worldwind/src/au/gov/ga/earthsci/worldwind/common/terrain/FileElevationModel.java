@@ -25,9 +25,11 @@ import gov.nasa.worldwind.util.Tile;
 import gov.nasa.worldwind.util.TileKey;
 import gov.nasa.worldwind.util.TileUrlBuilder;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 
 import org.w3c.dom.Element;
 
@@ -39,6 +41,10 @@ import au.gov.ga.earthsci.worldwind.common.util.Util;
 /**
  * Elevation model that retrieves its elevation data from elevation tiles stored
  * in a directory in the local file system.
+ * <p/>
+ * If a {@link PackedElevationPyramid} file exists alongside the tileset
+ * directory (for example <code>Ternary.pyramid</code>), the tiles are read
+ * from the memory-mapped pyramid instead of from individual tile files.
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
@@ -71,6 +77,9 @@ public class FileElevationModel extends BoundedBasicElevationModel
 	protected static class FileURLBuilder implements TileUrlBuilder
 	{
 		private URL context;
+		private boolean pyramidSearched = false;
+		private File pyramidFile;
+		private PackedElevationPyramid pyramid;
 
 		public FileURLBuilder(URL context)
 		{
@@ -80,9 +89,60 @@ public class FileElevationModel extends BoundedBasicElevationModel
 		@Override
 		public URL getURL(Tile tile, String imageFormat) throws MalformedURLException
 		{
+			PackedElevationPyramid pyramid = getPyramid(tile);
+			if (pyramid != null)
+			{
+				//the tile's position in the pyramid is identified by the URL's fragment
+				if (!pyramid.contains(tile.getLevelNumber(), tile.getRow(), tile.getColumn()))
+				{
+					return null;
+				}
+				return new URL(pyramid.getFile().toURI().toURL(), "#" + tile.getLevelNumber() + "/" + tile.getRow()
+						+ "/" + tile.getColumn());
+			}
+
 			return Util.getLocalTileURL(tile.getLevel().getService(), tile.getLevel().getDataset(),
 										tile.getLevelNumber(), tile.getRow(), tile.getColumn(), context, imageFormat, "bil");
 		}
+
+		protected synchronized PackedElevationPyramid getPyramid(Tile tile)
+		{
+			if (!pyramidSearched)
+			{
+				pyramidSearched = true;
+				pyramidFile =
+						Util.getLocalTilesetFile(tile.getLevel().getService(), tile.getLevel().getDataset(), context,
+								PackedElevationPyramid.EXTENSION);
+			}
+			if (pyramidFile == null)
+			{
+				return null;
+			}
+
+			//get the shared reader each time, as it is replaced if the file changes
+			try
+			{
+				pyramid = PackedElevationPyramid.open(pyramidFile);
+				return pyramid;
+			}
+			catch (IOException e)
+			{
+				String msg = "Error opening packed elevation pyramid " + pyramidFile;
+				Logging.logger().log(java.util.logging.Level.WARNING, msg, e);
+				pyramidFile = null;
+				pyramid = null;
+				return null;
+			}
+		}
+
+		/**
+		 * @return The pyramid last returned by {@link #getPyramid(Tile)}, or
+		 *         null if there is none
+		 */
+		protected synchronized PackedElevationPyramid getPyramid()
+		{
+			return pyramid;
+		}
 	}
 
 	protected String getImageFormat()
@@ -95,6 +155,16 @@ public class FileElevationModel extends BoundedBasicElevationModel
 		return null;
 	}
 
+	protected FileURLBuilder getURLBuilder()
+	{
+		AVList params = (AVList) getValue(AVKey.CONSTRUCTION_PARAMETERS);
+		if (params != null && params.getValue(AVKey.TILE_URL_BUILDER) instanceof FileURLBuilder)
+		{
+			return (FileURLBuilder) params.getValue(AVKey.TILE_URL_BUILDER);
+		}
+		return null;
+	}
+
 	@Override
 	protected void requestTile(TileKey key)
 	{
@@ -115,7 +185,12 @@ public class FileElevationModel extends BoundedBasicElevationModel
 	@Override
 	protected BufferWrapper readElevations(URL url) throws IOException
 	{
-		//overridden to handle unzipping the file if required
+		//overridden to handle unzipping the file if required, and reading from packed pyramids
+
+		if (url.getRef() != null && URLUtil.isForResourceWithExtension(url, PackedElevationPyramid.EXTENSION))
+		{
+			return readPackedElevations(url);
+		}
 
 		if (!URLUtil.isForResourceWithExtension(url, "zip"))
 		{
@@ -133,6 +208,40 @@ public class FileElevationModel extends BoundedBasicElevationModel
 		}
 	}
 
+	/**
+	 * Read a tile's elevations from a packed pyramid. The URL points to the
+	 * pyramid file, and the URL's fragment contains the tile's
+	 * level/row/column. The pyramid that created the URL is reused, so reading
+	 * a tile doesn't check the file for changes again.
+	 */
+	protected BufferWrapper readPackedElevations(URL url) throws IOException
+	{
+		String[] split = url.getRef().split("/");
+		File file = URLUtil.urlToFile(new URL(url.getProtocol(), url.getHost(), url.getPort(), url.getFile()));
+		if (split.length != 3 || file == null)
+		{
+			throw new IOException("Invalid packed elevation pyramid tile URL: " + url);
+		}
+
+		FileURLBuilder urlBuilder = getURLBuilder();
+		PackedElevationPyramid pyramid = urlBuilder != null ? urlBuilder.getPyramid() : null;
+		if (pyramid == null || !pyramid.getFile().equals(file.getAbsoluteFile()))
+		{
+			pyramid = PackedElevationPyramid.open(file);
+		}
+		ByteBuffer buffer =
+				pyramid.readTile(Integer.parseInt(split[0]), Integer.parseInt(split[1]), Integer.parseInt(split[2]));
+		if (buffer == null)
+		{
+			return null;
+		}
+
+		AVList bufferParams = new AVListImpl();
+		bufferParams.setValue(AVKey.DATA_TYPE, this.getElevationDataType());
+		bufferParams.setValue(AVKey.BYTE_ORDER, this.getElevationDataByteOrder());
+		return BufferWrapper.wrap(buffer, bufferParams);
+	}
+
 	/**
 	 * This {@link RequestTask} creates elevation tile requests passing the
 	 * image format returned by the getImageFormat() function. It also skips
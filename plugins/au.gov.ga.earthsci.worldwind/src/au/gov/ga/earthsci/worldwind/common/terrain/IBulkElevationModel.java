@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.terrain;
+
+import gov.nasa.worldwind.globes.ElevationModel;
+
+/**
+ * {@link ElevationModel} that supports retrieving the elevations of many
+ * locations in a single call. Elevation requests are grouped by tile, so each
+ * tile is only resolved once, instead of once per location as when calling
+ * {@link ElevationModel#getElevation(gov.nasa.worldwind.geom.Angle, gov.nasa.worldwind.geom.Angle)}
+ * for each location.
+ */
+public interface IBulkElevationModel extends ElevationModel
+{
+	/**
+	 * Get the elevations at a list of locations.
+	 * <p/>
+	 * Locations without elevation data are set to the model's missing data
+	 * replacement value.
+	 * 
+	 * @param lats
+	 *            Latitudes of the locations, in degrees
+	 * @param lons
+	 *            Longitudes of the locations, in degrees
+	 * @param out
+	 *            Array to store the elevations in; must be at least as long
+	 *            as <code>lats</code>
+	 * @param targetResolution
+	 *            Desired horizontal resolution, in radians of latitude
+	 * @return The worst resolution achieved, in radians of latitude, or
+	 *         {@link Double#MAX_VALUE} if no elevation data was available
+	 */
+	double getElevations(double[] lats, double[] lons, double[] out, double targetResolution);
+}
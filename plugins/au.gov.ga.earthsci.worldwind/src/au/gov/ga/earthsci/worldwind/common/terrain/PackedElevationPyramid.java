@@ -0,0 +1,464 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.terrain;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reader for a packed elevation pyramid: a single file containing all the
+ * elevation tiles of a tileset, which replaces the standard directory
+ * structure of one file per tile (see
+ * {@link au.gov.ga.earthsci.worldwind.common.util.Util#getLocalTileURL}).
+ * <p/>
+ * The file is memory-mapped (if smaller than 2GB), so reading a tile is a
+ * binary search of the in-memory index followed by a copy from the mapped
+ * file. Tiles are copied so that the mapping can be released when the reader
+ * is closed.
+ * <p/>
+ * Readers are shared between models by {@link #open(File)}. A shared reader
+ * is replaced if the file's length or modification time changes (checked at
+ * most every {@link #CHECK_INTERVAL} milliseconds), and can be released with
+ * {@link #evict(File)}.
+ * <p/>
+ * File format (big-endian):
+ * <ul>
+ * <li>Header: magic number (int), version (int), flags (int), tile count
+ * (int)</li>
+ * <li>Index: one entry per tile, sorted by level, row and column; each entry
+ * contains the level (int), row (int), column (int), data offset (long), data
+ * length (int) and uncompressed data length (int)</li>
+ * <li>Tile data: the raw elevation data of each tile, deflated if the
+ * {@link #FLAG_DEFLATE} flag is set</li>
+ * </ul>
+ * Files are created using the {@link PackedElevationPyramidConverter}.
+ */
+public class PackedElevationPyramid
+{
+	/**
+	 * File extension of packed elevation pyramids
+	 */
+	public static final String EXTENSION = "pyramid";
+	/**
+	 * Magic number at the start of the file ("GAEP")
+	 */
+	public static final int MAGIC = 0x47414550;
+	/**
+	 * Current file format version
+	 */
+	public static final int VERSION = 1;
+	/**
+	 * Flag set when the tile data is compressed using {@link Inflater}
+	 */
+	public static final int FLAG_DEFLATE = 1;
+	/**
+	 * Size of the file header in bytes
+	 */
+	public static final int HEADER_SIZE = 16;
+	/**
+	 * Size of each index entry in bytes
+	 */
+	public static final int INDEX_ENTRY_SIZE = 28;
+	/**
+	 * Minimum time in milliseconds between checks of whether a shared
+	 * reader's file has changed
+	 */
+	public static final long CHECK_INTERVAL = 1000;
+
+	private static final Map<File, PackedElevationPyramid> open = new HashMap<File, PackedElevationPyramid>();
+
+	/**
+	 * Get the shared reader for a pyramid file, opening it if required. If
+	 * the file has changed since the shared reader was opened, the reader is
+	 * closed and the file is reopened. The file is checked for changes at most
+	 * every {@link #CHECK_INTERVAL} milliseconds.
+	 * 
+	 * @param file
+	 *            Pyramid file
+	 * @return Reader for the file
+	 * @throws IOException
+	 *             If the file could not be opened
+	 */
+	public static PackedElevationPyramid open(File file) throws IOException
+	{
+		return open(file, CHECK_INTERVAL);
+	}
+
+	/**
+	 * Get the shared reader for a pyramid file, checking the file for changes
+	 * if it hasn't been checked within the given interval.
+	 * 
+	 * @see #open(File)
+	 */
+	protected static PackedElevationPyramid open(File file, long checkInterval) throws IOException
+	{
+		file = file.getAbsoluteFile();
+		synchronized (open)
+		{
+			PackedElevationPyramid pyramid = open.get(file);
+			if (pyramid != null && !pyramid.isCurrent(checkInterval))
+			{
+				pyramid.close();
+				pyramid = null;
+			}
+			if (pyramid == null)
+			{
+				pyramid = new PackedElevationPyramid(file);
+				open.put(file, pyramid);
+			}
+			return pyramid;
+		}
+	}
+
+	/**
+	 * Close the shared reader for a pyramid file, if one is open, releasing
+	 * the file mapping. The file is reopened by the next call to
+	 * {@link #open(File)}.
+	 * 
+	 * @param file
+	 *            Pyramid file
+	 */
+	public static void evict(File file) throws IOException
+	{
+		PackedElevationPyramid pyramid;
+		synchronized (open)
+		{
+			pyramid = open.get(file.getAbsoluteFile());
+		}
+		if (pyramid != null)
+		{
+			pyramid.close();
+		}
+	}
+
+	/**
+	 * Create the key used to sort and search the index.
+	 */
+	public static long createKey(int level, int row, int col)
+	{
+		if (level < 0 || level > 0x7f || row < 0 || row > 0xfffffff || col < 0 || col > 0xfffffff)
+		{
+			throw new IllegalArgumentException("Tile out of range: " + level + "/" + row + "/" + col);
+		}
+		return ((long) level << 56) | ((long) row << 28) | col;
+	}
+
+	private final File file;
+	private final long length;
+	private final long lastModified;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final ByteBuffer mapped;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private boolean closed = false;
+	private long lastChecked;
+	private final boolean deflated;
+	private final long[] keys;
+	private final long[] offsets;
+	private final int[] lengths;
+	private final int[] rawLengths;
+
+	protected PackedElevationPyramid(File file) throws IOException
+	{
+		this.file = file;
+		this.length = file.length();
+		this.lastModified = file.lastModified();
+		this.lastChecked = System.currentTimeMillis();
+		raf = new RandomAccessFile(file, "r");
+		try
+		{
+			channel = raf.getChannel();
+			long size = channel.size();
+			mapped = size <= Integer.MAX_VALUE ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+
+			ByteBuffer header = read(0, HEADER_SIZE);
+			if (header.getInt() != MAGIC)
+			{
+				throw new IOException("Not a packed elevation pyramid: " + file);
+			}
+			int version = header.getInt();
+			if (version > VERSION)
+			{
+				throw new IOException("Unsupported packed elevation pyramid version " + version + ": " + file);
+			}
+			deflated = (header.getInt() & FLAG_DEFLATE) != 0;
+			int count = header.getInt();
+
+			keys = new long[count];
+			offsets = new long[count];
+			lengths = new int[count];
+			rawLengths = new int[count];
+			ByteBuffer index = read(HEADER_SIZE, count * INDEX_ENTRY_SIZE);
+			for (int i = 0; i < count; i++)
+			{
+				keys[i] = createKey(index.getInt(), index.getInt(), index.getInt());
+				offsets[i] = index.getLong();
+				lengths[i] = index.getInt();
+				rawLengths[i] = index.getInt();
+				if (i > 0 && keys[i] <= keys[i - 1])
+				{
+					throw new IOException("Packed elevation pyramid index is not sorted: " + file);
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			unmap();
+			raf.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return The pyramid file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	/**
+	 * @return Is this reader open, and are the file's length and modification
+	 *         time unchanged since it was opened?
+	 */
+	public boolean isCurrent()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return !closed && file.length() == length && file.lastModified() == lastModified;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Check if this reader is current, only checking the file if it hasn't
+	 * been checked within the given interval. Must be called while
+	 * synchronized on the shared readers.
+	 */
+	private boolean isCurrent(long checkInterval)
+	{
+		long currentTime = System.currentTimeMillis();
+		if (currentTime - lastChecked < checkInterval)
+		{
+			return !isClosed();
+		}
+		lastChecked = currentTime;
+		return isCurrent();
+	}
+
+	private boolean isClosed()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return closed;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return Number of tiles in the pyramid
+	 */
+	public int getTileCount()
+	{
+		return keys.length;
+	}
+
+	/**
+	 * @return Is the tile data compressed?
+	 */
+	public boolean isDeflated()
+	{
+		return deflated;
+	}
+
+	/**
+	 * Does this pyramid contain the given tile?
+	 */
+	public boolean contains(int level, int row, int col)
+	{
+		return Arrays.binarySearch(keys, createKey(level, row, col)) >= 0;
+	}
+
+	/**
+	 * Read the elevation data for a tile.
+	 * 
+	 * @param level
+	 *            Tile level
+	 * @param row
+	 *            Tile row
+	 * @param col
+	 *            Tile column
+	 * @return Buffer containing the tile's raw elevation data, or null if the
+	 *         tile is not in the pyramid
+	 * @throws IOException
+	 *             If the tile data could not be read, or this reader has been
+	 *             closed
+	 */
+	public ByteBuffer readTile(int level, int row, int col) throws IOException
+	{
+		int i = Arrays.binarySearch(keys, createKey(level, row, col));
+		if (i < 0)
+		{
+			return null;
+		}
+
+		//copy the data while holding the read lock, so the mapping can't be released while it's being read
+		byte[] data = new byte[lengths[i]];
+		lock.readLock().lock();
+		try
+		{
+			if (closed)
+			{
+				throw new IOException("Packed elevation pyramid is closed: " + file);
+			}
+			read(offsets[i], lengths[i]).get(data);
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+		if (!deflated)
+		{
+			return ByteBuffer.wrap(data);
+		}
+
+		byte[] compressed = data;
+		byte[] raw = new byte[rawLengths[i]];
+		Inflater inflater = new Inflater();
+		try
+		{
+			inflater.setInput(compressed);
+			int length = inflater.inflate(raw);
+			if (length != raw.length || !inflater.finished())
+			{
+				throw new IOException("Corrupt tile " + level + "/" + row + "/" + col + " in " + file);
+			}
+		}
+		catch (DataFormatException e)
+		{
+			throw new IOException("Corrupt tile " + level + "/" + row + "/" + col + " in " + file, e);
+		}
+		finally
+		{
+			inflater.end();
+		}
+		return ByteBuffer.wrap(raw);
+	}
+
+	/**
+	 * Close the file and release the file mapping. If this is the shared
+	 * reader returned by {@link #open(File)}, the next call to open the file
+	 * opens a new reader.
+	 */
+	public void close() throws IOException
+	{
+		synchronized (open)
+		{
+			if (open.get(file) == this)
+			{
+				open.remove(file);
+			}
+		}
+		lock.writeLock().lock();
+		try
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+			unmap();
+			raf.close();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Release the file mapping, rather than waiting for the mapped buffer to
+	 * be garbage collected (which keeps the file locked on Windows). Buffers
+	 * returned by {@link #readTile(int, int, int)} are copies, so no views of
+	 * the mapping remain. If the mapping can't be released on this JVM, it is
+	 * released by the garbage collector.
+	 */
+	private void unmap()
+	{
+		if (mapped == null)
+		{
+			return;
+		}
+		try
+		{
+			Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(mapped);
+			if (cleaner != null)
+			{
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		}
+		catch (Exception e)
+		{
+			//not supported by this JVM
+		}
+	}
+
+	protected ByteBuffer read(long offset, int length) throws IOException
+	{
+		if (mapped != null)
+		{
+			if (offset + length > mapped.capacity())
+			{
+				throw new IOException("Packed elevation pyramid is truncated: " + file);
+			}
+			ByteBuffer duplicate = mapped.duplicate();
+			duplicate.limit((int) offset + length).position((int) offset);
+			return duplicate.slice();
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining())
+		{
+			if (channel.read(buffer, offset + buffer.position()) < 0)
+			{
+				throw new IOException("Packed elevation pyramid is truncated: " + file);
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+}
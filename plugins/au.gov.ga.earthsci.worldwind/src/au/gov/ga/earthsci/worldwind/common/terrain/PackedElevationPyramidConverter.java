@@ -0,0 +1,250 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.terrain;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Converts an elevation tileset stored in the standard directory structure
+ * (<code>level/row/row_col.bil</code>) into a single
+ * {@link PackedElevationPyramid} file. Zipped tiles (
+ * <code>row_col.zip</code>) are unzipped while converting.
+ * <p/>
+ * Usage: <code>PackedElevationPyramidConverter tilesetDirectory outputFile [-deflate]</code>
+ * <p/>
+ * To use the pyramid with a {@link FileElevationModel}, name the output file
+ * after the tileset directory with a <code>.pyramid</code> extension (eg
+ * <code>Ternary.pyramid</code> next to the <code>Ternary</code> directory).
+ */
+public class PackedElevationPyramidConverter
+{
+	private static final Pattern TILE_PATTERN = Pattern.compile("(\\d+)_(\\d+)\\.(\\w+)");
+
+	public static void main(String[] args) throws IOException
+	{
+		if (args.length < 2)
+		{
+			System.out.println("Usage: " + PackedElevationPyramidConverter.class.getSimpleName()
+					+ " tilesetDirectory outputFile [-deflate]");
+			return;
+		}
+
+		boolean deflate = args.length > 2 && "-deflate".equalsIgnoreCase(args[2]);
+		int count = convert(new File(args[0]), new File(args[1]), deflate);
+		System.out.println("Packed " + count + " tiles into " + args[1]);
+	}
+
+	/**
+	 * Convert a tileset directory into a packed elevation pyramid.
+	 * 
+	 * @param directory
+	 *            Tileset directory, containing a directory for each level
+	 * @param output
+	 *            Pyramid file to write
+	 * @param deflate
+	 *            Should the tile data be compressed?
+	 * @return Number of tiles written
+	 * @throws IOException
+	 *             If reading a tile or writing the output fails
+	 */
+	public static int convert(File directory, File output, boolean deflate) throws IOException
+	{
+		List<TileFile> tiles = findTiles(directory);
+		Collections.sort(tiles);
+		for (int i = tiles.size() - 1; i > 0; i--)
+		{
+			//if a tile exists with more than one extension, keep the first one found
+			if (tiles.get(i).compareTo(tiles.get(i - 1)) == 0)
+			{
+				tiles.remove(i);
+			}
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(output, "rw");
+		try
+		{
+			raf.setLength(0);
+			raf.writeInt(PackedElevationPyramid.MAGIC);
+			raf.writeInt(PackedElevationPyramid.VERSION);
+			raf.writeInt(deflate ? PackedElevationPyramid.FLAG_DEFLATE : 0);
+			raf.writeInt(tiles.size());
+
+			//write the tile data after the space reserved for the index, then go back and write the index
+			ByteBuffer index = ByteBuffer.allocate(tiles.size() * PackedElevationPyramid.INDEX_ENTRY_SIZE);
+			long offset = PackedElevationPyramid.HEADER_SIZE + index.capacity();
+			raf.seek(offset);
+			Deflater deflater = deflate ? new Deflater(Deflater.BEST_COMPRESSION) : null;
+			byte[] buffer = new byte[8192];
+			for (TileFile tile : tiles)
+			{
+				byte[] raw = readTile(tile.file);
+				byte[] data = raw;
+				if (deflater != null)
+				{
+					deflater.reset();
+					deflater.setInput(raw);
+					deflater.finish();
+					ByteArrayOutputStream baos = new ByteArrayOutputStream(raw.length / 2 + 16);
+					while (!deflater.finished())
+					{
+						int length = deflater.deflate(buffer);
+						baos.write(buffer, 0, length);
+					}
+					data = baos.toByteArray();
+				}
+
+				raf.write(data);
+
+				index.putInt(tile.level);
+				index.putInt(tile.row);
+				index.putInt(tile.col);
+				index.putLong(offset);
+				index.putInt(data.length);
+				index.putInt(raw.length);
+
+				offset += data.length;
+			}
+			if (deflater != null)
+			{
+				deflater.end();
+			}
+
+			raf.seek(PackedElevationPyramid.HEADER_SIZE);
+			raf.write(index.array());
+		}
+		finally
+		{
+			raf.close();
+		}
+		return tiles.size();
+	}
+
+	protected static List<TileFile> findTiles(File directory) throws IOException
+	{
+		if (!directory.isDirectory())
+		{
+			throw new IOException("Not a directory: " + directory);
+		}
+
+		List<TileFile> tiles = new ArrayList<TileFile>();
+		for (File levelDir : listNumericDirectories(directory))
+		{
+			int level = Integer.parseInt(levelDir.getName());
+			for (File rowDir : listNumericDirectories(levelDir))
+			{
+				File[] files = rowDir.listFiles();
+				for (File file : files)
+				{
+					Matcher matcher = TILE_PATTERN.matcher(file.getName());
+					if (file.isFile() && matcher.matches())
+					{
+						int row = Integer.parseInt(matcher.group(1));
+						int col = Integer.parseInt(matcher.group(2));
+						tiles.add(new TileFile(file, level, row, col));
+					}
+				}
+			}
+		}
+		return tiles;
+	}
+
+	protected static List<File> listNumericDirectories(File parent)
+	{
+		List<File> dirs = new ArrayList<File>();
+		File[] files = parent.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				if (file.isDirectory() && file.getName().matches("\\d+"))
+				{
+					dirs.add(file);
+				}
+			}
+		}
+		return dirs;
+	}
+
+	protected static byte[] readTile(File file) throws IOException
+	{
+		InputStream is = new FileInputStream(file);
+		try
+		{
+			if (file.getName().toLowerCase().endsWith(".zip"))
+			{
+				ZipInputStream zis = new ZipInputStream(is);
+				is = zis;
+				if (zis.getNextEntry() == null)
+				{
+					throw new IOException("Empty zip file: " + file);
+				}
+			}
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream((int) Math.min(file.length(), 1 << 20));
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = is.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, length);
+			}
+			return baos.toByteArray();
+		}
+		finally
+		{
+			is.close();
+		}
+	}
+
+	/**
+	 * A tile file found in the tileset directory.
+	 */
+	protected static class TileFile implements Comparable<TileFile>
+	{
+		public final File file;
+		public final int level;
+		public final int row;
+		public final int col;
+		private final long key;
+
+		public TileFile(File file, int level, int row, int col)
+		{
+			this.file = file;
+			this.level = level;
+			this.row = row;
+			this.col = col;
+			this.key = PackedElevationPyramid.createKey(level, row, col);
+		}
+
+		@Override
+		public int compareTo(TileFile o)
+		{
+			return key < o.key ? -1 : key == o.key ? 0 : 1;
+		}
+	}
+}
@@ -19,13 +19,16 @@ import gov.nasa.worldwind.WorldWind;
 import gov.nasa.worldwind.avlist.AVList;
 import gov.nasa.worldwind.cache.FileStore;
 import gov.nasa.worldwind.exception.WWRuntimeException;
+import gov.nasa.worldwind.geom.Sector;
 import gov.nasa.worldwind.retrieve.HTTPRetriever;
 import gov.nasa.worldwind.retrieve.URLRetriever;
 import gov.nasa.worldwind.terrain.BasicElevationModel;
 import gov.nasa.worldwind.util.BufferWrapper;
 import gov.nasa.worldwind.util.DataConfigurationUtils;
+import gov.nasa.worldwind.util.Level;
 import gov.nasa.worldwind.util.Logging;
 import gov.nasa.worldwind.util.Tile;
+import gov.nasa.worldwind.util.TileKey;
 import gov.nasa.worldwind.util.WWXML;
 
 import java.io.IOException;
@@ -36,6 +39,9 @@ import javax.xml.xpath.XPath;
 import org.w3c.dom.Element;
 
 import au.gov.ga.earthsci.worldwind.common.layers.tiled.image.delegate.FileLockSharer;
+import au.gov.ga.earthsci.worldwind.common.retrieve.IPrefetchable;
+import au.gov.ga.earthsci.worldwind.common.retrieve.PrefetchRegion;
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
 import au.gov.ga.earthsci.worldwind.common.util.AVKeyMore;
 import au.gov.ga.earthsci.worldwind.common.util.IOUtil;
 
@@ -48,7 +54,7 @@ import au.gov.ga.earthsci.worldwind.common.util.IOUtil;
  * 
  * @author Michael de Hoog (michael.dehoog@ga.gov.au)
  */
-public class SharedLockBasicElevationModel extends URLTransformerBasicElevationModel
+public class SharedLockBasicElevationModel extends URLTransformerBasicElevationModel implements IPrefetchable
 {
 	protected final Object fileLock;
 	protected boolean extractZipEntry = false;
@@ -67,6 +73,7 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 			this.setExtractZipEntry(b);
 
 		fileLock = FileLockSharer.getLock(getLevels().getFirstLevel().getCacheName());
+		TilePrefetcher.getInstance().register(this);
 	}
 	
 	protected static AVList getMoreElevationModelConfigParams(Element domElement, AVList params)
@@ -179,15 +186,29 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 	@Override
 	protected void retrieveRemoteElevations(final Tile tile,
 			gov.nasa.worldwind.terrain.BasicElevationModel.DownloadPostProcessor postProcessor)
+	{
+		URLRetriever retriever = createRetriever(tile, postProcessor);
+		if (retriever == null || WorldWind.getRetrievalService().contains(retriever))
+			return;
+
+		WorldWind.getRetrievalService().runRetriever(retriever, 0d);
+	}
+
+	/**
+	 * Create a retriever that downloads the elevations for a tile. Returns
+	 * null if the tile cannot be retrieved.
+	 */
+	protected URLRetriever createRetriever(final Tile tile,
+			gov.nasa.worldwind.terrain.BasicElevationModel.DownloadPostProcessor postProcessor)
 	{
 		if (!this.isNetworkRetrievalEnabled())
 		{
 			this.getLevels().markResourceAbsent(tile);
-			return;
+			return null;
 		}
 
 		if (!WorldWind.getRetrievalService().isAvailable())
-			return;
+			return null;
 
 		java.net.URL url = null;
 		try
@@ -196,7 +217,7 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 			if (WorldWind.getNetworkStatus().isHostUnavailable(url))
 			{
 				this.getLevels().markResourceAbsent(tile);
-				return;
+				return null;
 			}
 		}
 		catch (java.net.MalformedURLException e)
@@ -206,7 +227,7 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 							Logging.getMessage(
 									"TiledElevationModel.ExceptionCreatingElevationsUrl",
 									url), e);
-			return;
+			return null;
 		}
 
 		if (postProcessor == null)
@@ -219,9 +240,38 @@ public class SharedLockBasicElevationModel extends URLTransformerBasicElevationM
 			retriever.setValue(URLRetriever.EXTRACT_ZIP_ENTRY, "true"); // supports legacy elevation models
 		}
 		//END MODIFICATION
-		if (WorldWind.getRetrievalService().contains(retriever))
+		return retriever;
+	}
+
+	@Override
+	public boolean isPrefetchEnabled()
+	{
+		return isEnabled() && isNetworkRetrievalEnabled();
+	}
+
+	@Override
+	public void prefetch(PrefetchRegion region, TilePrefetcher prefetcher)
+	{
+		Level level = TilePrefetcher.getPrefetchLevel(getLevels(), region);
+		if (level == null)
 			return;
 
-		WorldWind.getRetrievalService().runRetriever(retriever, 0d);
+		Sector sector = region.getSector().intersection(getLevels().getSector());
+		for (TileKey key : TilePrefetcher.getTileKeys(getLevels(), level, sector))
+		{
+			if (!prefetcher.isRetrieverAvailable())
+				return;
+
+			if (areElevationsInMemory(key) || getLevels().isResourceAbsent(key))
+				continue;
+
+			Tile tile = createTile(key);
+			if (getDataFileStore().findFile(tile.getPath(), false) != null)
+				continue;
+
+			URLRetriever retriever = createRetriever(tile, null);
+			if (retriever != null)
+				prefetcher.submitRetriever(retriever, region.getPriority());
+		}
 	}
 }
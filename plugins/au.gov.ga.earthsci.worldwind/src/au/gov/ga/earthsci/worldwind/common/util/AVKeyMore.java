@@ -57,6 +57,8 @@ public interface AVKeyMore extends AVKey
 	final static String FOLLOW_TERRAIN = "au.gov.ga.worldwind.AVKeyMore.FollowTerrain";
 	final static String SUBSEGMENTS = "au.gov.ga.worldwind.AVKeyMore.Subsegments";
 	final static String PATH = "au.gov.ga.worldwind.AVKeyMore.Path";
+	final static String REQUEST_BUDGET = "au.gov.ga.worldwind.AVKeyMore.RequestBudget";
+	final static String PREFETCH_COLUMNS = "au.gov.ga.worldwind.AVKeyMore.PrefetchColumns";
 
 	//data layers
 	final static String DATA_LAYER_PROVIDER = "au.gov.ga.worldwind.AVKeyMore.DataLayerProvider";
@@ -78,6 +80,8 @@ public interface AVKeyMore extends AVKey
 	final static String COLORING = "au.gov.ga.worldwind.AVKeyMore.Coloring";
 	final static String COLORING_MIN_DATE = "au.gov.ga.worldwind.AVKeyMore.ColoringMinDate";
 	final static String COLORING_MAX_DATE = "au.gov.ga.worldwind.AVKeyMore.ColoringMaxDate";
+	final static String FILTER_MIN_DATE = "au.gov.ga.worldwind.AVKeyMore.FilterMinDate";
+	final static String FILTER_MAX_DATE = "au.gov.ga.worldwind.AVKeyMore.FilterMaxDate";
 
 	//crust layer
 	final static String SCALE = "au.gov.ga.worldwind.AVKeyMore.Scale";
@@ -86,6 +90,15 @@ public interface AVKeyMore extends AVKey
 	//elevation model
 	final static String EXTRACT_ZIP_ENTRY = "au.gov.ga.worldwind.AVKeyMore.ExtractZipEntry";
 
+	//delegator layers
+	final static String TEXTURE_DATA_CACHE_SIZE = "au.gov.ga.worldwind.AVKeyMore.TextureDataCacheSize";
+
+	//tile prefetching
+	final static String PREFETCH_BANDWIDTH = "au.gov.ga.worldwind.AVKeyMore.PrefetchBandwidth";
+
+	//texture uploading
+	final static String TEXTURE_UPLOAD_BUDGET = "au.gov.ga.worldwind.AVKeyMore.TextureUploadBudget";
+
 	//voxet model
 	final static String BILINEAR_MINIFICATION = "au.gov.ga.worldwind.AVKeyMore.BilinearMinification";
 	final static String SUBSAMPLING_U = "au.gov.ga.worldwind.AVKeyMore.SubsamplingU";
@@ -104,6 +117,7 @@ public interface AVKeyMore extends AVKey
 	final static String INITIAL_OFFSET_MIN_W = "au.gov.ga.worldwind.AVKeyMore.InitialOffsetMinW";
 	final static String INITIAL_OFFSET_MAX_W = "au.gov.ga.worldwind.AVKeyMore.InitialOffsetMaxW";
 	final static String FORCE_TWO_SIDED_LIGHTING = "au.gov.ga.worldwind.AVKeyMore.Force2SidedLighting";
+	final static String USE_3D_TEXTURE = "au.gov.ga.worldwind.AVKeyMore.Use3DTexture";
 
 	//model layer
 	final static String TARGET_BAND = "au.gov.ga.worldwind.AVKeyMore.TargetBand";
@@ -0,0 +1,124 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Thread-safe pool of reusable {@link BufferedImage}s, used to avoid
+ * allocating a new image for every intermediate stage when processing tiles.
+ * <p/>
+ * Images are pooled by size and type. Only images that are no longer
+ * referenced anywhere else should be released to the pool. Pooled images are
+ * softly referenced, so the pool never prevents them being garbage collected
+ * when memory is low.
+ */
+public class BufferedImagePool
+{
+	private final int maxImagesPerKey;
+	private final Map<String, LinkedList<SoftReference<BufferedImage>>> pool =
+			new HashMap<String, LinkedList<SoftReference<BufferedImage>>>();
+
+	/**
+	 * Create a new pool.
+	 * 
+	 * @param maxImagesPerKey
+	 *            Maximum number of images of each size and type to retain
+	 */
+	public BufferedImagePool(int maxImagesPerKey)
+	{
+		this.maxImagesPerKey = maxImagesPerKey;
+	}
+
+	/**
+	 * Get an image of the given size and type from the pool, or create a new
+	 * one if none are available. The contents of pooled images are undefined.
+	 * 
+	 * @param width
+	 * @param height
+	 * @param imageType
+	 *            {@link BufferedImage} type constant
+	 * @return Image of the given size and type
+	 */
+	public BufferedImage acquire(int width, int height, int imageType)
+	{
+		String key = key(width, height, imageType);
+		synchronized (pool)
+		{
+			LinkedList<SoftReference<BufferedImage>> images = pool.get(key);
+			while (images != null && !images.isEmpty())
+			{
+				BufferedImage image = images.removeFirst().get();
+				if (image != null)
+				{
+					return image;
+				}
+			}
+		}
+		return new BufferedImage(width, height, imageType);
+	}
+
+	/**
+	 * Return an image to the pool, so that it can be reused by subsequent
+	 * calls to {@link #acquire(int, int, int)}. The caller must not use the
+	 * image after releasing it.
+	 * 
+	 * @param image
+	 *            Image to release
+	 */
+	public void release(BufferedImage image)
+	{
+		if (image == null || image.getType() == BufferedImage.TYPE_CUSTOM)
+		{
+			return;
+		}
+
+		String key = key(image.getWidth(), image.getHeight(), image.getType());
+		synchronized (pool)
+		{
+			LinkedList<SoftReference<BufferedImage>> images = pool.get(key);
+			if (images == null)
+			{
+				images = new LinkedList<SoftReference<BufferedImage>>();
+				pool.put(key, images);
+			}
+			if (images.size() < maxImagesPerKey)
+			{
+				images.addLast(new SoftReference<BufferedImage>(image));
+			}
+		}
+	}
+
+	/**
+	 * Remove all images from the pool.
+	 */
+	public void clear()
+	{
+		synchronized (pool)
+		{
+			pool.clear();
+		}
+	}
+
+	private static String key(int width, int height, int imageType)
+	{
+		return width + "x" + height + ":" + imageType;
+	}
+}
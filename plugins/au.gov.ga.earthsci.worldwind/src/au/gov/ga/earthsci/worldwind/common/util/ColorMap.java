@@ -129,4 +129,33 @@ public class ColorMap extends TreeMap<Double, Color>
 			return calculateColorAsPercentage(value, minimum, maximum);
 		return calculateColor(value);
 	}
+
+	/**
+	 * Compile this color map for fast calculation of colors for absolute
+	 * values (see {@link #calculateColor(double)}).
+	 * 
+	 * @return Compiled form of this color map
+	 */
+	public CompiledColorMap compile()
+	{
+		return compile(0, 1);
+	}
+
+	/**
+	 * Compile this color map for fast calculation of colors for values within
+	 * the given range (see
+	 * {@link #calculateColorNotingIsValuesPercentages(double, double, double)}
+	 * ). Changes made to this map after compiling are not reflected in the
+	 * compiled form.
+	 * 
+	 * @param minimum
+	 * @param maximum
+	 * @return Compiled form of this color map
+	 */
+	public CompiledColorMap compile(double minimum, double maximum)
+	{
+		return new CompiledColorMap(this, interpolateHue ? CompiledColorMap.Mode.INTERPOLATE_HUE
+				: CompiledColorMap.Mode.INTERPOLATE_RGB, Color.black, valuesPercentages, minimum, maximum,
+				CompiledColorMap.DEFAULT_TABLE_SIZE);
+	}
 }
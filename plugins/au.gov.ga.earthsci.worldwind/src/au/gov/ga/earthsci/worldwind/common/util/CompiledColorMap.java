@@ -0,0 +1,417 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.awt.Color;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Map.Entry;
+
+/**
+ * Immutable, compiled form of a colour map, for colouring large numbers of
+ * values without the {@link java.util.TreeMap} lookups and {@link Color}
+ * allocations performed by {@link ColorMap#calculateColor(double)} and
+ * <code>au.gov.ga.earthsci.common.color.ColorMap.getColor(double)</code>.
+ * <p/>
+ * The colour map entries are stored in sorted primitive arrays, and
+ * {@link #getRGB(double)} calculates exactly the same colour as the source
+ * colour map, as a packed ARGB integer. For the interpolating modes, a dense
+ * lookup table of {@link #getTableSize()} colours, evenly spaced between the
+ * first and last entry, is also precalculated; this is used by
+ * {@link #lookupRGB(double)} and the bulk <code>colorize</code> methods.
+ * Values outside the range of the entries, NaN values and the nodata colour
+ * are handled exactly; only values between entries are quantised to the
+ * lookup table resolution. The {@link Mode#NEAREST_MATCH} and
+ * {@link Mode#EXACT_MATCH} modes are never quantised.
+ * <p/>
+ * A compiled colour map also includes the conversion from absolute data
+ * values to colour map keys, so percentage based colour maps are compiled for
+ * a specific data range.
+ */
+public class CompiledColorMap
+{
+	/**
+	 * Default number of colours in the lookup table
+	 */
+	public static final int DEFAULT_TABLE_SIZE = 4096;
+
+	/**
+	 * The ways in which colours are calculated for values between colour map
+	 * entries. Mirrors the
+	 * <code>au.gov.ga.earthsci.common.color.ColorMap.InterpolationMode</code>
+	 * enum.
+	 */
+	public static enum Mode
+	{
+		NEAREST_MATCH,
+		EXACT_MATCH,
+		INTERPOLATE_RGB,
+		INTERPOLATE_HUE
+	}
+
+	private final Mode mode;
+	private final double[] keys;
+	private final int[] colors;
+	private final float[] hues;
+	private final float[] saturations;
+	private final float[] brightnesses;
+	private final int nodataRGB;
+
+	private final double offset;
+	private final double divisor;
+
+	private final int[] table;
+	private final double tableScale;
+
+	/**
+	 * Compile the given colour map entries.
+	 * 
+	 * @param entries
+	 *            Colour map entries
+	 * @param mode
+	 *            Mode used to calculate colours between entries
+	 * @param nodata
+	 *            Colour returned if no colour can be calculated for a value
+	 *            (<code>null</code> is treated as transparent)
+	 * @param percentages
+	 *            Are the entry keys percentages of the data range?
+	 * @param minimum
+	 *            Minimum value of the data range, which maps to the 0 key
+	 *            (ignored if the keys aren't percentages)
+	 * @param maximum
+	 *            Maximum value of the data range, which maps to the 1 key
+	 *            (ignored if the keys aren't percentages)
+	 * @param tableSize
+	 *            Number of colours in the lookup table
+	 */
+	public CompiledColorMap(Map<Double, Color> entries, Mode mode, Color nodata, boolean percentages,
+			double minimum, double maximum, int tableSize)
+	{
+		if (tableSize < 2)
+		{
+			throw new IllegalArgumentException("Table size must be at least 2");
+		}
+
+		this.mode = mode;
+		this.nodataRGB = nodata == null ? 0 : nodata.getRGB();
+		this.offset = percentages ? minimum : 0;
+		this.divisor = percentages ? maximum - minimum : 1;
+
+		int count = entries.size();
+		keys = new double[count];
+		colors = new int[count];
+		hues = new float[count];
+		saturations = new float[count];
+		brightnesses = new float[count];
+		int i = 0;
+		for (Entry<Double, Color> entry : entries.entrySet())
+		{
+			keys[i++] = entry.getKey();
+		}
+		Arrays.sort(keys);
+		float[] hsb = new float[3];
+		for (i = 0; i < count; i++)
+		{
+			Color color = entries.get(keys[i]);
+			colors[i] = color.getRGB();
+			Color.RGBtoHSB(color.getRed(), color.getGreen(), color.getBlue(), hsb);
+			hues[i] = hsb[0];
+			saturations[i] = hsb[1];
+			brightnesses[i] = hsb[2];
+		}
+
+		if (count > 1 && (mode == Mode.INTERPOLATE_RGB || mode == Mode.INTERPOLATE_HUE))
+		{
+			double first = keys[0];
+			double range = keys[count - 1] - first;
+			table = new int[tableSize];
+			tableScale = (tableSize - 1) / range;
+			for (i = 0; i < tableSize; i++)
+			{
+				table[i] = getKeyRGB(i == tableSize - 1 ? keys[count - 1] : first + range * i / (tableSize - 1));
+			}
+		}
+		else
+		{
+			table = null;
+			tableScale = 0;
+		}
+	}
+
+	/**
+	 * @return The mode used to calculate colours between entries
+	 */
+	public Mode getMode()
+	{
+		return mode;
+	}
+
+	/**
+	 * @return Number of colours in the lookup table, or 0 if this colour map
+	 *         doesn't use a lookup table
+	 */
+	public int getTableSize()
+	{
+		return table == null ? 0 : table.length;
+	}
+
+	/**
+	 * Calculate the exact colour for the given data value.
+	 * 
+	 * @param value
+	 *            Data value
+	 * @return Packed ARGB colour for the value
+	 */
+	public int getRGB(double value)
+	{
+		return getKeyRGB((value - offset) / divisor);
+	}
+
+	/**
+	 * Calculate the colour for the given data value using the lookup table.
+	 * Identical to {@link #getRGB(double)} for the non-interpolating modes.
+	 * 
+	 * @param value
+	 *            Data value
+	 * @return Packed ARGB colour for the value
+	 */
+	public int lookupRGB(double value)
+	{
+		double key = (value - offset) / divisor;
+		if (table == null)
+		{
+			return getKeyRGB(key);
+		}
+		if (key <= keys[0])
+		{
+			return colors[0];
+		}
+		if (!(key < keys[keys.length - 1]))
+		{
+			//also catches NaN, which the TreeMap sorts after all other keys
+			return colors[colors.length - 1];
+		}
+		return table[(int) ((key - keys[0]) * tableScale + 0.5)];
+	}
+
+	/**
+	 * Colour the values in the given range of the values array, writing the
+	 * packed ARGB colours to the same indices of the output array.
+	 * 
+	 * @param values
+	 *            Data values
+	 * @param start
+	 *            First index to colour (inclusive)
+	 * @param end
+	 *            Last index to colour (exclusive)
+	 * @param noDataValue
+	 *            Data value that represents no data (may be NaN)
+	 * @param noDataRGB
+	 *            Colour to write for no data values
+	 * @param out
+	 *            Array to write the colours to
+	 */
+	public void colorize(float[] values, int start, int end, float noDataValue, int noDataRGB, int[] out)
+	{
+		boolean noDataNaN = Float.isNaN(noDataValue);
+		for (int i = start; i < end; i++)
+		{
+			float value = values[i];
+			if (value == noDataValue || (noDataNaN && value != value))
+			{
+				out[i] = noDataRGB;
+			}
+			else
+			{
+				out[i] = lookupRGB(value);
+			}
+		}
+	}
+
+	/**
+	 * Colour all of the values in the given array in parallel, writing the
+	 * packed ARGB colours to the same indices of the output array.
+	 * 
+	 * @param values
+	 *            Data values
+	 * @param noDataValue
+	 *            Data value that represents no data (may be NaN)
+	 * @param noDataRGB
+	 *            Colour to write for no data values
+	 * @param out
+	 *            Array to write the colours to, or <code>null</code> to
+	 *            allocate a new one
+	 * @return Array containing the colours
+	 */
+	public int[] colorize(final float[] values, final float noDataValue, final int noDataRGB, int[] out)
+	{
+		final int[] result = out != null && out.length >= values.length ? out : new int[values.length];
+		ParallelUtil.forRange(values.length, 1 << 16, new ParallelUtil.RangeTask()
+		{
+			@Override
+			public void run(int start, int end)
+			{
+				colorize(values, start, end, noDataValue, noDataRGB, result);
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * Colour the values in the given array, writing consecutive RGBA colour
+	 * components (in the range [0,1]) to the output array. No data values are
+	 * skipped, and don't have a colour written for them.
+	 * 
+	 * @param values
+	 *            Data values
+	 * @param noDataValue
+	 *            Data value that represents no data (may be NaN)
+	 * @param out
+	 *            Array to write the colour components to, or <code>null</code>
+	 *            to allocate a new one
+	 * @return Array containing the colour components; if allocated, its length
+	 *         is 4 times the number of values with data
+	 */
+	public float[] colorize(float[] values, float noDataValue, float[] out)
+	{
+		boolean noDataNaN = Float.isNaN(noDataValue);
+		if (out == null)
+		{
+			int count = 0;
+			for (float value : values)
+			{
+				if (!(value == noDataValue || (noDataNaN && value != value)))
+				{
+					count++;
+				}
+			}
+			out = new float[count * 4];
+		}
+
+		int j = 0;
+		for (float value : values)
+		{
+			if (value == noDataValue || (noDataNaN && value != value))
+			{
+				continue;
+			}
+			int rgb = lookupRGB(value);
+			out[j++] = ((rgb >> 16) & 0xff) / 255f;
+			out[j++] = ((rgb >> 8) & 0xff) / 255f;
+			out[j++] = (rgb & 0xff) / 255f;
+			out[j++] = ((rgb >> 24) & 0xff) / 255f;
+		}
+		return out;
+	}
+
+	/**
+	 * Create a lookup table of the exact colours for evenly spaced data values
+	 * between the given minimum and maximum.
+	 * 
+	 * @param minimum
+	 *            Data value of the first colour
+	 * @param maximum
+	 *            Data value of the last colour
+	 * @param size
+	 *            Number of colours
+	 * @return Lookup table of packed ARGB colours
+	 */
+	public int[] createTable(float minimum, float maximum, int size)
+	{
+		int[] result = new int[size];
+		for (int i = 0; i < size; i++)
+		{
+			result[i] = getRGB(minimum + (maximum - minimum) * i / (size - 1));
+		}
+		return result;
+	}
+
+	/**
+	 * Calculate the exact colour for the given colour map key, replicating the
+	 * calculation performed by {@link Util#interpolateColor}.
+	 */
+	private int getKeyRGB(double key)
+	{
+		if (keys.length == 0)
+		{
+			return nodataRGB;
+		}
+
+		//binary search uses the same ordering as the TreeMap (Double.compare)
+		int index = Arrays.binarySearch(keys, key);
+		if (index >= 0)
+		{
+			return colors[index];
+		}
+		if (mode == Mode.EXACT_MATCH)
+		{
+			return nodataRGB;
+		}
+
+		int ceiling = -index - 1;
+		int floor = ceiling - 1;
+		if (floor < 0)
+		{
+			return colors[ceiling];
+		}
+		if (ceiling >= keys.length)
+		{
+			return colors[floor];
+		}
+
+		if (mode == Mode.NEAREST_MATCH)
+		{
+			return Math.abs(keys[ceiling] - key) > Math.abs(keys[floor] - key) ? colors[floor] : colors[ceiling];
+		}
+
+		double window = keys[ceiling] - keys[floor];
+		double mixer = window > 0 ? (key - keys[floor]) / window : 0;
+		if (mixer <= 0d)
+		{
+			return colors[floor];
+		}
+		if (mixer >= 1d)
+		{
+			return colors[ceiling];
+		}
+
+		int color0 = colors[floor];
+		int color1 = colors[ceiling];
+		int alpha = Util.interpolateInt((color0 >> 24) & 0xff, (color1 >> 24) & 0xff, mixer);
+		if (mode == Mode.INTERPOLATE_HUE)
+		{
+			float h0 = hues[floor];
+			float h1 = hues[ceiling];
+			if (h1 < h0)
+			{
+				h1 += 1f;
+			}
+			if (h1 - h0 > 0.5f)
+			{
+				h0 += 1f;
+			}
+			float h = Util.interpolateFloat(h0, h1, mixer);
+			float s = Util.interpolateFloat(saturations[floor], saturations[ceiling], mixer);
+			float b = Util.interpolateFloat(brightnesses[floor], brightnesses[ceiling], mixer);
+			return (alpha << 24) | (Color.HSBtoRGB(h, s, b) & 0xffffff);
+		}
+
+		int r = Util.interpolateInt((color0 >> 16) & 0xff, (color1 >> 16) & 0xff, mixer);
+		int g = Util.interpolateInt((color0 >> 8) & 0xff, (color1 >> 8) & 0xff, mixer);
+		int b = Util.interpolateInt(color0 & 0xff, color1 & 0xff, mixer);
+		return (alpha << 24) | (r << 16) | (g << 8) | b;
+	}
+}
@@ -0,0 +1,155 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import gov.nasa.worldwind.util.WWIO;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+import javax.media.opengl.GL;
+import javax.media.opengl.GLProfile;
+
+import com.jogamp.opengl.util.texture.TextureData;
+import com.jogamp.opengl.util.texture.TextureIO;
+
+/**
+ * Creates {@link TextureData} for DXT1, DXT3 and DXT5 compressed DDS images
+ * that is uploaded to OpenGL as compressed texture data, without the CPU ever
+ * decompressing the image.
+ * <p/>
+ * The texture data references slices of the DDS buffer directly, rather than
+ * copying the DDS contents through an input stream as
+ * {@link TextureIO#newTextureData(GLProfile, java.io.InputStream, boolean, String)}
+ * does.
+ */
+public class DDSTextureData
+{
+	/**
+	 * Create compressed texture data from a DDS file buffer.
+	 * 
+	 * @param glp
+	 *            OpenGL profile
+	 * @param buffer
+	 *            Buffer containing a DDS file, starting at position 0
+	 * @param mipmap
+	 *            Should the texture use mipmaps? The mipmap levels contained
+	 *            in the DDS are used.
+	 * @return Compressed texture data, or <code>null</code> if the buffer
+	 *         doesn't contain a DXT1, DXT3 or DXT5 compressed DDS image
+	 */
+	public static TextureData newCompressedTextureData(GLProfile glp, ByteBuffer buffer, boolean mipmap)
+	{
+		DDSUncompressor.Header header = DDSUncompressor.readHeader(buffer);
+		if (header == null || header.format == null)
+		{
+			return null;
+		}
+
+		int internalFormat = getInternalFormat(header);
+		int levels = mipmap ? header.mipMapCount : 1;
+		Buffer[] mipmapData = new Buffer[levels];
+		int offset = DDSUncompressor.HEADER_SIZE;
+		int width = header.width;
+		int height = header.height;
+		for (int i = 0; i < levels; i++)
+		{
+			int size = header.format.getDataSize(width, height);
+			if (offset + size > buffer.limit())
+			{
+				return null;
+			}
+			ByteBuffer level = buffer.duplicate();
+			level.limit(offset + size).position(offset);
+			mipmapData[i] = level.slice();
+
+			offset += size;
+			width = Math.max(1, width / 2);
+			height = Math.max(1, height / 2);
+		}
+
+		//DDS images are stored top row first, so must be flipped like JOGL's DDS provider does
+		if (levels > 1)
+		{
+			return new TextureData(glp, internalFormat, header.width, header.height, 0, internalFormat,
+					GL.GL_UNSIGNED_BYTE, true, true, mipmapData, null);
+		}
+		return new TextureData(glp, internalFormat, header.width, header.height, 0, internalFormat,
+				GL.GL_UNSIGNED_BYTE, mipmap, true, true, mipmapData[0], null);
+	}
+
+	/**
+	 * Create texture data from a DDS file buffer. DXT1, DXT3 and DXT5 images
+	 * are passed to OpenGL compressed (see
+	 * {@link #newCompressedTextureData(GLProfile, ByteBuffer, boolean)}); other
+	 * DDS images are read using {@link TextureIO}.
+	 * 
+	 * @param glp
+	 *            OpenGL profile
+	 * @param buffer
+	 *            Buffer containing a DDS file, starting at position 0
+	 * @param mipmap
+	 *            Should the texture use mipmaps?
+	 * @return Texture data for the DDS file
+	 * @throws IOException
+	 *             If the DDS file could not be read
+	 */
+	public static TextureData newTextureData(GLProfile glp, ByteBuffer buffer, boolean mipmap) throws IOException
+	{
+		TextureData textureData = newCompressedTextureData(glp, buffer, mipmap);
+		if (textureData == null)
+		{
+			buffer.rewind();
+			textureData =
+					TextureIO.newTextureData(glp, WWIO.getInputStreamFromByteBuffer(buffer), mipmap, TextureIO.DDS);
+		}
+		return textureData;
+	}
+
+	/**
+	 * Create texture data for a DDS file URL.
+	 * 
+	 * @param glp
+	 *            OpenGL profile
+	 * @param url
+	 *            DDS file URL
+	 * @param mipmap
+	 *            Should the texture use mipmaps?
+	 * @return Texture data for the DDS file
+	 * @throws IOException
+	 *             If the DDS file could not be read
+	 * @see #newTextureData(GLProfile, ByteBuffer, boolean)
+	 */
+	public static TextureData newTextureData(GLProfile glp, URL url, boolean mipmap) throws IOException
+	{
+		return newTextureData(glp, WWIO.readURLContentToBuffer(url, true), mipmap);
+	}
+
+	protected static int getInternalFormat(DDSUncompressor.Header header)
+	{
+		switch (header.format)
+		{
+		case DXT1:
+			return header.alphaPixels ? GL.GL_COMPRESSED_RGBA_S3TC_DXT1_EXT : GL.GL_COMPRESSED_RGB_S3TC_DXT1_EXT;
+		case DXT3:
+			return GL.GL_COMPRESSED_RGBA_S3TC_DXT3_EXT;
+		default:
+			return GL.GL_COMPRESSED_RGBA_S3TC_DXT5_EXT;
+		}
+	}
+}
@@ -15,221 +15,155 @@
  ******************************************************************************/
 package au.gov.ga.earthsci.worldwind.common.util;
 
-import java.awt.Dimension;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
 /**
+ * Reads DXT1, DXT3 and DXT5 compressed DDS images into {@link BufferedImage}s,
+ * using the allocation-free {@link DXTDecoder}.
+ * <p/>
+ * Note that DDS textures that are only required for rendering shouldn't be
+ * decompressed at all; see {@link DDSTextureData}, which passes the
+ * compressed data directly to OpenGL.
+ * 
  * Created on Jun 12, 2009 @ 11:39:16 AM.
  * 
  * @author joel-cohen
  */
 public class DDSUncompressor
 {
-	private static final int DDPF_FOURCC = 0x0004;
+	public static final int HEADER_SIZE = 128;
 
-	private static final int DDSCAPS_TEXTURE = 0x1000;
+	private static final int DDSD_MIPMAPCOUNT = 0x20000;
+	private static final int DDPF_ALPHAPIXELS = 0x0001;
+	private static final int DDPF_FOURCC = 0x0004;
 
-	protected static class Color
+	/**
+	 * Properties read from a DDS file header.
+	 */
+	public static class Header
 	{
-
-		private int r, g, b;
-
-		public Color()
-		{
-			this.r = this.g = this.b = 0;
-		}
-
-		public Color(int r, int g, int b)
+		public final int width;
+		public final int height;
+		public final int mipMapCount;
+		public final boolean alphaPixels;
+		/**
+		 * Compression format, or <code>null</code> if the DDS doesn't contain
+		 * a supported DXT format
+		 */
+		public final DXTDecoder.Format format;
+
+		public Header(int width, int height, int mipMapCount, boolean alphaPixels, DXTDecoder.Format format)
 		{
-			this.r = r;
-			this.g = g;
-			this.b = b;
+			this.width = width;
+			this.height = height;
+			this.mipMapCount = mipMapCount;
+			this.alphaPixels = alphaPixels;
+			this.format = format;
 		}
+	}
 
-		@Override
-		public boolean equals(Object o)
+	/**
+	 * Read the header of a DDS file. The buffer's contents are read using
+	 * absolute gets, so its position and byte order are not modified.
+	 * 
+	 * @param buffer
+	 *            Buffer containing a DDS file, starting at position 0
+	 * @return DDS header, or <code>null</code> if the buffer doesn't contain a
+	 *         DDS file
+	 */
+	public static Header readHeader(ByteBuffer buffer)
+	{
+		ByteBuffer b = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		if (b.limit() < HEADER_SIZE || b.get(0) != 'D' || b.get(1) != 'D' || b.get(2) != 'S' || b.get(3) != ' ')
 		{
-			if (this == o)
-			{
-				return true;
-			}
-			if (o == null || getClass() != o.getClass())
-			{
-				return false;
-			}
-
-			final Color color = (Color) o;
-
-			if (b != color.b)
-			{
-				return false;
-			}
-			if (g != color.g)
-			{
-				return false;
-			}
-			//noinspection RedundantIfStatement
-			if (r != color.r)
-			{
-				return false;
-			}
-
-			return true;
+			return null;
 		}
 
-		@Override
-		public int hashCode()
+		int flags = b.getInt(8);
+		int height = b.getInt(12);
+		int width = b.getInt(16);
+		int mipMapCount = (flags & DDSD_MIPMAPCOUNT) != 0 ? Math.max(1, b.getInt(28)) : 1;
+		int pixelFormatFlags = b.getInt(80);
+		DXTDecoder.Format format = null;
+		if ((pixelFormatFlags & DDPF_FOURCC) != 0)
 		{
-			int result;
-			result = r;
-			result = 29 * result + g;
-			result = 29 * result + b;
-			return result;
+			String fourCC = new String(new char[] { (char) b.get(84), (char) b.get(85), (char) b.get(86), (char) b.get(87) });
+			format = DXTDecoder.Format.fromFourCC(fourCC);
 		}
+		return new Header(width, height, mipMapCount, (pixelFormatFlags & DDPF_ALPHAPIXELS) != 0, format);
 	}
 
-	protected static Dimension readHeaderDxt3(ByteBuffer buffer)
+	/**
+	 * Read the top level of a DXT1, DXT3 or DXT5 compressed DDS file.
+	 * 
+	 * @param buffer
+	 *            Buffer containing a DDS file
+	 * @return Decompressed image
+	 * @throws IllegalArgumentException
+	 *             If the buffer doesn't contain a supported DDS file
+	 */
+	public static BufferedImage readDDS(ByteBuffer buffer)
 	{
-		buffer.rewind();
-
-		byte[] magic = new byte[4];
-		buffer.get(magic);
-		assert new String(magic).equals("DDS ");
-
-		int version = buffer.getInt();
-		assert version == 124;
-
-		/*int flags =*/buffer.getInt();
-		int height = buffer.getInt();
-		int width = buffer.getInt();
-		/*int pixels =*/buffer.getInt(); // ???
-		/*int depth =*/buffer.getInt();
-		/*int mipmaps =*/buffer.getInt();
-
-		buffer.position(buffer.position() + 44); // 11 unused double-words
-
-		/*int pixelFormatSize =*/buffer.getInt(); // ???
-		int fourCC = buffer.getInt();
-		assert fourCC == DDPF_FOURCC;
-
-		byte[] format = new byte[4];
-		buffer.get(format);
-		assert new String(format).equals("DXT3");
-
-		/*int bpp =*/buffer.getInt(); // bits per pixel for RGB (non-compressed) formats
-		buffer.getInt(); // rgb bit masks for RGB formats
-		buffer.getInt(); // rgb bit masks for RGB formats
-		buffer.getInt(); // rgb bit masks for RGB formats
-		buffer.getInt(); // alpha mask for RGB formats
-
-		int unknown = buffer.getInt();
-		assert unknown == DDSCAPS_TEXTURE;
-		/*int ddsCaps =*/buffer.getInt(); // ???
-		buffer.position(buffer.position() + 12);
+		Header header = readHeader(buffer);
+		if (header == null || header.format == null)
+		{
+			throw new IllegalArgumentException("Unsupported DDS format");
+		}
 
-		return new Dimension(width, height);
+		ByteBuffer data = buffer.duplicate();
+		data.position(HEADER_SIZE);
+		return readBuffer(data, header.format, header.width, header.height);
 	}
 
+	/**
+	 * @deprecated DXT1 and DXT5 are also supported; use
+	 *             {@link #readDDS(ByteBuffer)}
+	 */
+	@Deprecated
 	public static BufferedImage readDxt3(ByteBuffer buffer)
 	{
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
-		Dimension dimension = readHeaderDxt3(buffer);
-
-		return readDxt3Buffer(buffer, dimension.width, dimension.height);
+		return readDDS(buffer);
 	}
 
+	/**
+	 * Decompress DXT3 blocks into an image.
+	 * 
+	 * @param buffer
+	 *            Buffer containing the compressed blocks, starting at its
+	 *            current position
+	 * @param width
+	 *            Image width
+	 * @param height
+	 *            Image height
+	 * @return Decompressed image
+	 */
 	public static BufferedImage readDxt3Buffer(ByteBuffer buffer, int width, int height)
 	{
-		buffer.order(ByteOrder.LITTLE_ENDIAN);
-
-		int[] pixels = new int[16];
-		int[] alphas = new int[16];
-
-		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
-
-		int numTilesWide = width / 4;
-		int numTilesHigh = height / 4;
-		for (int i = 0; i < numTilesHigh; i++)
-		{
-			for (int j = 0; j < numTilesWide; j++)
-			{
-				// Read the alpha table.
-				long alphaData = buffer.getLong();
-				for (int k = alphas.length - 1; k >= 0; k--)
-				{
-					alphas[k] = (int) (alphaData >>> (k * 4)) & 0xF; // Alphas are just 4 bits per pixel
-					alphas[k] <<= 4;
-				}
-
-				short minColor = buffer.getShort();
-				short maxColor = buffer.getShort();
-				Color[] lookupTable = expandLookupTable(minColor, maxColor);
-
-				int colorData = buffer.getInt();
-
-				for (int k = pixels.length - 1; k >= 0; k--)
-				{
-					int colorCode = (colorData >>> k * 2) & 0x03;
-					pixels[k] =
-							(alphas[k] << 24)
-									| getPixel888(multiplyAlpha(lookupTable[colorCode], alphas[k]));
-				}
-
-				result.setRGB(j * 4, i * 4, 4, 4, pixels, 0, 4);
-			}
-		}
-		return result;
-	}
-
-	private static Color multiplyAlpha(Color color, int alpha)
-	{
-		Color result = new Color();
-
-		double alphaF = alpha / 256.0;
-
-		result.r = (int) (color.r * alphaF);
-		result.g = (int) (color.g * alphaF);
-		result.b = (int) (color.b * alphaF);
-		return result;
+		return readBuffer(buffer, DXTDecoder.Format.DXT3, width, height);
 	}
 
-	protected static Color getColor565(int pixel)
+	/**
+	 * Decompress DXT blocks into an image.
+	 * 
+	 * @param buffer
+	 *            Buffer containing the compressed blocks, starting at its
+	 *            current position
+	 * @param format
+	 *            Compression format
+	 * @param width
+	 *            Image width
+	 * @param height
+	 *            Image height
+	 * @return Decompressed image
+	 */
+	public static BufferedImage readBuffer(ByteBuffer buffer, DXTDecoder.Format format, int width, int height)
 	{
-		Color color = new Color();
-
-		color.r = (int) (((long) pixel) & 0xf800) >>> 8;
-		color.g = (int) (((long) pixel) & 0x07e0) >>> 3;
-		color.b = (int) (((long) pixel) & 0x001f) << 3;
-
-		return color;
-	}
-
-	private static Color[] expandLookupTable(short minColor, short maxColor)
-	{
-		Color[] result =
-				new Color[] { getColor565(minColor), getColor565(maxColor), new Color(),
-						new Color() };
-
-		result[2].r = (2 * result[0].r + result[1].r + 1) / 3;
-		result[2].g = (2 * result[0].g + result[1].g + 1) / 3;
-		result[2].b = (2 * result[0].b + result[1].b + 1) / 3;
-
-		result[3].r = (result[0].r + 2 * result[1].r + 1) / 3;
-		result[3].g = (result[0].g + 2 * result[1].g + 1) / 3;
-		result[3].b = (result[0].b + 2 * result[1].b + 1) / 3;
-
+		BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		int[] pixels = ((DataBufferInt) result.getRaster().getDataBuffer()).getData();
+		DXTDecoder.decode(buffer, format, width, height, pixels);
 		return result;
 	}
-
-	protected static int getPixel888(Color color)
-	{
-		int r = color.r;
-		int g = color.g;
-		int b = color.b;
-		return r << 16 | g << 8 | b;
-	}
-
-
 }
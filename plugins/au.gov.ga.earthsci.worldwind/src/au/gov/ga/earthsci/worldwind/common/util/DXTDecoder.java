@@ -0,0 +1,233 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Decoder for DXT1, DXT3 and DXT5 (S3TC) compressed image data.
+ * <p/>
+ * Decodes directly into an <code>int[]</code> of non-premultiplied ARGB
+ * pixels, without allocating per block or per pixel. Block data is read from a
+ * little-endian view of the source buffer, so the byte order and position of
+ * the source buffer are not modified.
+ */
+public class DXTDecoder
+{
+	/**
+	 * Supported DXT compression formats.
+	 */
+	public static enum Format
+	{
+		DXT1(8),
+		DXT3(16),
+		DXT5(16);
+
+		/**
+		 * Number of bytes in each compressed 4x4 block
+		 */
+		public final int blockSize;
+
+		private Format(int blockSize)
+		{
+			this.blockSize = blockSize;
+		}
+
+		/**
+		 * Calculate the number of bytes used by an image of this format.
+		 * 
+		 * @param width
+		 *            Image width
+		 * @param height
+		 *            Image height
+		 * @return Size of the compressed image data in bytes
+		 */
+		public int getDataSize(int width, int height)
+		{
+			return Math.max(1, (width + 3) / 4) * Math.max(1, (height + 3) / 4) * blockSize;
+		}
+
+		/**
+		 * Find the format for a DDS FourCC code.
+		 * 
+		 * @param fourCC
+		 *            FourCC string, such as "DXT1"
+		 * @return Matching format, or <code>null</code> if the FourCC is not a
+		 *         supported format
+		 */
+		public static Format fromFourCC(String fourCC)
+		{
+			for (Format format : values())
+			{
+				if (format.name().equals(fourCC))
+				{
+					return format;
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Decode DXT compressed image data.
+	 * 
+	 * @param buffer
+	 *            Buffer containing the compressed blocks, starting at the
+	 *            buffer's current position
+	 * @param format
+	 *            Compression format of the data
+	 * @param width
+	 *            Image width
+	 * @param height
+	 *            Image height
+	 * @param pixels
+	 *            Array to store the decoded ARGB pixels in (row-major, top row
+	 *            first); if <code>null</code> or too small, a new array is
+	 *            created
+	 * @return Array containing the decoded pixels
+	 */
+	public static int[] decode(ByteBuffer buffer, Format format, int width, int height, int[] pixels)
+	{
+		if (pixels == null || pixels.length < width * height)
+		{
+			pixels = new int[width * height];
+		}
+
+		int[] colors = new int[4];
+		int[] alphas = new int[8];
+		int blocksWide = (width + 3) / 4;
+		int blocksHigh = (height + 3) / 4;
+		ByteBuffer data = buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+		int position = data.position();
+
+		for (int by = 0; by < blocksHigh; by++)
+		{
+			for (int bx = 0; bx < blocksWide; bx++)
+			{
+				int colorOffset = position;
+				long alphaBits = 0;
+				if (format == Format.DXT3)
+				{
+					alphaBits = data.getLong(position);
+					colorOffset += 8;
+				}
+				else if (format == Format.DXT5)
+				{
+					calculateAlphas(data.get(position) & 0xff, data.get(position + 1) & 0xff, alphas);
+					alphaBits = data.getLong(position) >>> 16;
+					colorOffset += 8;
+				}
+				position += format.blockSize;
+
+				int color0 = data.getShort(colorOffset) & 0xffff;
+				int color1 = data.getShort(colorOffset + 2) & 0xffff;
+				calculateColors(color0, color1, format == Format.DXT1 && color0 <= color1, colors);
+				int colorBits = data.getInt(colorOffset + 4);
+
+				int maxX = Math.min(4, width - bx * 4);
+				int maxY = Math.min(4, height - by * 4);
+				for (int y = 0; y < maxY; y++)
+				{
+					int rowOffset = (by * 4 + y) * width + bx * 4;
+					for (int x = 0; x < maxX; x++)
+					{
+						int k = y * 4 + x;
+						int argb = colors[(colorBits >>> (k * 2)) & 0x03];
+						if (format == Format.DXT3)
+						{
+							int alpha = (int) (alphaBits >>> (k * 4)) & 0x0f;
+							argb = (argb & 0xffffff) | ((alpha * 17) << 24);
+						}
+						else if (format == Format.DXT5)
+						{
+							int alpha = alphas[(int) (alphaBits >>> (k * 3)) & 0x07];
+							argb = (argb & 0xffffff) | (alpha << 24);
+						}
+						pixels[rowOffset + x] = argb;
+					}
+				}
+			}
+		}
+		return pixels;
+	}
+
+	/**
+	 * Calculate the 4 color palette entries of a block.
+	 */
+	private static void calculateColors(int color0, int color1, boolean threeColor, int[] colors)
+	{
+		int r0 = expand5((color0 >>> 11) & 0x1f);
+		int g0 = expand6((color0 >>> 5) & 0x3f);
+		int b0 = expand5(color0 & 0x1f);
+		int r1 = expand5((color1 >>> 11) & 0x1f);
+		int g1 = expand6((color1 >>> 5) & 0x3f);
+		int b1 = expand5(color1 & 0x1f);
+
+		colors[0] = argb(r0, g0, b0);
+		colors[1] = argb(r1, g1, b1);
+		if (threeColor)
+		{
+			colors[2] = argb((r0 + r1) / 2, (g0 + g1) / 2, (b0 + b1) / 2);
+			colors[3] = 0; //transparent black
+		}
+		else
+		{
+			colors[2] = argb((2 * r0 + r1 + 1) / 3, (2 * g0 + g1 + 1) / 3, (2 * b0 + b1 + 1) / 3);
+			colors[3] = argb((r0 + 2 * r1 + 1) / 3, (g0 + 2 * g1 + 1) / 3, (b0 + 2 * b1 + 1) / 3);
+		}
+	}
+
+	/**
+	 * Calculate the 8 alpha palette entries of a DXT5 block.
+	 */
+	private static void calculateAlphas(int alpha0, int alpha1, int[] alphas)
+	{
+		alphas[0] = alpha0;
+		alphas[1] = alpha1;
+		if (alpha0 > alpha1)
+		{
+			for (int i = 2; i < 8; i++)
+			{
+				alphas[i] = ((8 - i) * alpha0 + (i - 1) * alpha1) / 7;
+			}
+		}
+		else
+		{
+			for (int i = 2; i < 6; i++)
+			{
+				alphas[i] = ((6 - i) * alpha0 + (i - 1) * alpha1) / 5;
+			}
+			alphas[6] = 0;
+			alphas[7] = 255;
+		}
+	}
+
+	private static int argb(int r, int g, int b)
+	{
+		return 0xff000000 | (r << 16) | (g << 8) | b;
+	}
+
+	private static int expand5(int value)
+	{
+		return (value << 3) | (value >>> 2);
+	}
+
+	private static int expand6(int value)
+	{
+		return (value << 2) | (value >>> 4);
+	}
+}
@@ -24,6 +24,8 @@ import gov.nasa.worldwind.view.orbit.OrbitView;
 
 import java.awt.Rectangle;
 
+import au.gov.ga.earthsci.worldwind.common.retrieve.TilePrefetcher;
+
 /**
  * Helper class to create an {@link OrbitView} animator that flies to a given
  * sector.
@@ -34,7 +36,8 @@ public class FlyToSectorAnimator
 {
 	/**
 	 * Create a {@link FlyToOrbitViewAnimator} that flies to a given position,
-	 * ensuring that a delta lat/lon area is visible.
+	 * ensuring that a delta lat/lon area is visible. Tiles along the flight
+	 * path are prefetched using the {@link TilePrefetcher}.
 	 * 
 	 * @param orbitView
 	 *            Orbit view to create the animator for
@@ -60,6 +63,7 @@ public class FlyToSectorAnimator
 			long timeToMove)
 	{
 		double endZoom = calculateEndZoom(orbitView, endVisibleDelta);
+		TilePrefetcher.getInstance().prefetchFlyTo(orbitView, beginCenterPos, endCenterPos, beginZoom, endZoom);
 		return FlyToOrbitViewAnimator.createFlyToOrbitViewAnimator(orbitView, beginCenterPos, endCenterPos,
 				beginHeading, Angle.ZERO, beginPitch, Angle.ZERO, beginZoom, endZoom, timeToMove, WorldWind.ABSOLUTE);
 	}
@@ -72,6 +76,7 @@ public class FlyToSectorAnimator
 		long timeToMove =
 				(Util.getScaledLengthMillis(timeScale, beginCenterPos, endCenterPos) + Util.getScaledLengthMillis(
 						timeScale, beginZoom, endZoom)) / 2;
+		TilePrefetcher.getInstance().prefetchFlyTo(orbitView, beginCenterPos, endCenterPos, beginZoom, endZoom);
 		return FlyToOrbitViewAnimator.createFlyToOrbitViewAnimator(orbitView, beginCenterPos, endCenterPos,
 				beginHeading, Angle.ZERO, beginPitch, Angle.ZERO, beginZoom, endZoom, timeToMove, WorldWind.ABSOLUTE);
 	}
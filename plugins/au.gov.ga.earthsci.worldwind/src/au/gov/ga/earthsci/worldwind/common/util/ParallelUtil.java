@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Helper for splitting simple data-parallel loops (such as per-row image
+ * processing) across a shared pool of daemon worker threads.
+ * <p/>
+ * The calling thread always processes one of the chunks itself, and calls
+ * made from within a worker thread are run inline, so nested usage cannot
+ * deadlock the pool.
+ */
+public class ParallelUtil
+{
+	/**
+	 * Task that processes a contiguous range of indices.
+	 */
+	public static interface RangeTask
+	{
+		/**
+		 * Process the indices in the range [start, end).
+		 * 
+		 * @param start
+		 *            First index to process (inclusive)
+		 * @param end
+		 *            Last index to process (exclusive)
+		 */
+		void run(int start, int end);
+	}
+
+	private static final int THREAD_COUNT = Math.max(1, Runtime.getRuntime().availableProcessors());
+	private static final ThreadLocal<Boolean> IS_WORKER = new ThreadLocal<Boolean>();
+	private static ExecutorService executor;
+
+	/**
+	 * @return The number of threads used to process parallel loops
+	 */
+	public static int getThreadCount()
+	{
+		return THREAD_COUNT;
+	}
+
+	/**
+	 * @return The shared executor used to run parallel chunks
+	 */
+	public static synchronized ExecutorService getExecutor()
+	{
+		if (executor == null)
+		{
+			executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory()
+			{
+				@Override
+				public Thread newThread(final Runnable r)
+				{
+					Thread thread = DaemonThreadFactory.newThread(new Runnable()
+					{
+						@Override
+						public void run()
+						{
+							IS_WORKER.set(Boolean.TRUE);
+							r.run();
+						}
+					}, "Parallel Worker");
+					thread.setPriority(Thread.NORM_PRIORITY);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	/**
+	 * Run the given task over the range [0, count), splitting the range into
+	 * chunks processed in parallel. Blocks until all chunks are complete.
+	 * Ranges smaller than <code>minChunkSize</code> are run on the calling
+	 * thread.
+	 * 
+	 * @param count
+	 *            Number of indices to process
+	 * @param minChunkSize
+	 *            Minimum number of indices to process per chunk
+	 * @param task
+	 *            Task to run for each chunk
+	 */
+	public static void forRange(int count, int minChunkSize, final RangeTask task)
+	{
+		int chunks = Math.min(THREAD_COUNT, count / Math.max(1, minChunkSize));
+		if (chunks <= 1 || IS_WORKER.get() != null)
+		{
+			task.run(0, count);
+			return;
+		}
+
+		int chunkSize = (count + chunks - 1) / chunks;
+		List<Future<?>> futures = new ArrayList<Future<?>>(chunks - 1);
+		ExecutorService executor = getExecutor();
+		for (int start = chunkSize; start < count; start += chunkSize)
+		{
+			final int s = start;
+			final int e = Math.min(count, start + chunkSize);
+			futures.add(executor.submit(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					task.run(s, e);
+				}
+			}));
+		}
+
+		//process the first chunk on the calling thread
+		task.run(0, Math.min(count, chunkSize));
+
+		for (Future<?> future : futures)
+		{
+			try
+			{
+				future.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (ExecutionException e)
+			{
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException)
+				{
+					throw (RuntimeException) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+}
@@ -229,6 +229,40 @@ public class Util
 		return null;
 	}
 
+	/**
+	 * Find a file that contains a whole tileset, stored alongside the tileset
+	 * directory with the given extension (such as Ternary.pyramid).
+	 * 
+	 * @param service
+	 *            Tileset's service name
+	 * @param dataset
+	 *            Tileset's dataset name
+	 * @param context
+	 *            Tile's layer's context URL
+	 * @param extension
+	 *            Extension of the tileset file
+	 * @return Tileset file, or null if not found
+	 */
+	public static File getLocalTilesetFile(String service, String dataset, URL context, String extension)
+	{
+		if (dataset == null || dataset.length() <= 0)
+		{
+			dataset = service;
+		}
+		else if (service != null && service.length() > 0)
+		{
+			dataset = service + "/" + dataset;
+		}
+
+		if (dataset == null)
+		{
+			return null;
+		}
+
+		File file = Util.getPathWithinContext(dataset + "." + extension, context);
+		return file != null && file.isFile() ? file : null;
+	}
+
 	/**
 	 * Attempt to find a directory or file, relative to a given context URL
 	 */
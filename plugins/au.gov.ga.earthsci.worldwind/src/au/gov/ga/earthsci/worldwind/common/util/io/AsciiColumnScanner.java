@@ -0,0 +1,468 @@
+/*******************************************************************************
+ * Copyright 2013 Geoscience Australia
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+package au.gov.ga.earthsci.worldwind.common.util.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import au.gov.ga.earthsci.worldwind.common.util.ParallelUtil;
+import au.gov.ga.earthsci.worldwind.common.util.Validate;
+
+/**
+ * A scanner that reads a single numeric column from lines of whitespace
+ * separated ASCII numeric columns, directly from bytes.
+ * <p/>
+ * A line matches if it contains at least <code>valueColumn + 1</code>
+ * whitespace separated fields made up of the characters <code>[0-9.-]</code>
+ * (the value column's field may be followed by anything); all other lines are
+ * ignored. This is equivalent to matching each line against the regular
+ * expression <code>\s*([\d.\-]+)(?:\s+[\d.\-]+)*...\s+([\d.\-]+).*</code>.
+ * <p/>
+ * Input is read in large blocks (memory-mapped for files), and each block is
+ * split into line-aligned chunks which are parsed in parallel. Matching lines
+ * are then passed to the {@link LineHandler} in file order, on the calling
+ * thread.
+ * 
+ * @see ParallelUtil
+ */
+public class AsciiColumnScanner
+{
+	/**
+	 * Handler that is notified of each line that matches.
+	 */
+	public static interface LineHandler
+	{
+		/**
+		 * Called for each matching line, in order.
+		 * 
+		 * @param block
+		 *            Buffer containing the line; only valid during this call
+		 * @param lineStart
+		 *            Index of the start of the line in the buffer
+		 * @param value
+		 *            Value parsed from the value column
+		 */
+		void line(ByteBuffer block, int lineStart, float value);
+	}
+
+	/**
+	 * Default maximum size of the blocks read from the input.
+	 */
+	public static final int DEFAULT_BLOCK_SIZE = 64 * 1024 * 1024;
+
+	private static final int MIN_CHUNK_SIZE = 256 * 1024;
+	private static final float[] FLOAT_POWERS_OF_10 = { 1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f,
+			1e10f };
+	private static final long MAX_EXACT_FLOAT_MANTISSA = 1 << 24;
+
+	private final int valueColumn;
+	private final int blockSize;
+
+	/**
+	 * Create a new scanner.
+	 * 
+	 * @param valueColumn
+	 *            0-based index of the column to parse
+	 */
+	public AsciiColumnScanner(int valueColumn)
+	{
+		this(valueColumn, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Create a new scanner.
+	 * 
+	 * @param valueColumn
+	 *            0-based index of the column to parse
+	 * @param blockSize
+	 *            Maximum size of the blocks read from the input; must be
+	 *            larger than the longest line
+	 */
+	public AsciiColumnScanner(int valueColumn, int blockSize)
+	{
+		Validate.isTrue(valueColumn >= 0, "Value column must be non-negative");
+		Validate.isTrue(blockSize > 0, "Block size must be positive");
+		this.valueColumn = valueColumn;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Scan all lines in the given file.
+	 * 
+	 * @param file
+	 * @param handler
+	 * @throws IOException
+	 */
+	public void scan(File file, LineHandler handler) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			long size = channel.size();
+			long position = 0;
+			while (position < size)
+			{
+				int length = (int) Math.min(blockSize, size - position);
+				ByteBuffer block = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+				boolean last = position + length >= size;
+				int end = last ? length : lastLineEnd(block, length);
+				if (end <= 0)
+				{
+					throw new IOException("Line at offset " + position + " is longer than the block size");
+				}
+				scan(block, end, handler);
+				position += end;
+			}
+		}
+		finally
+		{
+			raf.close();
+		}
+	}
+
+	/**
+	 * Scan all lines in the given stream. The stream is not closed.
+	 * 
+	 * @param is
+	 * @param handler
+	 * @throws IOException
+	 */
+	public void scan(InputStream is, LineHandler handler) throws IOException
+	{
+		byte[] bytes = new byte[blockSize];
+		ByteBuffer block = ByteBuffer.wrap(bytes);
+		int length = 0;
+		while (true)
+		{
+			int read = is.read(bytes, length, bytes.length - length);
+			boolean last = read < 0;
+			if (!last)
+			{
+				length += read;
+				if (length < bytes.length)
+				{
+					continue;
+				}
+			}
+
+			int end = last ? length : lastLineEnd(block, length);
+			if (end <= 0 && !last)
+			{
+				throw new IOException("Line is longer than the block size");
+			}
+			//limit the block so that stale bytes from the previous block aren't read
+			block.limit(end);
+			scan(block, end, handler);
+			block.clear();
+			if (last)
+			{
+				return;
+			}
+
+			//move the partial line to the start of the buffer
+			System.arraycopy(bytes, end, bytes, 0, length - end);
+			length -= end;
+		}
+	}
+
+	/**
+	 * Scan the lines in the first <code>length</code> bytes of the given
+	 * block. The block should end at a line boundary.
+	 * 
+	 * @param block
+	 * @param length
+	 * @param handler
+	 */
+	public void scan(final ByteBuffer block, int length, LineHandler handler)
+	{
+		if (length <= 0)
+		{
+			return;
+		}
+
+		//split the block into line-aligned chunks
+		int chunkCount = Math.max(1, Math.min(ParallelUtil.getThreadCount() * 4, length / MIN_CHUNK_SIZE));
+		final int[] bounds = new int[chunkCount + 1];
+		for (int i = 1; i < chunkCount; i++)
+		{
+			int start = Math.max(bounds[i - 1], (int) ((long) length * i / chunkCount));
+			bounds[i] = nextLineStart(block, start, length);
+		}
+		bounds[chunkCount] = length;
+
+		final Chunk[] chunks = new Chunk[chunkCount];
+		ParallelUtil.forRange(chunkCount, 1, new ParallelUtil.RangeTask()
+		{
+			@Override
+			public void run(int start, int end)
+			{
+				for (int i = start; i < end; i++)
+				{
+					chunks[i] = scanChunk(block, bounds[i], bounds[i + 1]);
+				}
+			}
+		});
+
+		for (Chunk chunk : chunks)
+		{
+			for (int i = 0; i < chunk.count; i++)
+			{
+				handler.line(block, chunk.lineStarts[i], chunk.values[i]);
+			}
+		}
+	}
+
+	/**
+	 * Parse the matching lines within the given range of the block.
+	 */
+	protected Chunk scanChunk(ByteBuffer block, int start, int end)
+	{
+		Chunk chunk = new Chunk(Math.max(16, (end - start) / 32));
+		int lineStart = start;
+		while (lineStart < end)
+		{
+			int lineEnd = lineStart;
+			while (lineEnd < end && !isLineTerminator(block.get(lineEnd)))
+			{
+				lineEnd++;
+			}
+
+			int valueStart = findColumn(block, lineStart, lineEnd, valueColumn);
+			if (valueStart >= 0)
+			{
+				int valueEnd = valueStart;
+				while (valueEnd < lineEnd && isNumberCharacter(block.get(valueEnd)))
+				{
+					valueEnd++;
+				}
+				chunk.add(lineStart, parseFloat(block, valueStart, valueEnd));
+			}
+
+			lineStart = lineEnd + 1;
+		}
+		return chunk;
+	}
+
+	/**
+	 * Find the start of the given column in a line.
+	 * 
+	 * @param block
+	 * @param lineStart
+	 *            Start of the line
+	 * @param lineEnd
+	 *            End of the line (exclusive)
+	 * @param column
+	 *            0-based column index
+	 * @return Index of the first character of the column, or -1 if the line
+	 *         doesn't contain the required number of numeric columns
+	 */
+	public static int findColumn(ByteBuffer block, int lineStart, int lineEnd, int column)
+	{
+		int i = lineStart;
+		while (i < lineEnd && isWhitespace(block.get(i)))
+		{
+			i++;
+		}
+		for (int c = 0;; c++)
+		{
+			int fieldStart = i;
+			while (i < lineEnd && isNumberCharacter(block.get(i)))
+			{
+				i++;
+			}
+			if (i == fieldStart)
+			{
+				return -1;
+			}
+			if (c == column)
+			{
+				return fieldStart;
+			}
+			//fields must be separated by whitespace
+			if (i >= lineEnd || !isWhitespace(block.get(i)))
+			{
+				return -1;
+			}
+			while (i < lineEnd && isWhitespace(block.get(i)))
+			{
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Read the given column of the line starting at <code>lineStart</code> as
+	 * a double. The line must be a matching line passed to a
+	 * {@link LineHandler}.
+	 * 
+	 * @param block
+	 * @param lineStart
+	 * @param column
+	 *            0-based column index; must not be greater than the value
+	 *            column
+	 * @return Value of the column
+	 */
+	public static double readDouble(ByteBuffer block, int lineStart, int column)
+	{
+		int lineEnd = lineStart;
+		while (lineEnd < block.limit() && !isLineTerminator(block.get(lineEnd)))
+		{
+			lineEnd++;
+		}
+		int start = findColumn(block, lineStart, lineEnd, column);
+		int end = start;
+		while (end < lineEnd && isNumberCharacter(block.get(end)))
+		{
+			end++;
+		}
+		return Double.parseDouble(toString(block, start, end));
+	}
+
+	/**
+	 * Parse a float from the characters in the given range. Gives the same
+	 * result as {@link Float#parseFloat(String)}; simple decimals that can be
+	 * represented exactly are parsed without creating a String.
+	 */
+	public static float parseFloat(ByteBuffer block, int start, int end)
+	{
+		int i = start;
+		boolean negative = i < end && block.get(i) == '-';
+		if (negative)
+		{
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int fractionDigits = -1;
+		for (; i < end; i++)
+		{
+			byte b = block.get(i);
+			if (b == '.' && fractionDigits < 0)
+			{
+				fractionDigits = 0;
+			}
+			else if (b >= '0' && b <= '9' && mantissa < MAX_EXACT_FLOAT_MANTISSA)
+			{
+				mantissa = mantissa * 10 + (b - '0');
+				digits++;
+				if (fractionDigits >= 0)
+				{
+					fractionDigits++;
+				}
+			}
+			else
+			{
+				break;
+			}
+		}
+
+		if (i == end && digits > 0 && mantissa <= MAX_EXACT_FLOAT_MANTISSA
+				&& Math.max(0, fractionDigits) < FLOAT_POWERS_OF_10.length)
+		{
+			//both the mantissa and power of 10 are exact floats, so the single division is correctly rounded
+			float value = fractionDigits > 0 ? mantissa / FLOAT_POWERS_OF_10[fractionDigits] : (float) mantissa;
+			return negative ? -value : value;
+		}
+		return Float.parseFloat(toString(block, start, end));
+	}
+
+	private static String toString(ByteBuffer block, int start, int end)
+	{
+		char[] chars = new char[end - start];
+		for (int i = start; i < end; i++)
+		{
+			chars[i - start] = (char) (block.get(i) & 0xff);
+		}
+		return new String(chars);
+	}
+
+	private static int lastLineEnd(ByteBuffer block, int length)
+	{
+		for (int i = length - 1; i >= 0; i--)
+		{
+			if (isLineTerminator(block.get(i)))
+			{
+				return i + 1;
+			}
+		}
+		return 0;
+	}
+
+	private static int nextLineStart(ByteBuffer block, int start, int length)
+	{
+		if (start == 0)
+		{
+			return 0;
+		}
+		for (int i = start - 1; i < length; i++)
+		{
+			if (isLineTerminator(block.get(i)))
+			{
+				return i + 1;
+			}
+		}
+		return length;
+	}
+
+	private static boolean isLineTerminator(byte b)
+	{
+		return b == '\n' || b == '\r';
+	}
+
+	private static boolean isWhitespace(byte b)
+	{
+		return b == ' ' || b == '\t' || b == 0x0B || b == '\f';
+	}
+
+	private static boolean isNumberCharacter(byte b)
+	{
+		return (b >= '0' && b <= '9') || b == '.' || b == '-';
+	}
+
+	/**
+	 * Matching lines found in a chunk of a block.
+	 */
+	protected static class Chunk
+	{
+		private int[] lineStarts;
+		private float[] values;
+		private int count;
+
+		public Chunk(int capacity)
+		{
+			lineStarts = new int[capacity];
+			values = new float[capacity];
+		}
+
+		public void add(int lineStart, float value)
+		{
+			if (count == values.length)
+			{
+				lineStarts = Arrays.copyOf(lineStarts, count * 2);
+				values = Arrays.copyOf(values, count * 2);
+			}
+			lineStarts[count] = lineStart;
+			values[count] = value;
+			count++;
+		}
+	}
+}